@@ -23,6 +23,7 @@ import jakarta.ws.rs.HttpMethod;
 import jakarta.ws.rs.client.Entity;
 import jakarta.ws.rs.client.Invocation;
 import jakarta.ws.rs.client.WebTarget;
+import jakarta.ws.rs.core.HttpHeaders;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.MultivaluedHashMap;
 import jakarta.ws.rs.core.MultivaluedMap;
@@ -55,8 +56,7 @@ import java.lang.reflect.Type;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.logging.Level;
@@ -78,6 +78,10 @@ import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
  * <p>
  * <b>NOTE: if an exception is thrown during the request that means no response is returned then this is treated as if
  * a 500 response has been received</b>
+ * <h1>Polling</h1>
+ * Polling attributes that would make identical requests share a single polling request (see {@link PollingGroup}).
+ * Conditional GET requests ({@code If-None-Match}/{@code If-Modified-Since}) are made when the server returns an
+ * {@code ETag} or {@code Last-Modified} header, and a {@code 304} response leaves the linked attributes untouched.
  * <h1>Dynamic value injection</h1>
  * This allows the {@link HTTPAgentLink#getPath()}} and/or {@link AgentLink#getWriteValue()} to contain the linked
  * {@link Attribute} value when sending requests. To dynamically inject the attribute value use {@value
@@ -220,7 +224,14 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
         }
 
         public Response invoke(String value) {
+            return invoke(value, null);
+        }
+
+        public Response invoke(String value, Map<String, Object> additionalHeaders) {
             Invocation.Builder requestBuilder = getRequestBuilder(value);
+            if (additionalHeaders != null) {
+                additionalHeaders.forEach(requestBuilder::header);
+            }
             Invocation invocation = buildInvocation(requestBuilder, value);
             return invocation.invoke();
         }
@@ -231,6 +242,83 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
         }
     }
 
+    /**
+     * Polling attributes whose requests are identical (method, path, headers, query parameters, body, content type,
+     * paging and response conversion) share a single {@link PollingGroup} so one request is made per polling interval
+     * and the response is fanned out to every attribute in the group; the group polls at the shortest interval of its
+     * attributes.
+     */
+    protected static class PollingGroup {
+        protected final List<Object> key;
+        protected final HttpClientRequest clientRequest;
+        protected final String body;
+        protected final boolean binaryMode;
+        protected final boolean hexMode;
+        protected final String host;
+        protected final Semaphore hostPermits;
+        protected final Map<AttributeRef, Integer> attributePollingMillis = new LinkedHashMap<>();
+        protected int pollingMillis;
+        protected ScheduledFuture<?> pollingTask;
+        protected volatile String entityTag;
+        protected volatile String lastModified;
+
+        protected PollingGroup(List<Object> key, HttpClientRequest clientRequest, String body, boolean binaryMode, boolean hexMode) {
+            this.key = key;
+            this.clientRequest = clientRequest;
+            this.body = body;
+            this.binaryMode = binaryMode;
+            this.hexMode = hexMode;
+            this.host = getPollingHost(clientRequest);
+            this.hostPermits = acquireHostPollingPermits(host);
+        }
+
+        protected int getMinPollingMillis() {
+            return attributePollingMillis.values().stream().mapToInt(Integer::intValue).min().orElse(0);
+        }
+
+        protected boolean isConditional() {
+            return HttpMethod.GET.equals(clientRequest.method) && !clientRequest.pagingEnabled;
+        }
+
+        protected Map<String, Object> getConditionalHeaders() {
+            if (!isConditional() || (entityTag == null && lastModified == null)) {
+                return null;
+            }
+            Map<String, Object> headers = new HashMap<>(2);
+            if (entityTag != null) {
+                headers.put(HttpHeaders.IF_NONE_MATCH, entityTag);
+            }
+            if (lastModified != null) {
+                headers.put(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+            return headers;
+        }
+
+        /**
+         * Forgets the validators of the last response so the next request is unconditional; must be called when an
+         * attribute starts using the response of this group otherwise it would only receive a value once the resource
+         * changes.
+         */
+        protected void resetConditionalHeaders() {
+            entityTag = null;
+            lastModified = null;
+        }
+
+        @Override
+        public String toString() {
+            return clientRequest.toString();
+        }
+    }
+
+    /**
+     * Polling request permits for a single host along with the number of {@link PollingGroup}s (across all HTTP agents)
+     * that currently use them; the entry is removed from {@link #hostPollingPermits} when the last group is removed.
+     */
+    protected static class HostPollingPermits {
+        protected final Semaphore permits = new Semaphore(MAX_CONCURRENT_POLLING_REQUESTS_PER_HOST);
+        protected int pollingGroupCount;
+    }
+
     protected static class PagingResponse extends BuiltResponse {
 
         private PagingResponse(int status, Headers<Object> metadata, Object entity, Annotation[] entityAnnotations) {
@@ -276,10 +364,22 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
     public static final String DEFAULT_CONTENT_TYPE = MediaType.TEXT_PLAIN;
     protected static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, HTTPProtocol.class);
     public static int MIN_POLLING_MILLIS = 5000;
+    /**
+     * Upper bound of the random delay added before the first request of a {@link PollingGroup} so that groups linked at
+     * the same time don't all poll in lock step; the actual bound is also limited to a tenth of the polling interval.
+     */
+    public static int MAX_POLLING_JITTER_MILLIS = 1000;
+    /**
+     * Maximum number of concurrent polling requests to a single host across all HTTP agents; polls that would exceed
+     * this are skipped until the next interval rather than blocking a scheduler thread.
+     */
+    public static int MAX_CONCURRENT_POLLING_REQUESTS_PER_HOST = 4;
     protected static final AtomicReference<ResteasyClient> client = new AtomicReference<>();
+    protected static final ConcurrentMap<String, HostPollingPermits> hostPollingPermits = new ConcurrentHashMap<>();
 
     protected final Map<AttributeRef, HttpClientRequest> requestMap = new HashMap<>();
-    protected final Map<AttributeRef, ScheduledFuture<?>> pollingMap = new HashMap<>();
+    protected final Map<List<Object>, PollingGroup> pollingGroups = new HashMap<>();
+    protected final Map<AttributeRef, PollingGroup> attributePollingGroups = new HashMap<>();
     protected final Map<AttributeRef, Set<AttributeRef>> pollingLinkedAttributeMap = new HashMap<>();
     protected ResteasyWebTarget webTarget;
 
@@ -291,8 +391,16 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
 
     @Override
     protected void doStop(Container container) {
-        pollingMap.forEach((attributeRef, scheduledFuture) -> scheduledFuture.cancel(true));
-        pollingMap.clear();
+        synchronized (pollingGroups) {
+            pollingGroups.values().forEach(pollingGroup -> {
+                if (pollingGroup.pollingTask != null) {
+                    pollingGroup.pollingTask.cancel(true);
+                }
+                releaseHostPollingPermits(pollingGroup.host);
+            });
+            pollingGroups.clear();
+            attributePollingGroups.clear();
+        }
         requestMap.clear();
     }
 
@@ -379,6 +487,13 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
                     return links;
                 });
             }
+
+            synchronized (pollingGroups) {
+                PollingGroup pollingGroup = attributePollingGroups.get(new AttributeRef(attributeRef.getId(), pollingAttribute));
+                if (pollingGroup != null) {
+                    pollingGroup.resetConditionalHeaders();
+                }
+            }
         }
 
         String body = agentLink.getWriteValue().orElse(null);
@@ -388,11 +503,14 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
             return;
         }
 
+        MultivaluedMap<String, Object> requestHeaders = headers != null ? WebTargetBuilder.mapToMultivaluedMap(headers, new MultivaluedHashMap<>()) : null;
+        MultivaluedMap<String, String> requestQueryParams = queryParams != null ? WebTargetBuilder.mapToMultivaluedMap(queryParams, new MultivaluedHashMap<>()) : null;
+
         HttpClientRequest clientRequest = buildClientRequest(
             path,
             method,
-            headers != null ? WebTargetBuilder.mapToMultivaluedMap(headers, new MultivaluedHashMap<>()) : null,
-            queryParams != null ? WebTargetBuilder.mapToMultivaluedMap(queryParams, new MultivaluedHashMap<>()) : null,
+            requestHeaders,
+            requestQueryParams,
             pagingEnabled,
             contentType);
 
@@ -400,13 +518,20 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
 
         requestMap.put(attributeRef, clientRequest);
 
-        Optional.ofNullable(pollingMillis).ifPresent(seconds ->
-            pollingMap.put(attributeRef, schedulePollingRequest(
-                attributeRef,
-                agentLink,
-                clientRequest,
-                body,
-                seconds)));
+        if (pollingMillis != null) {
+            boolean binaryMode = agent.getMessageConvertBinary().orElse(agentLink.isMessageConvertBinary());
+            boolean hexMode = agent.getMessageConvertHex().orElse(agentLink.isMessageConvertHex());
+            List<Object> pollingKey = Arrays.asList(method, path, requestHeaders, requestQueryParams, body, clientRequest.contentType, pagingEnabled, binaryMode, hexMode);
+
+            synchronized (pollingGroups) {
+                PollingGroup pollingGroup = pollingGroups.computeIfAbsent(pollingKey, key -> new PollingGroup(key, clientRequest, body, binaryMode, hexMode));
+                if (pollingGroup.attributePollingMillis.put(attributeRef, pollingMillis) == null) {
+                    pollingGroup.resetConditionalHeaders();
+                }
+                attributePollingGroups.put(attributeRef, pollingGroup);
+                updatePollingGroupSchedule(pollingGroup);
+            }
+        }
     }
 
     @Override
@@ -468,34 +593,100 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
             contentType);
     }
 
-    protected ScheduledFuture<?> schedulePollingRequest(AttributeRef attributeRef,
-                                                        HTTPAgentLink agentLink,
-                                                        HttpClientRequest clientRequest,
-                                                        String body,
-                                                        int pollingMillis) {
-
-        LOG.fine("Scheduling polling request '" + clientRequest + "' to execute every " + pollingMillis + " ms for attribute: " + attributeRef);
-
-        return executorService.scheduleWithFixedDelay(() ->
-            executePollingRequest(clientRequest, body, response -> {
-                try {
-                    onPollingResponse(
-                        clientRequest,
-                        response,
-                        attributeRef,
-                        agentLink);
-                } catch (Exception e) {
-                    LOG.log(Level.WARNING, prefixLogMessage("Exception thrown whilst processing polling response [" + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()) + "]: " + clientRequest.requestTarget.getUriBuilder().build().toString()));
+    /**
+     * (Re)schedules the polling task of the supplied group when its shortest attribute polling interval has changed;
+     * must be called whilst holding the {@link #pollingGroups} lock.
+     */
+    protected void updatePollingGroupSchedule(PollingGroup pollingGroup) {
+        int pollingMillis = pollingGroup.getMinPollingMillis();
+
+        if (pollingGroup.pollingTask != null && pollingGroup.pollingMillis == pollingMillis) {
+            return;
+        }
+
+        if (pollingGroup.pollingTask != null) {
+            pollingGroup.pollingTask.cancel(false);
+        }
+
+        pollingGroup.pollingMillis = pollingMillis;
+        pollingGroup.pollingTask = schedulePollingRequest(pollingGroup, pollingMillis);
+    }
+
+    protected ScheduledFuture<?> schedulePollingRequest(PollingGroup pollingGroup, int pollingMillis) {
+
+        long maxJitterMillis = Math.min(MAX_POLLING_JITTER_MILLIS, pollingMillis / 10);
+        long initialDelayMillis = maxJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(maxJitterMillis) : 0;
+
+        LOG.fine("Scheduling polling request '" + pollingGroup + "' to execute every " + pollingMillis + " ms for attributes: " + pollingGroup.attributePollingMillis.keySet());
+
+        return executorService.scheduleWithFixedDelay(() -> {
+            Semaphore hostPermits = pollingGroup.hostPermits;
+
+            if (hostPermits != null && !hostPermits.tryAcquire()) {
+                LOG.fine(prefixLogMessage("Skipping polling request as too many requests are in progress for this host: " + pollingGroup));
+                return;
+            }
+
+            try {
+                executePollingRequest(pollingGroup.clientRequest, pollingGroup.body, pollingGroup.getConditionalHeaders(), response -> {
+                    try {
+                        onPollingResponse(pollingGroup, response);
+                    } catch (Exception e) {
+                        LOG.log(Level.WARNING, prefixLogMessage("Exception thrown whilst processing polling response [" + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()) + "]: " + pollingGroup));
+                    }
+                });
+            } finally {
+                if (hostPermits != null) {
+                    hostPermits.release();
                 }
-            }), 0, pollingMillis, TimeUnit.MILLISECONDS);
+            }
+        }, initialDelayMillis, pollingMillis, TimeUnit.MILLISECONDS);
+    }
+
+    protected static String getPollingHost(HttpClientRequest clientRequest) {
+        if (MAX_CONCURRENT_POLLING_REQUESTS_PER_HOST <= 0 || clientRequest.client == null) {
+            return null;
+        }
+
+        return clientRequest.client.getUri().getAuthority();
+    }
+
+    /**
+     * Gets the polling permits for the request's host and records that another {@link PollingGroup} uses them; must be
+     * paired with a call to {@link #releaseHostPollingPermits} when the group is removed.
+     */
+    protected static Semaphore acquireHostPollingPermits(String host) {
+        if (host == null) {
+            return null;
+        }
+
+        return hostPollingPermits.compute(host, (h, hostPermits) -> {
+            if (hostPermits == null) {
+                hostPermits = new HostPollingPermits();
+            }
+            hostPermits.pollingGroupCount++;
+            return hostPermits;
+        }).permits;
+    }
+
+    protected static void releaseHostPollingPermits(String host) {
+        if (host == null) {
+            return;
+        }
+
+        hostPollingPermits.computeIfPresent(host, (h, hostPermits) -> --hostPermits.pollingGroupCount > 0 ? hostPermits : null);
     }
 
     protected void executePollingRequest(HttpClientRequest clientRequest, String body, Consumer<Response> responseConsumer) {
+        executePollingRequest(clientRequest, body, null, responseConsumer);
+    }
+
+    protected void executePollingRequest(HttpClientRequest clientRequest, String body, Map<String, Object> additionalHeaders, Consumer<Response> responseConsumer) {
         Response originalResponse = null, lastResponse = null;
         List<String> entities = new ArrayList<>();
 
         try {
-            originalResponse = clientRequest.invoke(body);
+            originalResponse = clientRequest.invoke(body, additionalHeaders);
             if (clientRequest.pagingEnabled) {
                 lastResponse = originalResponse;
                 entities.add(lastResponse.readEntity(String.class));
@@ -545,22 +736,22 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
         }
     }
 
-    protected void onPollingResponse(HttpClientRequest request,
-                                     Response response,
-                                     AttributeRef attributeRef,
-                                     HTTPAgentLink agentLink) {
+    protected void onPollingResponse(PollingGroup pollingGroup,
+                                     Response response) {
 
         int responseCode = response != null ? response.getStatus() : 500;
         Object value = null;
 
+        if (responseCode == Response.Status.NOT_MODIFIED.getStatusCode()) {
+            LOG.finest(() -> prefixLogMessage("Polling response not modified since last request: " + pollingGroup));
+            return;
+        }
+
         if (response != null && response.hasEntity() && response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
             try {
-                boolean binaryMode = agent.getMessageConvertBinary().orElse(agentLink.isMessageConvertBinary());
-                boolean hexMode = agent.getMessageConvertHex().orElse(agentLink.isMessageConvertHex());
-
-                if (hexMode || binaryMode) {
+                if (pollingGroup.hexMode || pollingGroup.binaryMode) {
                     byte[] bytes = response.readEntity(byte[].class);
-                    value = hexMode ? ValueUtil.bytesToHexString(bytes) : ValueUtil.bytesToBinaryString(bytes);
+                    value = pollingGroup.hexMode ? ValueUtil.bytesToHexString(bytes) : ValueUtil.bytesToBinaryString(bytes);
                 } else {
                     value = response.readEntity(String.class);
                 }
@@ -568,23 +759,33 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
                 LOG.log(Level.WARNING, "Error occurred whilst trying to read response body", e);
                 response.close();
             }
+
+            if (pollingGroup.isConditional()) {
+                pollingGroup.entityTag = response.getHeaderString(HttpHeaders.ETAG);
+                pollingGroup.lastModified = response.getHeaderString(HttpHeaders.LAST_MODIFIED);
+            }
         } else {
-            LOG.fine(prefixLogMessage("Request returned an un-successful response code (" + responseCode + "):" + request.requestTarget.getUriBuilder().build().toString()));
+            LOG.fine(prefixLogMessage("Request returned an un-successful response code (" + responseCode + "):" + pollingGroup));
             return;
         }
 
-        if (attributeRef != null) {
-            updateLinkedAttribute(attributeRef, value);
+        List<AttributeRef> attributeRefs;
+        synchronized (pollingGroups) {
+            attributeRefs = new ArrayList<>(pollingGroup.attributePollingMillis.keySet());
+        }
+
+        Object finalValue = value;
+        attributeRefs.forEach(attributeRef -> {
+            updateLinkedAttribute(attributeRef, finalValue);
 
             // Look for any attributes that also want to use this polling response
             synchronized (pollingLinkedAttributeMap) {
                 Set<AttributeRef> linkedRefs = pollingLinkedAttributeMap.get(attributeRef);
                 if (linkedRefs != null) {
-                    Object finalValue = value;
                     linkedRefs.forEach(ref -> updateLinkedAttribute(ref, finalValue));
                 }
             }
-        }
+        });
     }
 
     protected void onAttributeWriteResponse(HttpClientRequest request,
@@ -596,9 +797,23 @@ public class HTTPProtocol extends AbstractProtocol<HTTPAgent, HTTPAgentLink> {
     }
 
     protected void cancelPolling(AttributeRef attributeRef) {
-        ScheduledFuture<?> pollTask = pollingMap.remove(attributeRef);
-        if (pollTask != null) {
-            pollTask.cancel(false);
+        synchronized (pollingGroups) {
+            PollingGroup pollingGroup = attributePollingGroups.remove(attributeRef);
+            if (pollingGroup == null) {
+                return;
+            }
+
+            pollingGroup.attributePollingMillis.remove(attributeRef);
+
+            if (pollingGroup.attributePollingMillis.isEmpty()) {
+                pollingGroups.remove(pollingGroup.key);
+                if (pollingGroup.pollingTask != null) {
+                    pollingGroup.pollingTask.cancel(false);
+                }
+                releaseHostPollingPermits(pollingGroup.host);
+            } else {
+                updatePollingGroupSchedule(pollingGroup);
+            }
         }
     }
 
@@ -19,6 +19,7 @@
  */
 package org.openremote.agent.protocol.io;
 
+import io.micrometer.core.instrument.Tags;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandler;
@@ -138,6 +139,9 @@ public abstract class AbstractIOClientProtocol<T extends AbstractIOClientProtoco
 
     @Override
     protected void doStop(Container container) throws Exception {
+        if (client instanceof AbstractNettyIOClient<?, ?> nettyClient) {
+            nettyClient.getChannelMetrics().removeMetrics(container.getMeterRegistry());
+        }
         if (client != null) {
             LOG.fine("Stopping IO client for protocol: " + this);
             client.removeAllMessageConsumers();
@@ -153,6 +157,9 @@ public abstract class AbstractIOClientProtocol<T extends AbstractIOClientProtoco
         try {
             client = createIoClient();
             LOG.fine("Created IO client '" + client.getClientUri() + "' for protocol: " + this);
+            if (client instanceof AbstractNettyIOClient<?, ?> nettyClient) {
+                nettyClient.getChannelMetrics().registerMetrics(container.getMeterRegistry(), Tags.of("agentId", getAgent().getId(), "protocol", getProtocolName()));
+            }
             client.connect();
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Failed to create IO client for protocol: " + this, e);
@@ -83,6 +83,10 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
      * This is intended to be used at the end of a decoder chain where the previous decoder outputs a {@link ByteBuf};
      * the provided {@link #decoder} should extract the messages of type &lt;T&gt; from the {@link ByteBuf} and add them
      * to the {@link List} and they will then be passed to the {@link IOClient}.
+     * <p>
+     * The {@link ByteBuf} is only valid for the duration of the {@link #decoder} call; it is usually a slice of the
+     * previous decoder's pooled buffer so messages should not hold a reference to it (copy the bytes out or use
+     * {@link ByteBuf#retainedSlice} and release it once done).
      */
     public static class ByteToMessageDecoder<T> extends io.netty.handler.codec.ByteToMessageDecoder {
         protected List<T> messages = new ArrayList<>(1);
@@ -100,7 +104,9 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
 
             if (!messages.isEmpty()) {
                 // Don't pass them along the channel pipeline just consume them
-                messages.forEach(m -> client.onMessageReceived(m));
+                for (int i = 0; i < messages.size(); i++) {
+                    client.onMessageReceived(messages.get(i));
+                }
                 messages.clear();
             }
         }
@@ -173,6 +179,7 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
     protected CompletableFuture<Void> connectRetry;
     protected boolean permanentError;
     protected Supplier<ChannelHandler[]> encoderDecoderProvider;
+    protected final NettyEventLoopGroups.ChannelMetricsHandler channelMetricsHandler = new NettyEventLoopGroups.ChannelMetricsHandler();
 
     protected AbstractNettyIOClient() {
         this.executorService = Container.EXECUTOR_SERVICE;
@@ -185,6 +192,10 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
 
     protected abstract Class<? extends Channel> getChannelClass();
 
+    /**
+     * Get the group to use for the channel; implementations should return {@link NettyEventLoopGroups#getEventLoopGroup}
+     * unless they need a different transport as any other group is shut down when the client disconnects
+     */
     protected abstract EventLoopGroup getWorkerGroup();
 
     protected abstract ChannelFuture startChannel();
@@ -256,7 +267,6 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
         LOG.info("Establishing connection: " + getClientUri());
 
         if (workerGroup == null) {
-            // TODO: In Netty 5 you can pass in an executor service; can only pass in thread factory for now
             workerGroup = getWorkerGroup();
         }
 
@@ -268,6 +278,7 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
         bootstrap.handler(new ChannelInitializer<Channel>() {
             @Override
             public void initChannel(Channel channel) {
+                channel.pipeline().addLast(channelMetricsHandler);
                 AbstractNettyIOClient.this.initChannel(channel);
             }
         });
@@ -359,13 +370,28 @@ public abstract class AbstractNettyIOClient<T, U extends SocketAddress> implemen
             }
         } finally {
             if (workerGroup != null) {
-                workerGroup.shutdownGracefully();
+                // The shared group outlives this client
+                if (!NettyEventLoopGroups.isShared(workerGroup)) {
+                    workerGroup.shutdownGracefully();
+                }
                 workerGroup = null;
             }
         }
         LOG.finest("Disconnect done: " + getClientUri());
     }
 
+    public long getBytesReceived() {
+        return channelMetricsHandler.getBytesReceived();
+    }
+
+    public long getBytesSent() {
+        return channelMetricsHandler.getBytesSent();
+    }
+
+    public NettyEventLoopGroups.ChannelMetricsHandler getChannelMetrics() {
+        return channelMetricsHandler;
+    }
+
     @Override
     public void sendMessage(T message) {
         if (connectionStatus != ConnectionStatus.CONNECTED) {
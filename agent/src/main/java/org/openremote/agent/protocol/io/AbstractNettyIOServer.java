@@ -23,7 +23,6 @@ import io.netty.bootstrap.AbstractBootstrap;
 import io.netty.channel.*;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.util.concurrent.GlobalEventExecutor;
 import org.openremote.container.Container;
 import org.openremote.model.asset.agent.ConnectionStatus;
@@ -59,6 +58,7 @@ public abstract class AbstractNettyIOServer<T, U extends Channel, V extends Abst
     protected ConnectionStatus connectionStatus = ConnectionStatus.DISCONNECTED;
     protected ChannelFuture channelFuture;
     protected EventLoopGroup workerGroup;
+    protected final NettyEventLoopGroups.ChannelMetricsHandler channelMetricsHandler = new NettyEventLoopGroups.ChannelMetricsHandler();
     protected U channel;
     protected final ChannelGroup allChannels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
     protected final List<IoServerMessageConsumer<T, U, W>> messageConsumers = new ArrayList<>();
@@ -82,8 +82,7 @@ public abstract class AbstractNettyIOServer<T, U extends Channel, V extends Abst
         onConnectionStatusChanged(ConnectionStatus.CONNECTING);
 
         if (workerGroup == null) {
-            // TODO: In Netty 5 you can pass in an executor service; can only pass in thread factory for now
-            workerGroup = new NioEventLoopGroup();
+            workerGroup = NettyEventLoopGroups.getEventLoopGroup();
         }
 
         try {
@@ -173,7 +172,10 @@ public abstract class AbstractNettyIOServer<T, U extends Channel, V extends Abst
 
         } finally {
             if (workerGroup != null) {
-                workerGroup.shutdownGracefully();
+                // The shared group outlives this server
+                if (!NettyEventLoopGroups.isShared(workerGroup)) {
+                    workerGroup.shutdownGracefully();
+                }
                 workerGroup = null;
             }
             onConnectionStatusChanged(ConnectionStatus.DISCONNECTED);
@@ -247,6 +249,10 @@ public abstract class AbstractNettyIOServer<T, U extends Channel, V extends Abst
         return client.isActive() ? ConnectionStatus.CONNECTED : ConnectionStatus.DISCONNECTED;
     }
 
+    public NettyEventLoopGroups.ChannelMetricsHandler getChannelMetrics() {
+        return channelMetricsHandler;
+    }
+
     @Override
     public void disconnectClient(U client) {
         LOG.finest("Disconnecting client: " + getClientDescriptor(client));
@@ -255,6 +261,7 @@ public abstract class AbstractNettyIOServer<T, U extends Channel, V extends Abst
 
 
     protected void initChannel(U channel) {
+        channel.pipeline().addLast(channelMetricsHandler);
         channel.pipeline().addLast(new ChannelInboundHandlerAdapter() {
             @Override
             public void channelActive(ChannelHandlerContext ctx) throws Exception {
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.io;
+
+import org.openremote.model.syslog.SyslogCategory;
+
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * Paces messages written to a shared bus (e.g. Velbus, KNX TP) so that bulk writes don't overrun the bus interface.
+ * <p>
+ * Messages are queued in {@link Lane}s; queued {@link Lane#COMMAND} messages are always sent before queued
+ * {@link Lane#STATUS} messages. When the supersede key function returns a key for a message and a message with the
+ * same key is already queued in the same lane then the queued message is dropped and the new message is queued at the
+ * tail (e.g. a newer level for the same device channel); this means bulk actions only send the latest value for each
+ * channel whilst the new message is still sent after any other messages queued before it (e.g. a blind up command
+ * queued between two positions of the same blind).
+ * <p>
+ * The delay between messages adapts to the bus: when the bus interface reports it is busy ({@link #onBusBusy}) sending
+ * is paused until it reports it is ready again ({@link #onBusReady}) or until the delay has elapsed, and the delay is
+ * doubled (up to the max delay); each message sent whilst the bus is not busy reduces the delay (down to the min
+ * delay).
+ */
+public class BusPacer<T> {
+
+    public enum Lane {
+        /**
+         * User initiated commands
+         */
+        COMMAND,
+        /**
+         * Status requests/polls and other background traffic
+         */
+        STATUS
+    }
+
+    private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, BusPacer.class);
+    public static final int DELAY_DECREASE_DIVISOR = 8;
+    protected final ScheduledExecutorService executorService;
+    protected final Consumer<T> sender;
+    protected final Function<T, Object> supersedeKeyFunction;
+    protected final int minDelayMillis;
+    protected final int maxDelayMillis;
+    protected final Map<Lane, LinkedHashMap<Object, T>> laneQueues = new EnumMap<>(Lane.class);
+    protected int delayMillis;
+    protected boolean busBusy;
+    protected long sequence;
+    protected ScheduledFuture<?> sendTask;
+    protected long sentCount;
+    protected long supersededCount;
+
+    /**
+     * @param supersedeKeyFunction returns the key of messages that supersede a queued message with the same key; can
+     *                             return null for messages that should always be sent
+     */
+    public BusPacer(ScheduledExecutorService executorService, Consumer<T> sender, Function<T, Object> supersedeKeyFunction, int minDelayMillis, int maxDelayMillis) {
+        this.executorService = executorService;
+        this.sender = sender;
+        this.supersedeKeyFunction = supersedeKeyFunction;
+        this.minDelayMillis = Math.max(0, minDelayMillis);
+        this.maxDelayMillis = Math.max(this.minDelayMillis, maxDelayMillis);
+        this.delayMillis = this.minDelayMillis;
+        for (Lane lane : Lane.values()) {
+            laneQueues.put(lane, new LinkedHashMap<>());
+        }
+    }
+
+    public synchronized void send(Lane lane, Collection<T> messages) {
+        LinkedHashMap<Object, T> queue = laneQueues.get(lane);
+
+        for (T message : messages) {
+            Object key = supersedeKeyFunction != null ? supersedeKeyFunction.apply(message) : null;
+
+            if (key != null && queue.remove(key) != null) {
+                // Queue at the tail so the message isn't sent before messages that were queued before it
+                queue.put(key, message);
+                supersededCount++;
+            } else {
+                // Messages without a key get a unique one
+                queue.put(key != null ? key : new UniqueKey(sequence++), message);
+            }
+        }
+
+        scheduleSend(busBusy ? delayMillis : 0);
+    }
+
+    /**
+     * Call when the bus interface indicates it is busy (e.g. receive buffer full or bus off)
+     */
+    public synchronized void onBusBusy() {
+        if (!busBusy) {
+            busBusy = true;
+            delayMillis = Math.min(maxDelayMillis, Math.max(1, delayMillis) * 2);
+            LOG.fine("Bus busy so pausing sending, delay is now " + delayMillis + "ms");
+        }
+
+        // Wait for the ready indication or the delay to elapse
+        if (sendTask != null) {
+            sendTask.cancel(false);
+            sendTask = null;
+        }
+        scheduleSend(delayMillis);
+    }
+
+    /**
+     * Call when the bus interface indicates it is ready again
+     */
+    public synchronized void onBusReady() {
+        if (busBusy) {
+            busBusy = false;
+            LOG.fine("Bus ready so resuming sending");
+            if (sendTask != null) {
+                sendTask.cancel(false);
+                sendTask = null;
+            }
+            scheduleSend(minDelayMillis);
+        }
+    }
+
+    public synchronized void clear() {
+        laneQueues.values().forEach(Map::clear);
+        if (sendTask != null) {
+            sendTask.cancel(false);
+            sendTask = null;
+        }
+        busBusy = false;
+        delayMillis = minDelayMillis;
+    }
+
+    public synchronized int size() {
+        return laneQueues.values().stream().mapToInt(Map::size).sum();
+    }
+
+    public synchronized int getDelayMillis() {
+        return delayMillis;
+    }
+
+    public synchronized long getSentCount() {
+        return sentCount;
+    }
+
+    public synchronized long getSupersededCount() {
+        return supersededCount;
+    }
+
+    protected void scheduleSend(int delay) {
+        if (sendTask != null || size() == 0) {
+            return;
+        }
+        sendTask = executorService.schedule(this::sendNext, delay, TimeUnit.MILLISECONDS);
+    }
+
+    protected void sendNext() {
+        T message = null;
+
+        synchronized (this) {
+            sendTask = null;
+
+            for (LinkedHashMap<Object, T> queue : laneQueues.values()) {
+                Iterator<T> iterator = queue.values().iterator();
+                if (iterator.hasNext()) {
+                    message = iterator.next();
+                    iterator.remove();
+                    break;
+                }
+            }
+
+            if (message == null) {
+                return;
+            }
+
+            if (busBusy) {
+                // Ready indication wasn't received within the delay so assume the bus has recovered
+                busBusy = false;
+            } else {
+                delayMillis = Math.max(minDelayMillis, delayMillis - Math.max(1, delayMillis / DELAY_DECREASE_DIVISOR));
+            }
+            sentCount++;
+        }
+
+        try {
+            sender.accept(message);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to send bus message: " + message, e);
+        }
+
+        synchronized (this) {
+            scheduleSend(delayMillis);
+        }
+    }
+
+    protected record UniqueKey(long sequence) {
+    }
+}
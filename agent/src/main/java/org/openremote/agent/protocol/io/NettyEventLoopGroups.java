@@ -0,0 +1,238 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.io;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.*;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.openremote.model.syslog.SyslogCategory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * Provides the {@link EventLoopGroup} shared by all {@link AbstractNettyIOClient}s and {@link AbstractNettyIOServer}s
+ * so an IO client or server doesn't need its own thread(s); the group is created on first use and is sized using
+ * {@link #EVENT_LOOP_THREADS}. When {@link #NATIVE_TRANSPORT} is set and the native epoll transport is available on the
+ * classpath then it is used instead of NIO; the channel class getters must be used so the channel type matches the
+ * group.
+ */
+public final class NettyEventLoopGroups {
+
+    /**
+     * Counts the bytes transferred and the active channels of a single IO client or server as well as the active
+     * channels across all of them; the counts of a single client or server can be published as meters tagged with the
+     * agent that owns it
+     */
+    @ChannelHandler.Sharable
+    public static class ChannelMetricsHandler extends ChannelDuplexHandler {
+        protected final AtomicLong bytesReceived = new AtomicLong();
+        protected final AtomicLong bytesSent = new AtomicLong();
+        protected final AtomicInteger activeChannels = new AtomicInteger();
+        protected final List<Meter> meters = new ArrayList<>();
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            ACTIVE_CHANNELS.incrementAndGet();
+            activeChannels.incrementAndGet();
+            super.channelActive(ctx);
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            ACTIVE_CHANNELS.decrementAndGet();
+            activeChannels.decrementAndGet();
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+            bytesReceived.addAndGet(getSize(msg));
+            super.channelRead(ctx, msg);
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            bytesSent.addAndGet(getSize(msg));
+            super.write(ctx, msg, promise);
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived.get();
+        }
+
+        public long getBytesSent() {
+            return bytesSent.get();
+        }
+
+        public int getActiveChannels() {
+            return activeChannels.get();
+        }
+
+        public synchronized void registerMetrics(MeterRegistry meterRegistry, Tags tags) {
+            if (meterRegistry == null || !meters.isEmpty()) {
+                return;
+            }
+
+            meters.add(FunctionCounter.builder("or.agent.io.bytes", bytesReceived, AtomicLong::get).baseUnit("bytes").tags(tags.and("direction", "received")).register(meterRegistry));
+            meters.add(FunctionCounter.builder("or.agent.io.bytes", bytesSent, AtomicLong::get).baseUnit("bytes").tags(tags.and("direction", "sent")).register(meterRegistry));
+            meters.add(Gauge.builder("or.agent.io.agent.channels", activeChannels, AtomicInteger::get).tags(tags).register(meterRegistry));
+        }
+
+        public synchronized void removeMetrics(MeterRegistry meterRegistry) {
+            if (meterRegistry != null) {
+                meters.forEach(meterRegistry::remove);
+            }
+            meters.clear();
+        }
+
+        protected static long getSize(Object msg) {
+            if (msg instanceof ByteBuf byteBuf) {
+                return byteBuf.readableBytes();
+            }
+            if (msg instanceof ByteBufHolder byteBufHolder) {
+                return byteBufHolder.content().readableBytes();
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Number of event loop threads; 0 means use the Netty default (twice the number of available processors)
+     */
+    public static int EVENT_LOOP_THREADS = 0;
+    /**
+     * Use the native epoll transport when it is available
+     */
+    public static boolean NATIVE_TRANSPORT = false;
+    private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, NettyEventLoopGroups.class);
+    private static final String EPOLL_PACKAGE = "io.netty.channel.epoll.";
+    private static final AtomicInteger ACTIVE_CHANNELS = new AtomicInteger();
+    private static EventLoopGroup eventLoopGroup;
+    private static boolean epoll;
+    private static int threads;
+
+    private NettyEventLoopGroups() {
+    }
+
+    /**
+     * Get the shared event loop group; it must not be shut down by the caller
+     */
+    public static synchronized EventLoopGroup getEventLoopGroup() {
+        if (eventLoopGroup == null || eventLoopGroup.isShuttingDown()) {
+            threads = EVENT_LOOP_THREADS > 0 ? EVENT_LOOP_THREADS : Runtime.getRuntime().availableProcessors() * 2;
+            ThreadFactory threadFactory = new DefaultThreadFactory("or-netty-io", true);
+            epoll = NATIVE_TRANSPORT && isEpollAvailable();
+            eventLoopGroup = epoll ? createEpollEventLoopGroup(threads, threadFactory) : null;
+            if (eventLoopGroup == null) {
+                epoll = false;
+                eventLoopGroup = new NioEventLoopGroup(threads, threadFactory);
+            }
+            LOG.info("Created shared IO event loop group: threads=" + threads + ", transport=" + (epoll ? "epoll" : "nio"));
+        }
+        return eventLoopGroup;
+    }
+
+    public static boolean isShared(EventLoopGroup group) {
+        return group != null && group == eventLoopGroup;
+    }
+
+    public static synchronized Class<? extends Channel> getSocketChannelClass() {
+        getEventLoopGroup();
+        return epoll ? loadChannelClass("EpollSocketChannel", Channel.class) : NioSocketChannel.class;
+    }
+
+    public static synchronized Class<? extends DatagramChannel> getDatagramChannelClass() {
+        getEventLoopGroup();
+        return epoll ? loadChannelClass("EpollDatagramChannel", DatagramChannel.class) : NioDatagramChannel.class;
+    }
+
+    public static synchronized Class<? extends ServerChannel> getServerSocketChannelClass() {
+        getEventLoopGroup();
+        return epoll ? loadChannelClass("EpollServerSocketChannel", ServerChannel.class) : NioServerSocketChannel.class;
+    }
+
+    /**
+     * Shut down the shared group; a new group is created if it is requested again
+     */
+    public static synchronized void shutdown() {
+        if (eventLoopGroup != null) {
+            LOG.fine("Shutting down shared IO event loop group");
+            eventLoopGroup.shutdownGracefully(0, 2, TimeUnit.SECONDS);
+            eventLoopGroup = null;
+        }
+    }
+
+    public static int getThreads() {
+        return threads;
+    }
+
+    public static int getActiveChannels() {
+        return ACTIVE_CHANNELS.get();
+    }
+
+    private static boolean isEpollAvailable() {
+        try {
+            return (boolean) Class.forName(EPOLL_PACKAGE + "Epoll").getMethod("isAvailable").invoke(null);
+        } catch (Throwable e) {
+            LOG.fine("Native epoll transport is not available: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static EventLoopGroup createEpollEventLoopGroup(int threads, ThreadFactory threadFactory) {
+        try {
+            return (EventLoopGroup) Class.forName(EPOLL_PACKAGE + "EpollEventLoopGroup")
+                .getConstructor(int.class, ThreadFactory.class)
+                .newInstance(threads, threadFactory);
+        } catch (Throwable e) {
+            LOG.log(Level.WARNING, "Failed to create native epoll event loop group, falling back to NIO", e);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Channel> Class<? extends T> loadChannelClass(String className, Class<T> type) {
+        try {
+            return (Class<? extends T>) Class.forName(EPOLL_PACKAGE + className).asSubclass(type);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Native epoll channel class not found: " + className, e);
+        }
+    }
+}
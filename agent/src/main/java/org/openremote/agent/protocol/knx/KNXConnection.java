@@ -1,5 +1,7 @@
 package org.openremote.agent.protocol.knx;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import org.apache.commons.lang3.StringUtils;
 import org.openremote.container.Container;
 import org.openremote.model.asset.agent.ConnectionStatus;
@@ -9,6 +11,7 @@ import tuwien.auto.calimero.*;
 import tuwien.auto.calimero.datapoint.Datapoint;
 import tuwien.auto.calimero.datapoint.StateDP;
 import tuwien.auto.calimero.dptxlator.DPTXlator;
+import tuwien.auto.calimero.link.KNXLinkClosedException;
 import tuwien.auto.calimero.link.KNXNetworkLink;
 import tuwien.auto.calimero.link.KNXNetworkLinkIP;
 import tuwien.auto.calimero.link.NetworkLinkListener;
@@ -38,6 +41,10 @@ public class KNXConnection implements NetworkLinkListener, ProcessListener {
     protected final static int INITIAL_RECONNECT_DELAY_MILLIS = 1000;
     protected final static int MAX_RECONNECT_DELAY_MILLIS = 60000;
     protected final static int RECONNECT_BACKOFF_MULTIPLIER = 2;
+    /**
+     * Group address states received more recently than this are not read again when (re)connecting
+     */
+    public static int MAX_STATE_AGE_MILLIS = 60000;
     protected ScheduledFuture<?> reconnectTask;
     protected int reconnectDelayMilliseconds = INITIAL_RECONNECT_DELAY_MILLIS;
     protected final List<Consumer<ConnectionStatus>> connectionStatusConsumers = new ArrayList<>();
@@ -52,11 +59,19 @@ public class KNXConnection implements NetworkLinkListener, ProcessListener {
     protected KNXNetworkLink knxLink;
     protected ProcessCommunicator processCommunicator;
     protected final Map<GroupAddress, byte[]> groupAddressStateMap = new HashMap<>();
+    protected final Map<GroupAddress, Long> groupAddressStateTimeMap = new HashMap<>();
     protected final Map<GroupAddress, List<Pair<StateDP, Consumer<Object>>>> groupAddressConsumerMap = new HashMap<>();
+    protected final Map<StateDP, KNXReadScheduler.ReadPriority> datapointReadPriorityMap = new HashMap<>();
+    protected final KNXReadScheduler readScheduler;
+    protected final MeterRegistry meterRegistry;
     
     private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, KNXConnection.class);
     
     public KNXConnection(String gatewayAddress, String bindAddress, Integer gatewayPort, String messageSourceAddress, boolean routingMode, boolean natMode) {
+        this(gatewayAddress, bindAddress, gatewayPort, messageSourceAddress, routingMode, natMode, null);
+    }
+
+    public KNXConnection(String gatewayAddress, String bindAddress, Integer gatewayPort, String messageSourceAddress, boolean routingMode, boolean natMode, MeterRegistry meterRegistry) {
         this.gatewayAddress = gatewayAddress;
         this.executorService = Container.EXECUTOR_SERVICE;
         this.routingMode = routingMode;
@@ -64,6 +79,8 @@ public class KNXConnection implements NetworkLinkListener, ProcessListener {
         this.gatewayPort = gatewayPort;
         this.natMode = natMode;
         this.messageSourceAddress = messageSourceAddress;
+        this.meterRegistry = meterRegistry;
+        this.readScheduler = new KNXReadScheduler(executorService, this::sendReadRequest);
     }
 
     public synchronized void connect() {
@@ -98,19 +115,19 @@ public class KNXConnection implements NetworkLinkListener, ProcessListener {
 
                 reconnectTask = null;
                 reconnectDelayMilliseconds = INITIAL_RECONNECT_DELAY_MILLIS;
+                readScheduler.registerMetrics(meterRegistry, Tags.of("gateway", gatewayAddress + ":" + gatewayPort));
                 onConnectionStatusChanged(ConnectionStatus.CONNECTED);
 
-                // Get the values of all registered group addresses
+                // Queue reads of all registered group addresses that don't have a fresh value
                 LOG.finest("Initialising group address values");
                 synchronized (groupAddressConsumerMap) {
                     groupAddressConsumerMap.forEach((groupAddress, datapointConsumerList) -> {
                         if (!datapointConsumerList.isEmpty()) {
-                            // Take first data point for the group address and request the value
-                            Pair<StateDP, Consumer<Object>> datapointConsumer = datapointConsumerList.get(0);
-                            getGroupAddressValue(datapointConsumer.key.getMainAddress(), datapointConsumer.key.getPriority());
+                            scheduleRead(groupAddress, datapointConsumerList);
                         }
                     });
                 }
+                LOG.fine("Queued " + readScheduler.getPendingCount() + " group address read(s): " + this);
 
             } else {
                 LOG.log(Level.INFO, "Connection error");
@@ -135,6 +152,8 @@ public class KNXConnection implements NetworkLinkListener, ProcessListener {
 
         LOG.finest("Disconnecting");
         onConnectionStatusChanged(ConnectionStatus.DISCONNECTING);
+        readScheduler.clear();
+        readScheduler.removeMetrics(meterRegistry);
         if (processCommunicator != null) {
             processCommunicator.detach();
         }
@@ -192,6 +211,16 @@ public class KNXConnection implements NetworkLinkListener, ProcessListener {
         synchronized (groupAddressStateMap) {
             // Update the state map and notify consumers
             groupAddressStateMap.compute(groupAddress, (ga, oldValue) -> value);
+            if (value != null) {
+                groupAddressStateTimeMap.put(groupAddress, System.currentTimeMillis());
+            } else {
+                groupAddressStateTimeMap.remove(groupAddress);
+            }
+        }
+
+        if (value != null) {
+            // No need to read a group address whose value has just been received
+            readScheduler.cancel(groupAddress);
         }
 
         synchronized (groupAddressConsumerMap) {
@@ -241,6 +270,7 @@ public class KNXConnection implements NetworkLinkListener, ProcessListener {
 
     protected void onConnectionError() {
         onConnectionStatusChanged(ConnectionStatus.ERROR);
+        readScheduler.clear();
         processCommunicator.detach();
         if (knxLink != null) {
             knxLink.removeLinkListener(this);
@@ -259,18 +289,29 @@ public class KNXConnection implements NetworkLinkListener, ProcessListener {
      * Add a consumer for the specified {@link StateDP}.
      */
     public void addDatapointValueConsumer(StateDP datapoint, Consumer<Object> consumer) {
+        addDatapointValueConsumer(datapoint, consumer, KNXReadScheduler.ReadPriority.NORMAL);
+    }
+
+    /**
+     * Add a consumer for the specified {@link StateDP}; the read priority determines how soon the group address is
+     * read relative to other group addresses when its state isn't known.
+     */
+    public void addDatapointValueConsumer(StateDP datapoint, Consumer<Object> consumer, KNXReadScheduler.ReadPriority readPriority) {
         synchronized (groupAddressConsumerMap) {
             List<Pair<StateDP, Consumer<Object>>> groupAddressConsumers = groupAddressConsumerMap
                 .computeIfAbsent(datapoint.getMainAddress(), groupAddress -> new ArrayList<>());
 
             groupAddressConsumers.add(new Pair<>(datapoint, consumer));
+            datapointReadPriorityMap.put(datapoint, readPriority);
 
             // Look for existing value for this GA
             synchronized (groupAddressStateMap) {
                 groupAddressStateMap.compute(datapoint.getMainAddress(), (groupAddress, groupValue) -> {
                     if (groupValue == null) {
                         // State not available for this group address so request it
-                        getGroupAddressValue(datapoint.getMainAddress(), datapoint.getPriority());
+                        if (connectionStatus == ConnectionStatus.CONNECTED) {
+                            readScheduler.schedule(datapoint.getMainAddress(), datapoint.getPriority(), readPriority);
+                        }
                     } else {
                         updateConsumer(groupValue, datapoint, consumer);
                     }
@@ -290,7 +331,9 @@ public class KNXConnection implements NetworkLinkListener, ProcessListener {
         synchronized (groupAddressConsumerMap) {
             groupAddressConsumerMap.computeIfPresent(datapoint.getMainAddress(), (groupAddress, datapointConsumerList) -> {
                 if (datapointConsumerList.removeIf(datapointConsumer -> datapointConsumer.key == datapoint)) {
+                    datapointReadPriorityMap.remove(datapoint);
                     if (datapointConsumerList.isEmpty()) {
+                        readScheduler.cancel(groupAddress);
                         datapointConsumerList = null;
                     }
                 }
@@ -299,18 +342,38 @@ public class KNXConnection implements NetworkLinkListener, ProcessListener {
         }
     }
 
-    protected void getGroupAddressValue(GroupAddress groupAddress, Priority priority) {
-        if (knxLink == null || !knxLink.isOpen()) {
-            LOG.finest("Cannot send read request not currently connected: " + groupAddress);
-            return;
+    /**
+     * Queues a read of the group address (at the highest priority of its datapoints) unless its state is fresh
+     */
+    protected void scheduleRead(GroupAddress groupAddress, List<Pair<StateDP, Consumer<Object>>> datapointConsumerList) {
+        synchronized (groupAddressStateMap) {
+            Long stateTime = groupAddressStateTimeMap.get(groupAddress);
+            if (groupAddressStateMap.get(groupAddress) != null && stateTime != null && System.currentTimeMillis() - stateTime < MAX_STATE_AGE_MILLIS) {
+                readScheduler.skipped(groupAddress);
+                return;
+            }
         }
 
-        try {
-            LOG.finest("Sending read request to KNX group address: " + groupAddress);
-            this.knxLink.sendRequest(groupAddress, priority, DataUnitBuilder.createLengthOptimizedAPDU(0x00, null));
-        } catch (Exception e) {
-            LOG.log(Level.INFO, "Error sending KNX read request for group address: " + groupAddress, e);
+        // Take first data point for the group address and request the value
+        StateDP datapoint = datapointConsumerList.get(0).key;
+        KNXReadScheduler.ReadPriority readPriority = datapointConsumerList.stream()
+            .map(datapointConsumer -> datapointReadPriorityMap.getOrDefault(datapointConsumer.key, KNXReadScheduler.ReadPriority.NORMAL))
+            .min(Comparator.naturalOrder())
+            .orElse(KNXReadScheduler.ReadPriority.NORMAL);
+        readScheduler.schedule(groupAddress, datapoint.getPriority(), readPriority);
+    }
+
+    /**
+     * Sends a group read request; in tunnelling mode this blocks until the tunnel ACK is received
+     */
+    protected void sendReadRequest(GroupAddress groupAddress, Priority priority) throws KNXException, InterruptedException {
+        KNXNetworkLink knxLink = this.knxLink;
+
+        if (knxLink == null || !knxLink.isOpen()) {
+            throw new KNXLinkClosedException("Cannot send read request not currently connected: " + groupAddress);
         }
+
+        knxLink.sendRequest(groupAddress, priority, DataUnitBuilder.createLengthOptimizedAPDU(0x00, null));
     }
 
     protected void updateConsumer(byte[] data, StateDP datapoint, Consumer<Object> consumer) {
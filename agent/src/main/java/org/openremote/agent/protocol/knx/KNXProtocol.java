@@ -77,7 +77,7 @@ public class KNXProtocol extends AbstractProtocol<KNXAgent, KNXAgentLink> implem
         Integer gatewayPort = agent.getPort().orElse(3671);
         String messageSourceAddress = agent.getMessageSourceAddress().orElse("0.0.0");
 
-        connection = new KNXConnection(gatewayAddress, bindAddress, gatewayPort, messageSourceAddress, isRouting, isNat);
+        connection = new KNXConnection(gatewayAddress, bindAddress, gatewayPort, messageSourceAddress, isRouting, isNat, container.getMeterRegistry());
         connection.addConnectionStatusConsumer(this::setConnectionStatus);
         connection.connect();
     }
@@ -108,7 +108,7 @@ public class KNXProtocol extends AbstractProtocol<KNXAgent, KNXAgentLink> implem
         // If this attribute relates to a read group then start monitoring that measurement and broadcast any changes to the value
         statusGA.ifPresent(groupAddress -> {
             try {
-                addStatusDatapoint(attributeRef, groupAddress, dpt);
+                addStatusDatapoint(attributeRef, groupAddress, dpt, getReadPriority(attribute));
             } catch (KNXFormatException e) {
                 LOG.severe("Give action group address is invalid for protocol attribute: " + attributeRef + " - " + e.getMessage());
             }
@@ -170,16 +170,28 @@ public class KNXProtocol extends AbstractProtocol<KNXAgent, KNXAgentLink> implem
         }
     }
 
-    protected void addStatusDatapoint(AttributeRef attributeRef, String groupAddress, String dpt) throws KNXFormatException {
+    protected void addStatusDatapoint(AttributeRef attributeRef, String groupAddress, String dpt, KNXReadScheduler.ReadPriority readPriority) throws KNXFormatException {
         synchronized (attributeStatusMap) {
             StateDP datapoint = new StateDP(new GroupAddress(groupAddress), attributeRef.getName(), 0, dpt);
-            connection.addDatapointValueConsumer(datapoint, value -> handleKNXValueChange(attributeRef, value));
+            connection.addDatapointValueConsumer(datapoint, value -> handleKNXValueChange(attributeRef, value), readPriority);
            
             attributeStatusMap.put(attributeRef, datapoint);
             LOG.info("Attribute registered for status updates: " + attributeRef + " with datapoint: " + datapoint);
         }
     }
     
+    /**
+     * Attributes that are visible to (restricted/public) users or used by rules are read first
+     */
+    protected static KNXReadScheduler.ReadPriority getReadPriority(Attribute<?> attribute) {
+        boolean highPriority = attribute.getMetaValue(MetaItemType.RULE_STATE).orElse(false)
+            || attribute.getMetaValue(MetaItemType.RULE_EVENT).orElse(false)
+            || attribute.getMetaValue(MetaItemType.ACCESS_RESTRICTED_READ).orElse(false)
+            || attribute.getMetaValue(MetaItemType.ACCESS_PUBLIC_READ).orElse(false);
+
+        return highPriority ? KNXReadScheduler.ReadPriority.HIGH : KNXReadScheduler.ReadPriority.NORMAL;
+    }
+
     protected void handleKNXValueChange(AttributeRef attributeRef, Object value) {
         LOG.fine("KNX protocol received value '" + value + "' for : " + attributeRef);
         updateLinkedAttribute(attributeRef, value);
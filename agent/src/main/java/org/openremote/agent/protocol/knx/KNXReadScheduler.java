@@ -0,0 +1,273 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.knx;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.openremote.model.syslog.SyslogCategory;
+import tuwien.auto.calimero.GroupAddress;
+import tuwien.auto.calimero.KNXAckTimeoutException;
+import tuwien.auto.calimero.Priority;
+import tuwien.auto.calimero.link.KNXLinkClosedException;
+
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * Paces group address read requests so that reading the state of a large installation (e.g. after connecting) doesn't
+ * saturate the KNX/IP tunnel or the bus.
+ * <p>
+ * Reads are sent one at a time in {@link ReadPriority} order (then in the order they were scheduled); a read that is
+ * already queued is not queued again and is dropped if the group address value is received in the meantime. In
+ * tunnelling mode each send waits for the tunnel ACK so only a single request is ever outstanding; the interval between
+ * reads is decreased additively after each acknowledged read (down to {@link #MIN_READ_INTERVAL_MILLIS}) and doubled on
+ * each ACK timeout (up to {@link #MAX_READ_INTERVAL_MILLIS}) with the read being retried up to
+ * {@link #MAX_READ_ATTEMPTS} times.
+ */
+public class KNXReadScheduler {
+
+    public enum ReadPriority {
+        /**
+         * Group addresses that are shown to users or used by rules
+         */
+        HIGH,
+        NORMAL
+    }
+
+    @FunctionalInterface
+    public interface ReadSender {
+        void sendRead(GroupAddress groupAddress, Priority priority) throws Exception;
+    }
+
+    protected static class ReadRequest {
+        protected final GroupAddress groupAddress;
+        protected final Priority priority;
+        protected ReadPriority readPriority;
+        protected long sequence;
+        protected int attempts;
+
+        protected ReadRequest(GroupAddress groupAddress, Priority priority, ReadPriority readPriority) {
+            this.groupAddress = groupAddress;
+            this.priority = priority;
+            this.readPriority = readPriority;
+        }
+    }
+
+    private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, KNXReadScheduler.class);
+    // KNX TP1 carries at most ~50 telegrams per second
+    public static final int MIN_READ_INTERVAL_MILLIS = 20;
+    public static final int MAX_READ_INTERVAL_MILLIS = 2000;
+    public static final int READ_INTERVAL_DECREASE_MILLIS = 10;
+    public static final int MAX_READ_ATTEMPTS = 3;
+    protected final ScheduledExecutorService executorService;
+    protected final ReadSender sender;
+    protected final PriorityQueue<ReadRequest> queue = new PriorityQueue<>(Comparator
+        .comparing((ReadRequest request) -> request.readPriority)
+        .thenComparingLong(request -> request.sequence));
+    protected final Map<GroupAddress, ReadRequest> queuedRequests = new HashMap<>();
+    protected final AtomicLong sentCount = new AtomicLong();
+    protected final AtomicLong timeoutCount = new AtomicLong();
+    protected final AtomicLong failedCount = new AtomicLong();
+    protected final AtomicLong skippedCount = new AtomicLong();
+    protected final List<Meter> meters = new ArrayList<>();
+    protected long sequence;
+    protected volatile int readIntervalMillis = MIN_READ_INTERVAL_MILLIS;
+    protected ScheduledFuture<?> readTask;
+    protected boolean sending;
+
+    public KNXReadScheduler(ScheduledExecutorService executorService, ReadSender sender) {
+        this.executorService = executorService;
+        this.sender = sender;
+    }
+
+    /**
+     * Queue a read of the group address; if a read is already queued then its priority is raised if required
+     */
+    public synchronized void schedule(GroupAddress groupAddress, Priority priority, ReadPriority readPriority) {
+        ReadRequest request = queuedRequests.get(groupAddress);
+
+        if (request != null) {
+            if (readPriority.compareTo(request.readPriority) < 0) {
+                queue.remove(request);
+                request.readPriority = readPriority;
+                queue.add(request);
+            }
+            return;
+        }
+
+        request = new ReadRequest(groupAddress, priority, readPriority);
+        enqueue(request);
+        scheduleNextRead(0);
+    }
+
+    /**
+     * Don't read the group address if a read is queued (e.g. because its value has been received); returns true if a
+     * queued read was removed
+     */
+    public synchronized boolean cancel(GroupAddress groupAddress) {
+        ReadRequest request = queuedRequests.remove(groupAddress);
+
+        if (request == null) {
+            return false;
+        }
+
+        queue.remove(request);
+        return true;
+    }
+
+    /**
+     * Record that a read wasn't required because the state of the group address is already known
+     */
+    public void skipped(GroupAddress groupAddress) {
+        LOG.finest(() -> "Skipping read request for group address with fresh state: " + groupAddress);
+        skippedCount.incrementAndGet();
+    }
+
+    public synchronized void clear() {
+        if (readTask != null) {
+            readTask.cancel(false);
+            readTask = null;
+        }
+        queue.clear();
+        queuedRequests.clear();
+        readIntervalMillis = MIN_READ_INTERVAL_MILLIS;
+    }
+
+    public synchronized int getPendingCount() {
+        return queue.size();
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public int getReadIntervalMillis() {
+        return readIntervalMillis;
+    }
+
+    public synchronized void registerMetrics(MeterRegistry meterRegistry, Tags tags) {
+        if (meterRegistry == null || !meters.isEmpty()) {
+            return;
+        }
+
+        meters.add(Gauge.builder("or.knx.reads.pending", this, KNXReadScheduler::getPendingCount).tags(tags).register(meterRegistry));
+        meters.add(Gauge.builder("or.knx.reads.interval", this, KNXReadScheduler::getReadIntervalMillis).baseUnit("milliseconds").tags(tags).register(meterRegistry));
+        meters.add(FunctionCounter.builder("or.knx.reads", sentCount, AtomicLong::get).tags(tags.and("result", "sent")).register(meterRegistry));
+        meters.add(FunctionCounter.builder("or.knx.reads", timeoutCount, AtomicLong::get).tags(tags.and("result", "timeout")).register(meterRegistry));
+        meters.add(FunctionCounter.builder("or.knx.reads", failedCount, AtomicLong::get).tags(tags.and("result", "failed")).register(meterRegistry));
+        meters.add(FunctionCounter.builder("or.knx.reads", skippedCount, AtomicLong::get).tags(tags.and("result", "skipped")).register(meterRegistry));
+    }
+
+    public synchronized void removeMetrics(MeterRegistry meterRegistry) {
+        if (meterRegistry != null) {
+            meters.forEach(meterRegistry::remove);
+        }
+        meters.clear();
+    }
+
+    protected void enqueue(ReadRequest request) {
+        request.sequence = sequence++;
+        queuedRequests.put(request.groupAddress, request);
+        queue.add(request);
+    }
+
+    protected void scheduleNextRead(int delayMillis) {
+        if (readTask != null || sending || queue.isEmpty()) {
+            return;
+        }
+        readTask = executorService.schedule(this::sendNextRead, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    protected void sendNextRead() {
+        ReadRequest request;
+
+        synchronized (this) {
+            readTask = null;
+            request = queue.poll();
+            if (request == null) {
+                return;
+            }
+            queuedRequests.remove(request.groupAddress);
+            sending = true;
+        }
+
+        boolean linkClosed = false;
+
+        try {
+            request.attempts++;
+            LOG.finest(() -> "Sending read request to KNX group address: " + request.groupAddress);
+            sender.sendRead(request.groupAddress, request.priority);
+            sentCount.incrementAndGet();
+            readIntervalMillis = Math.max(MIN_READ_INTERVAL_MILLIS, readIntervalMillis - READ_INTERVAL_DECREASE_MILLIS);
+        } catch (KNXAckTimeoutException e) {
+            timeoutCount.incrementAndGet();
+            readIntervalMillis = Math.min(MAX_READ_INTERVAL_MILLIS, readIntervalMillis * 2);
+            LOG.fine("KNX read request ACK timeout, read interval is now " + readIntervalMillis + "ms: " + request.groupAddress);
+
+            if (request.attempts < MAX_READ_ATTEMPTS) {
+                synchronized (this) {
+                    if (!queuedRequests.containsKey(request.groupAddress)) {
+                        enqueue(request);
+                    }
+                }
+            } else {
+                failedCount.incrementAndGet();
+            }
+        } catch (KNXLinkClosedException e) {
+            LOG.fine("KNX link closed so clearing queued read requests");
+            linkClosed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            linkClosed = true;
+        } catch (Exception e) {
+            failedCount.incrementAndGet();
+            LOG.log(Level.INFO, "Error sending KNX read request for group address: " + request.groupAddress, e);
+        }
+
+        synchronized (this) {
+            sending = false;
+            if (linkClosed) {
+                clear();
+            } else if (queue.isEmpty()) {
+                LOG.fine(() -> "KNX read queue drained: sent=" + sentCount.get() + ", timeouts=" + timeoutCount.get() + ", skipped=" + skippedCount.get());
+            } else {
+                scheduleNextRead(readIntervalMillis);
+            }
+        }
+    }
+}
@@ -0,0 +1,473 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.modbus;
+
+import org.openremote.agent.protocol.io.AbstractNettyIOClient;
+import org.openremote.agent.protocol.io.AbstractNettyIOClientProtocol;
+import org.openremote.model.Container;
+import org.openremote.model.asset.agent.ConnectionStatus;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.syslog.SyslogCategory;
+import org.openremote.model.util.ValueUtil;
+
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * Base for Modbus client protocols; linked attributes specify the unit ID, register type, address and data type to
+ * read and/or write (see {@link ModbusAgentLink}).
+ * <h1>Reads</h1>
+ * Reads are polled; all linked attributes polled at the same interval are merged by the {@link ModbusReadPlanner} into
+ * the minimal number of multi-register read requests and each response is then decoded into the values of the linked
+ * attributes within it. Registers between linked registers are only read when {@link ModbusAgent#MAX_REGISTER_GAP} is
+ * set; if a device rejects a merged read with an illegal data address exception then the read is split (first at any
+ * gaps and then into individual reads) and the split is kept for subsequent polls.
+ * <h1>Requests</h1>
+ * Requests are queued and up to {@link ModbusAgent#MAX_PENDING_REQUESTS} requests are sent without waiting for a
+ * response when the transport supports it (Modbus TCP correlates responses using the transaction ID; Modbus RTU only
+ * ever has a single request outstanding). Responses are only matched to a request sent to the same unit for the same
+ * function. Requests that aren't responded to within the response timeout are failed.
+ */
+public abstract class AbstractModbusProtocol<T extends AbstractModbusProtocol<T, U>, U extends ModbusAgent<U, T>> extends AbstractNettyIOClientProtocol<T, U, ModbusMessage, AbstractNettyIOClient<ModbusMessage, ?>, ModbusAgentLink> {
+
+    protected static class PendingRequest {
+        protected final ModbusMessage request;
+        protected final Consumer<ModbusMessage> responseConsumer;
+        protected ScheduledFuture<?> timeoutTask;
+
+        protected PendingRequest(ModbusMessage request, Consumer<ModbusMessage> responseConsumer) {
+            this.request = request;
+            this.responseConsumer = responseConsumer;
+        }
+    }
+
+    /**
+     * The linked attribute reads polled at a given interval
+     */
+    protected static class PollingGroup {
+        protected final Map<AttributeRef, ModbusReadPlanner.ReadTarget> targets = new LinkedHashMap<>();
+        protected final Set<AttributeRef> gaplessTargets = new HashSet<>();
+        protected final Set<AttributeRef> isolatedTargets = new HashSet<>();
+        protected final AtomicBoolean inProgress = new AtomicBoolean();
+        protected volatile List<ModbusReadPlanner.ReadRange> ranges = Collections.emptyList();
+        protected ScheduledFuture<?> pollingTask;
+    }
+
+    private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, AbstractModbusProtocol.class);
+    public static final int DEFAULT_UNIT_ID = 1;
+    public static final int DEFAULT_POLLING_MILLIS = 5000;
+    public static final int DEFAULT_RESPONSE_TIMEOUT_MILLIS = 1000;
+    public static final int DEFAULT_MAX_REGISTER_GAP = 0;
+    public static int MIN_POLLING_MILLIS = 100;
+
+    protected final Map<Integer, PollingGroup> pollingGroups = new HashMap<>();
+    protected final Map<AttributeRef, Integer> attributePollingMillis = new HashMap<>();
+    protected final Deque<PendingRequest> queuedRequests = new ArrayDeque<>();
+    protected final Map<Integer, PendingRequest> inFlightRequests = new LinkedHashMap<>();
+    protected int lastTransactionId;
+
+    protected AbstractModbusProtocol(U agent) {
+        super(agent);
+    }
+
+    /**
+     * Indicates whether more than one request can be outstanding at a time (i.e. responses can be correlated to
+     * requests)
+     */
+    protected abstract boolean isPipeliningSupported();
+
+    @Override
+    protected void doStop(Container container) throws Exception {
+        synchronized (pollingGroups) {
+            pollingGroups.values().forEach(pollingGroup -> {
+                if (pollingGroup.pollingTask != null) {
+                    pollingGroup.pollingTask.cancel(false);
+                }
+            });
+            pollingGroups.clear();
+            attributePollingMillis.clear();
+        }
+        failPendingRequests();
+        super.doStop(container);
+    }
+
+    @Override
+    protected void onConnectionStatusChanged(ConnectionStatus connectionStatus) {
+        super.onConnectionStatusChanged(connectionStatus);
+
+        if (connectionStatus != ConnectionStatus.CONNECTED) {
+            failPendingRequests();
+        }
+    }
+
+    @Override
+    protected void doLinkAttribute(String assetId, Attribute<?> attribute, ModbusAgentLink agentLink) throws RuntimeException {
+        ModbusAgentLink.RegisterType readType = agentLink.getReadType().orElse(null);
+        Integer readAddress = agentLink.getReadAddress().orElse(null);
+
+        if (readType == null || readAddress == null) {
+            return;
+        }
+
+        AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
+        int pollingMillis = Math.max(MIN_POLLING_MILLIS, agentLink.getPollingMillis().or(agent::getPollingMillis).orElse(DEFAULT_POLLING_MILLIS));
+        ModbusReadPlanner.ReadTarget target = new ModbusReadPlanner.ReadTarget(
+            attributeRef,
+            getUnitId(agentLink),
+            readType,
+            readAddress,
+            getDataType(agentLink, readType),
+            agentLink.getWordSwap().orElse(false));
+
+        synchronized (pollingGroups) {
+            PollingGroup pollingGroup = pollingGroups.computeIfAbsent(pollingMillis, millis -> new PollingGroup());
+            pollingGroup.targets.put(attributeRef, target);
+            attributePollingMillis.put(attributeRef, pollingMillis);
+            updateReadRanges(pollingGroup);
+
+            if (pollingGroup.pollingTask == null) {
+                LOG.fine("Scheduling Modbus polling every " + pollingMillis + "ms: " + this);
+                pollingGroup.pollingTask = executorService.scheduleWithFixedDelay(() -> poll(pollingGroup), 0, pollingMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    @Override
+    protected void doUnlinkAttribute(String assetId, Attribute<?> attribute, ModbusAgentLink agentLink) {
+        AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
+
+        synchronized (pollingGroups) {
+            Integer pollingMillis = attributePollingMillis.remove(attributeRef);
+            PollingGroup pollingGroup = pollingMillis != null ? pollingGroups.get(pollingMillis) : null;
+
+            if (pollingGroup == null) {
+                return;
+            }
+
+            pollingGroup.targets.remove(attributeRef);
+            pollingGroup.gaplessTargets.remove(attributeRef);
+            pollingGroup.isolatedTargets.remove(attributeRef);
+
+            if (pollingGroup.targets.isEmpty()) {
+                pollingGroups.remove(pollingMillis);
+                if (pollingGroup.pollingTask != null) {
+                    pollingGroup.pollingTask.cancel(false);
+                }
+            } else {
+                updateReadRanges(pollingGroup);
+            }
+        }
+    }
+
+    @Override
+    protected void doLinkedAttributeWrite(ModbusAgentLink agentLink, AttributeEvent event, Object processedValue) {
+        ModbusMessage request = createWriteMessage(agentLink, event, processedValue);
+
+        if (request == null) {
+            LOG.fine("No Modbus request produced for attribute event so not sending: " + event);
+            return;
+        }
+
+        sendRequest(request, response -> {
+            if (response == null) {
+                LOG.info("Modbus write request failed for attribute: " + event.getRef());
+            } else if (response.isException()) {
+                LOG.info("Modbus write request returned exception code " + response.getExceptionCode() + " for attribute: " + event.getRef());
+            }
+        });
+    }
+
+    @Override
+    protected ModbusMessage createWriteMessage(ModbusAgentLink agentLink, AttributeEvent event, Object processedValue) {
+        ModbusAgentLink.RegisterType writeType = agentLink.getWriteType().orElse(null);
+        Integer writeAddress = agentLink.getWriteAddress().orElse(null);
+
+        if (writeType == null || writeAddress == null) {
+            return null;
+        }
+
+        if (!writeType.isWritable()) {
+            LOG.warning("Modbus write type must be a coil or holding register: " + event.getRef());
+            return null;
+        }
+
+        int unitId = getUnitId(agentLink);
+
+        if (writeType.isBit()) {
+            return ModbusMessage.createWriteSingleCoilRequest(unitId, writeAddress, ValueUtil.getBooleanCoerced(processedValue).orElse(false));
+        }
+
+        ModbusAgentLink.DataType dataType = getDataType(agentLink, writeType);
+        return ModbusMessage.createWriteRegistersRequest(unitId, writeAddress, dataType.encode(processedValue, agentLink.getWordSwap().orElse(false)));
+    }
+
+    @Override
+    protected void onMessageReceived(ModbusMessage response) {
+        PendingRequest pendingRequest;
+
+        synchronized (queuedRequests) {
+            if (isPipeliningSupported()) {
+                pendingRequest = inFlightRequests.get(response.getTransactionId());
+            } else {
+                Iterator<PendingRequest> iterator = inFlightRequests.values().iterator();
+                pendingRequest = iterator.hasNext() ? iterator.next() : null;
+            }
+
+            // A late response to a timed out request or a response from another unit must not complete this request
+            if (pendingRequest != null && response.isResponseTo(pendingRequest.request)) {
+                inFlightRequests.remove(pendingRequest.request.getTransactionId());
+            } else {
+                pendingRequest = null;
+            }
+        }
+
+        if (pendingRequest == null) {
+            LOG.fine("Ignoring Modbus response that doesn't match an in flight request: " + response);
+            return;
+        }
+
+        if (pendingRequest.timeoutTask != null) {
+            pendingRequest.timeoutTask.cancel(false);
+        }
+
+        completeRequest(pendingRequest, response);
+        sendQueuedRequests();
+    }
+
+    /**
+     * Queues the request to be sent; the response consumer will be called with the response or with null if the request
+     * times out or the connection is lost.
+     */
+    protected void sendRequest(ModbusMessage request, Consumer<ModbusMessage> responseConsumer) {
+        if (client == null || client.getConnectionStatus() != ConnectionStatus.CONNECTED) {
+            LOG.fine("Modbus client is not connected so cannot send request: " + request);
+            completeRequest(new PendingRequest(request, responseConsumer), null);
+            return;
+        }
+
+        synchronized (queuedRequests) {
+            queuedRequests.add(new PendingRequest(request, responseConsumer));
+        }
+        sendQueuedRequests();
+    }
+
+    protected void sendQueuedRequests() {
+        List<PendingRequest> toSend = new ArrayList<>();
+        int maxPendingRequests = isPipeliningSupported() ? Math.max(1, agent.getMaxPendingRequests().orElse(1)) : 1;
+        int responseTimeoutMillis = agent.getResponseTimeoutMillis().orElse(DEFAULT_RESPONSE_TIMEOUT_MILLIS);
+
+        synchronized (queuedRequests) {
+            if (client == null || client.getConnectionStatus() != ConnectionStatus.CONNECTED) {
+                return;
+            }
+
+            while (inFlightRequests.size() < maxPendingRequests && !queuedRequests.isEmpty()) {
+                PendingRequest pendingRequest = queuedRequests.poll();
+                lastTransactionId = (lastTransactionId + 1) & 0xFFFF;
+                int transactionId = lastTransactionId;
+                pendingRequest.request.setTransactionId(transactionId);
+                inFlightRequests.put(transactionId, pendingRequest);
+                pendingRequest.timeoutTask = executorService.schedule(() -> onRequestTimeout(transactionId), responseTimeoutMillis, TimeUnit.MILLISECONDS);
+                toSend.add(pendingRequest);
+            }
+        }
+
+        toSend.forEach(pendingRequest -> {
+            LOG.finest(() -> "Sending Modbus request: " + pendingRequest.request);
+            client.sendMessage(pendingRequest.request);
+        });
+    }
+
+    protected void onRequestTimeout(int transactionId) {
+        PendingRequest pendingRequest;
+
+        synchronized (queuedRequests) {
+            pendingRequest = inFlightRequests.remove(transactionId);
+        }
+
+        if (pendingRequest != null) {
+            LOG.fine("Modbus request timed out: " + pendingRequest.request);
+            completeRequest(pendingRequest, null);
+            sendQueuedRequests();
+        }
+    }
+
+    protected void failPendingRequests() {
+        List<PendingRequest> failed;
+
+        synchronized (queuedRequests) {
+            failed = new ArrayList<>(inFlightRequests.values());
+            failed.addAll(queuedRequests);
+            inFlightRequests.clear();
+            queuedRequests.clear();
+        }
+
+        failed.forEach(pendingRequest -> {
+            if (pendingRequest.timeoutTask != null) {
+                pendingRequest.timeoutTask.cancel(false);
+            }
+            completeRequest(pendingRequest, null);
+        });
+    }
+
+    protected void completeRequest(PendingRequest pendingRequest, ModbusMessage response) {
+        try {
+            pendingRequest.responseConsumer.accept(response);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Exception thrown whilst processing Modbus response: " + this, e);
+        }
+    }
+
+    /**
+     * Must be called whilst holding the {@link #pollingGroups} lock.
+     */
+    protected void updateReadRanges(PollingGroup pollingGroup) {
+        int maxRegisters = getMaxRegistersPerRequest();
+        List<ModbusReadPlanner.ReadTarget> targets = new ArrayList<>();
+        List<ModbusReadPlanner.ReadTarget> gaplessTargets = new ArrayList<>();
+        List<ModbusReadPlanner.ReadRange> ranges = new ArrayList<>();
+
+        pollingGroup.targets.values().forEach(target -> {
+            if (pollingGroup.isolatedTargets.contains(target.getAttributeRef())) {
+                ranges.add(new ModbusReadPlanner.ReadRange(target));
+            } else if (pollingGroup.gaplessTargets.contains(target.getAttributeRef())) {
+                gaplessTargets.add(target);
+            } else {
+                targets.add(target);
+            }
+        });
+
+        ranges.addAll(ModbusReadPlanner.plan(targets, maxRegisters, agent.getMaxRegisterGap().orElse(DEFAULT_MAX_REGISTER_GAP)));
+        ranges.addAll(ModbusReadPlanner.plan(gaplessTargets, maxRegisters, 0));
+        pollingGroup.ranges = ranges;
+    }
+
+    /**
+     * Splits a merged read that the device rejected with an illegal data address exception; the read is split at any
+     * gaps between the targets or, if there are none, into a read per target. The split is remembered so subsequent
+     * polls make the same reads.
+     */
+    protected List<ModbusReadPlanner.ReadRange> splitReadRange(PollingGroup pollingGroup, ModbusReadPlanner.ReadRange range) {
+        List<ModbusReadPlanner.ReadRange> splitRanges = ModbusReadPlanner.plan(range.getTargets(), getMaxRegistersPerRequest(), 0);
+        boolean isolate = splitRanges.size() == 1;
+
+        if (isolate) {
+            splitRanges = range.getTargets().stream().map(ModbusReadPlanner.ReadRange::new).toList();
+        }
+
+        LOG.info("Modbus device rejected read with illegal data address so splitting into " + splitRanges.size() + " reads: " + range);
+
+        synchronized (pollingGroups) {
+            range.getTargets().forEach(target ->
+                (isolate ? pollingGroup.isolatedTargets : pollingGroup.gaplessTargets).add(target.getAttributeRef()));
+            updateReadRanges(pollingGroup);
+        }
+
+        return splitRanges;
+    }
+
+    protected void poll(PollingGroup pollingGroup) {
+        if (client == null || client.getConnectionStatus() != ConnectionStatus.CONNECTED) {
+            return;
+        }
+
+        // Don't start a new poll until the previous one has completed (i.e. slow or unresponsive device)
+        if (!pollingGroup.inProgress.compareAndSet(false, true)) {
+            LOG.fine("Skipping Modbus poll as previous poll is still in progress: " + this);
+            return;
+        }
+
+        List<ModbusReadPlanner.ReadRange> ranges = pollingGroup.ranges;
+
+        if (ranges.isEmpty()) {
+            pollingGroup.inProgress.set(false);
+            return;
+        }
+
+        AtomicInteger remaining = new AtomicInteger(ranges.size());
+        ranges.forEach(range -> read(pollingGroup, range, remaining));
+    }
+
+    /**
+     * Sends the read request for the range; the polling group's poll completes once the remaining count reaches zero
+     * (split reads are added to the count before the rejected read is counted down).
+     */
+    protected void read(PollingGroup pollingGroup, ModbusReadPlanner.ReadRange range, AtomicInteger remaining) {
+        sendRequest(range.createRequest(), response -> {
+            try {
+                if (response != null
+                    && response.getExceptionCode() == ModbusMessage.EXCEPTION_ILLEGAL_DATA_ADDRESS
+                    && range.getTargets().size() > 1) {
+                    List<ModbusReadPlanner.ReadRange> splitRanges = splitReadRange(pollingGroup, range);
+                    remaining.addAndGet(splitRanges.size());
+                    splitRanges.forEach(splitRange -> read(pollingGroup, splitRange, remaining));
+                } else {
+                    onReadResponse(range, response);
+                }
+            } finally {
+                if (remaining.decrementAndGet() == 0) {
+                    pollingGroup.inProgress.set(false);
+                }
+            }
+        });
+    }
+
+    protected void onReadResponse(ModbusReadPlanner.ReadRange range, ModbusMessage response) {
+        if (response == null) {
+            return;
+        }
+
+        if (response.isException()) {
+            LOG.fine("Modbus read request returned exception code " + response.getExceptionCode() + ": " + range);
+            return;
+        }
+
+        byte[] values = response.getReadValues();
+
+        range.getTargets().forEach(target -> {
+            Object value = target.getValue(range, values);
+            if (value != null) {
+                updateLinkedAttribute(target.getAttributeRef(), value);
+            }
+        });
+    }
+
+    protected int getMaxRegistersPerRequest() {
+        return agent.getMaxRegistersPerRequest().orElse(ModbusReadPlanner.MAX_READ_REGISTERS);
+    }
+
+    protected int getUnitId(ModbusAgentLink agentLink) {
+        return agentLink.getUnitId().or(agent::getUnitId).orElse(DEFAULT_UNIT_ID);
+    }
+
+    protected static ModbusAgentLink.DataType getDataType(ModbusAgentLink agentLink, ModbusAgentLink.RegisterType registerType) {
+        return registerType.isBit() ? ModbusAgentLink.DataType.BOOL : agentLink.getDataType().orElse(ModbusAgentLink.DataType.UINT16);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.modbus;
+
+import org.openremote.agent.protocol.io.IOAgent;
+import org.openremote.model.value.AttributeDescriptor;
+import org.openremote.model.value.ValueType;
+
+import java.util.Optional;
+
+/**
+ * Base agent for Modbus protocols; see {@link AbstractModbusProtocol}.
+ */
+public abstract class ModbusAgent<T extends ModbusAgent<T, U>, U extends AbstractModbusProtocol<U, T>> extends IOAgent<T, U, ModbusAgentLink> {
+
+    public static final AttributeDescriptor<Integer> UNIT_ID = new AttributeDescriptor<>("unitId", ValueType.INT_BYTE).withOptional(true);
+    public static final AttributeDescriptor<Integer> MAX_REGISTERS_PER_REQUEST = new AttributeDescriptor<>("maxRegistersPerRequest", ValueType.POSITIVE_INTEGER).withOptional(true);
+    public static final AttributeDescriptor<Integer> MAX_REGISTER_GAP = new AttributeDescriptor<>("maxRegisterGap", ValueType.POSITIVE_INTEGER).withOptional(true);
+    public static final AttributeDescriptor<Integer> MAX_PENDING_REQUESTS = new AttributeDescriptor<>("maxPendingRequests", ValueType.POSITIVE_INTEGER).withOptional(true);
+    public static final AttributeDescriptor<Integer> RESPONSE_TIMEOUT_MILLIS = new AttributeDescriptor<>("responseTimeoutMillis", ValueType.POSITIVE_INTEGER).withOptional(true);
+
+    protected ModbusAgent() {
+    }
+
+    protected ModbusAgent(String name) {
+        super(name);
+    }
+
+    public Optional<Integer> getUnitId() {
+        return getAttributes().getValue(UNIT_ID);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T setUnitId(Integer value) {
+        getAttributes().getOrCreate(UNIT_ID).setValue(value);
+        return (T) this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T setPollingMillis(Integer value) {
+        getAttributes().getOrCreate(POLLING_MILLIS).setValue(value);
+        return (T) this;
+    }
+
+    public Optional<Integer> getMaxRegistersPerRequest() {
+        return getAttributes().getValue(MAX_REGISTERS_PER_REQUEST);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T setMaxRegistersPerRequest(Integer value) {
+        getAttributes().getOrCreate(MAX_REGISTERS_PER_REQUEST).setValue(value);
+        return (T) this;
+    }
+
+    public Optional<Integer> getMaxRegisterGap() {
+        return getAttributes().getValue(MAX_REGISTER_GAP);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T setMaxRegisterGap(Integer value) {
+        getAttributes().getOrCreate(MAX_REGISTER_GAP).setValue(value);
+        return (T) this;
+    }
+
+    public Optional<Integer> getMaxPendingRequests() {
+        return getAttributes().getValue(MAX_PENDING_REQUESTS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T setMaxPendingRequests(Integer value) {
+        getAttributes().getOrCreate(MAX_PENDING_REQUESTS).setValue(value);
+        return (T) this;
+    }
+
+    public Optional<Integer> getResponseTimeoutMillis() {
+        return getAttributes().getValue(RESPONSE_TIMEOUT_MILLIS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public T setResponseTimeoutMillis(Integer value) {
+        getAttributes().getOrCreate(RESPONSE_TIMEOUT_MILLIS).setValue(value);
+        return (T) this;
+    }
+}
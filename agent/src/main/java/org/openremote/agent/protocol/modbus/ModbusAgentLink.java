@@ -0,0 +1,231 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.modbus;
+
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import org.openremote.model.asset.agent.AgentLink;
+import org.openremote.model.util.ValueUtil;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+public class ModbusAgentLink extends AgentLink<ModbusAgentLink> {
+
+    public enum RegisterType {
+        COIL(ModbusMessage.FUNCTION_READ_COILS, true, true),
+        DISCRETE_INPUT(ModbusMessage.FUNCTION_READ_DISCRETE_INPUTS, true, false),
+        HOLDING_REGISTER(ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS, false, true),
+        INPUT_REGISTER(ModbusMessage.FUNCTION_READ_INPUT_REGISTERS, false, false);
+
+        private final int readFunctionCode;
+        private final boolean bit;
+        private final boolean writable;
+
+        RegisterType(int readFunctionCode, boolean bit, boolean writable) {
+            this.readFunctionCode = readFunctionCode;
+            this.bit = bit;
+            this.writable = writable;
+        }
+
+        public int getReadFunctionCode() {
+            return readFunctionCode;
+        }
+
+        public boolean isBit() {
+            return bit;
+        }
+
+        public boolean isWritable() {
+            return writable;
+        }
+    }
+
+    public enum DataType {
+        BOOL(1),
+        INT16(1),
+        UINT16(1),
+        INT32(2),
+        UINT32(2),
+        INT64(4),
+        FLOAT32(2),
+        FLOAT64(4);
+
+        private final int registerCount;
+
+        DataType(int registerCount) {
+            this.registerCount = registerCount;
+        }
+
+        public int getRegisterCount() {
+            return registerCount;
+        }
+
+        /**
+         * Decodes a value of this type from the big endian register bytes starting at the specified register offset;
+         * when word swapped the least significant register comes first.
+         */
+        public Object decode(byte[] registers, int registerOffset, boolean wordSwap) {
+            byte[] bytes = new byte[registerCount * 2];
+            for (int i = 0; i < registerCount; i++) {
+                int source = (registerOffset + (wordSwap ? registerCount - 1 - i : i)) * 2;
+                bytes[i * 2] = registers[source];
+                bytes[i * 2 + 1] = registers[source + 1];
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+
+            return switch (this) {
+                case BOOL -> buffer.getShort() != 0;
+                case INT16 -> (int) buffer.getShort();
+                case UINT16 -> buffer.getShort() & 0xFFFF;
+                case INT32 -> buffer.getInt();
+                case UINT32 -> buffer.getInt() & 0xFFFFFFFFL;
+                case INT64 -> buffer.getLong();
+                case FLOAT32 -> buffer.getFloat();
+                case FLOAT64 -> buffer.getDouble();
+            };
+        }
+
+        /**
+         * Encodes the value as big endian register bytes (see {@link #decode})
+         */
+        public byte[] encode(Object value, boolean wordSwap) {
+            ByteBuffer buffer = ByteBuffer.allocate(registerCount * 2);
+
+            switch (this) {
+                case BOOL -> buffer.putShort((short) (ValueUtil.getBooleanCoerced(value).orElse(false) ? 1 : 0));
+                case INT16, UINT16 -> buffer.putShort(ValueUtil.getValueCoerced(value, Integer.class).orElse(0).shortValue());
+                case INT32, UINT32 -> buffer.putInt(ValueUtil.getValueCoerced(value, Long.class).orElse(0L).intValue());
+                case INT64 -> buffer.putLong(ValueUtil.getValueCoerced(value, Long.class).orElse(0L));
+                case FLOAT32 -> buffer.putFloat(ValueUtil.getValueCoerced(value, Double.class).orElse(0d).floatValue());
+                case FLOAT64 -> buffer.putDouble(ValueUtil.getValueCoerced(value, Double.class).orElse(0d));
+            }
+
+            byte[] bytes = buffer.array();
+            if (!wordSwap || registerCount == 1) {
+                return bytes;
+            }
+
+            byte[] swapped = new byte[bytes.length];
+            for (int i = 0; i < registerCount; i++) {
+                int source = (registerCount - 1 - i) * 2;
+                swapped[i * 2] = bytes[source];
+                swapped[i * 2 + 1] = bytes[source + 1];
+            }
+            return swapped;
+        }
+    }
+
+    @JsonPropertyDescription("The unit ID (slave address) of the device; defaults to the agent unit ID")
+    protected Integer unitId;
+    @JsonPropertyDescription("The type of register to read the linked attribute value from")
+    protected RegisterType readType;
+    @JsonPropertyDescription("The zero based address of the first register/coil to read")
+    protected Integer readAddress;
+    @JsonPropertyDescription("The type of register to write linked attribute values to (coil or holding register)")
+    protected RegisterType writeType;
+    @JsonPropertyDescription("The zero based address of the first register/coil to write")
+    protected Integer writeAddress;
+    @JsonPropertyDescription("The data type of the register value(s); determines how many registers are read/written")
+    protected DataType dataType;
+    @JsonPropertyDescription("Indicates that multi-register values are stored with the least significant register first")
+    protected Boolean wordSwap;
+    @JsonPropertyDescription("How frequently the register(s) are read in order to update the linked attribute; defaults to the agent polling millis")
+    protected Integer pollingMillis;
+
+    // For Hydrators
+    protected ModbusAgentLink() {
+    }
+
+    public ModbusAgentLink(String id) {
+        super(id);
+    }
+
+    public Optional<Integer> getUnitId() {
+        return Optional.ofNullable(unitId);
+    }
+
+    public ModbusAgentLink setUnitId(Integer unitId) {
+        this.unitId = unitId;
+        return this;
+    }
+
+    public Optional<RegisterType> getReadType() {
+        return Optional.ofNullable(readType);
+    }
+
+    public ModbusAgentLink setReadType(RegisterType readType) {
+        this.readType = readType;
+        return this;
+    }
+
+    public Optional<Integer> getReadAddress() {
+        return Optional.ofNullable(readAddress);
+    }
+
+    public ModbusAgentLink setReadAddress(Integer readAddress) {
+        this.readAddress = readAddress;
+        return this;
+    }
+
+    public Optional<RegisterType> getWriteType() {
+        return Optional.ofNullable(writeType);
+    }
+
+    public ModbusAgentLink setWriteType(RegisterType writeType) {
+        this.writeType = writeType;
+        return this;
+    }
+
+    public Optional<Integer> getWriteAddress() {
+        return Optional.ofNullable(writeAddress);
+    }
+
+    public ModbusAgentLink setWriteAddress(Integer writeAddress) {
+        this.writeAddress = writeAddress;
+        return this;
+    }
+
+    public Optional<DataType> getDataType() {
+        return Optional.ofNullable(dataType);
+    }
+
+    public ModbusAgentLink setDataType(DataType dataType) {
+        this.dataType = dataType;
+        return this;
+    }
+
+    public Optional<Boolean> getWordSwap() {
+        return Optional.ofNullable(wordSwap);
+    }
+
+    public ModbusAgentLink setWordSwap(Boolean wordSwap) {
+        this.wordSwap = wordSwap;
+        return this;
+    }
+
+    public Optional<Integer> getPollingMillis() {
+        return Optional.ofNullable(pollingMillis);
+    }
+
+    public ModbusAgentLink setPollingMillis(Integer pollingMillis) {
+        this.pollingMillis = pollingMillis;
+        return this;
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.modbus;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToByteEncoder;
+import org.openremote.model.syslog.SyslogCategory;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * Netty encoders/decoders for the Modbus TCP (MBAP header) and Modbus RTU (CRC checked) framings of
+ * {@link ModbusMessage}s.
+ */
+public final class ModbusCodec {
+
+    /**
+     * Decodes Modbus TCP frames; the MBAP header carries the length so this works for requests and responses.
+     */
+    public static class TCPDecoder extends ByteToMessageDecoder {
+
+        protected static final int HEADER_LENGTH = 6;
+        protected static final int MAX_PDU_LENGTH = 254;
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+            while (in.readableBytes() >= HEADER_LENGTH + 2) {
+                int length = in.getUnsignedShort(in.readerIndex() + 4);
+
+                if (length < 2 || length > MAX_PDU_LENGTH + 1) {
+                    throw new CorruptedFrameException("Invalid Modbus TCP frame length: " + length);
+                }
+
+                if (in.readableBytes() < HEADER_LENGTH + length) {
+                    return;
+                }
+
+                int transactionId = in.readUnsignedShort();
+                in.skipBytes(2); // Protocol ID
+                in.skipBytes(2); // Length
+                int unitId = in.readUnsignedByte();
+                int functionCode = in.readUnsignedByte();
+                byte[] data = new byte[length - 2];
+                in.readBytes(data);
+                out.add(new ModbusMessage(transactionId, unitId, functionCode, data));
+            }
+        }
+    }
+
+    public static class TCPEncoder extends MessageToByteEncoder<ModbusMessage> {
+
+        public TCPEncoder() {
+            super(ModbusMessage.class);
+        }
+
+        @Override
+        protected void encode(ChannelHandlerContext ctx, ModbusMessage msg, ByteBuf out) {
+            out.writeShort(msg.getTransactionId());
+            out.writeShort(0);
+            out.writeShort(msg.getData().length + 2);
+            out.writeByte(msg.getUnitId());
+            out.writeByte(msg.getFunctionCode());
+            out.writeBytes(msg.getData());
+        }
+    }
+
+    /**
+     * Decodes Modbus RTU response frames; RTU frames have no length field so the length is derived from the function
+     * code (and byte count for reads). Frames that fail the CRC check are discarded a byte at a time until the decoder
+     * re-synchronises with the byte stream.
+     */
+    public static class RTUDecoder extends ByteToMessageDecoder {
+
+        @Override
+        protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+            while (in.readableBytes() >= 2) {
+                int start = in.readerIndex();
+                int functionCode = in.getUnsignedByte(start + 1);
+                int frameLength;
+
+                if ((functionCode & ModbusMessage.EXCEPTION_FLAG) != 0) {
+                    frameLength = 5;
+                } else if (functionCode >= ModbusMessage.FUNCTION_READ_COILS && functionCode <= ModbusMessage.FUNCTION_READ_INPUT_REGISTERS) {
+                    if (in.readableBytes() < 3) {
+                        return;
+                    }
+                    frameLength = 5 + in.getUnsignedByte(start + 2);
+                } else if (functionCode == ModbusMessage.FUNCTION_WRITE_SINGLE_COIL
+                    || functionCode == ModbusMessage.FUNCTION_WRITE_SINGLE_REGISTER
+                    || functionCode == ModbusMessage.FUNCTION_WRITE_MULTIPLE_REGISTERS) {
+                    frameLength = 8;
+                } else {
+                    LOG.fine("Discarding byte with unsupported Modbus RTU function code: " + functionCode);
+                    in.skipBytes(1);
+                    continue;
+                }
+
+                if (in.readableBytes() < frameLength) {
+                    return;
+                }
+
+                int crc = in.getUnsignedByte(start + frameLength - 2) | (in.getUnsignedByte(start + frameLength - 1) << 8);
+                if (crc != crc16(in, start, frameLength - 2)) {
+                    LOG.fine("Discarding byte as Modbus RTU frame CRC check failed");
+                    in.skipBytes(1);
+                    continue;
+                }
+
+                int unitId = in.readUnsignedByte();
+                in.skipBytes(1); // Function code
+                byte[] data = new byte[frameLength - 4];
+                in.readBytes(data);
+                in.skipBytes(2); // CRC
+                out.add(new ModbusMessage(0, unitId, functionCode, data));
+            }
+        }
+    }
+
+    public static class RTUEncoder extends MessageToByteEncoder<ModbusMessage> {
+
+        public RTUEncoder() {
+            super(ModbusMessage.class);
+        }
+
+        @Override
+        protected void encode(ChannelHandlerContext ctx, ModbusMessage msg, ByteBuf out) {
+            int start = out.writerIndex();
+            out.writeByte(msg.getUnitId());
+            out.writeByte(msg.getFunctionCode());
+            out.writeBytes(msg.getData());
+            int crc = crc16(out, start, out.writerIndex() - start);
+            out.writeByte(crc & 0xFF);
+            out.writeByte((crc >> 8) & 0xFF);
+        }
+    }
+
+    protected static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, ModbusCodec.class);
+
+    private ModbusCodec() {
+    }
+
+    /**
+     * Modbus CRC-16 (polynomial 0xA001, initial value 0xFFFF) of the specified bytes of the buffer
+     */
+    public static int crc16(ByteBuf buf, int offset, int length) {
+        int crc = 0xFFFF;
+        for (int i = offset; i < offset + length; i++) {
+            crc ^= buf.getUnsignedByte(i);
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x0001) != 0 ? (crc >>> 1) ^ 0xA001 : crc >>> 1;
+            }
+        }
+        return crc;
+    }
+}
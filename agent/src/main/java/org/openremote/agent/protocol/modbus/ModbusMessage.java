@@ -0,0 +1,170 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.modbus;
+
+import org.openremote.model.util.ValueUtil;
+
+import java.util.Arrays;
+
+/**
+ * A Modbus application data unit; the same representation is used for requests and responses and for both the TCP
+ * (MBAP) and RTU framings (the transaction ID is not used for RTU). The data is the PDU data that follows the function
+ * code.
+ */
+public class ModbusMessage {
+
+    public static final int FUNCTION_READ_COILS = 0x01;
+    public static final int FUNCTION_READ_DISCRETE_INPUTS = 0x02;
+    public static final int FUNCTION_READ_HOLDING_REGISTERS = 0x03;
+    public static final int FUNCTION_READ_INPUT_REGISTERS = 0x04;
+    public static final int FUNCTION_WRITE_SINGLE_COIL = 0x05;
+    public static final int FUNCTION_WRITE_SINGLE_REGISTER = 0x06;
+    public static final int FUNCTION_WRITE_MULTIPLE_REGISTERS = 0x10;
+    public static final int EXCEPTION_FLAG = 0x80;
+    public static final int EXCEPTION_ILLEGAL_DATA_ADDRESS = 0x02;
+
+    protected int transactionId;
+    protected final int unitId;
+    protected final int functionCode;
+    protected final byte[] data;
+
+    public ModbusMessage(int transactionId, int unitId, int functionCode, byte[] data) {
+        this.transactionId = transactionId;
+        this.unitId = unitId;
+        this.functionCode = functionCode;
+        this.data = data != null ? data : new byte[0];
+    }
+
+    public static ModbusMessage createReadRequest(int unitId, int functionCode, int address, int quantity) {
+        return new ModbusMessage(0, unitId, functionCode, new byte[]{
+            (byte) (address >> 8), (byte) address, (byte) (quantity >> 8), (byte) quantity
+        });
+    }
+
+    public static ModbusMessage createWriteSingleCoilRequest(int unitId, int address, boolean value) {
+        return new ModbusMessage(0, unitId, FUNCTION_WRITE_SINGLE_COIL, new byte[]{
+            (byte) (address >> 8), (byte) address, (byte) (value ? 0xFF : 0x00), 0x00
+        });
+    }
+
+    public static ModbusMessage createWriteRegistersRequest(int unitId, int address, byte[] registers) {
+        if (registers.length == 2) {
+            return new ModbusMessage(0, unitId, FUNCTION_WRITE_SINGLE_REGISTER, new byte[]{
+                (byte) (address >> 8), (byte) address, registers[0], registers[1]
+            });
+        }
+
+        int quantity = registers.length / 2;
+        byte[] data = new byte[5 + registers.length];
+        data[0] = (byte) (address >> 8);
+        data[1] = (byte) address;
+        data[2] = (byte) (quantity >> 8);
+        data[3] = (byte) quantity;
+        data[4] = (byte) registers.length;
+        System.arraycopy(registers, 0, data, 5, registers.length);
+        return new ModbusMessage(0, unitId, FUNCTION_WRITE_MULTIPLE_REGISTERS, data);
+    }
+
+    /**
+     * Creates the response to this request with the specified data
+     */
+    public ModbusMessage createResponse(byte[] data) {
+        return new ModbusMessage(transactionId, unitId, functionCode, data);
+    }
+
+    /**
+     * Creates the exception response to this request with the specified exception code
+     */
+    public ModbusMessage createExceptionResponse(int exceptionCode) {
+        return new ModbusMessage(transactionId, unitId, functionCode | EXCEPTION_FLAG, new byte[]{(byte) exceptionCode});
+    }
+
+    public int getTransactionId() {
+        return transactionId;
+    }
+
+    public ModbusMessage setTransactionId(int transactionId) {
+        this.transactionId = transactionId;
+        return this;
+    }
+
+    public int getUnitId() {
+        return unitId;
+    }
+
+    public int getFunctionCode() {
+        return functionCode;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public boolean isException() {
+        return (functionCode & EXCEPTION_FLAG) != 0;
+    }
+
+    public int getExceptionCode() {
+        return isException() && data.length > 0 ? data[0] & 0xFF : 0;
+    }
+
+    /**
+     * Indicates whether this is a (normal or exception) response from the unit the request was sent to for the same
+     * function
+     */
+    public boolean isResponseTo(ModbusMessage request) {
+        return unitId == request.unitId && (functionCode & ~EXCEPTION_FLAG) == request.functionCode;
+    }
+
+    /**
+     * The starting address of a read or write request
+     */
+    public int getAddress() {
+        return getUnsignedShort(0);
+    }
+
+    /**
+     * The quantity of a read request
+     */
+    public int getQuantity() {
+        return getUnsignedShort(2);
+    }
+
+    /**
+     * The bytes of a read response (i.e. excluding the byte count)
+     */
+    public byte[] getReadValues() {
+        return data.length > 0 ? Arrays.copyOfRange(data, 1, Math.min(data.length, 1 + (data[0] & 0xFF))) : new byte[0];
+    }
+
+    protected int getUnsignedShort(int offset) {
+        return data.length >= offset + 2 ? ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "transactionId=" + transactionId +
+            ", unitId=" + unitId +
+            ", functionCode=" + functionCode +
+            ", data=" + ValueUtil.bytesToHexString(data) +
+            '}';
+    }
+}
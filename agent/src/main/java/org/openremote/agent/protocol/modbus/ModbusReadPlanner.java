@@ -0,0 +1,194 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.modbus;
+
+import org.openremote.model.attribute.AttributeRef;
+
+import java.util.*;
+
+/**
+ * Merges the register/coil reads of linked attributes into the minimal number of multi-register read requests; reads
+ * for the same unit and register type are merged when they overlap or are separated by no more than the maximum gap
+ * and the merged read doesn't exceed the maximum quantity allowed in a single request.
+ */
+public final class ModbusReadPlanner {
+
+    /**
+     * Max quantities allowed by the Modbus specification for a single read request
+     */
+    public static final int MAX_READ_REGISTERS = 125;
+    public static final int MAX_READ_BITS = 2000;
+
+    /**
+     * A single linked attribute read
+     */
+    public static class ReadTarget {
+        protected final AttributeRef attributeRef;
+        protected final int unitId;
+        protected final ModbusAgentLink.RegisterType registerType;
+        protected final int address;
+        protected final ModbusAgentLink.DataType dataType;
+        protected final boolean wordSwap;
+
+        public ReadTarget(AttributeRef attributeRef, int unitId, ModbusAgentLink.RegisterType registerType, int address, ModbusAgentLink.DataType dataType, boolean wordSwap) {
+            this.attributeRef = attributeRef;
+            this.unitId = unitId;
+            this.registerType = registerType;
+            this.address = address;
+            this.dataType = dataType;
+            this.wordSwap = wordSwap;
+        }
+
+        public AttributeRef getAttributeRef() {
+            return attributeRef;
+        }
+
+        public int getQuantity() {
+            return registerType.isBit() ? 1 : dataType.getRegisterCount();
+        }
+
+        protected int getEnd() {
+            return address + getQuantity();
+        }
+
+        /**
+         * Extracts this target's value from the response to the specified read range
+         */
+        public Object getValue(ReadRange range, byte[] values) {
+            int offset = address - range.address;
+
+            if (registerType.isBit()) {
+                int byteIndex = offset / 8;
+                return byteIndex < values.length ? ((values[byteIndex] >> (offset % 8)) & 0x01) == 1 : null;
+            }
+
+            if (values.length < (offset + dataType.getRegisterCount()) * 2) {
+                return null;
+            }
+            return dataType.decode(values, offset, wordSwap);
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "{" +
+                "attributeRef=" + attributeRef +
+                ", unitId=" + unitId +
+                ", registerType=" + registerType +
+                ", address=" + address +
+                ", dataType=" + dataType +
+                '}';
+        }
+    }
+
+    /**
+     * A single read request and the targets whose values are contained within it
+     */
+    public static class ReadRange {
+        protected final int unitId;
+        protected final ModbusAgentLink.RegisterType registerType;
+        protected final int address;
+        protected int quantity;
+        protected final List<ReadTarget> targets = new ArrayList<>();
+
+        protected ReadRange(ReadTarget target) {
+            this.unitId = target.unitId;
+            this.registerType = target.registerType;
+            this.address = target.address;
+            this.quantity = target.getQuantity();
+            this.targets.add(target);
+        }
+
+        public int getUnitId() {
+            return unitId;
+        }
+
+        public ModbusAgentLink.RegisterType getRegisterType() {
+            return registerType;
+        }
+
+        public int getAddress() {
+            return address;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public List<ReadTarget> getTargets() {
+            return targets;
+        }
+
+        public ModbusMessage createRequest() {
+            return ModbusMessage.createReadRequest(unitId, registerType.getReadFunctionCode(), address, quantity);
+        }
+
+        protected int getEnd() {
+            return address + quantity;
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "{" +
+                "unitId=" + unitId +
+                ", registerType=" + registerType +
+                ", address=" + address +
+                ", quantity=" + quantity +
+                ", targets=" + targets.size() +
+                '}';
+        }
+    }
+
+    private ModbusReadPlanner() {
+    }
+
+    /**
+     * @param maxRegisters the max registers per request for register reads (capped at {@link #MAX_READ_REGISTERS})
+     * @param maxGap       the max number of unused registers/coils allowed between merged reads
+     */
+    public static List<ReadRange> plan(Collection<ReadTarget> targets, int maxRegisters, int maxGap) {
+        List<ReadTarget> sortedTargets = new ArrayList<>(targets);
+        sortedTargets.sort(Comparator
+            .comparingInt((ReadTarget target) -> target.unitId)
+            .thenComparing(target -> target.registerType)
+            .thenComparingInt(target -> target.address));
+
+        List<ReadRange> ranges = new ArrayList<>();
+        ReadRange range = null;
+
+        for (ReadTarget target : sortedTargets) {
+            int maxQuantity = target.registerType.isBit() ? MAX_READ_BITS : Math.max(1, Math.min(maxRegisters, MAX_READ_REGISTERS));
+
+            if (range != null
+                && range.unitId == target.unitId
+                && range.registerType == target.registerType
+                && target.address <= range.getEnd() + Math.max(0, maxGap)
+                && Math.max(range.getEnd(), target.getEnd()) - range.address <= maxQuantity) {
+                range.quantity = Math.max(range.getEnd(), target.getEnd()) - range.address;
+                range.targets.add(target);
+                continue;
+            }
+
+            range = new ReadRange(target);
+            ranges.add(range);
+        }
+
+        return ranges;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.modbus;
+
+import io.netty.channel.ChannelHandler;
+import org.openremote.agent.protocol.io.AbstractNettyIOClient;
+import org.openremote.agent.protocol.serial.SerialIOClient;
+
+import java.util.function.Supplier;
+
+/**
+ * Modbus RTU client protocol for serial buses; RTU frames carry no transaction ID so only a single request is ever
+ * outstanding and a response only completes it when it is from the same unit for the same function.
+ * <p>
+ * To use this protocol create a {@link ModbusSerialAgent}.
+ */
+public class ModbusSerialProtocol extends AbstractModbusProtocol<ModbusSerialProtocol, ModbusSerialAgent> {
+
+    public static final String PROTOCOL_DISPLAY_NAME = "Modbus RTU Client";
+
+    public ModbusSerialProtocol(ModbusSerialAgent agent) {
+        super(agent);
+    }
+
+    @Override
+    public String getProtocolName() {
+        return PROTOCOL_DISPLAY_NAME;
+    }
+
+    @Override
+    protected boolean isPipeliningSupported() {
+        return false;
+    }
+
+    @Override
+    protected AbstractNettyIOClient<ModbusMessage, ?> doCreateIoClient() throws Exception {
+        String port = agent.getSerialPort().orElse(null);
+        Integer baudrate = agent.getSerialBaudrate().orElse(null);
+
+        return new SerialIOClient<ModbusMessage>(port, baudrate);
+    }
+
+    @Override
+    protected Supplier<ChannelHandler[]> getEncoderDecoderProvider() {
+        return () -> new ChannelHandler[] {
+            new ModbusCodec.RTUEncoder(),
+            new ModbusCodec.RTUDecoder(),
+            new AbstractNettyIOClient.MessageToMessageDecoder<>(ModbusMessage.class, client)
+        };
+    }
+}
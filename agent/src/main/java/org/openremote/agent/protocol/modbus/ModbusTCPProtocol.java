@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.modbus;
+
+import io.netty.channel.ChannelHandler;
+import org.openremote.agent.protocol.io.AbstractNettyIOClient;
+import org.openremote.agent.protocol.tcp.TCPIOClient;
+import org.openremote.model.asset.agent.Agent;
+
+import java.util.function.Supplier;
+
+/**
+ * Modbus TCP client protocol; responses are correlated to requests using the MBAP transaction ID so requests can be
+ * pipelined (see {@link ModbusAgent#MAX_PENDING_REQUESTS}).
+ * <p>
+ * To use this protocol create a {@link ModbusTCPAgent}.
+ */
+public class ModbusTCPProtocol extends AbstractModbusProtocol<ModbusTCPProtocol, ModbusTCPAgent> {
+
+    public static final String PROTOCOL_DISPLAY_NAME = "Modbus TCP Client";
+
+    public ModbusTCPProtocol(ModbusTCPAgent agent) {
+        super(agent);
+    }
+
+    @Override
+    public String getProtocolName() {
+        return PROTOCOL_DISPLAY_NAME;
+    }
+
+    @Override
+    protected boolean isPipeliningSupported() {
+        return true;
+    }
+
+    @Override
+    protected AbstractNettyIOClient<ModbusMessage, ?> doCreateIoClient() throws Exception {
+        String host = agent.getAttributes().getValue(Agent.HOST).orElse(null);
+        int port = agent.getAttributes().getValue(Agent.PORT).orElse(502);
+
+        return new TCPIOClient<ModbusMessage>(host, port);
+    }
+
+    @Override
+    protected Supplier<ChannelHandler[]> getEncoderDecoderProvider() {
+        return () -> new ChannelHandler[] {
+            new ModbusCodec.TCPEncoder(),
+            new ModbusCodec.TCPDecoder(),
+            new AbstractNettyIOClient.MessageToMessageDecoder<>(ModbusMessage.class, client)
+        };
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.opcua;
+
+import org.openremote.model.asset.agent.Agent;
+import org.openremote.model.asset.agent.AgentDescriptor;
+import org.openremote.model.value.AttributeDescriptor;
+import org.openremote.model.value.ValueType;
+
+import jakarta.persistence.Entity;
+import java.util.Optional;
+
+@Entity
+public class OPCUAAgent extends Agent<OPCUAAgent, OPCUAProtocol, OPCUAAgentLink> {
+
+    public static final AttributeDescriptor<String> ENDPOINT_URL = new AttributeDescriptor<>("endpointUrl", ValueType.TEXT);
+
+    /*
+     * Subscription attributes; the publishing interval applies to the single subscription created for the agent, the
+     * sampling interval and deadband are the defaults for linked attributes that don't specify their own
+     */
+    public static final AttributeDescriptor<Integer> PUBLISHING_INTERVAL_MILLIS = new AttributeDescriptor<>("publishingIntervalMillis", ValueType.POSITIVE_INTEGER).withOptional(true);
+    public static final AttributeDescriptor<Integer> SAMPLING_INTERVAL_MILLIS = new AttributeDescriptor<>("samplingIntervalMillis", ValueType.POSITIVE_INTEGER).withOptional(true);
+    public static final AttributeDescriptor<Double> DEADBAND = new AttributeDescriptor<>("deadband", ValueType.POSITIVE_NUMBER).withOptional(true);
+    public static final AttributeDescriptor<Integer> REQUEST_TIMEOUT_MILLIS = new AttributeDescriptor<>("requestTimeoutMillis", ValueType.POSITIVE_INTEGER).withOptional(true);
+
+    public static final AgentDescriptor<OPCUAAgent, OPCUAProtocol, OPCUAAgentLink> DESCRIPTOR = new AgentDescriptor<>(
+        OPCUAAgent.class, OPCUAProtocol.class, OPCUAAgentLink.class
+    );
+
+    /**
+     * For use by hydrators (i.e. JPA/Jackson)
+     */
+    protected OPCUAAgent() {
+    }
+
+    public OPCUAAgent(String name) {
+        super(name);
+    }
+
+    @Override
+    public OPCUAProtocol getProtocolInstance() {
+        return new OPCUAProtocol(this);
+    }
+
+    public Optional<String> getEndpointUrl() {
+        return getAttributes().getValue(ENDPOINT_URL);
+    }
+
+    public OPCUAAgent setEndpointUrl(String value) {
+        getAttributes().getOrCreate(ENDPOINT_URL).setValue(value);
+        return this;
+    }
+
+    public Optional<Integer> getPublishingIntervalMillis() {
+        return getAttributes().getValue(PUBLISHING_INTERVAL_MILLIS);
+    }
+
+    public OPCUAAgent setPublishingIntervalMillis(Integer value) {
+        getAttributes().getOrCreate(PUBLISHING_INTERVAL_MILLIS).setValue(value);
+        return this;
+    }
+
+    public Optional<Integer> getSamplingIntervalMillis() {
+        return getAttributes().getValue(SAMPLING_INTERVAL_MILLIS);
+    }
+
+    public OPCUAAgent setSamplingIntervalMillis(Integer value) {
+        getAttributes().getOrCreate(SAMPLING_INTERVAL_MILLIS).setValue(value);
+        return this;
+    }
+
+    public Optional<Double> getDeadband() {
+        return getAttributes().getValue(DEADBAND);
+    }
+
+    public OPCUAAgent setDeadband(Double value) {
+        getAttributes().getOrCreate(DEADBAND).setValue(value);
+        return this;
+    }
+
+    public Optional<Integer> getRequestTimeoutMillis() {
+        return getAttributes().getValue(REQUEST_TIMEOUT_MILLIS);
+    }
+
+    public OPCUAAgent setRequestTimeoutMillis(Integer value) {
+        getAttributes().getOrCreate(REQUEST_TIMEOUT_MILLIS).setValue(value);
+        return this;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.opcua;
+
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
+import org.openremote.model.asset.agent.AgentLink;
+
+import jakarta.validation.constraints.NotNull;
+import java.util.Optional;
+
+public class OPCUAAgentLink extends AgentLink<OPCUAAgentLink> {
+
+    public enum DeadbandType {
+        ABSOLUTE,
+        PERCENT
+    }
+
+    @NotNull
+    @JsonPropertyDescription("The node ID of the variable to monitor/write (e.g. ns=2;s=Boiler.Temperature)")
+    protected String nodeId;
+    @JsonPropertyDescription("How frequently the server samples the variable; defaults to the agent sampling interval")
+    protected Integer samplingIntervalMillis;
+    @JsonPropertyDescription("Only report value changes greater than this deadband; defaults to the agent deadband")
+    protected Double deadband;
+    @JsonPropertyDescription("Whether the deadband is an absolute value or a percentage of the variable's EU range; defaults" +
+        " to absolute")
+    protected DeadbandType deadbandType;
+
+    // For Hydrators
+    protected OPCUAAgentLink() {
+    }
+
+    public OPCUAAgentLink(String id, String nodeId) {
+        super(id);
+
+        this.nodeId = nodeId;
+    }
+
+    public Optional<String> getNodeId() {
+        return Optional.ofNullable(nodeId);
+    }
+
+    public OPCUAAgentLink setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+        return this;
+    }
+
+    public Optional<Integer> getSamplingIntervalMillis() {
+        return Optional.ofNullable(samplingIntervalMillis);
+    }
+
+    public OPCUAAgentLink setSamplingIntervalMillis(Integer samplingIntervalMillis) {
+        this.samplingIntervalMillis = samplingIntervalMillis;
+        return this;
+    }
+
+    public Optional<Double> getDeadband() {
+        return Optional.ofNullable(deadband);
+    }
+
+    public OPCUAAgentLink setDeadband(Double deadband) {
+        this.deadband = deadband;
+        return this;
+    }
+
+    public Optional<DeadbandType> getDeadbandType() {
+        return Optional.ofNullable(deadbandType);
+    }
+
+    public OPCUAAgentLink setDeadbandType(DeadbandType deadbandType) {
+        this.deadbandType = deadbandType;
+        return this;
+    }
+}
@@ -0,0 +1,537 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.opcua;
+
+import org.eclipse.milo.opcua.sdk.client.OpcUaClient;
+import org.eclipse.milo.opcua.sdk.client.SessionActivityListener;
+import org.eclipse.milo.opcua.sdk.client.api.UaSession;
+import org.eclipse.milo.opcua.sdk.client.api.identity.AnonymousProvider;
+import org.eclipse.milo.opcua.sdk.client.api.identity.IdentityProvider;
+import org.eclipse.milo.opcua.sdk.client.api.identity.UsernameProvider;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaMonitoredItem;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscription;
+import org.eclipse.milo.opcua.sdk.client.api.subscriptions.UaSubscriptionManager;
+import org.eclipse.milo.opcua.stack.core.AttributeId;
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy;
+import org.eclipse.milo.opcua.stack.core.types.builtin.*;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UByte;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UInteger;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.ULong;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UNumber;
+import org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.UShort;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DataChangeTrigger;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.DeadbandType;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MonitoringMode;
+import org.eclipse.milo.opcua.stack.core.types.enumerated.TimestampsToReturn;
+import org.eclipse.milo.opcua.stack.core.types.structured.DataChangeFilter;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoredItemCreateRequest;
+import org.eclipse.milo.opcua.stack.core.types.structured.MonitoringParameters;
+import org.eclipse.milo.opcua.stack.core.types.structured.ReadValueId;
+import org.eclipse.milo.opcua.stack.core.util.EndpointUtil;
+import org.openremote.agent.protocol.AbstractProtocol;
+import org.openremote.model.Container;
+import org.openremote.model.asset.agent.ConnectionStatus;
+import org.openremote.model.attribute.Attribute;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.syslog.SyslogCategory;
+import org.openremote.model.util.TextUtil;
+import org.openremote.model.util.ValueUtil;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.eclipse.milo.opcua.stack.core.types.builtin.unsigned.Unsigned.*;
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * This is an OPC UA client protocol; rather than polling, linked attributes are updated from monitored items of a
+ * single server side subscription so the server only publishes value changes (optionally filtered by a deadband) at
+ * the publishing interval.
+ * <p>
+ * To use this protocol create an {@link OPCUAAgent}. Monitored items are created/deleted in batches (attributes linked
+ * within {@link #BATCH_DELAY_MILLIS} of each other share a single request) and writes that occur whilst a write request
+ * is in flight are sent together in the next write request (only the latest value is written for each node). Values are
+ * timestamped with the source timestamp reported by the server.
+ */
+public class OPCUAProtocol extends AbstractProtocol<OPCUAAgent, OPCUAAgentLink> {
+
+    public static final String PROTOCOL_DISPLAY_NAME = "OPC UA Client";
+    public static final int DEFAULT_PUBLISHING_INTERVAL_MILLIS = 1000;
+    public static final int DEFAULT_REQUEST_TIMEOUT_MILLIS = 5000;
+    public static final int RECONNECT_DELAY_MILLIS = 10000;
+    public static int BATCH_DELAY_MILLIS = 50;
+    protected static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, OPCUAProtocol.class);
+
+    protected volatile OpcUaClient client;
+    protected volatile UaSubscription subscription;
+    protected final Map<AttributeRef, NodeId> attributeNodeIds = new ConcurrentHashMap<>();
+    protected final Map<AttributeRef, OPCUAAgentLink> attributeLinks = new ConcurrentHashMap<>();
+    protected final Map<NodeId, Class<?>> nodeValueTypes = new ConcurrentHashMap<>();
+    protected final Map<AttributeRef, UaMonitoredItem> monitoredItems = new HashMap<>();
+    protected final Set<AttributeRef> pendingMonitoredItems = new LinkedHashSet<>();
+    protected final List<UaMonitoredItem> pendingDeletes = new ArrayList<>();
+    protected final Map<NodeId, Object> pendingWrites = new LinkedHashMap<>();
+    protected boolean writeInProgress;
+    protected ScheduledFuture<?> monitoredItemsTask;
+    protected ScheduledFuture<?> reconnectTask;
+
+    public OPCUAProtocol(OPCUAAgent agent) {
+        super(agent);
+    }
+
+    @Override
+    public String getProtocolName() {
+        return PROTOCOL_DISPLAY_NAME;
+    }
+
+    @Override
+    public String getProtocolInstanceUri() {
+        return agent.getEndpointUrl().orElse("");
+    }
+
+    @Override
+    protected void doStart(Container container) throws Exception {
+        if (TextUtil.isNullOrEmpty(agent.getEndpointUrl().orElse(null))) {
+            String msg = "No OPC UA endpoint URL provided for protocol: " + this;
+            LOG.info(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        setConnectionStatus(ConnectionStatus.CONNECTING);
+        executorService.execute(this::connect);
+    }
+
+    @Override
+    protected void doStop(Container container) throws Exception {
+        synchronized (monitoredItems) {
+            if (reconnectTask != null) {
+                reconnectTask.cancel(false);
+                reconnectTask = null;
+            }
+            if (monitoredItemsTask != null) {
+                monitoredItemsTask.cancel(false);
+                monitoredItemsTask = null;
+            }
+            monitoredItems.clear();
+            pendingMonitoredItems.clear();
+            pendingDeletes.clear();
+        }
+        synchronized (pendingWrites) {
+            pendingWrites.clear();
+        }
+
+        OpcUaClient client = this.client;
+        this.client = null;
+        subscription = null;
+
+        if (client != null) {
+            LOG.fine("Disconnecting OPC UA client: " + this);
+            client.disconnect();
+        }
+    }
+
+    @Override
+    protected void doLinkAttribute(String assetId, Attribute<?> attribute, OPCUAAgentLink agentLink) throws RuntimeException {
+        String nodeIdStr = agentLink.getNodeId().orElse(null);
+        NodeId nodeId = !TextUtil.isNullOrEmpty(nodeIdStr) ? NodeId.parseSafe(nodeIdStr).orElse(null) : null;
+
+        if (nodeId == null) {
+            throw new IllegalArgumentException("Invalid OPC UA node ID '" + nodeIdStr + "' for attribute: " + attribute.getName());
+        }
+
+        AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
+        attributeNodeIds.put(attributeRef, nodeId);
+        attributeLinks.put(attributeRef, agentLink);
+
+        synchronized (monitoredItems) {
+            pendingMonitoredItems.add(attributeRef);
+            scheduleMonitoredItemsUpdate();
+        }
+    }
+
+    @Override
+    protected void doUnlinkAttribute(String assetId, Attribute<?> attribute, OPCUAAgentLink agentLink) {
+        AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
+        attributeNodeIds.remove(attributeRef);
+        attributeLinks.remove(attributeRef);
+
+        synchronized (monitoredItems) {
+            pendingMonitoredItems.remove(attributeRef);
+            UaMonitoredItem monitoredItem = monitoredItems.remove(attributeRef);
+            if (monitoredItem != null) {
+                pendingDeletes.add(monitoredItem);
+                scheduleMonitoredItemsUpdate();
+            }
+        }
+    }
+
+    @Override
+    protected void doLinkedAttributeWrite(OPCUAAgentLink agentLink, AttributeEvent event, Object processedValue) {
+        NodeId nodeId = attributeNodeIds.get(event.getRef());
+
+        if (nodeId == null) {
+            return;
+        }
+
+        synchronized (pendingWrites) {
+            pendingWrites.put(nodeId, processedValue);
+        }
+
+        writePendingValues();
+    }
+
+    protected void connect() {
+        String endpointUrl = agent.getEndpointUrl().orElse(null);
+        int requestTimeoutMillis = agent.getRequestTimeoutMillis().orElse(DEFAULT_REQUEST_TIMEOUT_MILLIS);
+        OpcUaClient client = null;
+
+        try {
+            String host = EndpointUtil.getHost(endpointUrl);
+            IdentityProvider identityProvider = agent.getUsernamePassword()
+                .map(usernamePassword -> (IdentityProvider) new UsernameProvider(usernamePassword.getUsername(), usernamePassword.getPassword()))
+                .orElseGet(AnonymousProvider::new);
+
+            // Only unsecured endpoints are supported; servers often advertise a hostname that isn't resolvable from
+            // here so the endpoint URL host is used instead
+            client = OpcUaClient.create(
+                endpointUrl,
+                endpoints -> endpoints.stream()
+                    .filter(endpoint -> SecurityPolicy.None.getUri().equals(endpoint.getSecurityPolicyUri()))
+                    .findFirst()
+                    .map(endpoint -> host != null ? EndpointUtil.updateUrl(endpoint, host) : endpoint),
+                configBuilder -> configBuilder
+                    .setApplicationName(LocalizedText.english("OpenRemote"))
+                    .setApplicationUri("urn:openremote:agent:" + agent.getId())
+                    .setIdentityProvider(identityProvider)
+                    .setRequestTimeout(uint(requestTimeoutMillis))
+                    .build());
+
+            client.connect().get(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+
+            OpcUaClient connectedClient = client;
+            client.addSessionActivityListener(new SessionActivityListener() {
+                @Override
+                public void onSessionActive(UaSession session) {
+                    if (OPCUAProtocol.this.client == connectedClient) {
+                        setConnectionStatus(ConnectionStatus.CONNECTED);
+                        scheduleMonitoredItemsUpdate();
+                    }
+                }
+
+                @Override
+                public void onSessionInactive(UaSession session) {
+                    if (OPCUAProtocol.this.client == connectedClient) {
+                        setConnectionStatus(ConnectionStatus.CONNECTING);
+                    }
+                }
+            });
+            client.getSubscriptionManager().addSubscriptionListener(new UaSubscriptionManager.SubscriptionListener() {
+                @Override
+                public void onSubscriptionTransferFailed(UaSubscription subscription, StatusCode statusCode) {
+                    if (OPCUAProtocol.this.client == connectedClient) {
+                        LOG.info("OPC UA subscription transfer failed so re-creating subscription: " + OPCUAProtocol.this);
+                        executorService.execute(OPCUAProtocol.this::createSubscription);
+                    }
+                }
+            });
+
+            this.client = client;
+            createSubscription();
+            setConnectionStatus(ConnectionStatus.CONNECTED);
+        } catch (Exception e) {
+            LOG.log(Level.INFO, "Failed to connect to OPC UA server so will retry in " + RECONNECT_DELAY_MILLIS + "ms: " + this, e);
+            this.client = null;
+            if (client != null) {
+                client.disconnect();
+            }
+            setConnectionStatus(ConnectionStatus.WAITING);
+            synchronized (monitoredItems) {
+                reconnectTask = executorService.schedule(this::connect, RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Creates the subscription and queues all linked attributes for (re)creation of their monitored items
+     */
+    protected void createSubscription() {
+        OpcUaClient client = this.client;
+
+        if (client == null) {
+            return;
+        }
+
+        try {
+            double publishingInterval = agent.getPublishingIntervalMillis().orElse(DEFAULT_PUBLISHING_INTERVAL_MILLIS);
+            subscription = client.getSubscriptionManager().createSubscription(publishingInterval).get();
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to create OPC UA subscription: " + this, e);
+            return;
+        }
+
+        synchronized (monitoredItems) {
+            monitoredItems.clear();
+            pendingDeletes.clear();
+            pendingMonitoredItems.addAll(attributeLinks.keySet());
+            scheduleMonitoredItemsUpdate();
+        }
+    }
+
+    protected void scheduleMonitoredItemsUpdate() {
+        synchronized (monitoredItems) {
+            if ((pendingMonitoredItems.isEmpty() && pendingDeletes.isEmpty()) || (monitoredItemsTask != null && !monitoredItemsTask.isDone())) {
+                return;
+            }
+            monitoredItemsTask = executorService.schedule(this::updateMonitoredItems, BATCH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Creates/deletes all pending monitored items using a single request for each
+     */
+    protected void updateMonitoredItems() {
+        OpcUaClient client = this.client;
+        UaSubscription subscription = this.subscription;
+
+        // Pending items are created once the subscription exists
+        if (client == null || subscription == null) {
+            return;
+        }
+
+        List<AttributeRef> attributeRefs = new ArrayList<>();
+        List<UaMonitoredItem> toDelete;
+
+        synchronized (monitoredItems) {
+            pendingMonitoredItems.stream().filter(attributeLinks::containsKey).forEach(attributeRefs::add);
+            pendingMonitoredItems.clear();
+            toDelete = new ArrayList<>(pendingDeletes);
+            pendingDeletes.clear();
+        }
+
+        if (!toDelete.isEmpty()) {
+            LOG.finest(() -> "Deleting " + toDelete.size() + " OPC UA monitored item(s): " + this);
+            subscription.deleteMonitoredItems(toDelete);
+        }
+
+        if (attributeRefs.isEmpty()) {
+            return;
+        }
+
+        List<MonitoredItemCreateRequest> requests = attributeRefs.stream()
+            .map(attributeRef -> createMonitoredItemRequest(client, subscription, attributeRef))
+            .toList();
+
+        LOG.finest(() -> "Creating " + requests.size() + " OPC UA monitored item(s): " + this);
+
+        subscription.createMonitoredItems(
+            TimestampsToReturn.Both,
+            requests,
+            (monitoredItem, index) -> {
+                AttributeRef attributeRef = attributeRefs.get(index);
+                NodeId nodeId = monitoredItem.getReadValueId().getNodeId();
+                monitoredItem.setValueConsumer(value -> onValue(attributeRef, nodeId, value));
+            }
+        ).whenComplete((items, ex) -> {
+            if (ex != null) {
+                LOG.log(Level.INFO, "Failed to create OPC UA monitored items, will retry when session is active: " + this, ex);
+                synchronized (monitoredItems) {
+                    pendingMonitoredItems.addAll(attributeRefs);
+                }
+                return;
+            }
+
+            synchronized (monitoredItems) {
+                for (int i = 0; i < items.size(); i++) {
+                    UaMonitoredItem monitoredItem = items.get(i);
+                    AttributeRef attributeRef = attributeRefs.get(i);
+
+                    if (!monitoredItem.getStatusCode().isGood()) {
+                        LOG.warning("Failed to create OPC UA monitored item for node '" + attributeNodeIds.get(attributeRef) + "' status=" + monitoredItem.getStatusCode() + ": " + attributeRef);
+                    } else if (attributeLinks.containsKey(attributeRef)) {
+                        monitoredItems.put(attributeRef, monitoredItem);
+                    } else {
+                        // Unlinked whilst being created
+                        pendingDeletes.add(monitoredItem);
+                    }
+                }
+                scheduleMonitoredItemsUpdate();
+            }
+        });
+    }
+
+    protected MonitoredItemCreateRequest createMonitoredItemRequest(OpcUaClient client, UaSubscription subscription, AttributeRef attributeRef) {
+        OPCUAAgentLink agentLink = attributeLinks.get(attributeRef);
+        NodeId nodeId = attributeNodeIds.get(attributeRef);
+        // A negative sampling interval means use the publishing interval
+        double samplingInterval = agentLink.getSamplingIntervalMillis().or(agent::getSamplingIntervalMillis).map(Integer::doubleValue).orElse(-1d);
+        double deadband = agentLink.getDeadband().or(agent::getDeadband).orElse(0d);
+        ExtensionObject filter = null;
+
+        if (deadband > 0) {
+            DeadbandType deadbandType = agentLink.getDeadbandType().orElse(OPCUAAgentLink.DeadbandType.ABSOLUTE) == OPCUAAgentLink.DeadbandType.PERCENT
+                ? DeadbandType.Percent
+                : DeadbandType.Absolute;
+            filter = ExtensionObject.encode(
+                client.getStaticSerializationContext(),
+                new DataChangeFilter(DataChangeTrigger.StatusValue, uint(deadbandType.getValue()), deadband));
+        }
+
+        MonitoringParameters parameters = new MonitoringParameters(subscription.nextClientHandle(), samplingInterval, filter, uint(1), true);
+        return new MonitoredItemCreateRequest(new ReadValueId(nodeId, AttributeId.Value.uid(), null, QualifiedName.NULL_VALUE), MonitoringMode.Reporting, parameters);
+    }
+
+    protected void onValue(AttributeRef attributeRef, NodeId nodeId, DataValue dataValue) {
+        if (dataValue.getStatusCode() != null && dataValue.getStatusCode().isBad()) {
+            LOG.fine(() -> "Ignoring OPC UA value with bad status '" + dataValue.getStatusCode() + "': " + attributeRef);
+            return;
+        }
+
+        Object value = dataValue.getValue().getValue();
+
+        if (value != null) {
+            nodeValueTypes.put(nodeId, value.getClass());
+        }
+
+        DateTime time = dataValue.getSourceTime() != null ? dataValue.getSourceTime() : dataValue.getServerTime();
+        long timestamp = time != null && time.getUtcTime() > 0 ? time.getJavaTime() : timerService.getCurrentTimeMillis();
+        updateLinkedAttribute(attributeRef, toAttributeValue(value), timestamp);
+    }
+
+    /**
+     * Sends all pending writes in a single request unless a write request is already in flight, in which case they are
+     * sent once it completes
+     */
+    protected void writePendingValues() {
+        OpcUaClient client = this.client;
+        List<NodeId> nodeIds = new ArrayList<>();
+        List<DataValue> values = new ArrayList<>();
+
+        synchronized (pendingWrites) {
+            if (writeInProgress || pendingWrites.isEmpty()) {
+                return;
+            }
+            if (client == null) {
+                LOG.fine("OPC UA client is not connected so dropping " + pendingWrites.size() + " write(s): " + this);
+                pendingWrites.clear();
+                return;
+            }
+
+            pendingWrites.forEach((nodeId, value) -> {
+                try {
+                    values.add(new DataValue(toVariant(nodeId, value), null, null));
+                    nodeIds.add(nodeId);
+                } catch (Exception e) {
+                    LOG.log(Level.INFO, "Value cannot be written to OPC UA node '" + nodeId + "': " + this, e);
+                }
+            });
+            pendingWrites.clear();
+
+            if (nodeIds.isEmpty()) {
+                return;
+            }
+            writeInProgress = true;
+        }
+
+        LOG.finest(() -> "Writing " + nodeIds.size() + " OPC UA value(s): " + this);
+
+        client.writeValues(nodeIds, values).whenComplete((statusCodes, ex) -> {
+            if (ex != null) {
+                LOG.log(Level.INFO, "Failed to write OPC UA values: " + this, ex);
+            } else {
+                for (int i = 0; i < statusCodes.size(); i++) {
+                    if (statusCodes.get(i).isBad()) {
+                        LOG.info("Failed to write OPC UA node '" + nodeIds.get(i) + "' status=" + statusCodes.get(i) + ": " + this);
+                    }
+                }
+            }
+
+            synchronized (pendingWrites) {
+                writeInProgress = false;
+            }
+            writePendingValues();
+        });
+    }
+
+    /**
+     * Servers generally reject writes whose type doesn't match the variable's data type so the value is coerced to the
+     * type of the last value received for the node
+     */
+    protected Variant toVariant(NodeId nodeId, Object value) {
+        Class<?> type = nodeValueTypes.get(nodeId);
+
+        if (value == null || type == null || type.isInstance(value)) {
+            return new Variant(value);
+        }
+
+        if (UNumber.class.isAssignableFrom(type)) {
+            long number = ValueUtil.getValueCoerced(value, Long.class).orElseThrow();
+            if (type == UByte.class) {
+                return new Variant(ubyte(number));
+            }
+            if (type == UShort.class) {
+                return new Variant(ushort((int) number));
+            }
+            if (type == UInteger.class) {
+                return new Variant(uint(number));
+            }
+            return new Variant(ulong(number));
+        }
+
+        if (type == LocalizedText.class) {
+            return new Variant(LocalizedText.english(ValueUtil.convert(value, String.class)));
+        }
+
+        Optional<?> coercedValue = ValueUtil.getValueCoerced(value, type);
+        return new Variant(coercedValue.isPresent() ? coercedValue.get() : value);
+    }
+
+    protected static Object toAttributeValue(Object value) {
+        if (value == null || value instanceof String || value instanceof Boolean) {
+            return value;
+        }
+        if (value instanceof UInteger || value instanceof ULong) {
+            return ((UNumber) value).longValue();
+        }
+        if (value instanceof UNumber number) {
+            return number.intValue();
+        }
+        if (value instanceof Number) {
+            return value;
+        }
+        if (value instanceof LocalizedText localizedText) {
+            return localizedText.getText();
+        }
+        if (value instanceof DateTime dateTime) {
+            return dateTime.getJavaTime();
+        }
+        if (value instanceof ByteString byteString) {
+            return byteString.bytesOrEmpty();
+        }
+        if (value instanceof Object[] array) {
+            return Arrays.stream(array).map(OPCUAProtocol::toAttributeValue).toArray();
+        }
+        return value.toString();
+    }
+}
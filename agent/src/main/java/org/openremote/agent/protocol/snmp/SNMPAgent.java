@@ -5,6 +5,7 @@ import org.openremote.model.asset.agent.Agent;
 import org.openremote.model.asset.agent.AgentDescriptor;
 import org.openremote.model.value.AttributeDescriptor;
 import org.openremote.model.value.ValueDescriptor;
+import org.openremote.model.value.ValueType;
 
 import jakarta.persistence.Entity;
 import java.util.Optional;
@@ -37,8 +38,21 @@ public class SNMPAgent extends Agent<SNMPAgent, SNMPProtocol, SNMPAgentLink> {
     public static final ValueDescriptor<SNMPVersion> VALUE_SNMP_VERSION = new ValueDescriptor<>("SNMPVersion", SNMPVersion.class);
 
     public static final AttributeDescriptor<SNMPVersion> SNMP_VERSION = new AttributeDescriptor<>("SNMPVersionValue", VALUE_SNMP_VERSION);
-    public static final AttributeDescriptor<String> SNMP_BIND_HOST = Agent.BIND_HOST.withOptional(false);
-    public static final AttributeDescriptor<Integer> SNMP_BIND_PORT = Agent.BIND_PORT.withOptional(false);
+    public static final AttributeDescriptor<String> SNMP_BIND_HOST = Agent.BIND_HOST.withOptional(true);
+    public static final AttributeDescriptor<Integer> SNMP_BIND_PORT = Agent.BIND_PORT.withOptional(true);
+
+    /*
+     * Polling attributes; the host is the SNMP target to poll, the polling millis is the default for linked
+     * attributes that don't specify their own
+     */
+    public static final AttributeDescriptor<String> SNMP_HOST = Agent.HOST.withOptional(true);
+    public static final AttributeDescriptor<Integer> SNMP_PORT = Agent.PORT.withOptional(true);
+    public static final AttributeDescriptor<Integer> SNMP_POLLING_MILLIS = Agent.POLLING_MILLIS.withOptional(true);
+    public static final AttributeDescriptor<String> SNMP_COMMUNITY = new AttributeDescriptor<>("SNMPCommunity", ValueType.TEXT).withOptional(true);
+    public static final AttributeDescriptor<Integer> SNMP_TIMEOUT_MILLIS = new AttributeDescriptor<>("SNMPTimeoutMillis", ValueType.POSITIVE_INTEGER).withOptional(true);
+    public static final AttributeDescriptor<Integer> SNMP_RETRIES = new AttributeDescriptor<>("SNMPRetries", ValueType.POSITIVE_INTEGER).withOptional(true);
+    public static final AttributeDescriptor<Integer> SNMP_MAX_CONCURRENT_REQUESTS = new AttributeDescriptor<>("SNMPMaxConcurrentRequests", ValueType.POSITIVE_INTEGER).withOptional(true);
+    public static final AttributeDescriptor<Integer> SNMP_MAX_PDU_SIZE = new AttributeDescriptor<>("SNMPMaxPDUSize", ValueType.POSITIVE_INTEGER).withOptional(true);
 
 
     public static final AgentDescriptor<SNMPAgent, SNMPProtocol, SNMPAgentLink> DESCRIPTOR = new AgentDescriptor<>(
@@ -68,4 +82,54 @@ public class SNMPAgent extends Agent<SNMPAgent, SNMPProtocol, SNMPAgentLink> {
         getAttributes().getOrCreate(SNMP_VERSION).setValue(version);
         return this;
     }
+
+    public SNMPAgent setPollingMillis(Integer value) {
+        getAttributes().getOrCreate(SNMP_POLLING_MILLIS).setValue(value);
+        return this;
+    }
+
+    public Optional<String> getCommunity() {
+        return getAttributes().getValue(SNMP_COMMUNITY);
+    }
+
+    public SNMPAgent setCommunity(String value) {
+        getAttributes().getOrCreate(SNMP_COMMUNITY).setValue(value);
+        return this;
+    }
+
+    public Optional<Integer> getTimeoutMillis() {
+        return getAttributes().getValue(SNMP_TIMEOUT_MILLIS);
+    }
+
+    public SNMPAgent setTimeoutMillis(Integer value) {
+        getAttributes().getOrCreate(SNMP_TIMEOUT_MILLIS).setValue(value);
+        return this;
+    }
+
+    public Optional<Integer> getRetries() {
+        return getAttributes().getValue(SNMP_RETRIES);
+    }
+
+    public SNMPAgent setRetries(Integer value) {
+        getAttributes().getOrCreate(SNMP_RETRIES).setValue(value);
+        return this;
+    }
+
+    public Optional<Integer> getMaxConcurrentRequests() {
+        return getAttributes().getValue(SNMP_MAX_CONCURRENT_REQUESTS);
+    }
+
+    public SNMPAgent setMaxConcurrentRequests(Integer value) {
+        getAttributes().getOrCreate(SNMP_MAX_CONCURRENT_REQUESTS).setValue(value);
+        return this;
+    }
+
+    public Optional<Integer> getMaxPDUSize() {
+        return getAttributes().getValue(SNMP_MAX_PDU_SIZE);
+    }
+
+    public SNMPAgent setMaxPDUSize(Integer value) {
+        getAttributes().getOrCreate(SNMP_MAX_PDU_SIZE).setValue(value);
+        return this;
+    }
 }
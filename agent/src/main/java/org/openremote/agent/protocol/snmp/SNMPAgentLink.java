@@ -19,6 +19,7 @@
  */
 package org.openremote.agent.protocol.snmp;
 
+import com.fasterxml.jackson.annotation.JsonPropertyDescription;
 import org.openremote.model.asset.agent.AgentLink;
 
 import jakarta.validation.constraints.NotNull;
@@ -28,6 +29,12 @@ public class SNMPAgentLink extends AgentLink<SNMPAgentLink> {
 
     @NotNull
     protected String oid;
+    @JsonPropertyDescription("Indicates that the OID should be polled from the agent host; this value indicates how frequently the OID is" +
+        " requested, if not set then the agent polling millis is used and if neither are set the OID is only updated by traps")
+    protected Integer pollingMillis;
+    @JsonPropertyDescription("Poll all OIDs beneath this OID (e.g. an SNMP table or table column) and update the linked attribute with an" +
+        " object of OID to value")
+    protected Boolean walk;
 
     // For Hydrators
     protected SNMPAgentLink() {
@@ -47,4 +54,22 @@ public class SNMPAgentLink extends AgentLink<SNMPAgentLink> {
         this.oid = oid;
         return this;
     }
+
+    public Optional<Integer> getPollingMillis() {
+        return Optional.ofNullable(pollingMillis);
+    }
+
+    public SNMPAgentLink setPollingMillis(Integer pollingMillis) {
+        this.pollingMillis = pollingMillis;
+        return this;
+    }
+
+    public Optional<Boolean> getWalk() {
+        return Optional.ofNullable(walk);
+    }
+
+    public SNMPAgentLink setWalk(Boolean walk) {
+        this.walk = walk;
+        return this;
+    }
 }
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.agent.protocol.snmp;
+
+import org.openremote.model.syslog.SyslogCategory;
+import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.Target;
+import org.snmp4j.event.ResponseEvent;
+import org.snmp4j.event.ResponseListener;
+import org.snmp4j.mp.SnmpConstants;
+import org.snmp4j.smi.Address;
+import org.snmp4j.smi.OID;
+import org.snmp4j.smi.Variable;
+import org.snmp4j.smi.VariableBinding;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * Polls a single SNMP {@link Target} by grouping OIDs into as few GET and GETBULK requests as possible; each request is
+ * sized so that the expected response fits within the maximum PDU size and no more than the maximum number of
+ * concurrent requests are outstanding for the target at any one time (further requests are queued).
+ * <p>
+ * SNMP v1 targets don't support GETBULK so walks fall back to GETNEXT requests.
+ */
+public class SNMPPoller {
+
+    protected static class Walk {
+        protected final OID root;
+        protected final Map<OID, Variable> values = new LinkedHashMap<>();
+        protected OID next;
+        protected boolean done;
+
+        protected Walk(OID root) {
+            this.root = root;
+            this.next = root;
+        }
+    }
+
+    public static final int DEFAULT_MAX_PDU_SIZE = 1472;
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 2;
+    public static final int DEFAULT_MAX_REPETITIONS = 10;
+    protected static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, SNMPPoller.class);
+    /**
+     * Allowance for the message header, community and PDU fields of a request/response
+     */
+    protected static final int MESSAGE_OVERHEAD_BYTES = 64;
+    /**
+     * Allowance for the encoded value of each variable binding in a response; enough for any numeric type and short
+     * strings, responses that are still too big are split and re-requested
+     */
+    protected static final int VALUE_SIZE_ESTIMATE_BYTES = 16;
+
+    protected final Snmp snmp;
+    protected final Target<?> target;
+    protected final int maxPduSize;
+    protected final int maxConcurrentRequests;
+    protected final int maxRepetitions;
+    protected final Deque<PendingRequest> pendingRequests = new ArrayDeque<>();
+    protected int inFlightRequests;
+    protected boolean closed;
+
+    protected record PendingRequest(PDU pdu, Consumer<PDU> responseConsumer) {
+    }
+
+    public SNMPPoller(Snmp snmp, Target<?> target, int maxPduSize, int maxConcurrentRequests, int maxRepetitions) {
+        this.snmp = snmp;
+        this.target = target;
+        this.maxPduSize = maxPduSize;
+        this.maxConcurrentRequests = Math.max(1, maxConcurrentRequests);
+        this.maxRepetitions = Math.max(1, maxRepetitions);
+    }
+
+    /**
+     * Requests the value of each of the supplied OIDs using as few GET requests as possible; the result consumer is
+     * called for each OID that the target returns a value for and the completion callback is called once all requests
+     * have completed (successfully or not).
+     */
+    public void get(Collection<OID> oids, BiConsumer<OID, Variable> resultConsumer, Runnable onComplete) {
+        List<List<OID>> batches = createBatches(oids, 1);
+        Runnable batchComplete = countDown(batches.size(), onComplete);
+        batches.forEach(batch -> sendGet(batch, resultConsumer, batchComplete));
+    }
+
+    /**
+     * Retrieves all OIDs beneath each of the supplied root OIDs; walks of different roots are combined into the same
+     * GETBULK requests. The result consumer is called once for each root with the values found beneath it (in OID
+     * order) and the completion callback is called once all walks have completed (successfully or not).
+     */
+    public void walk(Collection<OID> roots, BiConsumer<OID, Map<OID, Variable>> resultConsumer, Runnable onComplete) {
+        int repetitions = isVersion1() ? 1 : maxRepetitions;
+        List<List<OID>> batches = createBatches(roots, repetitions);
+        Runnable batchComplete = countDown(batches.size(), onComplete);
+        batches.forEach(batch ->
+            sendWalk(batch.stream().map(Walk::new).toList(), getRepetitions(batch, repetitions), resultConsumer, batchComplete));
+    }
+
+    public int getQueuedRequests() {
+        synchronized (pendingRequests) {
+            return pendingRequests.size();
+        }
+    }
+
+    /**
+     * Stops sending requests; queued requests and any requests made after closing are completed with a null response so
+     * that completion callbacks are still called.
+     */
+    public void close() {
+        List<PendingRequest> cancelledRequests;
+
+        synchronized (pendingRequests) {
+            closed = true;
+            cancelledRequests = new ArrayList<>(pendingRequests);
+            pendingRequests.clear();
+        }
+
+        cancelledRequests.forEach(request -> complete(request.responseConsumer(), null));
+    }
+
+    protected boolean isVersion1() {
+        return target.getVersion() == SnmpConstants.version1;
+    }
+
+    protected int getAvailablePduBytes() {
+        return Math.max(maxPduSize - MESSAGE_OVERHEAD_BYTES, VALUE_SIZE_ESTIMATE_BYTES);
+    }
+
+    protected static int getResponseBytes(OID oid) {
+        return new VariableBinding(oid).getBERLength() + VALUE_SIZE_ESTIMATE_BYTES;
+    }
+
+    /**
+     * Splits the OIDs into batches where the estimated response size of each batch (with the specified number of
+     * variable bindings returned per OID) fits within the maximum PDU size; every batch contains at least one OID.
+     */
+    protected List<List<OID>> createBatches(Collection<OID> oids, int bindingsPerOid) {
+        int availableBytes = getAvailablePduBytes();
+        List<List<OID>> batches = new ArrayList<>();
+        List<OID> batch = new ArrayList<>();
+        int batchBytes = 0;
+
+        for (OID oid : oids) {
+            int oidBytes = getResponseBytes(oid) * bindingsPerOid;
+            if (!batch.isEmpty() && batchBytes + oidBytes > availableBytes) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(oid);
+            batchBytes += oidBytes;
+        }
+
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+
+        return batches;
+    }
+
+    /**
+     * Reduces the number of repetitions for a walk batch whose responses would otherwise exceed the maximum PDU size
+     * (only possible for a batch with a single large OID).
+     */
+    protected int getRepetitions(List<OID> batch, int repetitions) {
+        int bytesPerRepetition = batch.stream().mapToInt(SNMPPoller::getResponseBytes).sum();
+        return Math.max(1, Math.min(repetitions, getAvailablePduBytes() / bytesPerRepetition));
+    }
+
+    protected void sendGet(List<OID> batch, BiConsumer<OID, Variable> resultConsumer, Runnable onComplete) {
+        PDU pdu = new PDU();
+        pdu.setType(PDU.GET);
+        batch.forEach(oid -> pdu.add(new VariableBinding(oid)));
+
+        send(pdu, response -> {
+            if (response != null && batch.size() > 1) {
+                if (response.getErrorStatus() == PDU.tooBig) {
+                    // Split the batch and try again
+                    int half = batch.size() / 2;
+                    Runnable halfComplete = countDown(2, onComplete);
+                    sendGet(new ArrayList<>(batch.subList(0, half)), resultConsumer, halfComplete);
+                    sendGet(new ArrayList<>(batch.subList(half, batch.size())), resultConsumer, halfComplete);
+                    return;
+                }
+                if (response.getErrorStatus() == PDU.noSuchName && response.getErrorIndex() > 0 && response.getErrorIndex() <= batch.size()) {
+                    // SNMP v1 fails the whole request when one OID doesn't exist so retry without it
+                    List<OID> retryBatch = new ArrayList<>(batch);
+                    OID missingOid = retryBatch.remove(response.getErrorIndex() - 1);
+                    LOG.fine("OID not found on SNMP target '" + target.getAddress() + "': " + missingOid);
+                    sendGet(retryBatch, resultConsumer, onComplete);
+                    return;
+                }
+            }
+
+            if (response != null && response.getErrorStatus() == PDU.noError) {
+                for (int i = 0; i < response.size(); i++) {
+                    VariableBinding variableBinding = response.get(i);
+                    if (!variableBinding.isException()) {
+                        resultConsumer.accept(variableBinding.getOid(), variableBinding.getVariable());
+                    }
+                }
+            } else if (response != null) {
+                LOG.fine("SNMP GET request to '" + target.getAddress() + "' failed: " + response.getErrorStatusText());
+            }
+
+            onComplete.run();
+        });
+    }
+
+    protected void sendWalk(List<Walk> walks, int repetitions, BiConsumer<OID, Map<OID, Variable>> resultConsumer, Runnable onComplete) {
+        List<Walk> activeWalks = walks.stream().filter(walk -> !walk.done).toList();
+
+        if (activeWalks.isEmpty()) {
+            walks.forEach(walk -> resultConsumer.accept(walk.root, walk.values));
+            onComplete.run();
+            return;
+        }
+
+        PDU pdu = new PDU();
+        if (isVersion1()) {
+            pdu.setType(PDU.GETNEXT);
+        } else {
+            pdu.setType(PDU.GETBULK);
+            pdu.setNonRepeaters(0);
+            pdu.setMaxRepetitions(repetitions);
+        }
+        activeWalks.forEach(walk -> pdu.add(new VariableBinding(walk.next)));
+
+        send(pdu, response -> {
+            if (response == null) {
+                onComplete.run();
+                return;
+            }
+
+            if (response.getErrorStatus() == PDU.noSuchName && response.getErrorIndex() > 0 && response.getErrorIndex() <= activeWalks.size()) {
+                // SNMP v1 signals the end of the MIB view with an error
+                activeWalks.get(response.getErrorIndex() - 1).done = true;
+            } else if (response.getErrorStatus() != PDU.noError) {
+                LOG.fine("SNMP walk request to '" + target.getAddress() + "' failed: " + response.getErrorStatusText());
+                onComplete.run();
+                return;
+            } else if (response.size() == 0) {
+                activeWalks.forEach(walk -> walk.done = true);
+            } else {
+                // Response bindings are ordered by repetition and then by requested OID
+                for (int i = 0; i < response.size(); i++) {
+                    Walk walk = activeWalks.get(i % activeWalks.size());
+                    VariableBinding variableBinding = response.get(i);
+
+                    if (walk.done) {
+                        continue;
+                    }
+
+                    if (variableBinding.isException()
+                        || !variableBinding.getOid().startsWith(walk.root)
+                        || variableBinding.getOid().compareTo(walk.next) <= 0) {
+                        walk.done = true;
+                        continue;
+                    }
+
+                    walk.values.put(variableBinding.getOid(), variableBinding.getVariable());
+                    walk.next = variableBinding.getOid();
+                }
+            }
+
+            sendWalk(walks, repetitions, resultConsumer, onComplete);
+        });
+    }
+
+    /**
+     * Queues the request and sends it once fewer than the maximum number of concurrent requests are in flight; the
+     * response consumer is called with a null response on timeout, transport failure or if the poller is closed.
+     */
+    protected void send(PDU pdu, Consumer<PDU> responseConsumer) {
+        boolean queued;
+
+        synchronized (pendingRequests) {
+            queued = !closed && pendingRequests.add(new PendingRequest(pdu, responseConsumer));
+        }
+
+        if (!queued) {
+            complete(responseConsumer, null);
+            return;
+        }
+
+        sendPendingRequests();
+    }
+
+    protected void sendPendingRequests() {
+        while (true) {
+            PendingRequest request;
+
+            synchronized (pendingRequests) {
+                if (closed || inFlightRequests >= maxConcurrentRequests || (request = pendingRequests.poll()) == null) {
+                    return;
+                }
+                inFlightRequests++;
+            }
+
+            doSend(request.pdu(), request.responseConsumer());
+        }
+    }
+
+    protected void onRequestComplete() {
+        synchronized (pendingRequests) {
+            inFlightRequests--;
+        }
+        sendPendingRequests();
+    }
+
+    protected void doSend(PDU pdu, Consumer<PDU> responseConsumer) {
+        try {
+            snmp.send(pdu, target, null, new ResponseListener() {
+                @Override
+                public <A extends Address> void onResponse(ResponseEvent<A> event) {
+                    // Async requests must be cancelled once a response is received to stop retries
+                    ((Snmp) event.getSource()).cancel(event.getRequest(), this);
+
+                    try {
+                        if (event.getResponse() == null) {
+                            LOG.fine("SNMP request to '" + target.getAddress() + "' timed out" + (event.getError() != null ? ": " + event.getError().getMessage() : ""));
+                        }
+                        complete(responseConsumer, event.getResponse());
+                    } finally {
+                        onRequestComplete();
+                    }
+                }
+            });
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to send SNMP request to '" + target.getAddress() + "'", e);
+            try {
+                complete(responseConsumer, null);
+            } finally {
+                onRequestComplete();
+            }
+        }
+    }
+
+    protected void complete(Consumer<PDU> responseConsumer, PDU response) {
+        try {
+            responseConsumer.accept(response);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Exception thrown whilst processing SNMP response from '" + target.getAddress() + "'", e);
+        }
+    }
+
+    protected static Runnable countDown(int count, Runnable onComplete) {
+        if (count <= 0) {
+            onComplete.run();
+            return onComplete;
+        }
+        AtomicInteger remaining = new AtomicInteger(count);
+        return () -> {
+            if (remaining.decrementAndGet() == 0) {
+                onComplete.run();
+            }
+        };
+    }
+}
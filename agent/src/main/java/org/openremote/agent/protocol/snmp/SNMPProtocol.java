@@ -9,24 +9,60 @@ import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.syslog.SyslogCategory;
+import org.openremote.model.util.TextUtil;
+import org.snmp4j.CommunityTarget;
 import org.snmp4j.PDU;
+import org.snmp4j.Snmp;
+import org.snmp4j.smi.*;
+import org.snmp4j.transport.DefaultUdpTransportMapping;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
 
 /**
- * This is a SNMP client protocol for receiving SNMP traps.
+ * This is a SNMP client protocol for receiving SNMP traps and polling SNMP v1/v2c agents.
  * <p>
- * To use this protocol create a {@link SNMPAgent}.
+ * To use this protocol create a {@link SNMPAgent}; traps are received when a bind host is set and OIDs are polled from
+ * the agent host when a host is set and the linked attribute (or agent) has a polling interval. All OIDs polled at the
+ * same interval are requested together using an {@link SNMPPoller}, which packs them into as few GET/GETBULK requests
+ * as possible.
  */
 public class SNMPProtocol extends AbstractProtocol<SNMPAgent, SNMPAgentLink> {
 
+    /**
+     * The OIDs polled at a given interval
+     */
+    protected static class PollingGroup {
+        protected final Map<OID, Set<AttributeRef>> oidAttributes = new LinkedHashMap<>();
+        protected final Map<OID, Set<AttributeRef>> walkOidAttributes = new LinkedHashMap<>();
+        protected final AtomicBoolean inProgress = new AtomicBoolean();
+        protected ScheduledFuture<?> pollingTask;
+
+        protected boolean isEmpty() {
+            return oidAttributes.isEmpty() && walkOidAttributes.isEmpty();
+        }
+    }
+
     public static final String PROTOCOL_DISPLAY_NAME = "SNMP Client";
+    public static final int DEFAULT_PORT = 161;
+    public static final String DEFAULT_COMMUNITY = "public";
+    public static final int DEFAULT_TIMEOUT_MILLIS = 3000;
+    public static final int DEFAULT_RETRIES = 1;
+    public static int MIN_POLLING_MILLIS = 1000;
     protected static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, SNMPProtocol.class);
+    protected static Snmp sharedSnmp;
+    protected static int sharedSnmpUsers;
     protected final Map<String, AttributeRef> oidMap = new HashMap<>();
+    protected final Map<Integer, PollingGroup> pollingGroups = new HashMap<>();
+    protected SNMPPoller poller;
 
     public SNMPProtocol(SNMPAgent agent) {
         super(agent);
@@ -39,6 +75,12 @@ public class SNMPProtocol extends AbstractProtocol<SNMPAgent, SNMPAgentLink> {
 
     @Override
     public String getProtocolInstanceUri() {
+        if (agent.getBindHost().isEmpty() && agent.getHost().isPresent()) {
+            return String.format("snmp:%s:%d?protocol=udp&type=POLL&snmpVersion=%s",
+                agent.getHost().orElse(""),
+                agent.getPort().orElse(DEFAULT_PORT),
+                agent.getSNMPVersion().orElse(SNMPAgent.SNMPVersion.V2c).getValue());
+        }
         return String.format("snmp:%s:%d?protocol=udp&type=TRAP&snmpVersion=%s",
                 agent.getBindHost().orElse(""),
                 agent.getBindPort().orElse(162),
@@ -48,12 +90,27 @@ public class SNMPProtocol extends AbstractProtocol<SNMPAgent, SNMPAgentLink> {
     @Override
     protected void doStart(Container container) throws Exception {
 
-        String snmpBindHost = agent.getBindHost().orElseThrow(() -> {
-            String msg = "No SNMP bind host provided for protocol: " + this;
+        String snmpBindHost = agent.getBindHost().orElse(null);
+        String snmpHost = agent.getHost().orElse(null);
+
+        if (TextUtil.isNullOrEmpty(snmpBindHost) && TextUtil.isNullOrEmpty(snmpHost)) {
+            String msg = "No SNMP bind host or host provided for protocol: " + this;
             LOG.info(msg);
-            return new IllegalArgumentException(msg);
-        });
+            throw new IllegalArgumentException(msg);
+        }
+
+        if (!TextUtil.isNullOrEmpty(snmpHost)) {
+            startPolling(snmpHost);
+        }
+
+        if (!TextUtil.isNullOrEmpty(snmpBindHost)) {
+            startTrapListener(snmpBindHost);
+        }
 
+        setConnectionStatus(ConnectionStatus.CONNECTED);
+    }
+
+    protected void startTrapListener(String snmpBindHost) throws Exception {
         Integer snmpBindPort = agent.getBindPort().orElse(162);
         SNMPAgent.SNMPVersion snmpVersion = agent.getSNMPVersion().orElse(SNMPAgent.SNMPVersion.V2c);
         String snmpUri = String.format("snmp:%s:%d?protocol=udp&type=TRAP&snmpVersion=%d", snmpBindHost, snmpBindPort, snmpVersion.getVersion());
@@ -87,15 +144,76 @@ public class SNMPProtocol extends AbstractProtocol<SNMPAgent, SNMPAgentLink> {
                         });
             }
         });
+    }
 
-        setConnectionStatus(ConnectionStatus.CONNECTED);
+    protected void startPolling(String snmpHost) throws IOException {
+        SNMPAgent.SNMPVersion snmpVersion = agent.getSNMPVersion().orElse(SNMPAgent.SNMPVersion.V2c);
+
+        if (snmpVersion == SNMPAgent.SNMPVersion.V3) {
+            LOG.warning("SNMP polling is only supported for SNMP V1 and V2c so linked attributes will not be polled: " + this);
+            return;
+        }
+
+        CommunityTarget<UdpAddress> target = new CommunityTarget<>(
+            new UdpAddress(InetAddress.getByName(snmpHost), agent.getPort().orElse(DEFAULT_PORT)),
+            new OctetString(agent.getCommunity().orElse(DEFAULT_COMMUNITY)));
+        target.setVersion(snmpVersion.getVersion());
+        target.setTimeout(agent.getTimeoutMillis().orElse(DEFAULT_TIMEOUT_MILLIS));
+        target.setRetries(agent.getRetries().orElse(DEFAULT_RETRIES));
+
+        poller = new SNMPPoller(
+            acquireSnmp(),
+            target,
+            agent.getMaxPDUSize().orElse(SNMPPoller.DEFAULT_MAX_PDU_SIZE),
+            agent.getMaxConcurrentRequests().orElse(SNMPPoller.DEFAULT_MAX_CONCURRENT_REQUESTS),
+            SNMPPoller.DEFAULT_MAX_REPETITIONS);
     }
 
     @Override
     protected void doStop(Container container) throws Exception {
+        synchronized (pollingGroups) {
+            pollingGroups.values().forEach(pollingGroup -> {
+                if (pollingGroup.pollingTask != null) {
+                    pollingGroup.pollingTask.cancel(false);
+                }
+            });
+            pollingGroups.clear();
+        }
+
+        if (poller != null) {
+            poller.close();
+            poller = null;
+            releaseSnmp();
+        }
+
         setConnectionStatus(ConnectionStatus.STOPPED);
     }
 
+    /**
+     * All SNMP protocol instances share a single SNMP session (and UDP socket) for polling
+     */
+    protected static synchronized Snmp acquireSnmp() throws IOException {
+        if (sharedSnmp == null) {
+            Snmp snmp = new Snmp(new DefaultUdpTransportMapping());
+            snmp.listen();
+            sharedSnmp = snmp;
+        }
+        sharedSnmpUsers++;
+        return sharedSnmp;
+    }
+
+    protected static synchronized void releaseSnmp() {
+        if (--sharedSnmpUsers <= 0 && sharedSnmp != null) {
+            try {
+                sharedSnmp.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Failed to close SNMP session", e);
+            }
+            sharedSnmp = null;
+            sharedSnmpUsers = 0;
+        }
+    }
+
     @Override
     protected void doLinkAttribute(String assetId, Attribute<?> attribute, SNMPAgentLink agentLink) throws RuntimeException {
         String oid = agentLink.getOID().orElseThrow(() -> {
@@ -110,12 +228,153 @@ public class SNMPProtocol extends AbstractProtocol<SNMPAgent, SNMPAgentLink> {
             throw new IllegalArgumentException(msg);
         }
 
-        oidMap.put(oid, new AttributeRef(assetId, attribute.getName()));
+        AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
+        oidMap.put(oid, attributeRef);
+
+        Integer pollingMillis = getPollingMillis(agentLink);
+
+        if (pollingMillis != null && !oid.equals("*")) {
+            if (poller == null) {
+                LOG.info("Linked attribute has a polling interval but polling is not available for protocol (host must be set and version must be V1 or V2c): " + this);
+                return;
+            }
+
+            OID pollingOid = new OID(oid);
+            boolean walk = agentLink.getWalk().orElse(false);
+
+            synchronized (pollingGroups) {
+                PollingGroup pollingGroup = pollingGroups.computeIfAbsent(pollingMillis, millis -> new PollingGroup());
+                (walk ? pollingGroup.walkOidAttributes : pollingGroup.oidAttributes)
+                    .computeIfAbsent(pollingOid, o -> new LinkedHashSet<>())
+                    .add(attributeRef);
+
+                if (pollingGroup.pollingTask == null) {
+                    LOG.fine("Scheduling SNMP polling every " + pollingMillis + "ms: " + this);
+                    pollingGroup.pollingTask = executorService.scheduleWithFixedDelay(() -> poll(pollingGroup), 0, pollingMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
     }
 
     @Override
     protected void doUnlinkAttribute(String assetId, Attribute<?> attribute, SNMPAgentLink agentLink) {
         agentLink.getOID().ifPresent(oidMap::remove);
+
+        Integer pollingMillis = getPollingMillis(agentLink);
+        String oid = agentLink.getOID().orElse(null);
+
+        if (pollingMillis == null || oid == null || oid.equals("*")) {
+            return;
+        }
+
+        AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
+        OID pollingOid = new OID(oid);
+
+        synchronized (pollingGroups) {
+            PollingGroup pollingGroup = pollingGroups.get(pollingMillis);
+            if (pollingGroup == null) {
+                return;
+            }
+
+            removePollingAttribute(pollingGroup.oidAttributes, pollingOid, attributeRef);
+            removePollingAttribute(pollingGroup.walkOidAttributes, pollingOid, attributeRef);
+
+            if (pollingGroup.isEmpty()) {
+                pollingGroups.remove(pollingMillis);
+                if (pollingGroup.pollingTask != null) {
+                    pollingGroup.pollingTask.cancel(false);
+                }
+            }
+        }
+    }
+
+    protected static void removePollingAttribute(Map<OID, Set<AttributeRef>> oidAttributes, OID oid, AttributeRef attributeRef) {
+        Set<AttributeRef> attributeRefs = oidAttributes.get(oid);
+        if (attributeRefs != null && attributeRefs.remove(attributeRef) && attributeRefs.isEmpty()) {
+            oidAttributes.remove(oid);
+        }
+    }
+
+    protected Integer getPollingMillis(SNMPAgentLink agentLink) {
+        return agentLink.getPollingMillis()
+            .or(() -> agent.getPollingMillis())
+            .map(millis -> Math.max(millis, MIN_POLLING_MILLIS))
+            .orElse(null);
+    }
+
+    protected void poll(PollingGroup pollingGroup) {
+        SNMPPoller poller = this.poller;
+
+        if (poller == null) {
+            return;
+        }
+
+        // Don't start a new poll until the previous one has completed (i.e. slow or unresponsive target)
+        if (!pollingGroup.inProgress.compareAndSet(false, true)) {
+            LOG.fine("Skipping SNMP poll as previous poll is still in progress: " + this);
+            return;
+        }
+
+        Map<OID, Set<AttributeRef>> oidAttributes;
+        Map<OID, Set<AttributeRef>> walkOidAttributes;
+
+        synchronized (pollingGroups) {
+            oidAttributes = copyOidAttributes(pollingGroup.oidAttributes);
+            walkOidAttributes = copyOidAttributes(pollingGroup.walkOidAttributes);
+        }
+
+        Runnable onComplete = SNMPPoller.countDown(2, () -> pollingGroup.inProgress.set(false));
+
+        try {
+            poller.get(
+                oidAttributes.keySet(),
+                (oid, variable) -> {
+                    Set<AttributeRef> attributeRefs = oidAttributes.get(oid);
+                    if (attributeRefs != null) {
+                        Object value = getVariableValue(variable);
+                        attributeRefs.forEach(attributeRef -> updateLinkedAttribute(attributeRef, value));
+                    }
+                },
+                onComplete);
+
+            poller.walk(
+                walkOidAttributes.keySet(),
+                (root, values) -> {
+                    Set<AttributeRef> attributeRefs = walkOidAttributes.get(root);
+                    if (attributeRefs != null) {
+                        Map<String, Object> value = new LinkedHashMap<>();
+                        values.forEach((oid, variable) -> value.put(oid.format(), getVariableValue(variable)));
+                        attributeRefs.forEach(attributeRef -> updateLinkedAttribute(attributeRef, value));
+                    }
+                },
+                onComplete);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Exception thrown whilst polling SNMP target: " + this, e);
+            pollingGroup.inProgress.set(false);
+        }
+    }
+
+    protected static Map<OID, Set<AttributeRef>> copyOidAttributes(Map<OID, Set<AttributeRef>> oidAttributes) {
+        Map<OID, Set<AttributeRef>> copy = new LinkedHashMap<>(oidAttributes.size());
+        oidAttributes.forEach((oid, attributeRefs) -> copy.put(oid, new LinkedHashSet<>(attributeRefs)));
+        return copy;
+    }
+
+    /**
+     * Numeric SNMP types are converted to numbers so they can be used directly in number attributes; all other types
+     * use their string representation (same as traps).
+     */
+    protected static Object getVariableValue(Variable variable) {
+        if (variable instanceof Integer32 integer32) {
+            return integer32.getValue();
+        }
+        if (variable instanceof UnsignedInteger32 unsignedInteger32) {
+            return unsignedInteger32.getValue();
+        }
+        if (variable instanceof Counter64 counter64 && counter64.getValue() >= 0) {
+            return counter64.getValue();
+        }
+        return variable.toString();
     }
 
     @Override
@@ -19,6 +19,7 @@
  */
 package org.openremote.agent.protocol.tcp;
 
+import io.micrometer.core.instrument.Tags;
 import org.openremote.agent.protocol.AbstractProtocol;
 import org.openremote.model.Container;
 import org.openremote.model.asset.agent.AgentLink;
@@ -55,6 +56,7 @@ public abstract class AbstractTCPServerProtocol<R, S extends AbstractTCPServer<R
         tcpServer = createTcpServer(port, bindAddress, agent);
         Consumer<ConnectionStatus> connectionStatusConsumer = this::onServerConnectionStatusChanged;
         tcpServer.addConnectionStatusConsumer(connectionStatusConsumer);
+        tcpServer.getChannelMetrics().registerMetrics(container.getMeterRegistry(), Tags.of("agentId", getAgent().getId(), "protocol", getProtocolName()));
         startTcpServer();
     }
 
@@ -70,6 +72,7 @@ public abstract class AbstractTCPServerProtocol<R, S extends AbstractTCPServer<R
         }
 
         LOG.info("Removing TCP server instance");
+        tcpServer.getChannelMetrics().removeMetrics(container.getMeterRegistry());
         tcpServer.removeAllConnectionStatusConsumers();
         stopTcpServer();
     }
@@ -22,14 +22,13 @@ package org.openremote.agent.protocol.udp;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.DatagramChannel;
 import io.netty.channel.socket.DatagramPacket;
-import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.handler.codec.DatagramPacketEncoder;
 import io.netty.handler.codec.MessageToMessageDecoder;
 import io.netty.handler.codec.MessageToMessageEncoder;
 import org.openremote.agent.protocol.io.AbstractNettyIOServer;
+import org.openremote.agent.protocol.io.NettyEventLoopGroups;
 
 import java.net.InetSocketAddress;
 import java.util.List;
@@ -64,8 +63,8 @@ public abstract class AbstractUDPServer<T> extends AbstractNettyIOServer<T, Data
     @Override
     protected Bootstrap createAndConfigureBootstrap() {
         Bootstrap b = new Bootstrap();
-        b.group(new NioEventLoopGroup())
-                .channel(NioDatagramChannel.class)
+        b.group(workerGroup)
+                .channel(NettyEventLoopGroups.getDatagramChannelClass())
                 .localAddress(localAddress)
                 .option(ChannelOption.SO_BROADCAST, true);
         return b;
@@ -21,12 +21,11 @@ package org.openremote.agent.protocol.udp;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.DatagramPacket;
-import io.netty.channel.socket.nio.NioDatagramChannel;
 import io.netty.handler.codec.MessageToMessageEncoder;
 import org.openremote.agent.protocol.io.AbstractNettyIOClient;
 import org.openremote.agent.protocol.io.IOClient;
+import org.openremote.agent.protocol.io.NettyEventLoopGroups;
 import org.openremote.model.syslog.SyslogCategory;
 
 import java.net.InetSocketAddress;
@@ -95,7 +94,7 @@ public class UDPIOClient<T> extends AbstractNettyIOClient<T, InetSocketAddress>
 
     @Override
     protected Class<? extends Channel> getChannelClass() {
-        return NioDatagramChannel.class;
+        return NettyEventLoopGroups.getDatagramChannelClass();
     }
 
     @Override
@@ -105,7 +104,7 @@ public class UDPIOClient<T> extends AbstractNettyIOClient<T, InetSocketAddress>
 
     @Override
     protected EventLoopGroup getWorkerGroup() {
-        return new NioEventLoopGroup(1);
+        return NettyEventLoopGroups.getEventLoopGroup();
     }
 
     @Override
@@ -24,14 +24,10 @@ import org.openremote.model.asset.agent.DefaultAgentLink;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.AttributeRef;
-import org.openremote.model.protocol.ProtocolUtil;
+import org.openremote.model.protocol.GenericAttributeMessageDispatcher;
 import org.openremote.model.syslog.SyslogCategory;
-import org.openremote.model.util.Pair;
 import org.openremote.model.util.ValueUtil;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 
@@ -48,7 +44,7 @@ public class UDPProtocol extends AbstractUDPProtocol<UDPProtocol, UDPAgent, Defa
 
     private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, UDPProtocol.class);
     public static final String PROTOCOL_DISPLAY_NAME = "UDP Client";
-    protected final List<Pair<AttributeRef, Consumer<String>>> protocolMessageConsumers = new ArrayList<>();
+    protected final GenericAttributeMessageDispatcher messageDispatcher = new GenericAttributeMessageDispatcher(() -> timerService.getCurrentTimeMillis(), this::updateLinkedAttribute);
 
     public UDPProtocol(UDPAgent agent) {
         super(agent);
@@ -63,20 +59,13 @@ public class UDPProtocol extends AbstractUDPProtocol<UDPProtocol, UDPAgent, Defa
     protected void doLinkAttribute(String assetId, Attribute<?> attribute, DefaultAgentLink agentLink) {
 
         AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
-        Consumer<String> messageConsumer = ProtocolUtil.createGenericAttributeMessageConsumer(assetId, attribute, agentLink, timerService::getCurrentTimeMillis, this::updateLinkedAttribute);
-
-        if (messageConsumer != null) {
-            protocolMessageConsumers.add(new Pair<>(
-                attributeRef,
-                messageConsumer
-            ));
-        }
+        messageDispatcher.add(attributeRef, agentLink);
     }
 
     @Override
     protected void doUnlinkAttribute(String assetId, Attribute<?> attribute, DefaultAgentLink agentLink) {
         AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
-        protocolMessageConsumers.removeIf(attributeRefConsumerPair -> attributeRefConsumerPair.key.equals(attributeRef));
+        messageDispatcher.remove(attributeRef);
     }
 
     @Override
@@ -86,8 +75,7 @@ public class UDPProtocol extends AbstractUDPProtocol<UDPProtocol, UDPAgent, Defa
 
     @Override
     protected void onMessageReceived(String message) {
-        protocolMessageConsumers.forEach(attributeRefConsumerPair ->
-            attributeRefConsumerPair.value.accept(message));
+        messageDispatcher.accept(message);
     }
 
     @Override
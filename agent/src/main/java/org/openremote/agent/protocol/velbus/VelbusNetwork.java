@@ -19,6 +19,7 @@
  */
 package org.openremote.agent.protocol.velbus;
 
+import org.openremote.agent.protocol.io.BusPacer;
 import org.openremote.agent.protocol.io.IOClient;
 import org.openremote.agent.protocol.velbus.device.VelbusDevice;
 import org.openremote.model.asset.agent.ConnectionStatus;
@@ -32,14 +33,14 @@ import static org.openremote.agent.protocol.velbus.AbstractVelbusProtocol.LOG;
 public class VelbusNetwork {
 
     protected static int DELAY_BETWEEN_PACKET_WRITES_MILLISECONDS = 100; // Need to throttle bus writes
+    protected static int MAX_DELAY_BETWEEN_PACKET_WRITES_MILLISECONDS = 1000;
     protected final Integer timeInjectionIntervalSeconds;
     protected IOClient<VelbusPacket> client;
-    protected final Queue<VelbusPacket> messageQueue = new ArrayDeque<>();
-    protected List<ScheduledFuture<?>> scheduledTasks = new ArrayList<>();
+    protected final BusPacer<VelbusPacket> messageQueue;
+    protected final Set<ScheduledFuture<?>> scheduledTasks = ConcurrentHashMap.newKeySet();
     protected ScheduledFuture<?> timeInjector;
     protected VelbusDevice[] devices = new VelbusDevice[254];
     protected VelbusDevice[] subAddressDevices = new VelbusDevice[254];
-    protected ScheduledFuture<?> queueProcessingTask;
     protected ScheduledExecutorService executorService;
     protected final List<Consumer<ConnectionStatus>> connectionStatusConsumers = new ArrayList<>();
 
@@ -47,6 +48,12 @@ public class VelbusNetwork {
         this.client = client;
         this.executorService = executorService;
         this.timeInjectionIntervalSeconds = timeInjectionIntervalSeconds;
+        this.messageQueue = new BusPacer<>(
+            executorService,
+            this::doSendPacket,
+            VelbusNetwork::getSupersedeKey,
+            DELAY_BETWEEN_PACKET_WRITES_MILLISECONDS,
+            MAX_DELAY_BETWEEN_PACKET_WRITES_MILLISECONDS);
         client.addConnectionStatusConsumer(this::onConnectionStatusChanged);
         client.addMessageConsumer(this::onPacketReceived);
         onConnectionStatusChanged(getConnectionStatus());
@@ -72,19 +79,21 @@ public class VelbusNetwork {
     }
 
     public void sendPackets(VelbusPacket... packets) {
+        sendPackets(BusPacer.Lane.STATUS, packets);
+    }
+
+    /**
+     * Queue packets for sending; packets in the {@link BusPacer.Lane#COMMAND} lane are sent before any queued
+     * {@link BusPacer.Lane#STATUS} packets.
+     */
+    public void sendPackets(BusPacer.Lane lane, VelbusPacket... packets) {
         synchronized (this) {
             if (getConnectionStatus() != ConnectionStatus.CONNECTED) {
                 return;
             }
         }
 
-        synchronized (messageQueue) {
-            messageQueue.addAll(Arrays.asList(packets));
-
-            if (queueProcessingTask == null) {
-                startSendingPackets();
-            }
-        }
+        messageQueue.send(lane, Arrays.asList(packets));
     }
 
     public void connect() {
@@ -134,9 +143,7 @@ public class VelbusNetwork {
 
         if (status == ConnectionStatus.CONNECTED) {
             // Don't process stale messages
-            synchronized (messageQueue) {
-                messageQueue.clear();
-            }
+            messageQueue.clear();
 
             // Initialise the devices
             for (VelbusDevice device : devices) {
@@ -154,13 +161,7 @@ public class VelbusNetwork {
             // Clear out sub device registrations
             Arrays.fill(subAddressDevices, null);
 
-            synchronized (messageQueue) {
-                messageQueue.clear();
-                if (queueProcessingTask != null) {
-                    queueProcessingTask.cancel(false);
-                    queueProcessingTask = null;
-                }
-            }
+            messageQueue.clear();
         }
     }
 
@@ -168,6 +169,11 @@ public class VelbusNetwork {
         // Forward the packet to the device if it exists
         int address = packet.getAddress();
 
+        if (address == 0) {
+            onInterfacePacketReceived(packet);
+            return;
+        }
+
         if (address > 254 || address < 1) {
             return;
         }
@@ -265,29 +271,41 @@ public class VelbusNetwork {
         return devices[address-1];
     }
 
-    protected void startSendingPackets() {
-        queueProcessingTask = getExecutorService().scheduleWithFixedDelay(
-            this::doSendPacket,
-            0,
-            DELAY_BETWEEN_PACKET_WRITES_MILLISECONDS,
-            TimeUnit.MILLISECONDS
-        );
-    }
+    /**
+     * Handles packets from the bus interface itself; these tell us when the interface can't keep up so writes are
+     * paused until it reports it is ready again.
+     */
+    protected void onInterfacePacketReceived(VelbusPacket packet) {
+        VelbusPacket.InboundCommand command = VelbusPacket.InboundCommand.fromCode(packet.getCommand());
+        LOG.finest("Received interface packet " + command + " : " + packet);
 
-    protected void doSendPacket() {
-        if (getConnectionStatus() != ConnectionStatus.CONNECTED) {
-            return;
+        switch (command) {
+            case BUS_OFF, RX_BUFFER_FULL -> messageQueue.onBusBusy();
+            case BUS_ACTIVE, RX_BUFFER_READY -> messageQueue.onBusReady();
         }
+    }
 
-        VelbusPacket packet;
+    /**
+     * Commands that set the absolute state of a device channel supersede any queued command of the same type for that
+     * channel (e.g. rapid slider changes); all other packets are always sent.
+     */
+    protected static Object getSupersedeKey(VelbusPacket packet) {
+        VelbusPacket.OutboundCommand command = VelbusPacket.OutboundCommand.fromCode(packet.getCommand());
 
-        synchronized (messageQueue) {
-            packet = messageQueue.poll();
+        switch (command) {
+            case SET_LEVEL, BLIND_POSITION, TEMP_SET -> {
+                if (packet.getDataSize() < 2) {
+                    return null;
+                }
+                return packet.getAddress() + ":" + packet.getCommand() + ":" + packet.getInt(1);
+            }
         }
 
-        if (packet == null) {
-            queueProcessingTask.cancel(false);
-            queueProcessingTask = null;
+        return null;
+    }
+
+    protected void doSendPacket(VelbusPacket packet) {
+        if (getConnectionStatus() != ConnectionStatus.CONNECTED) {
             return;
         }
 
@@ -25,50 +25,53 @@ import io.netty.handler.codec.ByteToMessageDecoder;
 
 import java.util.List;
 
-import static org.openremote.agent.protocol.velbus.VelbusPacket.MAX_PACKET_SIZE;
-
+/**
+ * Decodes {@link VelbusPacket}s from the byte stream; all complete packets in the cumulation buffer are decoded in a
+ * single pass by moving the reader index so bytes are never shifted within the buffer (the cumulation buffer is
+ * compacted by {@link ByteToMessageDecoder} itself). Bytes that don't form a valid packet are skipped until the decoder
+ * re-synchronises with the byte stream.
+ */
 public final class VelbusPacketDecoder extends ByteToMessageDecoder {
 
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf buf, List<Object> messages) throws Exception {
-        int startIndex = buf.indexOf(0, buf.capacity() - 1, VelbusPacket.STX);
+        while (buf.isReadable()) {
+            int startIndex = buf.indexOf(buf.readerIndex(), buf.writerIndex(), VelbusPacket.STX);
 
-        if (startIndex < 0) {
-            return;
-        }
+            if (startIndex < 0) {
+                // No start of packet so nothing worth keeping
+                buf.skipBytes(buf.readableBytes());
+                return;
+            }
 
-        if (startIndex > 0) {
             buf.readerIndex(startIndex);
-            buf.discardReadBytes();
-        }
-
-        if (buf.readableBytes() < 4) {
-            return;
-        }
 
-        int dataSize = buf.getByte(3);
+            if (buf.readableBytes() < 4) {
+                return;
+            }
 
-        if (buf.readableBytes() < 6 + dataSize) {
-            return;
-        }
+            int packetSize = (buf.getByte(startIndex + 3) & 0x0F) + 6;
 
-        // Find end of packet
-        int endIndex = buf.indexOf(4 + dataSize, MAX_PACKET_SIZE, VelbusPacket.ETX);
+            if (buf.readableBytes() < packetSize) {
+                return;
+            }
 
-        if (endIndex < 0) {
-            if (buf.readableBytes() > MAX_PACKET_SIZE) {
-                buf.readerIndex(MAX_PACKET_SIZE);
-                buf.discardReadBytes();
+            if (buf.getByte(startIndex + packetSize - 1) != VelbusPacket.ETX) {
+                buf.skipBytes(1);
+                continue;
             }
-            return;
-        }
 
-        byte[] packetBytes = new byte[endIndex + 1];
-        buf.readBytes(packetBytes);
-        buf.discardReadBytes();
-        VelbusPacket packet = new VelbusPacket(packetBytes);
+            // Packets are handed to devices so they need their own copy of the bytes
+            byte[] packetBytes = new byte[packetSize];
+            buf.getBytes(startIndex, packetBytes);
+            VelbusPacket packet = new VelbusPacket(packetBytes);
+
+            if (!packet.isValid()) {
+                buf.skipBytes(1);
+                continue;
+            }
 
-        if (packet.isValid()) {
+            buf.skipBytes(packetSize);
             messages.add(packet);
         }
     }
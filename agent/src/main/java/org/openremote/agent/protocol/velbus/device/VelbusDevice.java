@@ -1,5 +1,6 @@
 package org.openremote.agent.protocol.velbus.device;
 
+import org.openremote.agent.protocol.io.BusPacer;
 import org.openremote.agent.protocol.velbus.VelbusNetwork;
 import org.openremote.agent.protocol.velbus.VelbusPacket;
 import org.openremote.model.util.TextUtil;
@@ -207,7 +208,7 @@ public class VelbusDevice {
             for (FeatureProcessor processor : featureProcessors) {
                 List<VelbusPacket> packets = processor.getPropertyWritePackets(this, property, value);
                 if (packets != null) {
-                    velbusNetwork.sendPackets(packets.toArray(new VelbusPacket[0]));
+                    velbusNetwork.sendPackets(BusPacer.Lane.COMMAND, packets.toArray(new VelbusPacket[0]));
                     break;
                 }
             }
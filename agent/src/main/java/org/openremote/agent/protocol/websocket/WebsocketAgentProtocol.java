@@ -37,9 +37,8 @@ import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.auth.OAuthGrant;
 import org.openremote.model.auth.UsernamePassword;
-import org.openremote.model.protocol.ProtocolUtil;
+import org.openremote.model.protocol.GenericAttributeMessageDispatcher;
 import org.openremote.model.syslog.SyslogCategory;
-import org.openremote.model.util.Pair;
 import org.openremote.model.util.TextUtil;
 import org.openremote.model.util.ValueUtil;
 import org.openremote.model.value.ValueType;
@@ -49,7 +48,6 @@ import java.net.URISyntaxException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.logging.Logger;
 
@@ -77,7 +75,7 @@ public class WebsocketAgentProtocol extends AbstractNettyIOClientProtocol<Websoc
     protected List<Runnable> protocolConnectedTasks;
     protected Map<AttributeRef, Runnable> attributeConnectedTasks;
     protected Map<String, List<String>> clientHeaders;
-    protected final List<Pair<AttributeRef, Consumer<String>>> protocolMessageConsumers = new ArrayList<>();
+    protected final GenericAttributeMessageDispatcher messageDispatcher = new GenericAttributeMessageDispatcher(() -> timerService.getCurrentTimeMillis(), this::updateLinkedAttribute);
 
     public WebsocketAgentProtocol(WebsocketAgent agent) {
         super(agent);
@@ -97,7 +95,7 @@ public class WebsocketAgentProtocol extends AbstractNettyIOClientProtocol<Websoc
         clientHeaders = null;
         protocolConnectedTasks = null;
         attributeConnectedTasks = null;
-        protocolMessageConsumers.clear();
+        messageDispatcher.clear();
     }
 
     @Override
@@ -107,11 +105,7 @@ public class WebsocketAgentProtocol extends AbstractNettyIOClientProtocol<Websoc
 
     @Override
     protected void onMessageReceived(String message) {
-        protocolMessageConsumers.forEach(c -> {
-            if (c.value != null) {
-                c.value.accept(message);
-            }
-        });
+        messageDispatcher.accept(message);
     }
 
     @Override
@@ -179,17 +173,13 @@ public class WebsocketAgentProtocol extends AbstractNettyIOClientProtocol<Websoc
             }
         });
 
-        Consumer<String> messageConsumer = ProtocolUtil.createGenericAttributeMessageConsumer(assetId, attribute, agent.getAgentLink(attribute), timerService::getCurrentTimeMillis, this::updateLinkedAttribute);
-
-        if (messageConsumer != null) {
-            protocolMessageConsumers.add(new Pair<>(attributeRef, messageConsumer));
-        }
+        messageDispatcher.add(attributeRef, agent.getAgentLink(attribute));
     }
 
     @Override
     protected void doUnlinkAttribute(String assetId, Attribute<?> attribute, WebsocketAgentLink agentLink) {
         AttributeRef attributeRef = new AttributeRef(assetId, attribute.getName());
-        protocolMessageConsumers.removeIf((attrRefConsumer) -> attrRefConsumer.key.equals(attributeRef));
+        messageDispatcher.remove(attributeRef);
         attributeConnectedTasks.remove(attributeRef);
     }
 
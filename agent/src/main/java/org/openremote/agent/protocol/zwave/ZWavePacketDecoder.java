@@ -32,11 +32,9 @@ public class ZWavePacketDecoder extends ByteToMessageDecoder {
         int size = buf.readableBytes();
 
         if (size > 0) {
+            // Bulk copy; the cumulation buffer is compacted by ByteToMessageDecoder itself
             byte[] data = new byte[size];
-            for (int i = 0; i < size; i++) {
-                data[i] = buf.readByte();
-            }
-            buf.discardReadBytes();
+            buf.readBytes(data);
             messages.add(data);
         }
     }
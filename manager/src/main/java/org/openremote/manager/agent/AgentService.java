@@ -19,8 +19,11 @@
  */
 package org.openremote.manager.agent;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import jakarta.persistence.EntityManager;
 import org.apache.camel.builder.RouteBuilder;
+import org.openremote.agent.protocol.io.NettyEventLoopGroups;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.timer.TimerService;
 import org.openremote.manager.asset.AssetProcessingException;
@@ -64,6 +67,8 @@ import java.util.stream.Stream;
 import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
 import static org.openremote.container.persistence.PersistenceService.PERSISTENCE_TOPIC;
+import static org.openremote.container.util.MapAccess.getBoolean;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.container.persistence.PersistenceService.isPersistenceEventForEntityType;
 import static org.openremote.manager.gateway.GatewayService.isNotForGateway;
 import static org.openremote.model.attribute.Attribute.getAddedOrModifiedAttributes;
@@ -199,6 +204,17 @@ public class AgentService extends RouteBuilder implements ContainerService {
 
     private static final Logger LOG = Logger.getLogger(AgentService.class.getName());
     public static final int PRIORITY = MessageBrokerService.PRIORITY + 100; // Start quite late to ensure asset model etc. are initialised
+    /**
+     * Number of threads in the event loop group shared by all netty based IO clients and servers; 0 uses the netty
+     * default of twice the number of available processors
+     */
+    public static final String OR_AGENT_IO_THREADS = "OR_AGENT_IO_THREADS";
+    public static final int OR_AGENT_IO_THREADS_DEFAULT = 0;
+    /**
+     * Use the native epoll transport for netty based IO clients and servers when it is available
+     */
+    public static final String OR_AGENT_IO_NATIVE_TRANSPORT = "OR_AGENT_IO_NATIVE_TRANSPORT";
+    public static final boolean OR_AGENT_IO_NATIVE_TRANSPORT_DEFAULT = false;
     protected AssetProcessingService assetProcessingService;
     protected AssetStorageService assetStorageService;
     protected ClientEventService clientEventService;
@@ -226,11 +242,19 @@ public class AgentService extends RouteBuilder implements ContainerService {
         clientEventService = container.getService(ClientEventService.class);
         gatewayService = container.getService(GatewayService.class);
         executorService = container.getExecutorService();
+        NettyEventLoopGroups.EVENT_LOOP_THREADS = getInteger(container.getConfig(), OR_AGENT_IO_THREADS, OR_AGENT_IO_THREADS_DEFAULT);
+        NettyEventLoopGroups.NATIVE_TRANSPORT = getBoolean(container.getConfig(), OR_AGENT_IO_NATIVE_TRANSPORT, OR_AGENT_IO_NATIVE_TRANSPORT_DEFAULT);
 
         if (initDone) {
             return;
         }
 
+        MeterRegistry meterRegistry = container.getMeterRegistry();
+        if (meterRegistry != null) {
+            meterRegistry.gauge("or.agent.io.channels", Tags.empty(), this, service -> NettyEventLoopGroups.getActiveChannels());
+            meterRegistry.gauge("or.agent.io.threads", Tags.empty(), this, service -> NettyEventLoopGroups.getThreads());
+        }
+
         container.getService(ManagerWebService.class).addApiSingleton(
             new AgentResourceImpl(
                 container.getService(TimerService.class),
@@ -267,6 +291,7 @@ public class AgentService extends RouteBuilder implements ContainerService {
             agentMap.clear();
         }
         protocolInstanceMap.clear();
+        NettyEventLoopGroups.shutdown();
     }
 
     @SuppressWarnings("unchecked")
@@ -19,6 +19,8 @@
  */
 package org.openremote.manager.asset;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
@@ -28,6 +30,7 @@ import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.builder.RouteConfigurationBuilder;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceService;
+import org.openremote.container.security.AuthContext;
 import org.openremote.container.timer.TimerService;
 import org.openremote.container.util.MapAccess;
 import org.openremote.manager.agent.AgentService;
@@ -41,19 +44,26 @@ import org.openremote.manager.security.ManagerIdentityService;
 import org.openremote.model.Constants;
 import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
+import org.openremote.model.PersistenceEvent;
 import org.openremote.model.asset.Asset;
+import org.openremote.model.asset.UserAssetLink;
 import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.MetaItem;
+import org.openremote.model.query.AssetQuery;
 import org.openremote.model.security.ClientRole;
+import org.openremote.model.security.Realm;
 import org.openremote.model.util.ValueUtil;
 import org.openremote.model.value.MetaItemType;
 
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.IntStream;
 
+import static org.openremote.container.persistence.PersistenceService.PERSISTENCE_TOPIC;
 import static org.openremote.manager.system.HealthService.OR_CAMEL_ROUTE_METRIC_PREFIX;
 import static org.openremote.model.attribute.AttributeWriteFailure.*;
 
@@ -88,6 +98,9 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
     public static final String ATTRIBUTE_EVENT_ROUTER_QUEUE = "seda://AttributeEventRouter?waitForTaskToComplete=IfReplyExpected&timeout=10000&purgeWhenStopping=false&discardIfNoConsumers=false&size=10000";
     public static final String OR_ATTRIBUTE_EVENT_THREADS = "OR_ATTRIBUTE_EVENT_THREADS";
     public static final int OR_ATTRIBUTE_EVENT_THREADS_DEFAULT = Runtime.getRuntime().availableProcessors();
+    public static final String OR_ATTRIBUTE_WRITE_AUTH_CACHE_SIZE = "OR_ATTRIBUTE_WRITE_AUTH_CACHE_SIZE";
+    public static final int OR_ATTRIBUTE_WRITE_AUTH_CACHE_SIZE_DEFAULT = 10000;
+    protected static final long WRITE_ACCESS_CACHE_EXPIRY_MINUTES = 10;
     protected static final String EVENT_ROUTE_COUNT_HEADER = "EVENT_ROUTE_COUNT_HEADER";
     protected static final String EVENT_PROCESSOR_URI_PREFIX = "seda://AttributeEventProcessor";
     protected static final String EVENT_PROCESSOR_URI_SUFFIX = "?size=3000&timeout=10000";
@@ -110,6 +123,14 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
     protected long lastProcessedEventTimestamp = System.currentTimeMillis();
     protected int eventProcessingThreadCount;
     protected Counter queueFullCounter;
+    protected Cache<AttributeWriteAccessKey, Boolean> writeAccessCache;
+    protected final AtomicLong userAssetLinksVersion = new AtomicLong();
+
+    /**
+     * Cache key for client {@link AttributeEvent} write access decisions
+     */
+    protected record AttributeWriteAccessKey(String userId, boolean restrictedUser, String realm, String assetId, String attributeName, long userAssetLinksVersion) {
+    }
 
     @Override
     public int getPriority() {
@@ -136,6 +157,23 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
             queueFullCounter = meterRegistry.counter(OR_CAMEL_ROUTE_METRIC_PREFIX + "_failed_queue_full", Tags.empty());
         }
 
+        int writeAccessCacheSize = MapAccess.getInteger(container.getConfig(), OR_ATTRIBUTE_WRITE_AUTH_CACHE_SIZE, OR_ATTRIBUTE_WRITE_AUTH_CACHE_SIZE_DEFAULT);
+        if (writeAccessCacheSize > 0) {
+            // Expiry is only a safety net for modifications that don't generate a persistence event
+            writeAccessCache = CacheBuilder.newBuilder()
+                .maximumSize(writeAccessCacheSize)
+                .expireAfterWrite(WRITE_ACCESS_CACHE_EXPIRY_MINUTES, TimeUnit.MINUTES)
+                .build();
+
+            // Persistence events are processed asynchronously and aren't published for bulk deletes so revoked links
+            // must invalidate cached decisions before the modifying call returns; the version is part of the key so a
+            // decision computed concurrently with the modification can't be served afterwards
+            assetStorageService.addUserAssetLinksChangedListener(userIds -> {
+                userAssetLinksVersion.incrementAndGet();
+                writeAccessCache.asMap().keySet().removeIf(key -> key.userId() != null && userIds.contains(key.userId()));
+            });
+        }
+
         clientEventService.addSubscriptionAuthorizer((requestedRealm, auth, subscription) -> {
             if (!subscription.isEventType(AttributeEvent.class)) {
                 return false;
@@ -143,7 +181,6 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
             return assetEventAuthorizer.authorise(requestedRealm, auth, subscription);
         });
 
-        // TODO: Introduce caching here similar to ActiveMQ auth caching
         clientEventService.addEventAuthorizer((requestedRealm, authContext, event) -> {
 
             if (!(event instanceof AttributeEvent attributeEvent)) {
@@ -168,44 +205,28 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
                 return false;
             }
 
-            // Have to load the asset and attribute to perform additional checks - should permissions be moved out of the
-            // asset model (possibly if the performance is determined to be not good enough)
-            // TODO: Use a targeted query to retrieve just the info we need
-            Asset<?> asset = assetStorageService.find(attributeEvent.getId());
-            Attribute<?> attribute = asset != null ? asset.getAttribute(attributeEvent.getName()).orElse(null) : null;
+            boolean restrictedUser = authContext != null && identityService.getIdentityProvider().isRestrictedUser(authContext);
 
-            if (asset == null || !asset.hasAttribute(attributeEvent.getName())) {
-                LOG.log(System.Logger.Level.INFO, () -> "Cannot authorize asset event as asset and/or attribute doesn't exist: " + attributeEvent.getRef());
-                return false;
-            } else if (!Objects.equals(requestedRealm, asset.getRealm())) {
-                LOG.log(System.Logger.Level.INFO, () -> "Asset is not in the requested realm: requestedRealm=" + requestedRealm + ", ref=" + attributeEvent.getRef());
-                return false;
+            if (writeAccessCache == null) {
+                return isAttributeWriteAllowed(requestedRealm, authContext, restrictedUser, attributeEvent);
             }
 
-            if (authContext != null) {
-                // Check restricted user
-                if (identityService.getIdentityProvider().isRestrictedUser(authContext)) {
-                    // Must be asset linked to user
-                    if (!assetStorageService.isUserAsset(authContext.getUserId(),
-                        attributeEvent.getId())) {
-                        LOG.log(System.Logger.Level.DEBUG, () -> "Restricted user is not linked to asset '" + attributeEvent.getId() + "': username=" + authContext.getUsername() + ", userRealm=" + authContext.getAuthenticatedRealmName());
-                        return false;
-                    }
-
-                    if (attribute == null || !attribute.getMetaValue(MetaItemType.ACCESS_RESTRICTED_WRITE).orElse(false)) {
-                        LOG.log(System.Logger.Level.DEBUG, () -> "Asset attribute doesn't support restricted write on '" + attributeEvent.getRef() + "': username=" + authContext.getUsername() + ", userRealm=" + authContext.getAuthenticatedRealmName());
-                        return false;
-                    }
-                }
-            } else {
-                // Check attribute has public write flag for anonymous write
-                if (attribute == null || !attribute.hasMeta(MetaItemType.ACCESS_PUBLIC_WRITE)) {
-                    LOG.log(System.Logger.Level.DEBUG, () -> "Asset doesn't support public write on '" + attributeEvent.getRef() + "': username=null");
-                    return false;
-                }
+            // The decision only depends on the asset, its attribute meta and user asset links so it can be cached until
+            // one of these is modified (see persistence route)
+            AttributeWriteAccessKey key = new AttributeWriteAccessKey(
+                authContext != null ? authContext.getUserId() : null,
+                restrictedUser,
+                requestedRealm,
+                attributeEvent.getId(),
+                attributeEvent.getName(),
+                userAssetLinksVersion.get());
+
+            Boolean allowed = writeAccessCache.getIfPresent(key);
+            if (allowed == null) {
+                allowed = isAttributeWriteAllowed(requestedRealm, authContext, restrictedUser, attributeEvent);
+                writeAccessCache.put(key, allowed);
             }
-
-            return true;
+            return allowed;
         });
 
         // Get dynamic route count for event processing (multithreaded event processing but guaranteeing events for the same asset end up in the same route)
@@ -273,6 +294,54 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
         messageBrokerService.getContext().addRoutes(this);
     }
 
+    /**
+     * Checks the asset, attribute and user asset link specific write access constraints for an {@link AttributeEvent}
+     * coming from a client.
+     */
+    protected boolean isAttributeWriteAllowed(String requestedRealm, AuthContext authContext, boolean restrictedUser, AttributeEvent attributeEvent) {
+        // Have to load the asset and attribute to perform additional checks - should permissions be moved out of the
+        // asset model (possibly if the performance is determined to be not good enough); only the written attribute
+        // is loaded as the other attributes aren't needed
+        Asset<?> asset = assetStorageService.find(
+            new AssetQuery()
+                .ids(attributeEvent.getId())
+                .select(new AssetQuery.Select().attributes(attributeEvent.getName())));
+        Attribute<?> attribute = asset != null ? asset.getAttribute(attributeEvent.getName()).orElse(null) : null;
+
+        if (asset == null || !asset.hasAttribute(attributeEvent.getName())) {
+            LOG.log(System.Logger.Level.INFO, () -> "Cannot authorize asset event as asset and/or attribute doesn't exist: " + attributeEvent.getRef());
+            return false;
+        } else if (!Objects.equals(requestedRealm, asset.getRealm())) {
+            LOG.log(System.Logger.Level.INFO, () -> "Asset is not in the requested realm: requestedRealm=" + requestedRealm + ", ref=" + attributeEvent.getRef());
+            return false;
+        }
+
+        if (authContext != null) {
+            // Check restricted user
+            if (restrictedUser) {
+                // Must be asset linked to user
+                if (!assetStorageService.isUserAsset(authContext.getUserId(),
+                    attributeEvent.getId())) {
+                    LOG.log(System.Logger.Level.DEBUG, () -> "Restricted user is not linked to asset '" + attributeEvent.getId() + "': username=" + authContext.getUsername() + ", userRealm=" + authContext.getAuthenticatedRealmName());
+                    return false;
+                }
+
+                if (attribute == null || !attribute.getMetaValue(MetaItemType.ACCESS_RESTRICTED_WRITE).orElse(false)) {
+                    LOG.log(System.Logger.Level.DEBUG, () -> "Asset attribute doesn't support restricted write on '" + attributeEvent.getRef() + "': username=" + authContext.getUsername() + ", userRealm=" + authContext.getAuthenticatedRealmName());
+                    return false;
+                }
+            }
+        } else {
+            // Check attribute has public write flag for anonymous write
+            if (attribute == null || !attribute.hasMeta(MetaItemType.ACCESS_PUBLIC_WRITE)) {
+                LOG.log(System.Logger.Level.DEBUG, () -> "Asset doesn't support public write on '" + attributeEvent.getRef() + "': username=null");
+                return false;
+            }
+        }
+
+        return true;
+    }
+
     @Override
     public void start(Container container) throws Exception {
     }
@@ -285,6 +354,24 @@ public class AssetProcessingService extends RouteBuilder implements ContainerSer
     @Override
     public void configure() throws Exception {
 
+        // Invalidate cached write access decisions when the asset, a user asset link or a realm is modified
+        from(PERSISTENCE_TOPIC)
+            .routeId("Persistence-AttributeWriteAccess")
+            .filter(exchange -> writeAccessCache != null)
+            .process(exchange -> {
+                PersistenceEvent<?> persistenceEvent = exchange.getIn().getBody(PersistenceEvent.class);
+
+                if (persistenceEvent.getEntity() instanceof Asset<?> asset) {
+                    writeAccessCache.asMap().keySet().removeIf(key -> asset.getId().equals(key.assetId()));
+                } else if (persistenceEvent.getEntity() instanceof UserAssetLink userAssetLink) {
+                    writeAccessCache.asMap().keySet().removeIf(key ->
+                        userAssetLink.getId().getAssetId().equals(key.assetId())
+                            && userAssetLink.getId().getUserId().equals(key.userId()));
+                } else if (persistenceEvent.getEntity() instanceof Realm) {
+                    writeAccessCache.invalidateAll();
+                }
+            });
+
         // All user authorisation checks MUST have been carried out before events reach this queue
 
         // Router is responsible for routing events to the same processor for a given asset ID, this allows for
@@ -19,6 +19,10 @@
  */
 package org.openremote.manager.asset;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.Query;
@@ -26,9 +30,13 @@ import jakarta.persistence.TypedQuery;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import org.apache.camel.builder.RouteBuilder;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.jdbc.AbstractReturningWork;
 import org.hibernate.jpa.AvailableHints;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.StandardBasicTypes;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.container.persistence.PersistenceService;
 import org.openremote.container.security.AuthContext;
@@ -52,6 +60,7 @@ import org.openremote.model.attribute.AttributeMap;
 import org.openremote.model.event.shared.EventRequestResponseWrapper;
 import org.openremote.model.event.shared.EventSubscription;
 import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.gateway.GatewayAssetManifestEvent;
 import org.openremote.model.query.AssetQuery;
 import org.openremote.model.query.LogicGroup;
 import org.openremote.model.query.filter.*;
@@ -64,9 +73,12 @@ import org.postgresql.util.PGobject;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.logging.Level;
@@ -79,6 +91,7 @@ import static java.util.logging.Level.FINE;
 import static java.util.stream.Collectors.groupingBy;
 import static org.openremote.container.persistence.PersistenceService.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceService.isPersistenceEventForEntityType;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.manager.event.ClientEventService.CLIENT_INBOUND_QUEUE;
 import static org.openremote.model.attribute.Attribute.getAddedOrModifiedAttributes;
 import static org.openremote.model.query.AssetQuery.*;
@@ -90,39 +103,50 @@ import static org.openremote.model.value.MetaItemType.ACCESS_RESTRICTED_READ;
 
 public class AssetStorageService extends RouteBuilder implements ContainerService {
 
+    /**
+     * A built asset query template; the SQL contains no values and the {@link ParameterBinder}s extract the values
+     * from the {@link AssetQuery} being executed so an instance can be reused for any query with the same shape.
+     */
     protected static class PreparedAssetQuery {
 
         final protected String querySql;
         final protected List<ParameterBinder> binders;
+        final protected boolean containsCalendarPredicate;
 
-        public PreparedAssetQuery(String querySql, List<ParameterBinder> binders) {
+        public PreparedAssetQuery(String querySql, List<ParameterBinder> binders, boolean containsCalendarPredicate) {
             this.querySql = querySql;
             this.binders = binders;
+            this.containsCalendarPredicate = containsCalendarPredicate;
         }
 
-        protected void apply(EntityManager em, org.hibernate.query.Query<Object[]> query) {
+        protected void apply(org.hibernate.query.Query<?> st, AssetQuery query, Supplier<Long> timeProvider) {
             for (ParameterBinder binder : binders) {
-                binder.accept(em, query);
+                binder.bind(st, query, timeProvider);
             }
         }
     }
 
-    public interface ParameterBinder extends BiConsumer<EntityManager, org.hibernate.query.Query<Object[]>> {
+    public interface ParameterBinder {
 
-        @Override
-        default void accept(EntityManager em, org.hibernate.query.Query<Object[]> st) {
-            try {
-                acceptStatement(em, st);
-            } catch (SQLException ex) {
-                throw new RuntimeException(ex);
-            }
-        }
+        void bind(org.hibernate.query.Query<?> st, AssetQuery query, Supplier<Long> timeProvider);
+    }
 
-        void acceptStatement(EntityManager em, org.hibernate.query.Query<Object[]> st) throws SQLException;
+    /**
+     * The columns returned by the outer select of a built query; {@link #ENTITY} returns all columns required to hydrate
+     * {@link Asset} entities whereas the other projections are mapped directly from the result rows.
+     */
+    protected enum QueryProjection {
+        ENTITY,
+        SUMMARY,
+        ID
     }
 
     private static final Logger LOG = Logger.getLogger(AssetStorageService.class.getName());
     public static final int PRIORITY = MED_PRIORITY;
+    public static final String OR_ASSET_QUERY_CACHE_SIZE = "OR_ASSET_QUERY_CACHE_SIZE";
+    public static final int OR_ASSET_QUERY_CACHE_SIZE_DEFAULT = 500;
+    public static final String OR_ASSET_QUERY_FETCH_SIZE = "OR_ASSET_QUERY_FETCH_SIZE";
+    public static final int OR_ASSET_QUERY_FETCH_SIZE_DEFAULT = 500;
 //    protected static final Field assetParentNameField;
 //    protected static final Field assetParentTypeField;
 //
@@ -232,6 +256,12 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
     protected ManagerIdentityService identityService;
     protected ClientEventService clientEventService;
     protected GatewayService gatewayService;
+    protected Map<String, PreparedAssetQuery> preparedQueryCache;
+    protected int queryFetchSize;
+    protected Counter queryCacheHitCounter;
+    protected Counter queryCacheMissCounter;
+    protected Timer queryBuildTimer;
+    protected final List<Consumer<Collection<String>>> userAssetLinksChangedListeners = new CopyOnWriteArrayList<>();
 
     /**
      * Will evaluate each {@link CalendarEventPredicate} and apply it depending on the {@link LogicGroup} type
@@ -317,6 +347,26 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         identityService = container.getService(ManagerIdentityService.class);
         clientEventService = container.getService(ClientEventService.class);
         gatewayService = container.getService(GatewayService.class);
+
+        int queryCacheSize = getInteger(container.getConfig(), OR_ASSET_QUERY_CACHE_SIZE, OR_ASSET_QUERY_CACHE_SIZE_DEFAULT);
+        if (queryCacheSize > 0) {
+            preparedQueryCache = Collections.synchronizedMap(new LinkedHashMap<String, PreparedAssetQuery>(queryCacheSize, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedAssetQuery> eldest) {
+                    return size() > queryCacheSize;
+                }
+            });
+        }
+
+        queryFetchSize = Math.max(1, getInteger(container.getConfig(), OR_ASSET_QUERY_FETCH_SIZE, OR_ASSET_QUERY_FETCH_SIZE_DEFAULT));
+
+        MeterRegistry meterRegistry = container.getMeterRegistry();
+        if (meterRegistry != null) {
+            queryCacheHitCounter = meterRegistry.counter("or.assets.query.cache", Tags.of("result", "hit"));
+            queryCacheMissCounter = meterRegistry.counter("or.assets.query.cache", Tags.of("result", "miss"));
+            queryBuildTimer = meterRegistry.timer("or.assets.query.build", Tags.empty());
+        }
+
         EventSubscriptionAuthorizer assetEventAuthorizer = AssetStorageService.assetInfoAuthorizer(identityService, this);
 
         clientEventService.addSubscriptionAuthorizer((realm, auth, subscription) -> {
@@ -576,29 +626,102 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return persistenceService.doReturningTransaction(em -> findAll(em, query));
     }
 
+    /**
+     * Executes the query and passes each matched asset to the consumer as it is read from the DB rather than returning
+     * the full result list; this should be used for queries that can match a large number of assets. The consumer is
+     * called within the DB transaction so should not block for long periods.
+     * @return The number of assets passed to the consumer
+     */
+    public long streamAll(AssetQuery query, Consumer<Asset<?>> consumer) {
+        return persistenceService.doReturningTransaction(em -> streamAll(em, query, consumer));
+    }
+
+    /**
+     * Executes the query but only returns the IDs of the matched assets; this avoids loading and hydrating the asset
+     * entities so should be used whenever only the IDs are required.
+     */
+    public List<String> findAllIds(AssetQuery query) {
+        return persistenceService.doReturningTransaction(em ->
+            findAllProjected(em, query, QueryProjection.ID, Asset::getId, row -> (String)row));
+    }
+
+    /**
+     * Executes the query but only returns an {@link AssetSummary} for each matched asset; attributes are never loaded
+     * so {@link AssetQuery#select} is ignored.
+     */
+    public List<AssetSummary> findAllSummaries(AssetQuery query) {
+        return persistenceService.doReturningTransaction(em ->
+            findAllProjected(em, query, QueryProjection.SUMMARY, AssetStorageService::toAssetSummary, row -> {
+                Object[] columns = (Object[])row;
+                String path = (String)columns[5];
+                return new AssetSummary(
+                    (String)columns[0],
+                    (String)columns[1],
+                    (String)columns[2],
+                    (String)columns[3],
+                    (String)columns[4],
+                    path != null ? path.split("\\.") : null,
+                    (Date)columns[6],
+                    columns[7] != null ? (Long)columns[7] : 0L);
+            }));
+    }
+
     public List<String> findNames(String... ids) {
         if (ids == null || ids.length == 0)
             return new ArrayList<>();
 
-        // TODO: Do this in a loop in reasonably sized batches
+        Map<String, String> idNameMap = findAllSummaries(new AssetQuery().ids(ids)).stream()
+            .collect(Collectors.toMap(AssetSummary::getId, AssetSummary::getName, (a, b) -> a));
+
+        return Arrays.stream(ids)
+            .map(idNameMap::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Get a manifest of the assets in the specified realm, optionally limited to the descendants of the specified
+     * ancestor asset, for delta synchronisation of gateway assets. The hash is calculated by the DB from the asset
+     * name, type and attributes with values removed; attribute timestamps are retained so value changes still alter
+     * the hash without the values having to be loaded.
+     */
+    @SuppressWarnings("unchecked")
+    public List<GatewayAssetManifestEvent.Entry> findAssetManifest(String realm, String ancestorId) {
         return persistenceService.doReturningTransaction(em -> {
-            List<Object[]> result = em.createQuery("select a.id, a.name from Asset a where a.id in :ids",
-                Object[].class)
-                .setParameter("ids", Arrays.asList(ids))
-                .getResultList();
-            List<String> names = new ArrayList<>();
-            for (String id : ids) {
-                for (Object[] tuple : result) {
-                    if (tuple[0].equals(id)) {
-                        names.add((String) tuple[1]);
-                        break;
-                    }
-                }
+            long startMillis = System.currentTimeMillis();
+            NativeQuery<Object[]> query = em.createNativeQuery(
+                "select A.ID as ID, A.PARENT_ID as PARENT_ID, md5(A.NAME || '|' || A.TYPE || '|' || coalesce(" +
+                    "(select cast(jsonb_object_agg(AT.key, AT.value - 'value') as text) from jsonb_each(A.ATTRIBUTES) AT), '')) as HASH" +
+                    " from ASSET A where A.REALM = ?1" +
+                    (ancestorId != null ? " and A.ID <> ?2 and A.PATH ~ lquery(?3)" : "")
+            ).unwrap(NativeQuery.class);
+
+            query.addScalar("ID", StandardBasicTypes.STRING)
+                .addScalar("PARENT_ID", StandardBasicTypes.STRING)
+                .addScalar("HASH", StandardBasicTypes.STRING)
+                .setHint(AvailableHints.HINT_READ_ONLY, true)
+                .setParameter(1, realm);
+
+            if (ancestorId != null) {
+                query.setParameter(2, ancestorId);
+                query.setParameter(3, "*." + ancestorId + ".*");
+            }
+
+            List<GatewayAssetManifestEvent.Entry> entries = query.getResultList().stream()
+                .map(row -> new GatewayAssetManifestEvent.Entry((String)row[0], (String)row[1], (String)row[2]))
+                .toList();
+
+            if (LOG.isLoggable(FINE)) {
+                LOG.fine("Asset manifest query took " + (System.currentTimeMillis() - startMillis) + "ms: return count=" + entries.size());
             }
-            return names;
+            return entries;
         });
     }
 
+    protected static AssetSummary toAssetSummary(Asset<?> asset) {
+        return new AssetSummary(asset.getId(), asset.getName(), asset.getType(), asset.getParentId(), asset.getRealm(), asset.getPath(), asset.getCreatedOn(), asset.getVersion());
+    }
+
     /**
      * @return The current stored asset state.
      * @throws IllegalArgumentException if the realm or parent is illegal, or other asset constraint is violated.
@@ -1151,6 +1274,8 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             }
         });
 
+        notifyUserAssetLinksChanged(userIds);
+
         existingLinks.forEach(userAssetLink ->
             persistenceService.publishPersistenceEvent(
                 PersistenceEvent.Cause.DELETE,
@@ -1175,6 +1300,8 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             int deleteCount = query.executeUpdate();
             LOG.fine("Deleted all user asset links for user: user ID=" + userId + ", count=" + deleteCount);
         });
+
+        notifyUserAssetLinksChanged(Collections.singletonList(userId));
     }
 
     /**
@@ -1204,6 +1331,31 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
             createUserAssetLinks(em, newLinks);
         });
+
+        notifyUserAssetLinksChanged(userIds);
+    }
+
+    /**
+     * Add a listener that is synchronously notified with the affected user IDs once {@link UserAssetLink}s have been
+     * created or deleted; unlike {@link PersistenceEvent}s this is also called for bulk deletes and is called before
+     * the modifying method returns.
+     */
+    public void addUserAssetLinksChangedListener(Consumer<Collection<String>> listener) {
+        userAssetLinksChangedListeners.add(listener);
+    }
+
+    public void removeUserAssetLinksChangedListener(Consumer<Collection<String>> listener) {
+        userAssetLinksChangedListeners.remove(listener);
+    }
+
+    protected void notifyUserAssetLinksChanged(Collection<String> userIds) {
+        userAssetLinksChangedListeners.forEach(listener -> {
+            try {
+                listener.accept(userIds);
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "User asset links changed listener threw an exception", e);
+            }
+        });
     }
 
     protected void createUserAssetLinks(EntityManager em, List<UserAssetLink> userAssets) {
@@ -1263,41 +1415,13 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
         long startMillis = System.currentTimeMillis();
 
-        if (query.access == null)
-            query.access = PRIVATE;
-
-        // Do some sanity checks on query values and return empty result set if empty query parameters
-        if (query.ids != null && query.ids.length == 0) {
-            return Collections.emptyList();
-        }
-        if (query.paths != null && query.paths.length == 0) {
-            return Collections.emptyList();
-        }
-        if (query.types != null && query.types.length == 0) {
-            return Collections.emptyList();
-        }
-        if (query.names != null && query.names.length == 0) {
+        if (!applyQueryDefaults(query)) {
             return Collections.emptyList();
         }
-        if (query.userIds != null && query.userIds.length == 0) {
-            return Collections.emptyList();
-        }
-        if (query.parents != null && query.parents.length == 0) {
-            return Collections.emptyList();
-        }
-
-        // Default to order by creation date if the query may return multiple results
-        if (query.orderBy == null && query.ids == null)
-            query.orderBy = new OrderBy(OrderBy.Property.CREATED_ON);
 
-        Pair<PreparedAssetQuery, Boolean> queryAndContainsCalendarPredicate = buildQuery(query, timerService::getCurrentTimeMillis);
-        PreparedAssetQuery querySql = queryAndContainsCalendarPredicate.key;
-        boolean containsCalendarPredicate = queryAndContainsCalendarPredicate.value;
-
-        if (containsCalendarPredicate && (query.select != null && (query.select.attributes == null))) {
-            LOG.warning("Asset query contains a calendar event predicate which requires the attribute values and types to be included in the select (as calendar event predicate is applied post DB query)");
-            throw new IllegalArgumentException("Asset query contains a calendar event predicate which requires the attribute values and types to be included in the select (as calendar event predicate is applied post DB query)");
-        }
+        PreparedAssetQuery querySql = getPreparedQuery(query, QueryProjection.ENTITY);
+        boolean containsCalendarPredicate = querySql.containsCalendarPredicate;
+        checkCalendarPredicateSelect(query, containsCalendarPredicate);
 
         // RT: No longer used as parent info removed for simplicity and security reasons
 //        // Use a SqlResultSetMapping to allow auto hydration with retrieval of transient data as well
@@ -1324,7 +1448,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
         org.hibernate.query.Query<Object[]> jpql = em.createNativeQuery(querySql.querySql, Asset.class).unwrap(org.hibernate.query.Query.class)
             .setHint(AvailableHints.HINT_READ_ONLY, true); // Make query readonly so no dirty checks are performed
-        querySql.apply(em, jpql);
+        querySql.apply(jpql, query, timerService::getCurrentTimeMillis);
         List<Asset<?>> assets = (List<Asset<?>>)(Object)jpql.getResultList();
 
         if (containsCalendarPredicate) {
@@ -1338,6 +1462,146 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return assets;
     }
 
+    /**
+     * Same as {@link #findAll(EntityManager, AssetQuery)} but the results are read using a server side cursor and each
+     * asset is passed to the consumer and then detached as soon as it is read, so the result set is never held in
+     * memory.
+     */
+    @SuppressWarnings("unchecked")
+    protected long streamAll(EntityManager em, AssetQuery query, Consumer<Asset<?>> consumer) {
+
+        long startMillis = System.currentTimeMillis();
+
+        if (!applyQueryDefaults(query)) {
+            return 0L;
+        }
+
+        PreparedAssetQuery querySql = getPreparedQuery(query, QueryProjection.ENTITY);
+        boolean containsCalendarPredicate = querySql.containsCalendarPredicate;
+        checkCalendarPredicateSelect(query, containsCalendarPredicate);
+
+        NativeQuery<Asset<?>> nativeQuery = em.createNativeQuery(querySql.querySql, Asset.class).unwrap(NativeQuery.class);
+        nativeQuery.setHint(AvailableHints.HINT_READ_ONLY, true);
+        // The postgres driver only uses a cursor when a fetch size is set (and auto commit is disabled)
+        nativeQuery.setFetchSize(queryFetchSize);
+        querySql.apply(nativeQuery, query, timerService::getCurrentTimeMillis);
+
+        long count = 0;
+
+        try (ScrollableResults<Asset<?>> results = nativeQuery.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                Asset<?> asset = results.get();
+                em.detach(asset);
+
+                if (containsCalendarPredicate && !calendarEventPredicateMatches(timerService::getCurrentTimeMillis, query, asset)) {
+                    continue;
+                }
+
+                consumer.accept(asset);
+                count++;
+            }
+        }
+
+        if (LOG.isLoggable(FINE)) {
+            LOG.fine("Asset stream query took " + (System.currentTimeMillis() - startMillis) + "ms: return count=" + count);
+        }
+
+        return count;
+    }
+
+    protected static void checkCalendarPredicateSelect(AssetQuery query, boolean containsCalendarPredicate) {
+        if (containsCalendarPredicate && (query.select != null && (query.select.attributes == null))) {
+            LOG.warning("Asset query contains a calendar event predicate which requires the attribute values and types to be included in the select (as calendar event predicate is applied post DB query)");
+            throw new IllegalArgumentException("Asset query contains a calendar event predicate which requires the attribute values and types to be included in the select (as calendar event predicate is applied post DB query)");
+        }
+    }
+
+    /**
+     * Applies default values to the query and does some sanity checks on the query values.
+     * @return false if the query cannot return any results
+     */
+    protected static boolean applyQueryDefaults(AssetQuery query) {
+        if (query.access == null)
+            query.access = PRIVATE;
+
+        // Do some sanity checks on query values and return empty result set if empty query parameters
+        if (query.ids != null && query.ids.length == 0) {
+            return false;
+        }
+        if (query.paths != null && query.paths.length == 0) {
+            return false;
+        }
+        if (query.types != null && query.types.length == 0) {
+            return false;
+        }
+        if (query.names != null && query.names.length == 0) {
+            return false;
+        }
+        if (query.userIds != null && query.userIds.length == 0) {
+            return false;
+        }
+        if (query.parents != null && query.parents.length == 0) {
+            return false;
+        }
+
+        // Default to order by creation date if the query may return multiple results
+        if (query.orderBy == null && query.ids == null)
+            query.orderBy = new OrderBy(OrderBy.Property.CREATED_ON);
+
+        return true;
+    }
+
+    /**
+     * Executes the query using the specified projection, rows are mapped directly to scalar values so no entities are
+     * hydrated; queries containing a {@link CalendarEventPredicate} need the attribute values so they are executed via
+     * {@link #findAll(EntityManager, AssetQuery)}.
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> List<T> findAllProjected(EntityManager em, AssetQuery query, QueryProjection projection, Function<Asset<?>, T> assetMapper, Function<Object, T> rowMapper) {
+
+        long startMillis = System.currentTimeMillis();
+
+        if (!applyQueryDefaults(query)) {
+            return Collections.emptyList();
+        }
+
+        PreparedAssetQuery querySql = getPreparedQuery(query, projection);
+
+        if (querySql.containsCalendarPredicate) {
+            AssetQuery.Select select = query.select;
+            query.select = null;
+            try {
+                return findAll(em, query).stream().map(assetMapper).toList();
+            } finally {
+                query.select = select;
+            }
+        }
+
+        NativeQuery<Object> nativeQuery = em.createNativeQuery(querySql.querySql).unwrap(NativeQuery.class);
+        nativeQuery.addScalar("ID", StandardBasicTypes.STRING);
+
+        if (projection == QueryProjection.SUMMARY) {
+            nativeQuery
+                .addScalar("NAME", StandardBasicTypes.STRING)
+                .addScalar("TYPE", StandardBasicTypes.STRING)
+                .addScalar("PARENT_ID", StandardBasicTypes.STRING)
+                .addScalar("REALM", StandardBasicTypes.STRING)
+                .addScalar("PATH", StandardBasicTypes.STRING)
+                .addScalar("CREATED_ON", StandardBasicTypes.TIMESTAMP)
+                .addScalar("VERSION", StandardBasicTypes.LONG);
+        }
+
+        nativeQuery.setHint(AvailableHints.HINT_READ_ONLY, true);
+        querySql.apply(nativeQuery, query, timerService::getCurrentTimeMillis);
+        List<T> results = nativeQuery.getResultList().stream().map(rowMapper).toList();
+
+        if (LOG.isLoggable(FINE)) {
+            LOG.fine("Asset " + projection + " query took " + (System.currentTimeMillis() - startMillis) + "ms: return count=" + results.size());
+        }
+
+        return results;
+    }
+
     /**
      * This does a low level JDBC update so hibernate event interceptor doesn't get called and we 'manually'
      * generate the {@link AttributeEvent}
@@ -1495,40 +1759,197 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
     /* SQL BUILDER METHODS */
 
+    /**
+     * Gets the {@link PreparedAssetQuery} for the supplied query; templates are cached by query shape (see
+     * {@link #getQueryShapeKey}) so queries that only differ in parameter values reuse the same SQL string which in
+     * turn allows the JDBC driver to reuse server side prepared statements.
+     */
+    protected PreparedAssetQuery getPreparedQuery(AssetQuery query, QueryProjection projection) {
+        String shapeKey = projection + getQueryShapeKey(query);
+        PreparedAssetQuery preparedQuery = preparedQueryCache != null ? preparedQueryCache.get(shapeKey) : null;
+
+        if (preparedQuery != null) {
+            if (queryCacheHitCounter != null) {
+                queryCacheHitCounter.increment();
+            }
+            return preparedQuery;
+        }
+
+        if (queryCacheMissCounter != null) {
+            queryCacheMissCounter.increment();
+        }
+
+        long startNanos = System.nanoTime();
+        preparedQuery = buildQuery(query, projection);
+
+        if (queryBuildTimer != null) {
+            queryBuildTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+        if (preparedQueryCache != null) {
+            preparedQueryCache.put(shapeKey, preparedQuery);
+        }
+        return preparedQuery;
+    }
+
+    /**
+     * Builds a key that describes the structure of the query without any of the values that are bound as parameters;
+     * two queries with the same key produce the same SQL and the same {@link ParameterBinder}s. Attribute name
+     * predicates are considered structural as they determine how attribute predicates are grouped.
+     */
+    protected static String getQueryShapeKey(AssetQuery query) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(query.recursive ? 'R' : '-').append(query.access);
+
+        if (query.select == null) {
+            sb.append("|S-");
+        } else {
+            sb.append("|S").append(query.select.attributes == null ? "n" : query.select.attributes.length > 0 ? "a" : "e");
+        }
+        if (query.ids != null) {
+            sb.append("|I");
+        }
+        if (query.names != null) {
+            sb.append("|N");
+            for (StringPredicate name : query.names) {
+                appendStringPredicateShape(sb, name);
+            }
+        }
+        if (query.parents != null) {
+            sb.append("|P");
+            for (ParentPredicate parent : query.parents) {
+                sb.append(parent.id != null ? 'i' : 'n');
+            }
+        }
+        if (query.paths != null) {
+            sb.append("|H").append(query.paths.length);
+        }
+        if (query.realm != null && !TextUtil.isNullOrEmpty(query.realm.name)) {
+            sb.append("|M");
+        }
+        if (query.userIds != null) {
+            sb.append("|U");
+        }
+        if (query.types != null) {
+            sb.append("|T");
+        }
+        if (query.attributes != null) {
+            sb.append("|A");
+            appendAttributePredicateGroupShape(sb, query.attributes);
+        }
+        if (query.orderBy != null && query.orderBy.property != null) {
+            sb.append("|O").append(query.orderBy.property).append(query.orderBy.descending ? 'd' : 'a');
+        }
+        if (query.limit > 0) {
+            sb.append("|L");
+        }
+        return sb.toString();
+    }
+
+    protected static void appendAttributePredicateGroupShape(StringBuilder sb, LogicGroup<AttributePredicate> group) {
+        sb.append('(').append(group.operator);
+        for (AttributePredicate attributePredicate : group.getItems()) {
+            appendNameValuePredicateShape(sb, attributePredicate);
+        }
+        if (group.groups != null) {
+            for (LogicGroup<AttributePredicate> childGroup : group.groups) {
+                appendAttributePredicateGroupShape(sb, childGroup);
+            }
+        }
+        sb.append(')');
+    }
+
+    protected static void appendNameValuePredicateShape(StringBuilder sb, NameValuePredicate predicate) {
+        sb.append('[').append(predicate.negated ? '!' : '=');
+
+        if (predicate.name != null) {
+            appendStringPredicateShape(sb, predicate.name);
+            sb.append('\'').append(predicate.name.value).append('\'');
+        }
+        if (predicate.path != null && predicate.path.getPaths().length > 0) {
+            sb.append('p');
+        }
+
+        ValuePredicate value = predicate.value;
+
+        if (value != null) {
+            sb.append(value.getClass().getSimpleName());
 
-    protected static Pair<PreparedAssetQuery, Boolean> buildQuery(AssetQuery query, Supplier<Long> timeProvider) {
+            if (value instanceof StringPredicate stringPredicate) {
+                appendStringPredicateShape(sb, stringPredicate);
+            } else if (value instanceof BooleanPredicate booleanPredicate) {
+                sb.append(booleanPredicate.value);
+            } else if (value instanceof DateTimePredicate dateTimePredicate) {
+                sb.append(dateTimePredicate.operator).append(dateTimePredicate.negate);
+            } else if (value instanceof NumberPredicate numberPredicate) {
+                sb.append(numberPredicate.operator).append(numberPredicate.negate);
+            } else if (value instanceof ArrayPredicate arrayPredicate) {
+                sb.append(arrayPredicate.negated).append(arrayPredicate.value != null)
+                    .append(',').append(arrayPredicate.index)
+                    .append(',').append(arrayPredicate.lengthEquals)
+                    .append(',').append(arrayPredicate.lengthGreaterThan)
+                    .append(',').append(arrayPredicate.lengthLessThan);
+            } else if (value instanceof GeofencePredicate geofencePredicate) {
+                sb.append(geofencePredicate.negated);
+            } else if (value instanceof ValueEmptyPredicate valueEmptyPredicate) {
+                sb.append(valueEmptyPredicate.negate);
+            }
+        }
+
+        if (predicate instanceof AttributePredicate attributePredicate && attributePredicate.meta != null) {
+            sb.append('M');
+            for (NameValuePredicate metaPredicate : attributePredicate.meta) {
+                appendNameValuePredicateShape(sb, metaPredicate);
+            }
+        }
+        sb.append(']');
+    }
+
+    protected static void appendStringPredicateShape(StringBuilder sb, StringPredicate predicate) {
+        sb.append(predicate.match).append(predicate.caseSensitive ? 'c' : 'i').append(predicate.negate ? '!' : '=');
+    }
+
+    protected static PreparedAssetQuery buildQuery(AssetQuery query, QueryProjection projection) {
         LOG.finest("Building: " + query);
         StringBuilder sb = new StringBuilder();
         boolean recursive = query.recursive;
         List<ParameterBinder> binders = new ArrayList<>();
-        sb.append(buildSelectString(query, 1, binders, timeProvider));
+        sb.append(buildSelectString(query, 1, binders, projection));
         sb.append(buildFromString(query, 1));
-        boolean containsCalendarPredicate = appendWhereClause(sb, query, 1, binders, timeProvider);
+        boolean containsCalendarPredicate = appendWhereClause(sb, query, 1, binders);
 
         if (recursive) {
             sb.insert(0, "WITH RECURSIVE top_level_assets AS ((");
             sb.append(") UNION (");
-            sb.append(buildSelectString(query, 2, binders, timeProvider));
+            sb.append(buildSelectString(query, 2, binders, projection));
             sb.append(buildFromString(query, 2));
-            containsCalendarPredicate = !containsCalendarPredicate && appendWhereClause(sb, query, 2, binders, timeProvider);
+            containsCalendarPredicate = !containsCalendarPredicate && appendWhereClause(sb, query, 2, binders);
             sb.append("))");
-            sb.append(buildSelectString(query, 3, binders, timeProvider));
+            sb.append(buildSelectString(query, 3, binders, projection));
             sb.append(buildFromString(query, 3));
-            containsCalendarPredicate = !containsCalendarPredicate && appendWhereClause(sb, query, 3, binders, timeProvider);
+            containsCalendarPredicate = !containsCalendarPredicate && appendWhereClause(sb, query, 3, binders);
         }
 
         sb.append(buildOrderByString(query));
-        sb.append(buildLimitString(query));
-        return new Pair<>(new PreparedAssetQuery(sb.toString(), binders), containsCalendarPredicate);
+        sb.append(buildLimitString(query, binders));
+        return new PreparedAssetQuery(sb.toString(), binders, containsCalendarPredicate);
     }
 
-    protected static String buildSelectString(AssetQuery query, int level, List<ParameterBinder> binders, Supplier<Long> timeProvider) {
+    protected static String buildSelectString(AssetQuery query, int level, List<ParameterBinder> binders, QueryProjection projection) {
         // level = 1 is main query select
         // level = 2 is union select
         // level = 3 is CTE select
         StringBuilder sb = new StringBuilder();
         AssetQuery.Select select = query.select;
 
+        if (projection != QueryProjection.ENTITY && (!query.recursive || level == 3)) {
+            sb.append("select A.ID as ID");
+            if (projection == QueryProjection.SUMMARY) {
+                sb.append(", A.NAME as NAME, A.TYPE as TYPE, A.PARENT_ID as PARENT_ID, A.REALM as REALM");
+                sb.append(", cast(A.PATH as text) as PATH, A.CREATED_ON as CREATED_ON, A.VERSION as VERSION");
+            }
+            return sb.toString();
+        }
+
         sb.append("select A.ID as ID, A.NAME as NAME, A.ACCESS_PUBLIC_READ as ACCESS_PUBLIC_READ");
         sb.append(", A.CREATED_ON AS CREATED_ON, A.TYPE AS TYPE, A.PARENT_ID AS PARENT_ID");
         sb.append(", A.REALM AS REALM, A.VERSION as VERSION");
@@ -1536,14 +1957,15 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         if (!query.recursive || level == 3) {
             sb.append(", A.PATH as PATH");
         } else {
-            sb.append(", NULL as PATH");
+            // Location is needed by any geofence predicates that are applied to the CTE
+            sb.append(", NULL as PATH, A.LOCATION as LOCATION");
         }
 
         if (select == null || select.attributes == null || select.attributes.length > 0) {
             if (query.recursive && level != 3) {
                 sb.append(", A.ATTRIBUTES as ATTRIBUTES");
             } else {
-                sb.append(buildAttributeSelect(query, binders, timeProvider));
+                sb.append(buildAttributeSelect(query, binders));
             }
         } else {
             sb.append(", NULL as ATTRIBUTES");
@@ -1552,7 +1974,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return sb.toString();
     }
 
-    protected static String buildAttributeSelect(AssetQuery query, List<ParameterBinder> binders, Supplier<Long> timeProvider) {
+    protected static String buildAttributeSelect(AssetQuery query, List<ParameterBinder> binders) {
 
         Select select = query.select;
         boolean hasAttributeFilter = select != null && select.attributes != null && select.attributes.length > 0;
@@ -1567,13 +1989,13 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         sb.append(" where true");
 
         // Filter attributes
-        if (select != null && select.attributes != null && select.attributes.length > 0) {
+        if (hasAttributeFilter) {
             final int pos = binders.size() + 1;
             sb.append(" AND AX.key = ANY(")
                 .append("?")
                 .append(pos)
                 .append(")");
-            binders.add((em, st) -> st.setParameter(pos, select.attributes));
+            binders.add((st, q, t) -> st.setParameter(pos, q.select.attributes));
         }
 
         if (query.access != PRIVATE) {
@@ -1631,14 +2053,16 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return sb.toString();
     }
 
-    protected static String buildLimitString(AssetQuery query) {
+    protected static String buildLimitString(AssetQuery query, List<ParameterBinder> binders) {
         if (query.limit > 0) {
-            return " LIMIT " + query.limit;
+            final int pos = binders.size() + 1;
+            binders.add((st, q, t) -> st.setParameter(pos, q.limit));
+            return " LIMIT ?" + pos;
         }
         return "";
     }
 
-    protected static boolean appendWhereClause(StringBuilder sb, AssetQuery query, int level, List<ParameterBinder> binders, Supplier<Long> timeProvider) {
+    protected static boolean appendWhereClause(StringBuilder sb, AssetQuery query, int level, List<ParameterBinder> binders) {
         // level = 1 is main query
         // level = 2 is union
         // level = 3 is CTE
@@ -1655,23 +2079,23 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             sb.append(" and A.ID = ANY(?")
                 .append(pos)
                 .append(")");
-            binders.add((em, st) -> st.setParameter(pos, query.ids));
+            binders.add((st, q, t) -> st.setParameter(pos, q.ids));
         }
 
         if (level == 1 && query.names != null) {
 
             sb.append(" and (");
-            boolean isFirst = true;
 
-            for (StringPredicate pred : query.names) {
-                if (!isFirst) {
+            for (int i = 0; i < query.names.length; i++) {
+                StringPredicate pred = query.names[i];
+                if (i > 0) {
                     sb.append(" or ");
                 }
-                isFirst = false;
                 final int pos = binders.size() + 1;
+                final int index = i;
                 sb.append(pred.caseSensitive ? "A.NAME " : "upper(A.NAME)");
                 sb.append(StringPredicate.toSQLParameter(pred, pos, false));
-                binders.add((em, st) -> st.setParameter(pos, pred.prepareValue()));
+                binders.add((st, q, t) -> st.setParameter(pos, q.names[index].prepareValue()));
             }
             sb.append(")");
         }
@@ -1679,20 +2103,20 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         if (query.parents != null) {
 
             sb.append(" and (");
-            boolean isFirst = true;
 
-            for (ParentPredicate pred : query.parents) {
-                if (!isFirst) {
+            for (int i = 0; i < query.parents.length; i++) {
+                ParentPredicate pred = query.parents[i];
+                if (i > 0) {
                     sb.append(" or (");
                 } else {
                     sb.append("(");
                 }
-                isFirst = false;
 
                 if (level == 1 && pred.id != null) {
                     final int pos = binders.size() + 1;
+                    final int index = i;
                     sb.append("A.PARENT_ID = ?").append(pos);
-                    binders.add((em, st) -> st.setParameter(pos, pred.id));
+                    binders.add((st, q, t) -> st.setParameter(pos, q.parents[index].id));
                 } else if (level == 1) {
                     sb.append("A.PARENT_ID is null");
                 } else {
@@ -1707,13 +2131,13 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
         if (level == 1 && query.paths != null) {
             sb.append(" and (");
-            Arrays.stream(query.paths)
-                .map(p -> String.join(".", p.path))
-                .forEach(lqueryStr -> {
-                    int pos = binders.size() + 1;
-                    sb.append("A.PATH ~ lquery(?").append(pos).append(") or ");
-                    binders.add((em, st) -> st.setParameter(pos, "*." + lqueryStr + ".*"));
-                });
+
+            for (int i = 0; i < query.paths.length; i++) {
+                final int pos = binders.size() + 1;
+                final int index = i;
+                sb.append("A.PATH ~ lquery(?").append(pos).append(") or ");
+                binders.add((st, q, t) -> st.setParameter(pos, "*." + String.join(".", q.paths[index].path) + ".*"));
+            }
 
             sb.append("false)");
         }
@@ -1722,7 +2146,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             if (query.realm != null && !TextUtil.isNullOrEmpty(query.realm.name)) {
                 final int pos = binders.size() + 1;
                 sb.append(" and A.REALM = ?").append(pos);
-                binders.add((em, st) -> st.setParameter(pos, query.realm.name));
+                binders.add((st, q, t) -> st.setParameter(pos, q.realm.name));
             }
 
             if (query.userIds != null) {
@@ -1730,7 +2154,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 sb.append(" and UA.USER_ID = ANY(?")
                     .append(pos)
                     .append(")");
-                binders.add((em, st) -> st.setParameter(pos, query.userIds));
+                binders.add((st, q, t) -> st.setParameter(pos, q.userIds));
             }
 
             if (level == 1 && query.access == Access.PUBLIC) {
@@ -1738,27 +2162,31 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
             }
 
             if (query.types != null) {
-                String[] resolvedTypes = getResolvedAssetTypes(query.types);
                 final int pos = binders.size() + 1;
                 sb.append(" and A.TYPE = ANY(?")
                     .append(pos)
                     .append(")");
-                binders.add((em, st) -> st.setParameter(pos, resolvedTypes));
+                binders.add((st, q, t) -> st.setParameter(pos, getResolvedAssetTypes(q.types)));
             }
 
             if (query.attributes != null) {
+                addIndexedLocationFilters(sb, binders, query.attributes, q -> q.attributes);
                 sb.append(" and A.id in (select A.id from ");
                 AtomicInteger offset = new AtomicInteger(sb.length());
                 Consumer<String> selectInserter = (str) -> sb.insert(offset.getAndAdd(str.length()), str);
                 sb.append(" where true AND ");
-                containsCalendarPredicate = addAttributePredicateGroupQuery(sb, binders, 0, selectInserter, query.attributes, timeProvider);
+                containsCalendarPredicate = addAttributePredicateGroupQuery(sb, binders, 0, selectInserter, query.attributes, q -> q.attributes);
                 sb.append(")");
             }
         }
         return containsCalendarPredicate;
     }
 
-    protected static boolean addAttributePredicateGroupQuery(StringBuilder sb, List<ParameterBinder> binders, int groupIndex, Consumer<String> selectInserter, LogicGroup<AttributePredicate> attributePredicateGroup, Supplier<Long> timeProvider) {
+    /**
+     * The group accessor resolves the equivalent {@link LogicGroup} in any query with the same shape, this is what
+     * allows {@link ParameterBinder}s to be reused.
+     */
+    protected static boolean addAttributePredicateGroupQuery(StringBuilder sb, List<ParameterBinder> binders, int groupIndex, Consumer<String> selectInserter, LogicGroup<AttributePredicate> attributePredicateGroup, Function<AssetQuery, LogicGroup<AttributePredicate>> groupAccessor) {
 
         boolean containsCalendarPredicate = false;
         LogicGroup.Operator operator = attributePredicateGroup.operator;
@@ -1769,16 +2197,18 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
         sb.append("(");
 
-        if (!attributePredicateGroup.getItems().isEmpty()) {
+        List<AttributePredicate> items = attributePredicateGroup.getItems();
+
+        if (!items.isEmpty()) {
 
             Collection<List<AttributePredicate>> grouped;
 
             if (operator == LogicGroup.Operator.AND) {
                 // Group predicates by their attribute name predicate
-                grouped = attributePredicateGroup.getItems().stream().collect(groupingBy(predicate -> predicate.name != null ? predicate.name : "")).values();
+                grouped = items.stream().collect(groupingBy(predicate -> predicate.name != null ? predicate.name : "")).values();
             } else {
                 grouped = new ArrayList<>();
-                grouped.add(attributePredicateGroup.getItems());
+                grouped.add(items);
             }
 
             boolean isFirst = true;
@@ -1789,16 +2219,23 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 }
                 isFirst = false;
 
+                List<Function<AssetQuery, ? extends NameValuePredicate>> accessors = new ArrayList<>(group.size());
+                for (AttributePredicate attributePredicate : group) {
+                    final int index = indexOfInstance(items, attributePredicate);
+                    accessors.add(q -> groupAccessor.apply(q).items.get(index));
+                }
+
                 selectInserter.accept((groupIndex > 0 ? ", " : "") + "jsonb_each(A.attributes) as AX" + groupIndex);
-                containsCalendarPredicate = !containsCalendarPredicate && addNameValuePredicates(group, sb, binders, "AX" + groupIndex, selectInserter, operator == LogicGroup.Operator.OR, timeProvider);
+                containsCalendarPredicate = !containsCalendarPredicate && addNameValuePredicates(group, accessors, sb, binders, "AX" + groupIndex, selectInserter, operator == LogicGroup.Operator.OR);
                 groupIndex++;
             }
         }
 
         if (attributePredicateGroup.groups != null && attributePredicateGroup.groups.size() > 0) {
-            for (LogicGroup<AttributePredicate> group : attributePredicateGroup.groups) {
+            for (int i = 0; i < attributePredicateGroup.groups.size(); i++) {
+                final int index = i;
                 sb.append(operator == LogicGroup.Operator.OR ? " or " : " and ");
-                boolean containsCalPred = addAttributePredicateGroupQuery(sb, binders, groupIndex, selectInserter, group, timeProvider);
+                boolean containsCalPred = addAttributePredicateGroupQuery(sb, binders, groupIndex, selectInserter, attributePredicateGroup.groups.get(i), q -> groupAccessor.apply(q).groups.get(index));
                 if (!containsCalendarPredicate && containsCalPred) {
                     containsCalendarPredicate = true;
                 }
@@ -1809,23 +2246,33 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return containsCalendarPredicate;
     }
 
-    protected static boolean addNameValuePredicates(List<? extends NameValuePredicate> nameValuePredicates, StringBuilder sb, List<ParameterBinder> binders, String jsonObjName, Consumer<String> selectInserter, boolean useOr, Supplier<Long> timeProvider) {
+    protected static int indexOfInstance(List<?> list, Object item) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == item) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    protected static boolean addNameValuePredicates(List<? extends NameValuePredicate> nameValuePredicates, List<Function<AssetQuery, ? extends NameValuePredicate>> accessors, StringBuilder sb, List<ParameterBinder> binders, String jsonObjName, Consumer<String> selectInserter, boolean useOr) {
         boolean containsCalendarPredicate = false;
 
-        boolean isFirst = true;
         int metaIndex = 0;
-        for (NameValuePredicate nameValuePredicate : nameValuePredicates) {
+        for (int i = 0; i < nameValuePredicates.size(); i++) {
+            NameValuePredicate nameValuePredicate = nameValuePredicates.get(i);
+            Function<AssetQuery, ? extends NameValuePredicate> accessor = accessors.get(i);
+
             if (!containsCalendarPredicate && nameValuePredicate.value instanceof CalendarEventPredicate) {
                 containsCalendarPredicate = true;
             }
-            if (!isFirst) {
+            if (i > 0) {
                 sb.append(useOr ? " or " : " and ");
             }
-            isFirst = false;
 
             sb.append("(");
 
-            sb.append(buildNameValuePredicateFilter(nameValuePredicate, jsonObjName, binders, timeProvider));
+            sb.append(buildNameValuePredicateFilter(nameValuePredicate, accessor, jsonObjName, binders));
 
             if (nameValuePredicate instanceof AttributePredicate attributePredicate) {
 
@@ -1833,7 +2280,12 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                     String metaJsonObjName = jsonObjName + "_AM" + metaIndex++;
                     selectInserter.accept(" LEFT JOIN jsonb_each(" + jsonObjName + ".VALUE #> '{meta}') as " + metaJsonObjName + " ON true");
                     sb.append(" and (");
-                    addNameValuePredicates(Arrays.asList(attributePredicate.meta.clone()), sb, binders, metaJsonObjName, selectInserter, true, timeProvider);
+                    List<Function<AssetQuery, ? extends NameValuePredicate>> metaAccessors = new ArrayList<>(attributePredicate.meta.length);
+                    for (int j = 0; j < attributePredicate.meta.length; j++) {
+                        final int index = j;
+                        metaAccessors.add(q -> ((AttributePredicate)accessor.apply(q)).meta[index]);
+                    }
+                    addNameValuePredicates(Arrays.asList(attributePredicate.meta.clone()), metaAccessors, sb, binders, metaJsonObjName, selectInserter, true);
                     sb.append(")");
                 }
             }
@@ -1843,11 +2295,25 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return containsCalendarPredicate;
     }
 
-    protected static String buildNameValuePredicateFilter(NameValuePredicate nameValuePredicate, String jsonObjName, List<ParameterBinder> binders, Supplier<Long> timeProvider) {
+    protected static String[] getValuePaths(NameValuePredicate nameValuePredicate) {
+        List<String> paths = new ArrayList<>();
+        if (nameValuePredicate instanceof AttributePredicate) {
+            paths.add("value");
+        }
+        paths.addAll(Arrays.stream(nameValuePredicate.path.getPaths()).map(Object::toString).toList());
+        return paths.toArray(new String[0]);
+    }
+
+    /**
+     * Values are never written into the SQL; they are extracted by the {@link ParameterBinder}s from the predicate
+     * resolved by the supplied accessor so the result can be cached and reused for queries of the same shape.
+     */
+    protected static String buildNameValuePredicateFilter(NameValuePredicate nameValuePredicate, Function<AssetQuery, ? extends NameValuePredicate> accessor, String jsonObjName, List<ParameterBinder> binders) {
         if (nameValuePredicate.name == null && nameValuePredicate.value == null) {
             return "TRUE";
         }
 
+        Function<AssetQuery, ValuePredicate> valueAccessor = q -> accessor.apply(q).value;
         StringBuilder attributeBuilder = new StringBuilder();
 
         // Only append not on the outer filter if value predicate is not set otherwise it will match any attribute with different name and value
@@ -1864,7 +2330,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
 
             final int pos = binders.size() + 1;
             attributeBuilder.append(StringPredicate.toSQLParameter(nameValuePredicate.name, pos, false));
-            binders.add((em, st) -> st.setParameter(pos, nameValuePredicate.name.prepareValue()));
+            binders.add((st, q, t) -> st.setParameter(pos, accessor.apply(q).name.prepareValue()));
 
         }
 
@@ -1896,16 +2362,10 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                     }
                 };
             } else {
-                List<String> paths = new ArrayList<>();
-                if (isAttributePredicate) {
-                    paths.add("value");
-                }
-                paths.addAll(Arrays.stream(nameValuePredicate.path.getPaths()).map(Object::toString).toList());
-
                 valuePathInserter = (sb, b) -> {
                     final int pos = binders.size() + 1;
                     sb.append("(").append(jsonObjName).append(".VALUE ").append(operator).append(" ?").append(pos).append(")");
-                    binders.add((em, st) -> st.setParameter(pos, paths.toArray(new String[0])));
+                    binders.add((st, q, t) -> st.setParameter(pos, getValuePaths(accessor.apply(q))));
                 };
             }
 
@@ -1919,8 +2379,9 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 }
                 final int pos = binders.size() + 1;
                 attributeBuilder.append(StringPredicate.toSQLParameter(stringPredicate, pos, false));
-                binders.add((em, st) -> st.setParameter(pos, stringPredicate.prepareValue()));
+                binders.add((st, q, t) -> st.setParameter(pos, ((StringPredicate)valueAccessor.apply(q)).prepareValue()));
             } else if (nameValuePredicate.value instanceof BooleanPredicate booleanPredicate) {
+                // Boolean value is part of the query shape
                 valuePathInserter.accept(attributeBuilder, binders);
                 attributeBuilder
                     .append(" = to_jsonb(")
@@ -1932,15 +2393,19 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 attributeBuilder
                     .append(" #>> '{}')\\:\\:timestamp");
 
-                Pair<Long, Long> fromAndTo = dateTimePredicate.asFromAndTo(timeProvider.get());
-
                 final int pos = binders.size() + 1;
-                binders.add((em, st) -> st.setParameter(pos, new java.sql.Timestamp(fromAndTo.key != null ? fromAndTo.key : 0L)));
+                binders.add((st, q, t) -> {
+                    Pair<Long, Long> fromAndTo = ((DateTimePredicate)valueAccessor.apply(q)).asFromAndTo(t.get());
+                    st.setParameter(pos, new java.sql.Timestamp(fromAndTo.key != null ? fromAndTo.key : 0L));
+                });
                 attributeBuilder.append(buildOperatorFilter(dateTimePredicate.operator, dateTimePredicate.negate, pos));
 
                 if (dateTimePredicate.operator == Operator.BETWEEN) {
                     final int pos2 = binders.size() + 1;
-                    binders.add((em, st) -> st.setParameter(pos2, new java.sql.Timestamp(fromAndTo.value != null ? fromAndTo.value : Long.MAX_VALUE)));
+                    binders.add((st, q, t) -> {
+                        Pair<Long, Long> fromAndTo = ((DateTimePredicate)valueAccessor.apply(q)).asFromAndTo(t.get());
+                        st.setParameter(pos2, new java.sql.Timestamp(fromAndTo.value != null ? fromAndTo.value : Long.MAX_VALUE));
+                    });
                 }
             } else if (nameValuePredicate.value instanceof NumberPredicate numberPredicate) {
                 attributeBuilder.append("(");
@@ -1949,12 +2414,13 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                     .append(" #>> '{}')\\:\\:numeric");
                 final int pos = binders.size() + 1;
                 attributeBuilder.append(buildOperatorFilter(numberPredicate.operator, numberPredicate.negate, pos));
-                binders.add((em, st) -> st.setParameter(pos, numberPredicate.value));
+                binders.add((st, q, t) -> st.setParameter(pos, ((NumberPredicate)valueAccessor.apply(q)).value));
                 if (numberPredicate.operator == Operator.BETWEEN) {
                     final int pos2 = binders.size() + 1;
-                    binders.add((em, st) -> st.setParameter(pos2, numberPredicate.rangeValue));
+                    binders.add((st, q, t) -> st.setParameter(pos2, ((NumberPredicate)valueAccessor.apply(q)).rangeValue));
                 }
             } else if (nameValuePredicate.value instanceof ArrayPredicate arrayPredicate) {
+                // Array index and lengths are part of the query shape
                 if (arrayPredicate.negated) {
                     attributeBuilder.append("NOT(");
                 }
@@ -1968,7 +2434,7 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                     }
                     final int pos = binders.size() + 1;
                     attributeBuilder.append(" @> ?").append(pos).append(" \\:\\:jsonb");
-                    binders.add((em, st) -> st.setParameter(pos, ValueUtil.asJSON(arrayPredicate.value).orElse(ValueUtil.NULL_LITERAL)));
+                    binders.add((st, q, t) -> st.setParameter(pos, ValueUtil.asJSON(((ArrayPredicate)valueAccessor.apply(q)).value).orElse(ValueUtil.NULL_LITERAL)));
                 } else {
                     attributeBuilder.append("true");
                 }
@@ -2005,14 +2471,18 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                         .append(" #>> '{coordinates,0}')\\:\\:numeric")
                         .append(", (");
                     valuePathInserter.accept(attributeBuilder, binders);
+                    final int pos = binders.size() + 1;
                     attributeBuilder
                         .append(" #>> '{coordinates,1}')\\:\\:numeric")
-                        .append("), ST_MakePoint(")
-                        .append(location.lng)
-                        .append(",")
-                        .append(location.lat)
-                        .append(location.negated ? ")) > " : ")) <= ")
-                        .append(location.radius);
+                        .append("), ST_MakePoint(?")
+                        .append(pos)
+                        .append(",?")
+                        .append(pos + 1)
+                        .append(location.negated ? ")) > ?" : ")) <= ?")
+                        .append(pos + 2);
+                    binders.add((st, q, t) -> st.setParameter(pos, ((RadialGeofencePredicate)valueAccessor.apply(q)).lng));
+                    binders.add((st, q, t) -> st.setParameter(pos + 1, ((RadialGeofencePredicate)valueAccessor.apply(q)).lat));
+                    binders.add((st, q, t) -> st.setParameter(pos + 2, ((RadialGeofencePredicate)valueAccessor.apply(q)).radius));
                 } else if (nameValuePredicate.value instanceof RectangularGeofencePredicate location) {
                     if (location.negated) {
                         attributeBuilder.append("NOT");
@@ -2023,18 +2493,23 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                         .append(" #>> '{coordinates,0}')\\:\\:numeric")
                         .append(", (");
                     valuePathInserter.accept(attributeBuilder, binders);
+                    final int pos = binders.size() + 1;
                     attributeBuilder
                         .append(" #>> '{coordinates,1}')\\:\\:numeric")
                         .append(")")
-                        .append(", ST_MakeEnvelope(")
-                        .append(location.lngMin)
-                        .append(",")
-                        .append(location.latMin)
-                        .append(",")
-                        .append(location.lngMax)
-                        .append(",")
-                        .append(location.latMax)
+                        .append(", ST_MakeEnvelope(?")
+                        .append(pos)
+                        .append(",?")
+                        .append(pos + 1)
+                        .append(",?")
+                        .append(pos + 2)
+                        .append(",?")
+                        .append(pos + 3)
                         .append("))");
+                    binders.add((st, q, t) -> st.setParameter(pos, ((RectangularGeofencePredicate)valueAccessor.apply(q)).lngMin));
+                    binders.add((st, q, t) -> st.setParameter(pos + 1, ((RectangularGeofencePredicate)valueAccessor.apply(q)).latMin));
+                    binders.add((st, q, t) -> st.setParameter(pos + 2, ((RectangularGeofencePredicate)valueAccessor.apply(q)).lngMax));
+                    binders.add((st, q, t) -> st.setParameter(pos + 3, ((RectangularGeofencePredicate)valueAccessor.apply(q)).latMax));
                 }
             } else if (nameValuePredicate.value instanceof ValueEmptyPredicate) {
                 // Two situations - key is present and not null (cannot use IS NULL for this) or key is not present at all (have to use IS NULL for this)
@@ -2042,7 +2517,6 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 attributeBuilder.append(((ValueEmptyPredicate) nameValuePredicate.value).negate ? " IS NOT NULL" : " IS NULL");
             } else if (nameValuePredicate.value instanceof CalendarEventPredicate) {
                 final int pos = binders.size() + 1;
-                java.sql.Timestamp when = new java.sql.Timestamp(((CalendarEventPredicate)nameValuePredicate.value).timestamp.getTime());
 
                 // The recurrence logic is applied post DB query just check start key is present and in the past and also
                 // that the end key is numeric and in the future if no recurrence value
@@ -2062,8 +2536,8 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
                 valuePathInserter.accept(attributeBuilder, binders);
                 attributeBuilder
                     .append(" #> '{recurrence}') = 'string'))");
-                binders.add((em, st) -> st.setParameter(pos, when));
-                binders.add((em, st) -> st.setParameter(pos+1, when));
+                binders.add((st, q, t) -> st.setParameter(pos, new java.sql.Timestamp(((CalendarEventPredicate)valueAccessor.apply(q)).timestamp.getTime())));
+                binders.add((st, q, t) -> st.setParameter(pos+1, new java.sql.Timestamp(((CalendarEventPredicate)valueAccessor.apply(q)).timestamp.getTime())));
             } else {
                 throw new UnsupportedOperationException("Attribute value predicate is not supported: " + nameValuePredicate.value);
             }
@@ -2081,6 +2555,89 @@ public class AssetStorageService extends RouteBuilder implements ContainerServic
         return attributeBuilder.toString();
     }
 
+    /**
+     * The {@link Asset#LOCATION} attribute value is mirrored into the generated and GiST indexed {@code LOCATION}
+     * column of the asset table; geofence predicates on this attribute that every matching asset must satisfy are
+     * also applied to this column in the outer where clause. The correlated attribute sub query can't use the index,
+     * so without this it would be evaluated for every asset, whereas now it only checks the assets within the region.
+     * Only predicates of the conjunctive part of the attribute predicate group are used (predicates within an OR group
+     * are optional) and negated geofences are left out as they cannot be answered from the index.
+     */
+    protected static void addIndexedLocationFilters(StringBuilder sb, List<ParameterBinder> binders, LogicGroup<AttributePredicate> attributePredicateGroup, Function<AssetQuery, LogicGroup<AttributePredicate>> groupAccessor) {
+        List<AttributePredicate> items = attributePredicateGroup.getItems();
+        int groupCount = attributePredicateGroup.groups != null ? attributePredicateGroup.groups.size() : 0;
+
+        if (attributePredicateGroup.operator == LogicGroup.Operator.OR && items.size() + groupCount > 1) {
+            return;
+        }
+
+        for (int i = 0; i < items.size(); i++) {
+            if (isIndexedLocationPredicate(items.get(i))) {
+                final int index = i;
+                sb.append(" and ");
+                sb.append(buildIndexedLocationFilter((GeofencePredicate) items.get(i).value, q -> groupAccessor.apply(q).getItems().get(index).value, binders));
+            }
+        }
+
+        for (int i = 0; i < groupCount; i++) {
+            final int index = i;
+            addIndexedLocationFilters(sb, binders, attributePredicateGroup.groups.get(i), q -> groupAccessor.apply(q).groups.get(index));
+        }
+    }
+
+    /**
+     * Whether the predicate requires the {@link Asset#LOCATION} attribute value to be within a geofence; the attribute
+     * name must be an exact case sensitive match and no value path can be specified. This only depends on parts of the
+     * predicate that are included in the query shape (see {@link #getQueryShapeKey}).
+     */
+    protected static boolean isIndexedLocationPredicate(AttributePredicate attributePredicate) {
+        return !attributePredicate.negated
+            && attributePredicate.name != null
+            && attributePredicate.name.match == Match.EXACT
+            && attributePredicate.name.caseSensitive
+            && !attributePredicate.name.negate
+            && Asset.LOCATION.getName().equals(attributePredicate.name.value)
+            && (attributePredicate.path == null || attributePredicate.path.getPaths().length == 0)
+            && attributePredicate.value instanceof GeofencePredicate geofencePredicate
+            && !geofencePredicate.negated;
+    }
+
+    protected static String buildIndexedLocationFilter(GeofencePredicate geofencePredicate, Function<AssetQuery, ValuePredicate> valueAccessor, List<ParameterBinder> binders) {
+        StringBuilder sb = new StringBuilder();
+        final int pos = binders.size() + 1;
+
+        if (geofencePredicate instanceof RadialGeofencePredicate) {
+            sb.append("ST_DWithin(A.LOCATION\\:\\:geography, ST_SetSRID(ST_MakePoint(?")
+                .append(pos)
+                .append(",?")
+                .append(pos + 1)
+                .append("), 4326)\\:\\:geography, ?")
+                .append(pos + 2)
+                .append(", false)");
+            binders.add((st, q, t) -> st.setParameter(pos, ((RadialGeofencePredicate)valueAccessor.apply(q)).lng));
+            binders.add((st, q, t) -> st.setParameter(pos + 1, ((RadialGeofencePredicate)valueAccessor.apply(q)).lat));
+            binders.add((st, q, t) -> st.setParameter(pos + 2, ((RadialGeofencePredicate)valueAccessor.apply(q)).radius));
+        } else if (geofencePredicate instanceof RectangularGeofencePredicate) {
+            sb.append("A.LOCATION && ST_MakeEnvelope(?")
+                .append(pos)
+                .append(",?")
+                .append(pos + 1)
+                .append(",?")
+                .append(pos + 2)
+                .append(",?")
+                .append(pos + 3)
+                .append(", 4326)");
+            binders.add((st, q, t) -> st.setParameter(pos, ((RectangularGeofencePredicate)valueAccessor.apply(q)).lngMin));
+            binders.add((st, q, t) -> st.setParameter(pos + 1, ((RectangularGeofencePredicate)valueAccessor.apply(q)).latMin));
+            binders.add((st, q, t) -> st.setParameter(pos + 2, ((RectangularGeofencePredicate)valueAccessor.apply(q)).lngMax));
+            binders.add((st, q, t) -> st.setParameter(pos + 3, ((RectangularGeofencePredicate)valueAccessor.apply(q)).latMax));
+        } else {
+            sb.append("TRUE");
+        }
+
+        return sb.toString();
+    }
+
     protected static String buildOperatorFilter(AssetQuery.Operator operator, boolean negate, int pos) {
         switch (operator) {
             case EQUALS -> {
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.asset;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * A read only projection of the core columns of an {@link org.openremote.model.asset.Asset} that is populated directly
+ * from the query result without entity hydration; see {@link AssetStorageService#findAllSummaries}.
+ */
+public class AssetSummary {
+
+    protected final String id;
+    protected final String name;
+    protected final String type;
+    protected final String parentId;
+    protected final String realm;
+    protected final String[] path;
+    protected final Date createdOn;
+    protected final long version;
+
+    public AssetSummary(String id, String name, String type, String parentId, String realm, String[] path, Date createdOn, long version) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.parentId = parentId;
+        this.realm = realm;
+        this.path = path;
+        this.createdOn = createdOn;
+        this.version = version;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public String[] getPath() {
+        return path;
+    }
+
+    public Date getCreatedOn() {
+        return createdOn;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "id='" + id + '\'' +
+            ", name='" + name + '\'' +
+            ", type='" + type + '\'' +
+            ", parentId='" + parentId + '\'' +
+            ", realm='" + realm + '\'' +
+            ", path=" + Arrays.toString(path) +
+            ", version=" + version +
+            '}';
+    }
+}
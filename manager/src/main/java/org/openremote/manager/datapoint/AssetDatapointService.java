@@ -1,5 +1,9 @@
 package org.openremote.manager.datapoint;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.hibernate.Session;
 import org.openremote.agent.protocol.ProtocolDatapointService;
 import org.openremote.container.timer.TimerService;
 import org.openremote.container.util.UniqueIdentifierGenerator;
@@ -10,29 +14,27 @@ import org.openremote.manager.event.ClientEventService;
 import org.openremote.manager.security.ManagerIdentityService;
 import org.openremote.manager.web.ManagerWebService;
 import org.openremote.model.Container;
-import org.openremote.model.asset.Asset;
-import org.openremote.model.attribute.Attribute;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.attribute.AttributeRef;
 import org.openremote.model.attribute.AttributeWriteFailure;
 import org.openremote.model.datapoint.AssetDatapoint;
-import org.openremote.model.query.AssetQuery;
-import org.openremote.model.query.filter.AttributePredicate;
-import org.openremote.model.query.filter.NameValuePredicate;
-import org.openremote.model.util.Pair;
 import org.openremote.model.value.MetaHolder;
 import org.openremote.model.value.MetaItemType;
 
-import jakarta.persistence.EntityManager;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.sql.Date;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ScheduledFuture;
@@ -42,8 +44,6 @@ import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import static java.time.temporal.ChronoUnit.DAYS;
-import static java.util.stream.Collectors.groupingBy;
-import static java.util.stream.Collectors.toList;
 import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.model.value.MetaItemType.STORE_DATA_POINTS;
 
@@ -57,10 +57,18 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
 
     public static final String OR_DATA_POINTS_MAX_AGE_DAYS = "OR_DATA_POINTS_MAX_AGE_DAYS";
     public static final int OR_DATA_POINTS_MAX_AGE_DAYS_DEFAULT = 31;
+    public static final String OR_DATA_POINTS_PURGE_BATCH_SIZE = "OR_DATA_POINTS_PURGE_BATCH_SIZE";
+    public static final int OR_DATA_POINTS_PURGE_BATCH_SIZE_DEFAULT = 10000;
+    public static final String OR_DATA_POINTS_PURGE_SLICE_HOURS = "OR_DATA_POINTS_PURGE_SLICE_HOURS";
+    public static final int OR_DATA_POINTS_PURGE_SLICE_HOURS_DEFAULT = 24;
     private static final Logger LOG = Logger.getLogger(AssetDatapointService.class.getName());
     protected static final String EXPORT_STORAGE_DIR_NAME = "datapoint";
     protected int maxDatapointAgeDays;
     protected Path exportPath;
+    protected int purgeBatchSize;
+    protected Duration purgeSliceDuration;
+    protected volatile double purgeProgress = 1d;
+    protected Counter purgeDeletedCounter;
 
     @Override
     public void init(Container container) throws Exception {
@@ -83,6 +91,16 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
             LOG.log(Level.INFO, "Data point purge interval days = " + maxDatapointAgeDays);
         }
 
+        purgeBatchSize = Math.max(1, getInteger(container.getConfig(), OR_DATA_POINTS_PURGE_BATCH_SIZE, OR_DATA_POINTS_PURGE_BATCH_SIZE_DEFAULT));
+        purgeSliceDuration = Duration.ofHours(Math.max(1, getInteger(container.getConfig(), OR_DATA_POINTS_PURGE_SLICE_HOURS, OR_DATA_POINTS_PURGE_SLICE_HOURS_DEFAULT)));
+
+        MeterRegistry meterRegistry = container.getMeterRegistry();
+
+        if (meterRegistry != null) {
+            purgeDeletedCounter = meterRegistry.counter("or.datapoints.purge.deleted", Tags.empty());
+            meterRegistry.gauge("or.datapoints.purge.progress", Tags.empty(), this, AssetDatapointService::getPurgeProgress);
+        }
+
         Path storageDir = persistenceService.getStorageDir();
         exportPath = storageDir.resolve(EXPORT_STORAGE_DIR_NAME);
         // Ensure export dir exists and is writable
@@ -137,58 +155,40 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
 
     protected void purgeDataPoints() {
         LOG.info("Running data points purge daily task");
+        purgeProgress = 0d;
 
         try {
-            // Get list of attributes that have custom durations
-            List<Asset<?>> assets = assetStorageService.findAll(
-                new AssetQuery()
-                    .attributes(
-                        new AttributePredicate().meta(
-                            new NameValuePredicate(MetaItemType.DATA_POINTS_MAX_AGE_DAYS, null)
-                        )));
-
-            List<Pair<String, Attribute<?>>> attributes = assets.stream()
-                .map(asset -> asset
-                    .getAttributes().stream()
-                    .filter(assetAttribute -> assetAttribute.hasMeta(MetaItemType.DATA_POINTS_MAX_AGE_DAYS))
-                    .map(assetAttribute -> new Pair<String, Attribute<?>>(asset.getId(), assetAttribute))
-                    .collect(toList()))
-                .flatMap(List::stream)
-                .collect(toList());
+            // Get map of age to attributes that have custom durations
+            Map<Integer, List<AttributeRef>> ageAttributeRefMap = getCustomMaxAgeAttributeRefs();
+            List<AttributeRef> customAgeAttributeRefs = ageAttributeRefMap.values().stream().flatMap(List::stream).toList();
+            int passes = ageAttributeRefMap.size() + 1;
+            long deleted;
 
             // Purge data points not in the above list using default duration
             LOG.fine("Purging data points of attributes that use default max age days of " + maxDatapointAgeDays);
-
-            persistenceService.doTransaction(em -> em.createQuery(
-                "delete from AssetDatapoint dp " +
-                    "where dp.timestamp < :dt" + buildWhereClause(attributes, true)
-            ).setParameter("dt", Date.from(timerService.getNow().truncatedTo(DAYS).minus(maxDatapointAgeDays, DAYS))).executeUpdate());
-
-            if (!attributes.isEmpty()) {
-                // Purge data points that have specific age constraints
-                Map<Integer, List<Pair<String, Attribute<?>>>> ageAttributeRefMap = attributes.stream()
-                    .collect(groupingBy(attributeRef ->
-                        attributeRef.value
-                            .getMetaValue(MetaItemType.DATA_POINTS_MAX_AGE_DAYS)
-                            .orElse(maxDatapointAgeDays)));
-
-                ageAttributeRefMap.forEach((age, attrs) -> {
-                    LOG.fine("Purging data points of " + attrs.size() + " attributes that use a max age of " + age);
-
-                    try {
-                        persistenceService.doTransaction(em -> em.createQuery(
-                            "delete from AssetDatapoint dp " +
-                                "where dp.timestamp < :dt" + buildWhereClause(attrs, false)
-                        ).setParameter("dt", Date.from(timerService.getNow().truncatedTo(DAYS).minus(age, DAYS))).executeUpdate());
-                    } catch (Exception e) {
-                        LOG.log(Level.SEVERE, "An error occurred whilst deleting data points, this should not happen", e);
-                    }
-                });
+            deleted = purgeDataPoints(maxDatapointAgeDays, customAgeAttributeRefs, true, 0, passes);
+
+            // Purge data points that have specific age constraints
+            int pass = 1;
+            for (Map.Entry<Integer, List<AttributeRef>> ageAttributeRefs : ageAttributeRefMap.entrySet()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                LOG.fine("Purging data points of " + ageAttributeRefs.getValue().size() + " attributes that use a max age of " + ageAttributeRefs.getKey());
+                try {
+                    deleted += purgeDataPoints(ageAttributeRefs.getKey(), ageAttributeRefs.getValue(), false, pass++, passes);
+                } catch (Exception e) {
+                    LOG.log(Level.SEVERE, "An error occurred whilst deleting data points, this should not happen", e);
+                }
             }
+
+            LOG.info("Data points purge deleted " + deleted + " data point(s)");
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Failed to run data points purge", e);
         }
 
+        purgeProgress = 1d;
+
         // Purge old exports
         try {
             long oneDayMillis = 24*60*60*1000;
@@ -218,17 +218,120 @@ public class AssetDatapointService extends AbstractDatapointService<AssetDatapoi
         }
     }
 
-    protected String buildWhereClause(List<Pair<String, Attribute<?>>> attributes, boolean negate) {
+    /**
+     * Get the attributes that have a {@link MetaItemType#DATA_POINTS_MAX_AGE_DAYS} meta item grouped by max age; only
+     * the asset ID and attribute name are read so no assets are loaded.
+     */
+    protected Map<Integer, List<AttributeRef>> getCustomMaxAgeAttributeRefs() {
+        String metaPath = "'{meta," + MetaItemType.DATA_POINTS_MAX_AGE_DAYS.getName() + "}'";
+
+        return persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+            Map<Integer, List<AttributeRef>> ageAttributeRefMap = new HashMap<>();
+
+            try (PreparedStatement st = connection.prepareStatement(
+                "select A.ID, AX.KEY, AX.VALUE #>> " + metaPath + " from ASSET A cross join jsonb_each(A.ATTRIBUTES) as AX " +
+                    "where AX.VALUE #>> " + metaPath + " is not null");
+                 ResultSet rs = st.executeQuery()) {
+
+                while (rs.next()) {
+                    AttributeRef attributeRef = new AttributeRef(rs.getString(1), rs.getString(2));
+                    try {
+                        ageAttributeRefMap.computeIfAbsent(Integer.parseInt(rs.getString(3)), age -> new ArrayList<>()).add(attributeRef);
+                    } catch (NumberFormatException e) {
+                        LOG.warning("Invalid " + MetaItemType.DATA_POINTS_MAX_AGE_DAYS.getName() + " value so default will be used: " + attributeRef);
+                    }
+                }
+            }
+            return ageAttributeRefMap;
+        }));
+    }
+
+    /**
+     * Deletes data points older than the specified max age for the specified attributes (or all but the specified
+     * attributes when exclude is true). The range from the oldest matching data point to the cut off is processed in
+     * {@link #OR_DATA_POINTS_PURGE_SLICE_HOURS} time slices (so deletes align with hypertable chunks) and each slice is
+     * deleted in transactions of at most {@link #OR_DATA_POINTS_PURGE_BATCH_SIZE} rows; as every batch is committed
+     * independently an interrupted purge just resumes from the oldest remaining data point on the next run.
+     */
+    protected long purgeDataPoints(int maxAgeDays, List<AttributeRef> attributeRefs, boolean exclude, int pass, int passes) {
+        if (!exclude && attributeRefs.isEmpty()) {
+            return 0L;
+        }
+
+        LocalDateTime cutOff = LocalDateTime.ofInstant(timerService.getNow().truncatedTo(DAYS).minus(maxAgeDays, DAYS), ZoneId.systemDefault());
+        String[] assetIds = attributeRefs.stream().map(AttributeRef::getId).toArray(String[]::new);
+        String[] attributeNames = attributeRefs.stream().map(AttributeRef::getName).toArray(String[]::new);
+        String filter = attributeRefs.isEmpty()
+            ? ""
+            : " and (entity_id, attribute_name) " + (exclude ? "not " : "") + "in (select * from unnest(?, ?))";
+
+        LocalDateTime oldest = persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement st = connection.prepareStatement(
+                "select min(timestamp) from " + getDatapointTableName() + " where timestamp < ?" + filter)) {
+                st.setObject(1, cutOff);
+                setPurgeFilterParameters(connection, st, 2, assetIds, attributeNames);
+                try (ResultSet rs = st.executeQuery()) {
+                    return rs.next() ? rs.getObject(1, LocalDateTime.class) : null;
+                }
+            }
+        }));
+
+        if (oldest == null) {
+            return 0L;
+        }
+
+        String deleteSql = "delete from " + getDatapointTableName() + " where (timestamp, entity_id, attribute_name) in (" +
+            "select timestamp, entity_id, attribute_name from " + getDatapointTableName() +
+            " where timestamp >= ? and timestamp < ?" + filter + " limit ?)";
+        long totalMillis = Math.max(1L, Duration.between(oldest, cutOff).toMillis());
+        long deleted = 0L;
+        LocalDateTime sliceStart = oldest;
+
+        while (sliceStart.isBefore(cutOff)) {
+            LocalDateTime from = sliceStart;
+            LocalDateTime to = sliceStart.plus(purgeSliceDuration).isBefore(cutOff) ? sliceStart.plus(purgeSliceDuration) : cutOff;
+            int batchDeleted;
+
+            do {
+                if (Thread.currentThread().isInterrupted()) {
+                    LOG.info("Data points purge interrupted, it will resume on the next run");
+                    return deleted;
+                }
+
+                batchDeleted = persistenceService.doReturningTransaction(em -> em.unwrap(Session.class).doReturningWork(connection -> {
+                    try (PreparedStatement st = connection.prepareStatement(deleteSql)) {
+                        st.setObject(1, from);
+                        st.setObject(2, to);
+                        int index = setPurgeFilterParameters(connection, st, 3, assetIds, attributeNames);
+                        st.setInt(index, purgeBatchSize);
+                        return st.executeUpdate();
+                    }
+                }));
+
+                deleted += batchDeleted;
+                if (purgeDeletedCounter != null) {
+                    purgeDeletedCounter.increment(batchDeleted);
+                }
+            } while (batchDeleted >= purgeBatchSize);
 
-        if (attributes.isEmpty()) {
-            return "";
+            sliceStart = to;
+            purgeProgress = (pass + (double)Duration.between(oldest, sliceStart).toMillis() / totalMillis) / passes;
         }
 
-        String whereStr = attributes.stream()
-            .map(attributeRef -> "('" + attributeRef.key + "','" + attributeRef.value.getName() + "')")
-            .collect(Collectors.joining(","));
+        LOG.fine("Purged " + deleted + " data point(s) older than " + cutOff);
+        return deleted;
+    }
+
+    protected int setPurgeFilterParameters(Connection connection, PreparedStatement st, int index, String[] assetIds, String[] attributeNames) throws SQLException {
+        if (assetIds.length > 0) {
+            st.setArray(index++, connection.createArrayOf("text", assetIds));
+            st.setArray(index++, connection.createArrayOf("text", attributeNames));
+        }
+        return index;
+    }
 
-        return " and (dp.assetId, dp.attributeName) " + (negate ? "not " : "") + "in (" + whereStr + ")";
+    public double getPurgeProgress() {
+        return purgeProgress;
     }
 
     /**
@@ -26,6 +26,7 @@ import io.undertow.websockets.core.WebSocketChannel;
 import io.undertow.websockets.spi.WebSocketHttpExchange;
 import org.apache.camel.Exchange;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.seda.SedaEndpoint;
 import org.apache.camel.component.undertow.UndertowComponent;
 import org.apache.camel.component.undertow.UndertowConstants;
 import org.apache.camel.component.undertow.UndertowHostKey;
@@ -52,11 +53,17 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Locale;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import static java.lang.System.Logger.Level.*;
 import static org.apache.camel.builder.PredicateBuilder.or;
+import static org.openremote.container.util.MapAccess.getInteger;
+import static org.openremote.container.util.MapAccess.getString;
 import static org.openremote.manager.asset.AssetProcessingService.ATTRIBUTE_EVENT_ROUTER_QUEUE;
 import static org.openremote.manager.asset.AssetProcessingService.ATTRIBUTE_EVENT_ROUTE_CONFIG_ID;
 import static org.openremote.manager.system.HealthService.OR_CAMEL_ROUTE_METRIC_PREFIX;
@@ -109,6 +116,7 @@ public class ClientEventService extends RouteBuilder implements ContainerService
     protected static class SessionInfo {
         String connectionType;
         Runnable closeRunnable;
+        SessionSendQueue sendQueue;
 
         public SessionInfo(String connectionType, Runnable closeRunnable) {
             this.connectionType = connectionType;
@@ -116,6 +124,14 @@ public class ClientEventService extends RouteBuilder implements ContainerService
         }
     }
 
+    /**
+     * The inbound attribute events of a single session that are waiting in the inbound queue
+     */
+    protected static class PendingEvents {
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicBoolean overflowed = new AtomicBoolean();
+    }
+
     public static final int PRIORITY = ManagerWebService.PRIORITY - 200;
     public static final String HEADER_CONNECTION_TYPE = ClientEventService.class.getName() + ".HEADER_CONNECTION_TYPE";
     public static final String HEADER_CONNECTION_TYPE_WEBSOCKET = "websocket";
@@ -123,17 +139,48 @@ public class ClientEventService extends RouteBuilder implements ContainerService
     public static final String HEADER_REQUEST_RESPONSE_MESSAGE_ID = ClientEventService.class.getName() + ".HEADER_REQUEST_RESPONSE_MESSAGE_ID";
     public static final String WEBSOCKET_URI = "undertow://ws://0.0.0.0/websocket/events?fireWebSocketChannelEvents=true&sendTimeout=15000"; // Host is not used as existing undertow instance is utilised
     public static final String CLIENT_INBOUND_QUEUE = "seda://ClientInboundQueue?multipleConsumers=true&concurrentConsumers=2&waitForTaskToComplete=IfReplyExpected&purgeWhenStopping=true&discardIfNoConsumers=true&limitConcurrentConsumers=false&size=1000";
+    /**
+     * Set on inbound client {@link AttributeEvent}s that hold a place reserved by {@link #reserveInboundEvent}
+     */
+    public static final String HEADER_INBOUND_EVENT_RESERVED = ClientEventService.class.getName() + ".HEADER_INBOUND_EVENT_RESERVED";
     public static final String CLIENT_OUTBOUND_QUEUE = "seda://ClientOutboundQueue?multipleConsumers=true&concurrentConsumers=2&purgeWhenStopping=true&discardIfNoConsumers=true&limitConcurrentConsumers=false&size=1000";
     protected static final System.Logger LOG = System.getLogger(ClientEventService.class.getName());
     protected static final String INTERNAL_SESSION_KEY = "ClientEventServiceInternal";
+    /**
+     * Maximum number of messages queued for a single websocket session before the slow consumer policy is applied
+     */
+    public static final String OR_WEBSOCKET_SESSION_MAX_QUEUED_MESSAGES = "OR_WEBSOCKET_SESSION_MAX_QUEUED_MESSAGES";
+    public static final int OR_WEBSOCKET_SESSION_MAX_QUEUED_MESSAGES_DEFAULT = 1000;
+    /**
+     * Maximum number of bytes queued for a single websocket session before the slow consumer policy is applied
+     */
+    public static final String OR_WEBSOCKET_SESSION_MAX_QUEUED_KB = "OR_WEBSOCKET_SESSION_MAX_QUEUED_KB";
+    public static final int OR_WEBSOCKET_SESSION_MAX_QUEUED_KB_DEFAULT = 4096;
+    /**
+     * Maximum number of messages handed to the websocket transport for a single session that haven't completed
+     */
+    public static final String OR_WEBSOCKET_SESSION_MAX_IN_FLIGHT = "OR_WEBSOCKET_SESSION_MAX_IN_FLIGHT";
+    public static final int OR_WEBSOCKET_SESSION_MAX_IN_FLIGHT_DEFAULT = 16;
+    /**
+     * One of {@link SessionSendQueue.SlowConsumerPolicy}
+     */
+    public static final String OR_WEBSOCKET_SLOW_CONSUMER_POLICY = "OR_WEBSOCKET_SLOW_CONSUMER_POLICY";
+    public static final String OR_WEBSOCKET_SLOW_CONSUMER_POLICY_DEFAULT = SessionSendQueue.SlowConsumerPolicy.CONFLATE.name();
+    /**
+     * Maximum number of attribute events from a single client session waiting in the inbound queue before the session
+     * is disconnected
+     */
+    public static final String OR_CLIENT_SESSION_MAX_PENDING_EVENTS = "OR_CLIENT_SESSION_MAX_PENDING_EVENTS";
+    public static final int OR_CLIENT_SESSION_MAX_PENDING_EVENTS_DEFAULT = 100;
     protected static final String PUBLISH_QUEUE = "seda://ClientPublishQueue?multipleConsumers=false&purgeWhenStopping=true&discardIfNoConsumers=true&size=1000";
 
     final protected Collection<EventSubscriptionAuthorizer> eventSubscriptionAuthorizers = new CopyOnWriteArraySet<>();
     final protected Collection<EventAuthorizer> eventAuthorizers = new CopyOnWriteArraySet<>();
     final protected Collection<Consumer<Exchange>> exchangeInterceptors = new CopyOnWriteArraySet<>();
     protected ConcurrentMap<String, SessionInfo> sessionKeyInfoMap = new ConcurrentHashMap<>();
+    protected final ConcurrentMap<String, PendingEvents> sessionPendingEvents = new ConcurrentHashMap<>();
     protected TimerService timerService;
-    protected ExecutorService executorService;
+    protected ScheduledExecutorService executorService;
     protected MessageBrokerService messageBrokerService;
     protected ManagerIdentityService identityService;
     protected EventSubscriptions eventSubscriptions;
@@ -141,6 +188,12 @@ public class ClientEventService extends RouteBuilder implements ContainerService
     protected Set<EventSubscription<?>> pendingInternalSubscriptions;
     protected boolean started;
     protected Counter queueFullCounter;
+    protected MeterRegistry meterRegistry;
+    protected int sessionMaxQueuedMessages;
+    protected long sessionMaxQueuedBytes;
+    protected int sessionMaxInFlight;
+    protected SessionSendQueue.SlowConsumerPolicy slowConsumerPolicy;
+    protected int sessionMaxPendingEvents;
 
     public static String getSessionKey(Exchange exchange) {
         return exchange.getIn().getHeader(SESSION_KEY, String.class);
@@ -166,14 +219,23 @@ public class ClientEventService extends RouteBuilder implements ContainerService
         identityService = container.getService(ManagerIdentityService.class);
         gatewayService = container.getService(GatewayService.class);
         executorService = container.getExecutorService();
-        MeterRegistry meterRegistry = container.getMeterRegistry();
+        meterRegistry = container.getMeterRegistry();
 
         if (meterRegistry != null) {
             queueFullCounter = meterRegistry.counter(OR_CAMEL_ROUTE_METRIC_PREFIX + "_failed_queue_full", Tags.empty());
         }
 
+        sessionMaxQueuedMessages = getInteger(container.getConfig(), OR_WEBSOCKET_SESSION_MAX_QUEUED_MESSAGES, OR_WEBSOCKET_SESSION_MAX_QUEUED_MESSAGES_DEFAULT);
+        sessionMaxQueuedBytes = getInteger(container.getConfig(), OR_WEBSOCKET_SESSION_MAX_QUEUED_KB, OR_WEBSOCKET_SESSION_MAX_QUEUED_KB_DEFAULT) * 1024L;
+        sessionMaxInFlight = getInteger(container.getConfig(), OR_WEBSOCKET_SESSION_MAX_IN_FLIGHT, OR_WEBSOCKET_SESSION_MAX_IN_FLIGHT_DEFAULT);
+        sessionMaxPendingEvents = getInteger(container.getConfig(), OR_CLIENT_SESSION_MAX_PENDING_EVENTS, OR_CLIENT_SESSION_MAX_PENDING_EVENTS_DEFAULT);
+        slowConsumerPolicy = SessionSendQueue.SlowConsumerPolicy.valueOf(
+            getString(container.getConfig(), OR_WEBSOCKET_SLOW_CONSUMER_POLICY, OR_WEBSOCKET_SLOW_CONSUMER_POLICY_DEFAULT).toUpperCase(Locale.ROOT));
+
         eventSubscriptions = new EventSubscriptions(
-            container.getService(TimerService.class)
+            container.getService(TimerService.class),
+            executorService,
+            this::sendToSession
         );
 
         UndertowComponent undertowWebsocketComponent = new UndertowComponent(messageBrokerService.getContext()) {
@@ -287,29 +349,19 @@ public class ClientEventService extends RouteBuilder implements ContainerService
                 exchange.getIn().setHeader(Constants.AUTH_CONTEXT, authContext);
                 exchange.getIn().setHeader(Constants.REALM_PARAM_NAME, realm);
 
-                // Do basic formatting of exchange
-                EventRequestResponseWrapper<?> requestResponse = null;
-                if (exchange.getIn().getBody() instanceof EventRequestResponseWrapper) {
-                    requestResponse = exchange.getIn().getBody(EventRequestResponseWrapper.class);
-                } else if (exchange.getIn().getBody() instanceof String && exchange.getIn().getBody(String.class).startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX)) {
-                    requestResponse = exchange.getIn().getBody(EventRequestResponseWrapper.class);
+                // Decode the message straight into the event object
+                Object body = exchange.getIn().getBody();
+                if (body instanceof String bodyStr) {
+                    Object event = EventTypeConverters.readClientMessage(bodyStr);
+                    if (event != null) {
+                        body = event;
+                    }
                 }
-                if (requestResponse != null) {
-                    SharedEvent event = requestResponse.getEvent();
+                if (body instanceof EventRequestResponseWrapper<?> requestResponse) {
                     exchange.getIn().setHeader(HEADER_REQUEST_RESPONSE_MESSAGE_ID, requestResponse.getMessageId());
-                    exchange.getIn().setBody(event);
-                }
-
-                if (exchange.getIn().getBody() instanceof String) {
-                    String bodyStr = exchange.getIn().getBody(String.class);
-                    if (bodyStr.startsWith(EventSubscription.SUBSCRIBE_MESSAGE_PREFIX)) {
-                        exchange.getIn().setBody(exchange.getIn().getBody(EventSubscription.class));
-                    } else if (bodyStr.startsWith(CancelEventSubscription.MESSAGE_PREFIX)) {
-                        exchange.getIn().setBody(exchange.getIn().getBody(CancelEventSubscription.class));
-                    } else if (bodyStr.startsWith(SharedEvent.MESSAGE_PREFIX)) {
-                        exchange.getIn().setBody(exchange.getIn().getBody(SharedEvent.class));
-                    }
+                    body = requestResponse.getEvent();
                 }
+                exchange.getIn().setBody(body);
 
                 // Perform authorisation
                 if (exchange.getIn().getBody() instanceof SharedEvent) {
@@ -317,6 +369,12 @@ public class ClientEventService extends RouteBuilder implements ContainerService
 
                     if (!authorizeEventWrite(realm, authContext, event)) {
                         exchange.setRouteStop(true);
+                    } else if (event instanceof AttributeEvent) {
+                        if (!reserveInboundEvent(getSessionKey(exchange), getWebsocketSessionTerminator(webSocketChannel))) {
+                            exchange.setRouteStop(true);
+                        } else {
+                            exchange.getIn().setHeader(HEADER_INBOUND_EVENT_RESERVED, true);
+                        }
                     }
                 } else if (exchange.getIn().getBody() instanceof EventSubscription<?>) {
                     EventSubscription<?> subscription = exchange.getIn().getBody(EventSubscription.class);
@@ -342,6 +400,9 @@ public class ClientEventService extends RouteBuilder implements ContainerService
                     LOG.log(TRACE, "Adding session: " + sessionKey);
                     sessionKeyInfoMap.put(sessionKey, createSessionInfo(sessionKey, exchange));
                 }
+                if (exchange.getIn().getHeader(HEADER_INBOUND_EVENT_RESERVED, false, Boolean.class)) {
+                    releaseInboundEvent(getSessionKey(exchange));
+                }
                 passToInterceptors(exchange);
             })
             .choice()
@@ -362,7 +423,11 @@ public class ClientEventService extends RouteBuilder implements ContainerService
             .process(exchange -> {
                 String sessionKey = getSessionKey(exchange);
                 LOG.log(TRACE, "Removing session: " + sessionKey);
-                sessionKeyInfoMap.remove(sessionKey);
+                SessionInfo sessionInfo = sessionKeyInfoMap.remove(sessionKey);
+                sessionPendingEvents.remove(sessionKey);
+                if (sessionInfo != null && sessionInfo.sendQueue != null) {
+                    sessionInfo.sendQueue.close();
+                }
                 eventSubscriptions.cancelAll(sessionKey);
             })
             .stop()
@@ -403,17 +468,22 @@ public class ClientEventService extends RouteBuilder implements ContainerService
             })
             .to(CLIENT_OUTBOUND_QUEUE);
 
-        // Route messages destined for websocket clients
+        // Route messages destined for websocket clients through the bounded send queue of the session
         from(CLIENT_OUTBOUND_QUEUE)
             .routeId("ClientOutbound-Websocket")
             .filter(header(HEADER_CONNECTION_TYPE).isEqualTo(HEADER_CONNECTION_TYPE_WEBSOCKET))
             .process(exchange -> {
                 String sessionKey = exchange.getIn().getHeader(SESSION_KEY, String.class);
-                messageBrokerService.getFluentProducerTemplate()
-                    .withBody(exchange.getIn().getBody())
-                    .withHeader(UndertowConstants.CONNECTION_KEY, sessionKey)
-                    .to(WEBSOCKET_URI)
-                    .asyncSend();
+                SessionInfo sessionInfo = sessionKeyInfoMap.get(sessionKey);
+                Object body = exchange.getIn().getBody();
+                String payload = exchange.getIn().getBody(String.class);
+
+                if (sessionInfo == null || sessionInfo.sendQueue == null || payload == null) {
+                    LOG.log(DEBUG, () -> "Cannot send to websocket session it doesn't exist or is disconnected: " + sessionKey);
+                    return;
+                }
+
+                sessionInfo.sendQueue.send(body, payload);
             });
     }
 
@@ -457,6 +527,14 @@ public class ClientEventService extends RouteBuilder implements ContainerService
     @Override
     public void start(Container container) {
         started = true;
+
+        if (meterRegistry != null) {
+            meterRegistry.gauge("or.client.events.session.queued.bytes", Tags.empty(), SessionSendQueue.TOTAL_QUEUED_BYTES, AtomicLong::get);
+            SedaEndpoint inboundEndpoint = messageBrokerService.getContext().getEndpoint(CLIENT_INBOUND_QUEUE, SedaEndpoint.class);
+            SedaEndpoint attributeEventEndpoint = messageBrokerService.getContext().getEndpoint(ATTRIBUTE_EVENT_ROUTER_QUEUE, SedaEndpoint.class);
+            meterRegistry.gauge("or.client.events.queue.size", Tags.of("queue", "inbound"), inboundEndpoint, SedaEndpoint::getCurrentQueueSize);
+            meterRegistry.gauge("or.client.events.queue.size", Tags.of("queue", "attributeEvent"), attributeEventEndpoint, SedaEndpoint::getCurrentQueueSize);
+        }
     }
 
     @Override
@@ -586,10 +664,78 @@ public class ClientEventService extends RouteBuilder implements ContainerService
             '}';
     }
 
-    protected static SessionInfo createSessionInfo(String sessionKey, Exchange exchange) {
+    protected SessionInfo createSessionInfo(String sessionKey, Exchange exchange) {
         String connectionType = (String) exchange.getIn().getHeader(HEADER_CONNECTION_TYPE);
         Runnable closeRunnable = exchange.getIn().getHeader(SESSION_TERMINATOR, Runnable.class);
-        return new SessionInfo(connectionType, closeRunnable);
+        SessionInfo sessionInfo = new SessionInfo(connectionType, closeRunnable);
+
+        if (HEADER_CONNECTION_TYPE_WEBSOCKET.equals(connectionType)) {
+            sessionInfo.sendQueue = new SessionSendQueue(
+                sessionMaxQueuedMessages,
+                sessionMaxQueuedBytes,
+                sessionMaxInFlight,
+                slowConsumerPolicy,
+                payload -> messageBrokerService.getFluentProducerTemplate()
+                    .withBody(payload)
+                    .withHeader(UndertowConstants.CONNECTION_KEY, sessionKey)
+                    .to(WEBSOCKET_URI)
+                    .asyncSend(),
+                closeRunnable,
+                action -> onSlowConsumer(sessionKey, action));
+        }
+
+        return sessionInfo;
+    }
+
+    /**
+     * Reserves a place in the inbound queue for an attribute event from the specified client session; the place is
+     * released when the event is taken off the queue. Events are handed off to the queue asynchronously so the
+     * connection's I/O thread is never blocked; instead a session that already has the maximum number of events waiting
+     * is disconnected using the supplied terminator and false is returned (the event must then be discarded). This stops
+     * a single flooding client from filling the queue shared by all clients.
+     */
+    public boolean reserveInboundEvent(String sessionKey, Runnable sessionTerminator) {
+        if (sessionKey == null) {
+            return true;
+        }
+
+        PendingEvents pendingEvents = sessionPendingEvents.computeIfAbsent(sessionKey, key -> new PendingEvents());
+
+        if (!pendingEvents.overflowed.get()) {
+            if (pendingEvents.count.incrementAndGet() <= sessionMaxPendingEvents) {
+                return true;
+            }
+            pendingEvents.count.decrementAndGet();
+        }
+
+        // Only disconnect once; further events are rejected until the session is closed
+        if (pendingEvents.overflowed.compareAndSet(false, true)) {
+            LOG.log(INFO, "Client session has too many events waiting to be processed so disconnecting it: " + sessionKey);
+            if (meterRegistry != null) {
+                meterRegistry.counter("or.client.events.session.overflow").increment();
+            }
+            if (sessionTerminator != null) {
+                executorService.execute(sessionTerminator);
+            }
+        }
+        return false;
+    }
+
+    protected void releaseInboundEvent(String sessionKey) {
+        if (sessionKey == null) {
+            return;
+        }
+        PendingEvents pendingEvents = sessionPendingEvents.get(sessionKey);
+        if (pendingEvents != null) {
+            pendingEvents.count.updateAndGet(count -> Math.max(0, count - 1));
+        }
+    }
+
+    protected void onSlowConsumer(String sessionKey, SessionSendQueue.SlowConsumerAction action) {
+        LOG.log(action == SessionSendQueue.SlowConsumerAction.DISCONNECTED ? INFO : TRACE, () -> "Slow websocket consumer, action=" + action + ": " + sessionKey);
+        if (meterRegistry != null) {
+            meterRegistry.counter("or.client.events.slow.consumer", Tags.of("action", action.name())).increment();
+        }
     }
 
     /**
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.event;
+
+import org.openremote.container.timer.TimerService;
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.event.shared.EventDeliveryPolicy;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies an {@link EventDeliveryPolicy} to the {@link AttributeEvent}s delivered to a single subscriber. At most one
+ * event per attribute is held back at any time (latest value wins) so a slow or rate limited subscriber receives
+ * conflated updates rather than building up a queue. Intervals are measured using the {@link TimerService} clock.
+ */
+public class EventDeliveryThrottle {
+
+    protected static class AttributeDeliveryState {
+        long lastDeliveredMillis;
+        Object lastDeliveredValue;
+        boolean delivered;
+        AttributeEvent pending;
+        boolean flushScheduled;
+    }
+
+    private static final Logger LOG = Logger.getLogger(EventDeliveryThrottle.class.getName());
+    protected final long minIntervalMillis;
+    protected final double deadband;
+    protected final TimerService timerService;
+    protected final ScheduledExecutorService executorService;
+    protected final Consumer<AttributeEvent> eventConsumer;
+    protected final Map<AttributeRef, AttributeDeliveryState> stateMap = new ConcurrentHashMap<>();
+    protected volatile boolean closed;
+
+    public EventDeliveryThrottle(EventDeliveryPolicy policy, TimerService timerService, ScheduledExecutorService executorService, Consumer<AttributeEvent> eventConsumer) {
+        this.minIntervalMillis = policy.getMinIntervalMillis() != null ? Math.max(0L, policy.getMinIntervalMillis()) : 0L;
+        this.deadband = policy.getDeadband() != null ? Math.max(0d, policy.getDeadband()) : 0d;
+        this.timerService = timerService;
+        this.executorService = executorService;
+        this.eventConsumer = eventConsumer;
+    }
+
+    /**
+     * Deliver the event now, hold it back until the minimum interval for the attribute has elapsed (replacing any
+     * event already held back) or drop it if the value is within the deadband of the last delivered value
+     */
+    public void offer(AttributeEvent event) {
+        if (closed) {
+            return;
+        }
+
+        AttributeDeliveryState state = stateMap.computeIfAbsent(event.getRef(), ref -> new AttributeDeliveryState());
+        boolean deliverNow = false;
+
+        synchronized (state) {
+            Object value = event.getValue().orElse(null);
+
+            if (state.delivered && isWithinDeadband(state.lastDeliveredValue, value)) {
+                // Last delivered value is still representative so anything held back is no longer needed
+                state.pending = null;
+                return;
+            }
+
+            long now = timerService.getCurrentTimeMillis();
+            long remaining = state.lastDeliveredMillis + minIntervalMillis - now;
+
+            if (remaining <= 0 && !state.flushScheduled) {
+                state.lastDeliveredMillis = now;
+                state.lastDeliveredValue = value;
+                state.delivered = true;
+                deliverNow = true;
+            } else {
+                state.pending = event;
+                if (!state.flushScheduled) {
+                    state.flushScheduled = true;
+                    executorService.schedule(() -> flush(state), Math.max(remaining, 1L), TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        if (deliverNow) {
+            deliver(event);
+        }
+    }
+
+    /**
+     * Discard any held back events; no further events will be delivered
+     */
+    public void close() {
+        closed = true;
+        stateMap.clear();
+    }
+
+    protected void flush(AttributeDeliveryState state) {
+        AttributeEvent event;
+
+        synchronized (state) {
+            long now = timerService.getCurrentTimeMillis();
+            long remaining = state.lastDeliveredMillis + minIntervalMillis - now;
+
+            if (remaining > 0 && state.pending != null && !closed) {
+                // The clock hasn't caught up with the executor delay (e.g. pseudo clock) so check again later
+                executorService.schedule(() -> flush(state), remaining, TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            state.flushScheduled = false;
+            event = state.pending;
+            state.pending = null;
+
+            if (event == null || closed) {
+                return;
+            }
+
+            state.lastDeliveredMillis = now;
+            state.lastDeliveredValue = event.getValue().orElse(null);
+            state.delivered = true;
+        }
+
+        deliver(event);
+    }
+
+    protected void deliver(AttributeEvent event) {
+        try {
+            eventConsumer.accept(event);
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Event delivery consumer has thrown an exception: ref=" + event.getRef(), e);
+        }
+    }
+
+    protected boolean isWithinDeadband(Object lastValue, Object value) {
+        if (deadband <= 0d || !(lastValue instanceof Number lastNumber) || !(value instanceof Number number)) {
+            return false;
+        }
+        return Math.abs(number.doubleValue() - lastNumber.doubleValue()) < deadband;
+    }
+}
@@ -24,6 +24,7 @@ import org.apache.camel.Exchange;
 import org.apache.camel.Message;
 import org.apache.camel.support.DefaultMessage;
 import org.openremote.container.timer.TimerService;
+import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.event.TriggeredEventSubscription;
 import org.openremote.model.event.shared.CancelEventSubscription;
 import org.openremote.model.event.shared.EventSubscription;
@@ -33,6 +34,8 @@ import org.openremote.model.util.TextUtil;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,10 +49,12 @@ public class EventSubscriptions {
     private static final Logger LOG = Logger.getLogger(EventSubscriptions.class.getName());
 
     final protected TimerService timerService;
+    final protected ScheduledExecutorService executorService;
+    final protected BiConsumer<String, Object> sessionSender;
     final protected ConcurrentMap<String, SessionSubscriptions> sessionSubscriptionIdMap = new ConcurrentHashMap<>();
 
     class SessionSubscriptions extends ConcurrentHashSet<SessionSubscription<?>> {
-        protected void createOrUpdate(EventSubscription<?> eventSubscription) {
+        protected void createOrUpdate(String sessionKey, EventSubscription<?> eventSubscription) {
 
             if (TextUtil.isNullOrEmpty(eventSubscription.getSubscriptionId())) {
                 cancelByType(eventSubscription.getEventType());
@@ -57,15 +62,23 @@ public class EventSubscriptions {
                 cancelById(eventSubscription.getSubscriptionId());
             }
 
-            add(new SessionSubscription<>(timerService.getCurrentTimeMillis(), eventSubscription));
+            add(new SessionSubscription<>(timerService.getCurrentTimeMillis(), eventSubscription, createThrottle(sessionKey, eventSubscription)));
         }
 
         protected void cancelByType(String eventType) {
-            removeIf(sessionSubscription -> sessionSubscription.subscriptionId == null && sessionSubscription.subscription.getEventType().equals(eventType));
+            removeIf(sessionSubscription -> {
+                boolean remove = sessionSubscription.subscriptionId == null && sessionSubscription.subscription.getEventType().equals(eventType);
+                return remove && sessionSubscription.close();
+            });
         }
 
         protected void cancelById(String subscriptionId) {
-            removeIf(sessionSubscription -> sessionSubscription.subscription.getSubscriptionId().equals(subscriptionId));
+            removeIf(sessionSubscription -> sessionSubscription.subscription.getSubscriptionId().equals(subscriptionId) && sessionSubscription.close());
+        }
+
+        protected void cancelAll() {
+            forEach(SessionSubscription::close);
+            clear();
         }
     }
 
@@ -73,11 +86,20 @@ public class EventSubscriptions {
         long timestamp;
         final EventSubscription<T> subscription;
         final String subscriptionId;
+        final EventDeliveryThrottle throttle;
 
-        public SessionSubscription(long timestamp, EventSubscription<T> subscription) {
+        public SessionSubscription(long timestamp, EventSubscription<T> subscription, EventDeliveryThrottle throttle) {
             this.timestamp = timestamp;
             this.subscription = subscription;
             this.subscriptionId = subscription.getSubscriptionId();
+            this.throttle = throttle;
+        }
+
+        protected boolean close() {
+            if (throttle != null) {
+                throttle.close();
+            }
+            return true;
         }
 
         public boolean matches(SharedEvent event) {
@@ -85,15 +107,31 @@ public class EventSubscriptions {
         }
     }
 
-    public EventSubscriptions(TimerService timerService) {
+    public EventSubscriptions(TimerService timerService, ScheduledExecutorService executorService, BiConsumer<String, Object> sessionSender) {
         this.timerService = timerService;
+        this.executorService = executorService;
+        this.sessionSender = sessionSender;
+    }
+
+    /**
+     * Client subscriptions with an active {@link org.openremote.model.event.shared.EventDeliveryPolicy} get a throttle
+     * that sends coalesced {@link AttributeEvent}s directly to the session
+     */
+    protected EventDeliveryThrottle createThrottle(String sessionKey, EventSubscription<?> subscription) {
+        if (subscription.isInternal() || subscription.getDeliveryPolicy() == null || !subscription.getDeliveryPolicy().isActive()
+            || !subscription.isEventType(AttributeEvent.class)) {
+            return null;
+        }
+        String subscriptionId = subscription.getSubscriptionId();
+        return new EventDeliveryThrottle(subscription.getDeliveryPolicy(), timerService, executorService, event ->
+            sessionSender.accept(sessionKey, new TriggeredEventSubscription<>(Collections.singletonList(event), subscriptionId)));
     }
 
     protected void createOrUpdate(String sessionKey, EventSubscription<?> subscription) {
         LOG.finest("Create/update subscription for session '" + sessionKey + "': " + subscription);
         SessionSubscriptions sessionSubscriptions =
             this.sessionSubscriptionIdMap.computeIfAbsent(sessionKey, k -> new SessionSubscriptions());
-        sessionSubscriptions.createOrUpdate(subscription);
+        sessionSubscriptions.createOrUpdate(sessionKey, subscription);
     }
 
     protected void cancel(String sessionKey, CancelEventSubscription subscription) {
@@ -123,7 +161,10 @@ public class EventSubscriptions {
     protected void cancelAll(String sessionKey) {
         if (this.sessionSubscriptionIdMap.containsKey(sessionKey)) {
             LOG.finest("Cancelling all subscriptions for session: " + sessionKey);
-            this.sessionSubscriptionIdMap.remove(sessionKey);
+            SessionSubscriptions sessionSubscriptions = this.sessionSubscriptionIdMap.remove(sessionKey);
+            if (sessionSubscriptions != null) {
+                sessionSubscriptions.cancelAll();
+            }
         }
     }
 
@@ -150,7 +191,10 @@ public class EventSubscriptions {
                 SessionSubscription<T> sessionSub = (SessionSubscription<T>) sessionSubscription;
                 T filteredEvent = sessionSub.subscription.getFilter() == null ? event : sessionSub.subscription.getFilter().apply(event);
 
-                if (filteredEvent != null) {
+                if (filteredEvent != null && sessionSub.throttle != null && filteredEvent instanceof AttributeEvent attributeEvent) {
+                    // Delivery is handled by the throttle so the latest value is sent at the subscriber's rate
+                    sessionSub.throttle.offer(attributeEvent);
+                } else if (filteredEvent != null) {
                     LOG.finest("Creating message for subscribed session '" + sessionKey + "': " + filteredEvent);
                     List<T> events = Collections.singletonList(filteredEvent);
                     TriggeredEventSubscription<T> triggeredEventSubscription = new TriggeredEventSubscription<>(events, sessionSub.subscriptionId);
@@ -39,6 +39,7 @@
 
 package org.openremote.manager.event;
 
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.apache.camel.Converter;
 import org.apache.camel.Exchange;
 import org.apache.camel.TypeConverters;
@@ -46,6 +47,9 @@ import org.openremote.model.event.TriggeredEventSubscription;
 import org.openremote.model.event.shared.*;
 import org.openremote.model.util.ValueUtil;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.logging.Logger;
 
 import static org.openremote.model.event.shared.EventSubscription.SUBSCRIBED_MESSAGE_PREFIX;
@@ -54,6 +58,38 @@ import static org.openremote.model.event.shared.EventSubscription.SUBSCRIBE_MESS
 public class EventTypeConverters implements TypeConverters {
 
     private static final Logger LOG = Logger.getLogger(EventTypeConverters.class.getName());
+    protected static final ObjectReader SHARED_EVENT_READER = ValueUtil.JSON.readerFor(SharedEvent.class);
+    protected static final ObjectReader EVENT_SUBSCRIPTION_READER = ValueUtil.JSON.readerFor(EventSubscription.class);
+    protected static final ObjectReader CANCEL_EVENT_SUBSCRIPTION_READER = ValueUtil.JSON.readerFor(CancelEventSubscription.class);
+    protected static final ObjectReader REQUEST_RESPONSE_READER = ValueUtil.JSON.readerFor(EventRequestResponseWrapper.class);
+
+    /**
+     * Reads a client message directly into the event type identified by its prefix without going through the Camel type
+     * converter registry; the JSON is parsed straight from the message characters after the prefix.
+     * @return The event object or null if the message doesn't start with a known prefix
+     */
+    public static Object readClientMessage(String message) throws IOException {
+        if (message.startsWith(SharedEvent.MESSAGE_PREFIX)) {
+            return readPrefixed(message, SharedEvent.MESSAGE_PREFIX, SHARED_EVENT_READER);
+        }
+        if (message.startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX)) {
+            return readPrefixed(message, EventRequestResponseWrapper.MESSAGE_PREFIX, REQUEST_RESPONSE_READER);
+        }
+        if (message.startsWith(SUBSCRIBE_MESSAGE_PREFIX)) {
+            return readPrefixed(message, SUBSCRIBE_MESSAGE_PREFIX, EVENT_SUBSCRIPTION_READER);
+        }
+        if (message.startsWith(CancelEventSubscription.MESSAGE_PREFIX)) {
+            return readPrefixed(message, CancelEventSubscription.MESSAGE_PREFIX, CANCEL_EVENT_SUBSCRIPTION_READER);
+        }
+        return null;
+    }
+
+    protected static <T> T readPrefixed(String message, String prefix, ObjectReader reader) throws IOException {
+        // Skip the prefix on the reader rather than creating a substring of the message
+        Reader messageReader = new StringReader(message);
+        messageReader.skip(prefix.length());
+        return reader.readValue(messageReader);
+    }
 
     @Converter
     public String writeEvent(SharedEvent event, Exchange exchange) throws Exception {
@@ -74,8 +110,7 @@ public class EventTypeConverters implements TypeConverters {
     public SharedEvent readEvent(String string, Exchange exchange) throws Exception {
         if (!string.startsWith(SharedEvent.MESSAGE_PREFIX))
             return null;
-        string = string.substring(SharedEvent.MESSAGE_PREFIX.length());
-        return ValueUtil.JSON.readValue(string, SharedEvent.class);
+        return readPrefixed(string, SharedEvent.MESSAGE_PREFIX, SHARED_EVENT_READER);
     }
 
     @Converter
@@ -87,16 +122,14 @@ public class EventTypeConverters implements TypeConverters {
     public EventSubscription readEventSubscription(String string, Exchange exchange) throws Exception {
         if (!string.startsWith(EventSubscription.SUBSCRIBE_MESSAGE_PREFIX))
             return null;
-        string = string.substring(EventSubscription.SUBSCRIBE_MESSAGE_PREFIX.length());
-        return ValueUtil.JSON.readValue(string, EventSubscription.class);
+        return readPrefixed(string, EventSubscription.SUBSCRIBE_MESSAGE_PREFIX, EVENT_SUBSCRIPTION_READER);
     }
 
     @Converter
     public CancelEventSubscription readCancelEventSubscription(String string, Exchange exchange) throws Exception {
         if (!string.startsWith(CancelEventSubscription.MESSAGE_PREFIX))
             return null;
-        string = string.substring(CancelEventSubscription.MESSAGE_PREFIX.length());
-        return ValueUtil.JSON.readValue(string, CancelEventSubscription.class);
+        return readPrefixed(string, CancelEventSubscription.MESSAGE_PREFIX, CANCEL_EVENT_SUBSCRIPTION_READER);
     }
 
     @Converter
@@ -108,8 +141,7 @@ public class EventTypeConverters implements TypeConverters {
     public EventRequestResponseWrapper readRequestResponse(String string, Exchange exchange) throws Exception {
         if (!string.startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX))
             return null;
-        string = string.substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length());
-        return ValueUtil.JSON.readValue(string, EventRequestResponseWrapper.class);
+        return readPrefixed(string, EventRequestResponseWrapper.MESSAGE_PREFIX, REQUEST_RESPONSE_READER);
     }
 
     @Converter
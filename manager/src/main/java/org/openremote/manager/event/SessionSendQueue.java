@@ -0,0 +1,250 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.event;
+
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.event.TriggeredEventSubscription;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A bounded outbound message queue for a single client session; only a limited number of messages are handed to the
+ * transport at any time and the rest are held here up to the configured message and byte limits. When the limits are
+ * exceeded the {@link SlowConsumerPolicy} determines what happens to the session.
+ */
+public class SessionSendQueue {
+
+    public enum SlowConsumerPolicy {
+        /**
+         * Replace queued single {@link AttributeEvent} messages for the same subscription and attribute with the
+         * latest one and drop the oldest queued message when still full
+         */
+        CONFLATE,
+        /**
+         * Drop the new message
+         */
+        DROP,
+        /**
+         * Close the session
+         */
+        DISCONNECT
+    }
+
+    /**
+     * Outcome reported to the slow consumer listener
+     */
+    public enum SlowConsumerAction {
+        CONFLATED,
+        DROPPED,
+        DISCONNECTED
+    }
+
+    protected record QueuedMessage(String payload, int bytes, String conflationKey) {}
+
+    /**
+     * Total bytes queued or in flight across all sessions
+     */
+    public static final AtomicLong TOTAL_QUEUED_BYTES = new AtomicLong();
+
+    protected final Deque<QueuedMessage> queue = new ArrayDeque<>();
+    protected final int maxQueuedMessages;
+    protected final long maxQueuedBytes;
+    protected final int maxInFlight;
+    protected final SlowConsumerPolicy policy;
+    protected final Function<String, CompletableFuture<?>> sender;
+    protected final Runnable closeRunnable;
+    protected final Consumer<SlowConsumerAction> slowConsumerListener;
+    protected int messagesInFlight;
+    protected long bytesInFlight;
+    protected long queuedBytes;
+    protected boolean closed;
+
+    public SessionSendQueue(int maxQueuedMessages, long maxQueuedBytes, int maxInFlight, SlowConsumerPolicy policy, Function<String, CompletableFuture<?>> sender, Runnable closeRunnable, Consumer<SlowConsumerAction> slowConsumerListener) {
+        this.maxQueuedMessages = maxQueuedMessages;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.policy = policy;
+        this.sender = sender;
+        this.closeRunnable = closeRunnable;
+        this.slowConsumerListener = slowConsumerListener;
+    }
+
+    /**
+     * Queue the message for sending, the body should be the object the payload was serialised from so it can be
+     * conflated with other messages where possible
+     */
+    public void send(Object body, String payload) {
+        QueuedMessage message = new QueuedMessage(payload, payload.getBytes(StandardCharsets.UTF_8).length, getConflationKey(body));
+        SlowConsumerAction action = null;
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            if (policy == SlowConsumerPolicy.CONFLATE && message.conflationKey() != null && replaceQueued(message)) {
+                action = SlowConsumerAction.CONFLATED;
+            } else {
+                boolean full = queue.size() >= maxQueuedMessages || queuedBytes + message.bytes() > maxQueuedBytes;
+
+                if (full) {
+                    switch (policy) {
+                        case CONFLATE -> {
+                            while (!queue.isEmpty() && (queue.size() >= maxQueuedMessages || queuedBytes + message.bytes() > maxQueuedBytes)) {
+                                removeQueued(queue.pollFirst());
+                            }
+                            addQueued(message);
+                            action = SlowConsumerAction.DROPPED;
+                        }
+                        case DROP -> action = SlowConsumerAction.DROPPED;
+                        case DISCONNECT -> {
+                            action = SlowConsumerAction.DISCONNECTED;
+                            closeInternal();
+                        }
+                    }
+                } else {
+                    addQueued(message);
+                }
+            }
+        }
+
+        if (action != null && slowConsumerListener != null) {
+            slowConsumerListener.accept(action);
+        }
+        if (action == SlowConsumerAction.DISCONNECTED && closeRunnable != null) {
+            closeRunnable.run();
+        }
+
+        drain();
+    }
+
+    /**
+     * Discard all queued messages
+     */
+    public synchronized void close() {
+        closeInternal();
+    }
+
+    public synchronized int getQueuedMessages() {
+        return queue.size();
+    }
+
+    public synchronized long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    public synchronized int getMessagesInFlight() {
+        return messagesInFlight;
+    }
+
+    public synchronized long getBytesInFlight() {
+        return bytesInFlight;
+    }
+
+    protected void drain() {
+        while (true) {
+            QueuedMessage message;
+
+            synchronized (this) {
+                if (closed || messagesInFlight >= maxInFlight || queue.isEmpty()) {
+                    return;
+                }
+                message = queue.pollFirst();
+                queuedBytes -= message.bytes();
+                messagesInFlight++;
+                bytesInFlight += message.bytes();
+            }
+
+            CompletableFuture<?> future;
+            try {
+                future = sender.apply(message.payload());
+            } catch (Exception e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((result, error) -> onSent(message));
+        }
+    }
+
+    protected void onSent(QueuedMessage message) {
+        synchronized (this) {
+            if (!closed) {
+                messagesInFlight--;
+                bytesInFlight -= message.bytes();
+                TOTAL_QUEUED_BYTES.addAndGet(-message.bytes());
+            }
+        }
+        drain();
+    }
+
+    protected boolean replaceQueued(QueuedMessage message) {
+        Iterator<QueuedMessage> it = queue.iterator();
+        while (it.hasNext()) {
+            QueuedMessage queued = it.next();
+            if (message.conflationKey().equals(queued.conflationKey())) {
+                it.remove();
+                queuedBytes -= queued.bytes();
+                TOTAL_QUEUED_BYTES.addAndGet(-queued.bytes());
+                addQueued(message);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void addQueued(QueuedMessage message) {
+        queue.addLast(message);
+        queuedBytes += message.bytes();
+        TOTAL_QUEUED_BYTES.addAndGet(message.bytes());
+    }
+
+    protected void removeQueued(QueuedMessage message) {
+        queuedBytes -= message.bytes();
+        TOTAL_QUEUED_BYTES.addAndGet(-message.bytes());
+    }
+
+    protected void closeInternal() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        TOTAL_QUEUED_BYTES.addAndGet(-(queuedBytes + bytesInFlight));
+        queue.clear();
+        queuedBytes = 0;
+        messagesInFlight = 0;
+        bytesInFlight = 0;
+    }
+
+    protected static String getConflationKey(Object body) {
+        if (body instanceof TriggeredEventSubscription<?> triggeredEventSubscription
+            && triggeredEventSubscription.getEvents() != null
+            && triggeredEventSubscription.getEvents().size() == 1
+            && triggeredEventSubscription.getEvents().get(0) instanceof AttributeEvent attributeEvent) {
+            return triggeredEventSubscription.getSubscriptionId() + ":" + attributeEvent.getRef();
+        }
+        return null;
+    }
+}
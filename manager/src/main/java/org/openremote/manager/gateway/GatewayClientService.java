@@ -19,6 +19,9 @@
  */
 package org.openremote.manager.gateway;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.netty.channel.ChannelHandler;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.http.client.utils.URIBuilder;
@@ -44,22 +47,32 @@ import org.openremote.model.event.shared.EventRequestResponseWrapper;
 import org.openremote.model.event.shared.EventSubscription;
 import org.openremote.model.event.shared.SharedEvent;
 import org.openremote.model.event.shared.RealmFilter;
+import org.openremote.model.gateway.GatewayAssetManifestEvent;
+import org.openremote.model.gateway.GatewayAssetManifestRequestEvent;
 import org.openremote.model.gateway.GatewayConnection;
 import org.openremote.model.gateway.GatewayConnectionStatusEvent;
 import org.openremote.model.gateway.GatewayDisconnectEvent;
+import org.openremote.model.gateway.GatewayEventBatchAckEvent;
+import org.openremote.model.gateway.GatewayEventBatchEvent;
 import org.openremote.model.query.AssetQuery;
 import org.openremote.model.query.filter.RealmPredicate;
 import org.openremote.model.syslog.SyslogCategory;
 import org.openremote.model.util.ValueUtil;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import static org.openremote.container.persistence.PersistenceService.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceService.isPersistenceEventForEntityType;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.model.syslog.SyslogCategory.GATEWAY;
 
 /**
@@ -70,6 +83,18 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
     public static final int PRIORITY = ManagerWebService.PRIORITY - 300;
     private static final Logger LOG = SyslogCategory.getLogger(GATEWAY, GatewayClientService.class.getName());
     public static final String CLIENT_EVENT_SESSION_PREFIX = GatewayClientService.class.getSimpleName() + ":";
+    /**
+     * Maximum size in MB of the journal used to hold attribute events whilst the central manager is not connected; 0
+     * disables the journal in which case events generated whilst disconnected are lost
+     */
+    public static final String OR_GATEWAY_JOURNAL_MAX_SIZE_MB = "OR_GATEWAY_JOURNAL_MAX_SIZE_MB";
+    public static final int OR_GATEWAY_JOURNAL_MAX_SIZE_MB_DEFAULT = 64;
+    /**
+     * Maximum number of journaled events per second to forward to the central manager once reconnected
+     */
+    public static final String OR_GATEWAY_JOURNAL_DRAIN_RATE = "OR_GATEWAY_JOURNAL_DRAIN_RATE";
+    public static final int OR_GATEWAY_JOURNAL_DRAIN_RATE_DEFAULT = 500;
+    protected static final int JOURNAL_DRAIN_INTERVAL_MILLIS = 100;
     protected AssetStorageService assetStorageService;
     protected AssetProcessingService assetProcessingService;
     protected PersistenceService persistenceService;
@@ -79,6 +104,13 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
     protected ManagerIdentityService identityService;
     protected final Map<String, GatewayConnection> connectionRealmMap = new HashMap<>();
     protected final Map<String, WebsocketIOClient<String>> clientRealmMap = new HashMap<>();
+    protected final Map<String, GatewayEventBatcher> batcherRealmMap = new ConcurrentHashMap<>();
+    protected GatewayEventBatcher.Settings tunnelSettings;
+    protected MeterRegistry meterRegistry;
+    protected final Map<String, GatewayEventJournal> journalRealmMap = new ConcurrentHashMap<>();
+    protected final Map<String, ScheduledFuture<?>> journalDrainRealmMap = new ConcurrentHashMap<>();
+    protected int journalMaxSizeMb;
+    protected int journalDrainRate;
 
     @Override
     public void init(Container container) throws Exception {
@@ -89,6 +121,10 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         clientEventService = container.getService(ClientEventService.class);
         timerService = container.getService(TimerService.class);
         identityService = container.getService(ManagerIdentityService.class);
+        meterRegistry = container.getMeterRegistry();
+        tunnelSettings = GatewayService.getTunnelSettings(container);
+        journalMaxSizeMb = getInteger(container.getConfig(), OR_GATEWAY_JOURNAL_MAX_SIZE_MB, OR_GATEWAY_JOURNAL_MAX_SIZE_MB_DEFAULT);
+        journalDrainRate = Math.max(1, getInteger(container.getConfig(), OR_GATEWAY_JOURNAL_DRAIN_RATE, OR_GATEWAY_JOURNAL_DRAIN_RATE_DEFAULT));
 
         container.getService(ManagerWebService.class).addApiSingleton(
             new GatewayClientResourceImpl(timerService, identityService, this)
@@ -182,6 +218,7 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
                     if (client != null) {
                         destroyGatewayClient(connection, client);
                     }
+                    deleteJournal(connection.getLocalRealm());
                     break;
             }
         }
@@ -221,12 +258,32 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
                 new ChannelHandler[] {new AbstractNettyIOClient.MessageToMessageDecoder<>(String.class, client)}
             );
 
-            client.addConnectionStatusConsumer(
-                connectionStatus -> onGatewayClientConnectionStatusChanged(connection, connectionStatus)
-            );
+            client.addConnectionStatusConsumer(connectionStatus -> {
+                onGatewayClientConnectionStatusChanged(connection, connectionStatus);
+                if (connectionStatus == ConnectionStatus.CONNECTED) {
+                    startJournalDrain(client, connection.getLocalRealm());
+                } else {
+                    // Batching is re-enabled when the central manager advertises support on the next connection
+                    GatewayEventBatcher batcher = batcherRealmMap.get(connection.getLocalRealm());
+                    if (batcher != null) {
+                        batcher.onDisconnected();
+                    }
+                }
+            });
 
             client.addMessageConsumer(message -> onCentralManagerMessage(connection, message));
 
+            // Batching is only used once the central manager advertises support for it
+            String realm = connection.getLocalRealm();
+            GatewayEventBatcher batcher = new GatewayEventBatcher(
+                executorService,
+                message -> writeCentralManagerMessage(realm, messageToString(SharedEvent.MESSAGE_PREFIX, message)),
+                tunnelSettings,
+                meterRegistry,
+                Tags.of("realm", realm));
+            batcherRealmMap.put(realm, batcher);
+            GatewayEventJournal journal = createJournal(realm);
+
             // Subscribe to Asset<?> and attribute events of local realm and pass through to connected manager
             clientEventService.addInternalSubscription(
                 getClientSessionKey(connection)+"Asset",
@@ -239,8 +296,7 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
                 getClientSessionKey(connection)+"Attribute",
                 AttributeEvent.class,
                 new AssetFilter<AttributeEvent>().setRealm(connection.getLocalRealm()),
-                attributeEvent ->
-                    sendCentralManagerMessage(connection.getLocalRealm(), messageToString(SharedEvent.MESSAGE_PREFIX, attributeEvent)));
+                attributeEvent -> onLocalAttributeEvent(realm, client, batcher, journal, attributeEvent));
 
             client.connect();
             return client;
@@ -270,6 +326,127 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         if (connection != null) {
             clientEventService.cancelInternalSubscription(getClientSessionKey(connection)+"Asset");
             clientEventService.cancelInternalSubscription(getClientSessionKey(connection)+"Attribute");
+            GatewayEventBatcher batcher = batcherRealmMap.remove(connection.getLocalRealm());
+            if (batcher != null) {
+                batcher.reset();
+            }
+            stopJournalDrain(connection.getLocalRealm());
+            GatewayEventJournal journal = journalRealmMap.remove(connection.getLocalRealm());
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    /**
+     * Attribute events are journaled whilst the central manager is not connected and also whilst the journal is being
+     * drained, otherwise newer values would overtake journaled ones and the journaled ones would be seen as outdated
+     */
+    protected void onLocalAttributeEvent(String realm, WebsocketIOClient<String> client, GatewayEventBatcher batcher, GatewayEventJournal journal, AttributeEvent event) {
+        if (journal == null) {
+            batcher.send(event);
+            return;
+        }
+
+        synchronized (journal) {
+            if (client.getConnectionStatus() == ConnectionStatus.CONNECTED && journal.isEmpty()) {
+                batcher.send(event);
+                return;
+            }
+
+            long dropped = journal.getDroppedCount();
+            if (journal.append(event)) {
+                incrementJournalCounter("appended", realm);
+            } else if (journal.getDroppedCount() > dropped) {
+                incrementJournalCounter("dropped", realm);
+            }
+        }
+    }
+
+    protected GatewayEventJournal createJournal(String realm) {
+        if (journalMaxSizeMb <= 0) {
+            return null;
+        }
+
+        try {
+            GatewayEventJournal journal = new GatewayEventJournal(getJournalPath(realm), journalMaxSizeMb * 1024 * 1024);
+            journalRealmMap.put(realm, journal);
+            return journal;
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to create gateway event journal so events generated whilst disconnected will be lost: realm=" + realm, e);
+            return null;
+        }
+    }
+
+    protected void deleteJournal(String realm) {
+        stopJournalDrain(realm);
+        GatewayEventJournal journal = journalRealmMap.remove(realm);
+        if (journal != null) {
+            journal.delete();
+        } else {
+            try {
+                Files.deleteIfExists(getJournalPath(realm));
+            } catch (Exception e) {
+                LOG.log(Level.INFO, "Failed to delete gateway event journal: realm=" + realm, e);
+            }
+        }
+    }
+
+    protected Path getJournalPath(String realm) {
+        return persistenceService.getStorageDir().resolve("gateway").resolve("journal-" + realm + ".dat");
+    }
+
+    protected void startJournalDrain(WebsocketIOClient<String> client, String realm) {
+        GatewayEventJournal journal = journalRealmMap.get(realm);
+        GatewayEventBatcher batcher = batcherRealmMap.get(realm);
+
+        if (journal == null || batcher == null || journal.isEmpty()) {
+            return;
+        }
+
+        int maxEventsPerInterval = Math.max(1, journalDrainRate * JOURNAL_DRAIN_INTERVAL_MILLIS / 1000);
+        LOG.info("Forwarding journaled events to central manager: realm=" + realm + ", bytes=" + journal.getSize());
+
+        journalDrainRealmMap.compute(realm, (r, existing) -> {
+            if (existing != null) {
+                existing.cancel(false);
+            }
+            return executorService.scheduleWithFixedDelay(() -> {
+                synchronized (journal) {
+                    if (client.getConnectionStatus() != ConnectionStatus.CONNECTED) {
+                        stopJournalDrain(realm);
+                        return;
+                    }
+                    int drained = journal.drain(batcher::send, maxEventsPerInterval);
+                    if (drained > 0) {
+                        incrementJournalCounter("drained", realm, drained);
+                    }
+                    if (journal.isEmpty()) {
+                        LOG.info("Finished forwarding journaled events to central manager: realm=" + realm);
+                        stopJournalDrain(realm);
+                    }
+                }
+            }, 0, JOURNAL_DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    protected void stopJournalDrain(String realm) {
+        ScheduledFuture<?> drainFuture = journalDrainRealmMap.remove(realm);
+        if (drainFuture != null) {
+            drainFuture.cancel(false);
+        }
+    }
+
+    protected void incrementJournalCounter(String type, String realm) {
+        incrementJournalCounter(type, realm, 1);
+    }
+
+    protected void incrementJournalCounter(String type, String realm, int amount) {
+        if (meterRegistry != null) {
+            Counter.builder("or.gateway.journal.events")
+                .tags("realm", realm, "type", type)
+                .register(meterRegistry)
+                .increment(amount);
         }
     }
 
@@ -296,65 +473,101 @@ public class GatewayClientService extends RouteBuilder implements ContainerServi
         }
 
         if (event != null) {
-            if (event instanceof GatewayDisconnectEvent) {
-                if (((GatewayDisconnectEvent)event).getReason() == GatewayDisconnectEvent.Reason.PERMANENT_ERROR) {
-                    LOG.info("Central manager requested disconnect due to permanent error (likely this version of the edge gateway software is not compatible with that manager version)");
-                    destroyGatewayClient(connection, clientRealmMap.get(connection.getLocalRealm()));
-                    clientRealmMap.put(connection.getLocalRealm(), null);
-                }
-            } else if (event instanceof AttributeEvent) {
-                assetProcessingService.sendAttributeEvent((AttributeEvent)event, getClass().getName());
-            } else if (event instanceof AssetEvent) {
-                AssetEvent assetEvent = (AssetEvent)event;
-                if (assetEvent.getCause() == AssetEvent.Cause.CREATE || assetEvent.getCause() == AssetEvent.Cause.UPDATE) {
-                    Asset asset = assetEvent.getAsset();
-                    asset.setRealm(connection.getLocalRealm());
-                    LOG.finest("Request from central manager to create/update an asset: Realm=" + connection.getLocalRealm() + ", Asset<?> ID=" + asset.getId());
-                    try {
-                        asset = assetStorageService.merge(asset, true);
-                    } catch (Exception e) {
-                        LOG.log(Level.INFO, "Request from central manager to create/update an asset failed: Realm=" + connection.getLocalRealm() + ", Asset<?> ID=" + asset.getId(), e);
-                    }
-                }
-            } else if (event instanceof DeleteAssetsRequestEvent) {
-                DeleteAssetsRequestEvent deleteRequest = (DeleteAssetsRequestEvent)event;
-                LOG.finest("Request from central manager to delete asset(s): Realm=" + connection.getLocalRealm() + ", Asset<?> IDs=" + Arrays.toString(deleteRequest.getAssetIds().toArray()));
-                boolean success = false;
+            onCentralManagerEvent(connection, messageId, event);
+        }
+    }
+
+    protected void onCentralManagerEvent(GatewayConnection connection, String messageId, SharedEvent event) {
+        if (event instanceof GatewayEventBatchEvent batchEvent) {
+            GatewayEventBatcher batcher = batcherRealmMap.get(connection.getLocalRealm());
+            if (batcher != null) {
+                batcher.onBatchReceived(batchEvent).forEach(batchedEvent -> onCentralManagerEvent(connection, null, batchedEvent));
+            }
+        } else if (event instanceof GatewayEventBatchAckEvent ackEvent) {
+            GatewayEventBatcher batcher = batcherRealmMap.get(connection.getLocalRealm());
+            if (batcher != null) {
+                batcher.onAck(ackEvent.getSequence());
+            }
+        } else if (event instanceof GatewayDisconnectEvent) {
+            if (((GatewayDisconnectEvent)event).getReason() == GatewayDisconnectEvent.Reason.PERMANENT_ERROR) {
+                LOG.info("Central manager requested disconnect due to permanent error (likely this version of the edge gateway software is not compatible with that manager version)");
+                destroyGatewayClient(connection, clientRealmMap.get(connection.getLocalRealm()));
+                clientRealmMap.put(connection.getLocalRealm(), null);
+            }
+        } else if (event instanceof AttributeEvent) {
+            assetProcessingService.sendAttributeEvent((AttributeEvent)event, getClass().getName());
+        } else if (event instanceof AssetEvent) {
+            AssetEvent assetEvent = (AssetEvent)event;
+            if (assetEvent.getCause() == AssetEvent.Cause.CREATE || assetEvent.getCause() == AssetEvent.Cause.UPDATE) {
+                Asset asset = assetEvent.getAsset();
+                asset.setRealm(connection.getLocalRealm());
+                LOG.finest("Request from central manager to create/update an asset: Realm=" + connection.getLocalRealm() + ", Asset<?> ID=" + asset.getId());
                 try {
-                    success = assetStorageService.delete(deleteRequest.getAssetIds());
+                    asset = assetStorageService.merge(asset, true);
                 } catch (Exception e) {
-                    LOG.log(Level.INFO, "Request from central manager to create/update an asset failed: Realm=" + connection.getLocalRealm() + ", Asset<?> IDs=" + Arrays.toString(deleteRequest.getAssetIds().toArray()), e);
-                } finally {
-                    sendCentralManagerMessage(
-                        connection.getLocalRealm(),
-                        messageToString(
-                            EventRequestResponseWrapper.MESSAGE_PREFIX,
-                            new EventRequestResponseWrapper<>(
-                                messageId,
-                                new DeleteAssetsResponseEvent(success, deleteRequest.getAssetIds())
-                            )
-                    ));
+                    LOG.log(Level.INFO, "Request from central manager to create/update an asset failed: Realm=" + connection.getLocalRealm() + ", Asset<?> ID=" + asset.getId(), e);
                 }
-            } else if (event instanceof ReadAssetsEvent) {
-                ReadAssetsEvent readAssets = (ReadAssetsEvent)event;
-                AssetQuery query = readAssets.getAssetQuery();
-                // Force realm to be the one that this client is associated with
-                query.realm(new RealmPredicate(connection.getLocalRealm()));
-                List<Asset<?>> assets = assetStorageService.findAll(readAssets.getAssetQuery());
-
+            }
+        } else if (event instanceof DeleteAssetsRequestEvent) {
+            DeleteAssetsRequestEvent deleteRequest = (DeleteAssetsRequestEvent)event;
+            LOG.finest("Request from central manager to delete asset(s): Realm=" + connection.getLocalRealm() + ", Asset<?> IDs=" + Arrays.toString(deleteRequest.getAssetIds().toArray()));
+            boolean success = false;
+            try {
+                success = assetStorageService.delete(deleteRequest.getAssetIds());
+            } catch (Exception e) {
+                LOG.log(Level.INFO, "Request from central manager to create/update an asset failed: Realm=" + connection.getLocalRealm() + ", Asset<?> IDs=" + Arrays.toString(deleteRequest.getAssetIds().toArray()), e);
+            } finally {
                 sendCentralManagerMessage(
                     connection.getLocalRealm(),
                     messageToString(
                         EventRequestResponseWrapper.MESSAGE_PREFIX,
                         new EventRequestResponseWrapper<>(
                             messageId,
-                            new AssetsEvent(assets)
-                        )));
+                            new DeleteAssetsResponseEvent(success, deleteRequest.getAssetIds())
+                        )
+                ));
             }
+        } else if (event instanceof ReadAssetsEvent) {
+            ReadAssetsEvent readAssets = (ReadAssetsEvent)event;
+            AssetQuery query = readAssets.getAssetQuery();
+            // Force realm to be the one that this client is associated with
+            query.realm(new RealmPredicate(connection.getLocalRealm()));
+            List<Asset<?>> assets = assetStorageService.findAll(readAssets.getAssetQuery());
+
+            sendCentralManagerMessage(
+                connection.getLocalRealm(),
+                messageToString(
+                    EventRequestResponseWrapper.MESSAGE_PREFIX,
+                    new EventRequestResponseWrapper<>(
+                        messageId,
+                        new AssetsEvent(assets)
+                    )));
+        } else if (event instanceof GatewayAssetManifestRequestEvent) {
+            List<GatewayAssetManifestEvent.Entry> entries = assetStorageService.findAssetManifest(connection.getLocalRealm(), null);
+
+            sendCentralManagerMessage(
+                connection.getLocalRealm(),
+                messageToString(
+                    EventRequestResponseWrapper.MESSAGE_PREFIX,
+                    new EventRequestResponseWrapper<>(
+                        messageId,
+                        new GatewayAssetManifestEvent(entries)
+                    )));
         }
     }
 
+    /**
+     * Sends any batched events first so ordering is maintained
+     */
     protected void sendCentralManagerMessage(String realm, String message) {
+        GatewayEventBatcher batcher = batcherRealmMap.get(realm);
+        if (batcher != null) {
+            batcher.flush();
+        }
+        writeCentralManagerMessage(realm, message);
+    }
+
+    protected void writeCentralManagerMessage(String realm, String message) {
         WebsocketIOClient<String> client;
 
         synchronized (clientRealmMap) {
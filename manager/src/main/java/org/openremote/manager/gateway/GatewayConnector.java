@@ -19,6 +19,9 @@
  */
 package org.openremote.manager.gateway;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import org.openremote.container.util.UniqueIdentifierGenerator;
 import org.openremote.manager.asset.AssetProcessingService;
 import org.openremote.manager.asset.AssetStorageService;
@@ -28,15 +31,24 @@ import org.openremote.model.asset.impl.GatewayAsset;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.event.shared.EventRequestResponseWrapper;
 import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.gateway.GatewayAssetManifestEvent;
+import org.openremote.model.gateway.GatewayAssetManifestRequestEvent;
 import org.openremote.model.gateway.GatewayDisconnectEvent;
+import org.openremote.model.gateway.GatewayEventBatchAckEvent;
+import org.openremote.model.gateway.GatewayEventBatchEvent;
 import org.openremote.model.query.AssetQuery;
 import org.openremote.model.syslog.SyslogCategory;
 import org.openremote.model.util.Pair;
 
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -60,16 +72,26 @@ public class GatewayConnector {
     public static long ASSET_CRUD_TIMEOUT_MILLIS = 10000; // How long to wait for a response when merging an asset before throwing an exception
     public static int MAX_SYNC_RETRIES = 5;
     public static int SYNC_ASSET_BATCH_SIZE = 20;
+    public static int SYNC_WINDOW_SIZE = 4; // How many asset batch requests can be in flight at the same time
+    public static int GATEWAY_EVENT_DISPATCH_LIMIT = 100; // How many gateway events to process before yielding the executor thread to other gateways
+    public static int GATEWAY_EVENT_QUEUE_CAPACITY = 10000; // How many received gateway events can wait to be processed before the gateway is disconnected
     public static final String ASSET_READ_EVENT_NAME_INITIAL = "INITIAL";
     public static final String ASSET_READ_EVENT_NAME_BATCH = "BATCH";
+    public static final String ASSET_READ_EVENT_NAME_MANIFEST = "MANIFEST";
     protected static final Map<String, Pair<Function<String, String>, Function<String, String>>> ASSET_ID_MAPPERS = new HashMap<>();
     protected final String realm;
     protected final String gatewayId;
     protected final AssetStorageService assetStorageService;
     protected final ScheduledExecutorService executorService;
+    protected final Executor gatewayEventExecutor;
     protected final AssetProcessingService assetProcessingService;
+    protected final GatewayEventBatcher eventBatcher;
     protected final Map<String, Asset<?>> pendingAssetMerges = new HashMap<>();
     protected final AtomicReference<EventRequestResponseWrapper<DeleteAssetsRequestEvent>> pendingAssetDelete = new AtomicReference<>();
+    protected final BlockingQueue<Pair<String, SharedEvent>> gatewayEventQueue = new LinkedBlockingQueue<>(GATEWAY_EVENT_QUEUE_CAPACITY);
+    protected final AtomicBoolean gatewayEventDispatchScheduled = new AtomicBoolean();
+    protected final AtomicBoolean gatewayEventQueueOverflow = new AtomicBoolean();
+    protected final Counter gatewayEventsDroppedCounter;
     protected List<AssetEvent> cachedAssetEvents;
     protected List<AttributeEvent> cachedAttributeEvents;
     protected Consumer<Object> gatewayMessageConsumer;
@@ -77,8 +99,12 @@ public class GatewayConnector {
     protected boolean disabled;
     protected boolean initialSyncInProgress;
     protected ScheduledFuture<?> syncProcessorFuture;
+    protected Boolean manifestSupported; // Unknown until the gateway responds to (or ignores) a manifest request on this connection
+    protected final Map<Integer, List<Asset<?>>> syncBatchResponses = new HashMap<>();
     List<String> syncAssetIds;
-    int syncIndex;
+    List<List<String>> syncBatches;
+    int syncBatchIndex;
+    int syncBatchRequestIndex;
     int syncErrors;
     GatewayAsset gateway;
     String expectedSyncResponseName;
@@ -126,18 +152,55 @@ public class GatewayConnector {
         AssetProcessingService assetProcessingService,
         ScheduledExecutorService executorService,
         GatewayAsset gateway) {
+        this(assetStorageService, assetProcessingService, executorService, gateway, GatewayEventBatcher.Settings.DISABLED, null);
+    }
+
+    public GatewayConnector(
+        AssetStorageService assetStorageService,
+        AssetProcessingService assetProcessingService,
+        ScheduledExecutorService executorService,
+        GatewayAsset gateway,
+        GatewayEventBatcher.Settings tunnelSettings,
+        MeterRegistry meterRegistry) {
+        this(assetStorageService, assetProcessingService, executorService, executorService, gateway, tunnelSettings, meterRegistry);
+    }
+
+    public GatewayConnector(
+        AssetStorageService assetStorageService,
+        AssetProcessingService assetProcessingService,
+        ScheduledExecutorService executorService,
+        Executor gatewayEventExecutor,
+        GatewayAsset gateway,
+        GatewayEventBatcher.Settings tunnelSettings,
+        MeterRegistry meterRegistry) {
 
         this.assetStorageService = assetStorageService;
         this.assetProcessingService = assetProcessingService;
         this.executorService = executorService;
+        this.gatewayEventExecutor = gatewayEventExecutor;
         boolean disabled = gateway.getDisabled().orElse(false);
         this.realm = gateway.getRealm();
         this.gatewayId = gateway.getId();
         this.disabled = disabled;
         this.gateway = gateway;
+        this.eventBatcher = new GatewayEventBatcher(executorService, this::doSendMessageToGateway, tunnelSettings, meterRegistry, Tags.of("gatewayId", gatewayId));
+        this.gatewayEventsDroppedCounter = meterRegistry != null ? meterRegistry.counter("or.gateway.events.dropped", Tags.of("gatewayId", gatewayId)) : null;
     }
 
+    /**
+     * Attribute events are batched if batching is enabled and supported by the gateway; any other message causes queued
+     * events to be sent first so ordering is maintained
+     */
     public void sendMessageToGateway(Object message) {
+        if (message instanceof AttributeEvent attributeEvent && eventBatcher.isBatching()) {
+            eventBatcher.send(attributeEvent);
+            return;
+        }
+        eventBatcher.flush();
+        doSendMessageToGateway(message);
+    }
+
+    protected void doSendMessageToGateway(Object message) {
         try {
             if (gatewayMessageConsumer != null) {
                 gatewayMessageConsumer.accept(message);
@@ -166,12 +229,23 @@ public class GatewayConnector {
         sendAttributeEvent(new AttributeEvent(gatewayId, GatewayAsset.STATUS, ConnectionStatus.CONNECTING));
 
         // Reinitialise state
+        gatewayEventQueue.clear();
+        gatewayEventQueueOverflow.set(false);
+        eventBatcher.reset();
+        eventBatcher.setPeerSupportsBatches(false);
+        // Let the gateway know it can send batches (older gateways ignore this)
+        doSendMessageToGateway(GatewayEventBatcher.createAdvertisement());
         syncProcessorFuture = null;
         cachedAssetEvents = new ArrayList<>();
         cachedAttributeEvents = new ArrayList<>();
         syncAssetIds = null;
-        syncIndex = 0;
+        syncBatches = null;
+        syncBatchIndex = 0;
+        syncBatchRequestIndex = 0;
+        syncBatchResponses.clear();
         syncErrors = 0;
+        // The gateway may have been upgraded or the last manifest request may just have timed out
+        manifestSupported = null;
 
         startSync();
     }
@@ -192,6 +266,10 @@ public class GatewayConnector {
         initialSyncInProgress = false;
         pendingAssetMerges.clear();
         pendingAssetDelete.set(null);
+        gatewayEventQueue.clear();
+        eventBatcher.reset();
+        syncBatches = null;
+        syncBatchResponses.clear();
 
         if (syncProcessorFuture != null) {
             syncProcessorFuture.cancel(true);
@@ -248,13 +326,81 @@ public class GatewayConnector {
         assetProcessingService.sendAttributeEvent(event, GatewayService.class.getName());
     }
 
+    /**
+     * Queue an event received from the gateway for processing on the gateway event executor; events from a gateway are
+     * processed one at a time in the order they were received, events from different gateways are processed in parallel
+     * so a busy gateway doesn't hold up the thread that receives messages from all gateways.
+     * <p>
+     * The queue is bounded by {@link #GATEWAY_EVENT_QUEUE_CAPACITY}; when a gateway sends events faster than they can
+     * be processed the overflowing events are dropped and the gateway is disconnected, it will then reconnect and
+     * resynchronise its assets so no state is silently lost.
+     */
+    public void queueGatewayEvent(String messageId, SharedEvent event) {
+        if (!gatewayEventQueue.offer(new Pair<>(messageId, event))) {
+            onGatewayEventQueueOverflow(event);
+            return;
+        }
+        scheduleGatewayEventDispatch();
+    }
+
+    protected void onGatewayEventQueueOverflow(SharedEvent event) {
+        if (gatewayEventsDroppedCounter != null) {
+            gatewayEventsDroppedCounter.increment();
+        }
+        if (gatewayEventQueueOverflow.compareAndSet(false, true)) {
+            LOG.warning("Gateway event queue is full so disconnecting gateway to force a resync: Gateway ID=" + gatewayId + ", capacity=" + GATEWAY_EVENT_QUEUE_CAPACITY + ", dropped event=" + event);
+            executorService.execute(this::disconnect);
+        }
+    }
+
+    protected void scheduleGatewayEventDispatch() {
+        if (!gatewayEventQueue.isEmpty() && gatewayEventDispatchScheduled.compareAndSet(false, true)) {
+            try {
+                gatewayEventExecutor.execute(this::dispatchGatewayEvents);
+            } catch (RejectedExecutionException e) {
+                // Executor is shutting down or saturated; the next queued event will try again
+                gatewayEventDispatchScheduled.set(false);
+            }
+        }
+    }
+
+    protected void dispatchGatewayEvents() {
+        try {
+            Pair<String, SharedEvent> next;
+            int count = 0;
+            while (count++ < GATEWAY_EVENT_DISPATCH_LIMIT && (next = gatewayEventQueue.poll()) != null) {
+                try {
+                    onGatewayEvent(next.key, next.value);
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "Failed to process gateway event: Gateway ID=" + gatewayId + ", event=" + next.value, e);
+                }
+            }
+        } finally {
+            gatewayEventDispatchScheduled.set(false);
+            // Re-check as events may have been queued after the last poll
+            scheduleGatewayEventDispatch();
+        }
+    }
+
     synchronized protected void onGatewayEvent(String messageId, SharedEvent e) {
         if (!isConnected()) {
             return;
         }
 
+        if (e instanceof GatewayEventBatchEvent batchEvent) {
+            eventBatcher.onBatchReceived(batchEvent).forEach(event -> onGatewayEvent(null, event));
+            return;
+        }
+
+        if (e instanceof GatewayEventBatchAckEvent ackEvent) {
+            eventBatcher.onAck(ackEvent.getSequence());
+            return;
+        }
+
         if (initialSyncInProgress) {
-            if (e instanceof AssetsEvent) {
+            if (e instanceof GatewayAssetManifestEvent) {
+                onSyncManifestResponse(messageId, (GatewayAssetManifestEvent) e);
+            } else if (e instanceof AssetsEvent) {
                 onSyncAssetsResponse(messageId, (AssetsEvent) e);
             } else if (e instanceof AttributeEvent) {
                 cachedAttributeEvents.add((AttributeEvent) e);
@@ -273,7 +419,8 @@ public class GatewayConnector {
     }
 
     /**
-     * Get list of gateway assets (get basic details and then batch load them to minimise load)
+     * Request the gateway asset manifest so only changed assets need to be transferred; gateways that don't support
+     * the manifest (older versions) fall back to getting the basic details of all assets and then batch loading them
      */
     synchronized protected void startSync() {
 
@@ -281,10 +428,24 @@ public class GatewayConnector {
             return;
         }
 
-        expectedSyncResponseName = ASSET_READ_EVENT_NAME_INITIAL;
-        sendMessageToGateway(new EventRequestResponseWrapper<>(
-            ASSET_READ_EVENT_NAME_INITIAL,
-            new ReadAssetsEvent(new AssetQuery().select(new AssetQuery.Select().excludeAttributes()).recursive(true))));
+        if (manifestSupported == null || manifestSupported) {
+            expectedSyncResponseName = ASSET_READ_EVENT_NAME_MANIFEST;
+            sendMessageToGateway(new EventRequestResponseWrapper<>(
+                ASSET_READ_EVENT_NAME_MANIFEST,
+                new GatewayAssetManifestRequestEvent()));
+        } else {
+            expectedSyncResponseName = ASSET_READ_EVENT_NAME_INITIAL;
+            sendMessageToGateway(new EventRequestResponseWrapper<>(
+                ASSET_READ_EVENT_NAME_INITIAL,
+                new ReadAssetsEvent(new AssetQuery().select(new AssetQuery.Select().excludeAttributes()).recursive(true))));
+        }
+        scheduleSyncTimeout();
+    }
+
+    protected void scheduleSyncTimeout() {
+        if (syncProcessorFuture != null) {
+            syncProcessorFuture.cancel(false);
+        }
         syncProcessorFuture = executorService.schedule(this::onSyncAssetsTimeout, SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
     }
 
@@ -292,7 +453,16 @@ public class GatewayConnector {
      * Called if a response isn't received from the gateway within {@link #SYNC_TIMEOUT_MILLIS}
      */
     synchronized protected void onSyncAssetsTimeout() {
-        if (!isConnected()) {
+        if (!isConnected() || !initialSyncInProgress) {
+            return;
+        }
+
+        if (syncBatches == null && manifestSupported == null && ASSET_READ_EVENT_NAME_MANIFEST.equals(expectedSyncResponseName)) {
+            // Older gateways silently ignore the request; this only applies to this connection so the manifest is
+            // requested again when the gateway reconnects
+            LOG.info("Gateway didn't respond to manifest request so falling back to full sync for this connection: Gateway ID=" + gatewayId);
+            manifestSupported = false;
+            startSync();
             return;
         }
 
@@ -303,16 +473,19 @@ public class GatewayConnector {
             return;
         }
 
-        if (syncAssetIds == null) {
+        if (syncBatches == null) {
             // Haven't received initial list of assets so retry
             startSync();
         } else {
+            // Re-send all in flight batch requests
+            syncBatchRequestIndex = syncBatchIndex;
+            syncBatchResponses.clear();
             requestAssets();
         }
     }
 
     protected boolean syncAborted() {
-        if (syncErrors == MAX_SYNC_RETRIES) {
+        if (syncErrors >= MAX_SYNC_RETRIES) {
             LOG.warning("Gateway sync max retries reached so disconnecting the gateway: Gateway ID=" + gatewayId);
             sendMessageToGateway(new GatewayDisconnectEvent(GatewayDisconnectEvent.Reason.PERMANENT_ERROR));
             disconnect();
@@ -323,7 +496,8 @@ public class GatewayConnector {
     }
 
     /**
-     * Request assets in batches of {@link #SYNC_ASSET_BATCH_SIZE} to avoid overloading the gateway
+     * Request assets in batches of {@link #SYNC_ASSET_BATCH_SIZE} to avoid overloading the gateway, with up to
+     * {@link #SYNC_WINDOW_SIZE} batches in flight at any time so the round trip time isn't paid for every batch
      */
     protected void requestAssets() {
 
@@ -331,168 +505,273 @@ public class GatewayConnector {
             return;
         }
 
-        String[] requestAssetIds = syncAssetIds.stream().skip(syncIndex).limit(SYNC_ASSET_BATCH_SIZE).toArray(String[]::new);
-        expectedSyncResponseName = ASSET_READ_EVENT_NAME_BATCH + syncIndex;
+        while (syncBatchRequestIndex < syncBatches.size() && syncBatchRequestIndex - syncBatchIndex < SYNC_WINDOW_SIZE) {
+            List<String> requestAssetIds = syncBatches.get(syncBatchRequestIndex);
 
-        LOG.fine("Synchronising gateway assets " + syncIndex+1 + "-" + syncIndex + requestAssetIds.length + " of " + syncAssetIds.size());
+            LOG.fine("Synchronising gateway assets batch " + (syncBatchRequestIndex+1) + " of " + syncBatches.size() + ": Gateway ID=" + gatewayId);
 
-        sendMessageToGateway(
-            new EventRequestResponseWrapper<>(
-                expectedSyncResponseName,
-                new ReadAssetsEvent(
-                    new AssetQuery()
-                        .ids(requestAssetIds)
+            sendMessageToGateway(
+                new EventRequestResponseWrapper<>(
+                    getSyncBatchName(syncBatchRequestIndex),
+                    new ReadAssetsEvent(
+                        new AssetQuery()
+                            .ids(requestAssetIds.toArray(String[]::new))
+                    )
                 )
-            )
-        );
-        syncProcessorFuture = executorService.schedule(this::requestAssets, SYNC_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            );
+            syncBatchRequestIndex++;
+        }
+
+        scheduleSyncTimeout();
     }
 
-    synchronized protected void onSyncAssetsResponse(String messageId, AssetsEvent e) {
+    synchronized protected void onSyncManifestResponse(String messageId, GatewayAssetManifestEvent e) {
         if (!isConnected()) {
             return;
         }
 
-        if (!expectedSyncResponseName.equalsIgnoreCase(messageId)) {
+        if (!ASSET_READ_EVENT_NAME_MANIFEST.equalsIgnoreCase(messageId) || !ASSET_READ_EVENT_NAME_MANIFEST.equals(expectedSyncResponseName)) {
             LOG.info("Unexpected response from gateway so ignoring (expected=" + expectedSyncResponseName + ", actual =" + messageId + "): " + e);
             return;
         }
 
-        syncProcessorFuture.cancel(true);
+        syncProcessorFuture.cancel(false);
         syncProcessorFuture = null;
-        boolean isInitialResponse = ASSET_READ_EVENT_NAME_INITIAL.equalsIgnoreCase(messageId);
+        manifestSupported = true;
+
+        List<GatewayAssetManifestEvent.Entry> entries = e.getEntries() != null ? e.getEntries() : Collections.emptyList();
+        Map<String, GatewayAssetManifestEvent.Entry> localEntries = assetStorageService.findAssetManifest(realm, gatewayId)
+            .stream()
+            .collect(Collectors.toMap(GatewayAssetManifestEvent.Entry::getId, Function.identity()));
+
+        syncAssetIds = sortByHierarchy(entries.stream().collect(HashMap::new, (m, v) -> m.put(v.getId(), v.getParentId()), HashMap::putAll));
+
+        // Only request assets that are new or whose content or parent has changed
+        Set<String> changedAssetIds = entries.stream()
+            .filter(entry -> {
+                GatewayAssetManifestEvent.Entry localEntry = localEntries.get(mapAssetId(gatewayId, entry.getId(), false));
+                String localParentId = entry.getParentId() != null ? mapAssetId(gatewayId, entry.getParentId(), false) : gatewayId;
+                return localEntry == null
+                    || !Objects.equals(localEntry.getHash(), entry.getHash())
+                    || !localParentId.equals(localEntry.getParentId());
+            })
+            .map(GatewayAssetManifestEvent.Entry::getId)
+            .collect(Collectors.toSet());
+
+        LOG.info("Gateway manifest received, " + changedAssetIds.size() + " of " + syncAssetIds.size() + " assets require sync: Gateway ID=" + gatewayId);
+        startBatchSync(syncAssetIds.stream().filter(changedAssetIds::contains).toList());
+    }
 
-        if (isInitialResponse) {
+    synchronized protected void onSyncAssetsResponse(String messageId, AssetsEvent e) {
+        if (!isConnected()) {
+            return;
+        }
 
-            // Put assets in hierarchical order
-            Map<String, String> gatewayAssetIdParentIdMap = e.getAssets().stream()
-                .collect(HashMap::new, (m, v) -> m.put(v.getId(), v.getParentId()), HashMap::putAll);
-
-            ToIntFunction<Asset<?>> assetLevelExtractor = asset -> {
-                int level = 0;
-                String parentId = asset.getParentId();
-                while (parentId != null) {
-                    level++;
-                    parentId = gatewayAssetIdParentIdMap.get(parentId);
-                }
-                return level;
-            };
+        boolean isInitialResponse = ASSET_READ_EVENT_NAME_INITIAL.equalsIgnoreCase(messageId);
 
-            syncAssetIds = e.getAssets()
-                .stream()
-                .sorted(Comparator.comparingInt(assetLevelExtractor))
-                .map(Asset::getId)
-                .collect(Collectors.toList());
+        if (isInitialResponse) {
 
-            if (syncAssetIds.isEmpty()) {
-                deleteObsoleteLocalAssets();
-                onInitialSyncComplete();
+            if (!ASSET_READ_EVENT_NAME_INITIAL.equals(expectedSyncResponseName)) {
+                LOG.info("Unexpected response from gateway so ignoring (expected=" + expectedSyncResponseName + ", actual =" + messageId + "): " + e);
                 return;
             }
 
-            requestAssets();
+            syncProcessorFuture.cancel(false);
+            syncProcessorFuture = null;
 
-        } else {
+            // Put assets in hierarchical order
+            syncAssetIds = sortByHierarchy(e.getAssets().stream()
+                .collect(HashMap::new, (m, v) -> m.put(v.getId(), v.getParentId()), HashMap::putAll));
 
-            List<String> requestedAssetIds = syncAssetIds.stream().skip(syncIndex).limit(SYNC_ASSET_BATCH_SIZE).collect(Collectors.toList());
-            List<Asset<?>> returnedAssets = e.getAssets();
+            startBatchSync(new ArrayList<>(syncAssetIds));
+            return;
+        }
 
-            // Remove any assets that have been deleted since requested
-            cachedAssetEvents.removeIf(
-                assetEvent -> {
-                    boolean remove = requestedAssetIds.stream().anyMatch(id -> id.equals(assetEvent.getId()) && assetEvent.getCause() == AssetEvent.Cause.DELETE);
-                    if (remove) {
-                        syncAssetIds.remove(assetEvent.getId());
-                        requestedAssetIds.remove(assetEvent.getId());
-                    }
-                    return remove;
-                });
+        int batchIndex = getSyncBatchIndex(messageId);
+
+        if (syncBatches == null || batchIndex < syncBatchIndex || batchIndex >= syncBatchRequestIndex) {
+            LOG.info("Unexpected response from gateway so ignoring (expected=" + getSyncBatchName(syncBatchIndex) + "-" + getSyncBatchName(syncBatchRequestIndex-1) + ", actual =" + messageId + "): " + e);
+            return;
+        }
+
+        // Batches must be merged in order so parents are always merged before their children
+        syncBatchResponses.put(batchIndex, e.getAssets());
+        scheduleSyncTimeout();
 
-            if (returnedAssets.size() != requestedAssetIds.size() || !returnedAssets.stream().allMatch(asset -> requestedAssetIds.contains(asset.getId()))) {
+        while (syncBatches != null && syncBatchResponses.containsKey(syncBatchIndex)) {
+            if (!mergeSyncBatch(syncBatches.get(syncBatchIndex), syncBatchResponses.remove(syncBatchIndex))) {
                 LOG.warning("Retrieved gateway asset batch count or ID mismatch, attempting to re-send the request");
                 syncErrors++;
+                syncBatchRequestIndex = syncBatchIndex;
+                syncBatchResponses.clear();
                 requestAssets();
                 return;
             }
 
-            // Returned asset order may not match request order so re-order
-            returnedAssets = returnedAssets.stream()
-                .sorted(Comparator.comparingInt(a -> syncAssetIds.indexOf(a.getId())))
-                .collect(Collectors.toList());
-
-            // Merge returned assets ensuring the latest version of each is merged
-            returnedAssets.stream()
-                .map(returnedAsset -> {
-                    final AtomicReference<Asset<?>> latestAssetVersion = new AtomicReference<>(returnedAsset);
-                    cachedAssetEvents.removeIf(
-                        assetEvent -> {
-                            boolean remove = assetEvent.getId().equals(returnedAsset.getId()) && (assetEvent.getCause() == AssetEvent.Cause.UPDATE || assetEvent.getCause() == AssetEvent.Cause.READ);
-                            if (remove && assetEvent.getAsset().getVersion() > latestAssetVersion.get().getVersion()) {
-                                latestAssetVersion.set(assetEvent.getAsset());
-                            }
-                            return remove;
-                        });
-                    return latestAssetVersion.get();
-                }).forEach(this::saveAssetLocally);
-
-
-            // Request next batch or move on
-            syncIndex += requestedAssetIds.size();
-            if (syncIndex >= syncAssetIds.size()) {
-                LOG.info("All requested gateway assets retrieved");
-
-                Set<String> refreshAssets = new HashSet<>();
-
-                cachedAssetEvents.forEach(
+            syncBatchIndex++;
+
+            // Request next batch(es) or move on
+            if (syncBatchIndex >= syncBatches.size()) {
+                onSyncBatchesComplete();
+            } else {
+                requestAssets();
+            }
+        }
+    }
+
+    /**
+     * Batch requests are named using the offset of the first asset in the batch
+     */
+    protected static String getSyncBatchName(int batchIndex) {
+        return ASSET_READ_EVENT_NAME_BATCH + (batchIndex * SYNC_ASSET_BATCH_SIZE);
+    }
+
+    protected static int getSyncBatchIndex(String messageId) {
+        if (messageId == null || !messageId.toUpperCase(Locale.ROOT).startsWith(ASSET_READ_EVENT_NAME_BATCH)) {
+            return -1;
+        }
+        try {
+            int offset = Integer.parseInt(messageId.substring(ASSET_READ_EVENT_NAME_BATCH.length()));
+            return offset % SYNC_ASSET_BATCH_SIZE == 0 ? offset / SYNC_ASSET_BATCH_SIZE : -1;
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Returns the asset IDs ordered by their depth in the hierarchy so parents are always merged before children
+     */
+    protected static List<String> sortByHierarchy(Map<String, String> assetIdParentIdMap) {
+        ToIntFunction<String> assetLevelExtractor = assetId -> {
+            int level = 0;
+            String parentId = assetIdParentIdMap.get(assetId);
+            while (parentId != null) {
+                level++;
+                parentId = assetIdParentIdMap.get(parentId);
+            }
+            return level;
+        };
+
+        return assetIdParentIdMap.keySet()
+            .stream()
+            .sorted(Comparator.comparingInt(assetLevelExtractor))
+            .collect(Collectors.toList());
+    }
+
+    protected void startBatchSync(List<String> requestAssetIds) {
+        syncBatches = new ArrayList<>();
+        syncBatchIndex = 0;
+        syncBatchRequestIndex = 0;
+        syncBatchResponses.clear();
+
+        for (int i = 0; i < requestAssetIds.size(); i += SYNC_ASSET_BATCH_SIZE) {
+            syncBatches.add(requestAssetIds.subList(i, Math.min(i + SYNC_ASSET_BATCH_SIZE, requestAssetIds.size())));
+        }
+
+        if (syncBatches.isEmpty()) {
+            onSyncBatchesComplete();
+            return;
+        }
+
+        requestAssets();
+    }
+
+    /**
+     * Merge a batch of returned assets ensuring the latest version of each is merged; returns false if the returned
+     * assets don't match the requested assets.
+     */
+    protected boolean mergeSyncBatch(List<String> batchAssetIds, List<Asset<?>> returnedAssets) {
+
+        List<String> requestedAssetIds = new ArrayList<>(batchAssetIds);
+
+        // Remove any assets that have been deleted since requested
+        cachedAssetEvents.removeIf(
+            assetEvent -> {
+                boolean remove = requestedAssetIds.stream().anyMatch(id -> id.equals(assetEvent.getId()) && assetEvent.getCause() == AssetEvent.Cause.DELETE);
+                if (remove) {
+                    syncAssetIds.remove(assetEvent.getId());
+                    requestedAssetIds.remove(assetEvent.getId());
+                }
+                return remove;
+            });
+
+        if (returnedAssets == null || returnedAssets.size() != requestedAssetIds.size() || !returnedAssets.stream().allMatch(asset -> requestedAssetIds.contains(asset.getId()))) {
+            return false;
+        }
+
+        // Returned asset order may not match request order so re-order
+        returnedAssets.stream()
+            .sorted(Comparator.comparingInt(a -> requestedAssetIds.indexOf(a.getId())))
+            .map(returnedAsset -> {
+                final AtomicReference<Asset<?>> latestAssetVersion = new AtomicReference<>(returnedAsset);
+                cachedAssetEvents.removeIf(
                     assetEvent -> {
-                        if (assetEvent.getCause() == AssetEvent.Cause.DELETE) {
-                            syncAssetIds.remove(assetEvent.getId());
-                        } else if (assetEvent.getCause() == AssetEvent.Cause.CREATE) {
-                            syncAssetIds.add(assetEvent.getId());
-                            try {
-                                saveAssetLocally(assetEvent.getAsset());
-                            } catch (Exception ex) {
-                                LOG.log(Level.SEVERE, "Failed to add new gateway asset (Gateway ID=" + gatewayId + ", Asset=" + assetEvent.getAsset(), ex);
-                            }
-                        } else {
-                            refreshAssets.add(assetEvent.getId());
+                        boolean remove = assetEvent.getId().equals(returnedAsset.getId()) && (assetEvent.getCause() == AssetEvent.Cause.UPDATE || assetEvent.getCause() == AssetEvent.Cause.READ);
+                        if (remove && assetEvent.getAsset().getVersion() > latestAssetVersion.get().getVersion()) {
+                            latestAssetVersion.set(assetEvent.getAsset());
                         }
-                    }
-                );
+                        return remove;
+                    });
+                return latestAssetVersion.get();
+            }).forEach(this::saveAssetLocally);
 
-                deleteObsoleteLocalAssets();
-                onInitialSyncComplete();
+        return true;
+    }
 
-                // Refresh attributes that have changed
-                cachedAttributeEvents.forEach(attributeEvent -> {
-                    String assetId = attributeEvent.getId();
-                    if (!refreshAssets.contains(assetId)) {
-                        LOG.info("1 or more gateway asset attribute values have changed so requesting the asset again (Gateway ID=" + gatewayId + ", Asset<?> ID=" + assetId);
-                        refreshAssets.add(assetId);
-                    }
-                });
+    protected void onSyncBatchesComplete() {
+        LOG.info("All requested gateway assets retrieved: Gateway ID=" + gatewayId);
 
-                // Refresh assets that have changed
-                refreshAssets.forEach(id -> sendMessageToGateway(new ReadAssetEvent(id)));
-            } else {
-                requestAssets();
-            }
+        if (syncProcessorFuture != null) {
+            syncProcessorFuture.cancel(false);
+            syncProcessorFuture = null;
         }
+
+        Set<String> refreshAssets = new HashSet<>();
+        List<AttributeEvent> replayAttributeEvents = new ArrayList<>(cachedAttributeEvents);
+        syncAssetIds = new ArrayList<>(syncAssetIds);
+
+        cachedAssetEvents.forEach(
+            assetEvent -> {
+                if (assetEvent.getCause() == AssetEvent.Cause.DELETE) {
+                    syncAssetIds.remove(assetEvent.getId());
+                } else if (assetEvent.getCause() == AssetEvent.Cause.CREATE) {
+                    syncAssetIds.add(assetEvent.getId());
+                    try {
+                        saveAssetLocally(assetEvent.getAsset());
+                    } catch (Exception ex) {
+                        LOG.log(Level.SEVERE, "Failed to add new gateway asset (Gateway ID=" + gatewayId + ", Asset=" + assetEvent.getAsset(), ex);
+                    }
+                } else {
+                    refreshAssets.add(assetEvent.getId());
+                }
+            }
+        );
+
+        Set<String> knownAssetIds = new HashSet<>(syncAssetIds);
+        deleteObsoleteLocalAssets();
+        onInitialSyncComplete();
+
+        // Replay attribute events received during the sync; events older than the synced values are marked outdated
+        // by the processing chain so this is safe for assets that were transferred after the event was received
+        replayAttributeEvents.stream()
+            .filter(attributeEvent -> knownAssetIds.contains(attributeEvent.getId()) && !refreshAssets.contains(attributeEvent.getId()))
+            .forEach(this::onAttributeEvent);
+
+        // Refresh assets that have changed
+        refreshAssets.forEach(id -> sendMessageToGateway(new ReadAssetEvent(id)));
     }
 
     protected void deleteObsoleteLocalAssets() {
 
         // Find obsolete local assets
-        List<Asset<?>> localAssets = assetStorageService.findAll(
+        List<String> localAssetIds = assetStorageService.findAllIds(
             new AssetQuery()
-                .select(new AssetQuery.Select().excludeAttributes())
                 .recursive(true)
                 .parents(gatewayId)
         );
 
         // Delete obsolete assets
-        List<String> obsoleteLocalAssetIds = localAssets.stream()
-            .map(Asset::getId)
+        List<String> obsoleteLocalAssetIds = localAssetIds.stream()
             .filter(id -> !syncAssetIds.contains(mapAssetId(gatewayId, id, true)))
             .toList();
 
@@ -0,0 +1,416 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.gateway;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.openremote.model.event.shared.SharedEvent;
+import org.openremote.model.gateway.GatewayEventBatchAckEvent;
+import org.openremote.model.gateway.GatewayEventBatchEvent;
+import org.openremote.model.syslog.SyslogCategory;
+import org.openremote.model.util.ValueUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.openremote.model.syslog.SyslogCategory.GATEWAY;
+
+/**
+ * Coalesces {@link SharedEvent}s sent over a gateway connection into {@link GatewayEventBatchEvent}s; a batch is sent
+ * once {@link Settings#maxBatchSize} events are queued or {@link Settings#maxDelayMillis} after the first event was
+ * queued. Batches can be deflated using a preset dictionary of common event JSON which makes even small batches
+ * compress well. Events are always sent in the order they are queued and callers must {@link #flush} before sending
+ * any message directly so ordering is maintained across batched and non batched messages.
+ * <p>
+ * Batching is only used once the peer is known to support it: the central manager advertises support by sending a
+ * {@link GatewayEventBatchAckEvent} with a sequence of {@link #ADVERTISEMENT_SEQUENCE} when a gateway connects (see
+ * {@link #createAdvertisement}) and the central manager enables it when the gateway sends its first batch; this means
+ * older peers continue to send and receive individual events.
+ * <p>
+ * Sent batches are held until the peer acknowledges them (acknowledgements are cumulative); unacknowledged batches are
+ * re-sent in order if not acknowledged within {@link #ACK_TIMEOUT_MILLIS} or when the peer advertises support again
+ * after a reconnect. Received batches that have already been processed are acknowledged again but not returned.
+ */
+public class GatewayEventBatcher {
+
+    /**
+     * Batching is disabled when {@link #maxDelayMillis} is 0 or {@link #maxBatchSize} is less than 2
+     */
+    public record Settings(int maxBatchSize, int maxDelayMillis, boolean compress) {
+        public static final Settings DISABLED = new Settings(0, 0, false);
+
+        public boolean isEnabled() {
+            return maxDelayMillis > 0 && maxBatchSize > 1;
+        }
+    }
+
+    private static final Logger LOG = SyslogCategory.getLogger(GATEWAY, GatewayEventBatcher.class.getName());
+    public static final long ADVERTISEMENT_SEQUENCE = 0L;
+    public static int ACK_TIMEOUT_MILLIS = 10000;
+    protected static final int MAX_UNACKNOWLEDGED_BATCHES = 1000;
+    protected static final TypeReference<List<SharedEvent>> EVENT_LIST_TYPE = new TypeReference<>() {};
+    protected static final ObjectWriter EVENT_LIST_WRITER = ValueUtil.JSON.writerFor(EVENT_LIST_TYPE);
+    protected static final ObjectReader EVENT_LIST_READER = ValueUtil.JSON.readerFor(EVENT_LIST_TYPE);
+    // Preset deflate dictionary containing the JSON that is repeated in most events (most frequent strings go last);
+    // this must never be modified as the gateway and central manager must use the same dictionary
+    protected static final byte[] DEFLATE_DICTIONARY = (
+        "{\"eventType\":\"asset\",\"cause\":\"UPDATE\",\"asset\":{\"id\":\"" +
+        "\",\"assetName\":\"\",\"assetType\":\"\",\"createdOn\":1,\"path\":[\"\"],\"oldValue\":null,\"oldValueTimestamp\":1" +
+        ",\"realm\":\"master\",\"parentId\":\"\",\"deleted\":false" +
+        ",\"value\":true},{\"eventType\":\"attribute\",\"ref\":{\"id\":\"" +
+        "\",\"name\":\"value\"},\"value\":0.0,\"timestamp\":17},{\"eventType\":\"attribute\",\"ref\":{\"id\":\""
+    ).getBytes(StandardCharsets.UTF_8);
+
+    protected final ScheduledExecutorService executorService;
+    protected final Consumer<Object> sender;
+    protected final Settings settings;
+    protected final List<SharedEvent> queue = new ArrayList<>();
+    protected final LinkedHashMap<Long, PendingBatch> unacknowledgedBatches = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, PendingBatch> eldest) {
+            if (size() > MAX_UNACKNOWLEDGED_BATCHES) {
+                LOG.warning("Too many unacknowledged gateway event batches so dropping the oldest: sequence=" + eldest.getKey() + ", count=" + eldest.getValue().eventCount());
+                return true;
+            }
+            return false;
+        }
+    };
+    protected boolean peerSupportsBatches;
+    protected long sequence;
+    protected long lastReceivedSequence;
+    protected ScheduledFuture<?> flushFuture;
+    protected ScheduledFuture<?> ackTimeoutFuture;
+    protected Counter sentEventsCounter;
+    protected Counter sentBatchesCounter;
+    protected Counter sentRawBytesCounter;
+    protected Counter sentEncodedBytesCounter;
+    protected Counter receivedEventsCounter;
+    protected Counter receivedBatchesCounter;
+    protected Timer ackTimer;
+    protected Counter resentBatchesCounter;
+
+    protected record PendingBatch(GatewayEventBatchEvent batch, int eventCount, long firstSentMillis, long lastSentMillis) {
+    }
+
+    /**
+     * @param sender Used to send batches and acknowledgements directly to the peer
+     * @param tags Used to identify the connection in metrics (metrics are only recorded when the registry is not null)
+     */
+    public GatewayEventBatcher(ScheduledExecutorService executorService, Consumer<Object> sender, Settings settings, MeterRegistry meterRegistry, Tags tags) {
+        this.executorService = executorService;
+        this.sender = sender;
+        this.settings = settings != null ? settings : Settings.DISABLED;
+
+        if (meterRegistry != null) {
+            sentEventsCounter = meterRegistry.counter("or.gateway.tunnel.events", tags.and("direction", "sent"));
+            receivedEventsCounter = meterRegistry.counter("or.gateway.tunnel.events", tags.and("direction", "received"));
+            sentBatchesCounter = meterRegistry.counter("or.gateway.tunnel.batches", tags.and("direction", "sent"));
+            receivedBatchesCounter = meterRegistry.counter("or.gateway.tunnel.batches", tags.and("direction", "received"));
+            sentRawBytesCounter = meterRegistry.counter("or.gateway.tunnel.bytes", tags.and("type", "raw"));
+            sentEncodedBytesCounter = meterRegistry.counter("or.gateway.tunnel.bytes", tags.and("type", "encoded"));
+            ackTimer = Timer.builder("or.gateway.tunnel.ack").tags(tags).register(meterRegistry);
+            resentBatchesCounter = meterRegistry.counter("or.gateway.tunnel.batches", tags.and("direction", "resent"));
+        }
+    }
+
+    /**
+     * The message the central manager sends to a connecting gateway to advertise that it understands batches
+     */
+    public static GatewayEventBatchAckEvent createAdvertisement() {
+        return new GatewayEventBatchAckEvent(ADVERTISEMENT_SEQUENCE);
+    }
+
+    public synchronized void setPeerSupportsBatches(boolean peerSupportsBatches) {
+        this.peerSupportsBatches = peerSupportsBatches;
+    }
+
+    public synchronized boolean isBatching() {
+        return settings.isEnabled() && peerSupportsBatches;
+    }
+
+    /**
+     * Queue the event for sending in the next batch or send it immediately if not batching
+     */
+    public void send(SharedEvent event) {
+        synchronized (this) {
+            if (isBatching()) {
+                queue.add(event);
+                if (queue.size() >= settings.maxBatchSize()) {
+                    flush();
+                } else if (flushFuture == null) {
+                    flushFuture = executorService.schedule(this::flush, settings.maxDelayMillis(), TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+        }
+
+        if (sentEventsCounter != null) {
+            sentEventsCounter.increment();
+        }
+        sender.accept(event);
+    }
+
+    /**
+     * Send any queued events now
+     */
+    public synchronized void flush() {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        List<SharedEvent> events = new ArrayList<>(queue);
+        queue.clear();
+        long batchSequence = ++sequence;
+
+        try {
+            GatewayEventBatchEvent batch;
+            byte[] json = EVENT_LIST_WRITER.writeValueAsBytes(events);
+            long encodedLength = json.length;
+
+            if (settings.compress()) {
+                String data = Base64.getEncoder().encodeToString(deflate(json));
+                encodedLength = data.length();
+                batch = new GatewayEventBatchEvent(batchSequence, GatewayEventBatchEvent.ENCODING_DEFLATE, null, data);
+            } else {
+                batch = new GatewayEventBatchEvent(batchSequence, GatewayEventBatchEvent.ENCODING_NONE, events, null);
+            }
+
+            long now = System.currentTimeMillis();
+            unacknowledgedBatches.put(batchSequence, new PendingBatch(batch, events.size(), now, now));
+            scheduleAckTimeout();
+            sender.accept(batch);
+
+            if (sentBatchesCounter != null) {
+                sentEventsCounter.increment(events.size());
+                sentBatchesCounter.increment();
+                sentRawBytesCounter.increment(json.length);
+                sentEncodedBytesCounter.increment(encodedLength);
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to send gateway event batch so events have been dropped: count=" + events.size(), e);
+        }
+    }
+
+    /**
+     * Decode the batch, acknowledge it and return the contained events which must be processed in order
+     */
+    public List<SharedEvent> onBatchReceived(GatewayEventBatchEvent batch) {
+        List<SharedEvent> events;
+
+        try {
+            if (GatewayEventBatchEvent.ENCODING_DEFLATE.equals(batch.getEncoding())) {
+                events = EVENT_LIST_READER.readValue(inflate(Base64.getDecoder().decode(batch.getData())));
+            } else {
+                events = batch.getEvents() != null ? batch.getEvents() : Collections.emptyList();
+            }
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to decode gateway event batch so it will be ignored: " + batch, e);
+            return Collections.emptyList();
+        }
+
+        setPeerSupportsBatches(true);
+        sender.accept(new GatewayEventBatchAckEvent(batch.getSequence()));
+
+        synchronized (this) {
+            if (batch.getSequence() <= lastReceivedSequence) {
+                LOG.fine("Ignoring gateway event batch that has already been received: sequence=" + batch.getSequence());
+                return Collections.emptyList();
+            }
+            lastReceivedSequence = batch.getSequence();
+        }
+
+        if (receivedBatchesCounter != null) {
+            receivedBatchesCounter.increment();
+            receivedEventsCounter.increment(events.size());
+        }
+        return events;
+    }
+
+    /**
+     * Acknowledgements are cumulative as batches are sent and processed in order; an acknowledgement with the
+     * {@link #ADVERTISEMENT_SEQUENCE} enables batching and re-sends any batches not acknowledged on a previous connection
+     */
+    public synchronized void onAck(long batchSequence) {
+        if (batchSequence == ADVERTISEMENT_SEQUENCE) {
+            LOG.fine("Peer supports gateway event batches");
+            // This is a new connection so the peer's sequence may have restarted
+            lastReceivedSequence = 0L;
+            setPeerSupportsBatches(true);
+            resendUnacknowledged();
+            return;
+        }
+
+        PendingBatch acknowledged = unacknowledgedBatches.get(batchSequence);
+        if (acknowledged != null && ackTimer != null) {
+            ackTimer.record(System.currentTimeMillis() - acknowledged.firstSentMillis(), TimeUnit.MILLISECONDS);
+        }
+        unacknowledgedBatches.keySet().removeIf(sequence -> sequence <= batchSequence);
+
+        if (unacknowledgedBatches.isEmpty() && ackTimeoutFuture != null) {
+            ackTimeoutFuture.cancel(false);
+            ackTimeoutFuture = null;
+        }
+    }
+
+    /**
+     * Called when the connection to the peer is lost; any queued events are moved into a batch that will be sent once
+     * the peer advertises support for batches again and batching is disabled until then.
+     */
+    public synchronized void onDisconnected() {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+        if (ackTimeoutFuture != null) {
+            ackTimeoutFuture.cancel(false);
+            ackTimeoutFuture = null;
+        }
+
+        if (!queue.isEmpty()) {
+            List<SharedEvent> events = new ArrayList<>(queue);
+            queue.clear();
+            long batchSequence = ++sequence;
+            unacknowledgedBatches.put(batchSequence, new PendingBatch(new GatewayEventBatchEvent(batchSequence, GatewayEventBatchEvent.ENCODING_NONE, events, null), events.size(), System.currentTimeMillis(), 0L));
+        }
+
+        peerSupportsBatches = false;
+    }
+
+    protected synchronized void resendUnacknowledged() {
+        if (unacknowledgedBatches.isEmpty()) {
+            return;
+        }
+
+        LOG.fine("Re-sending unacknowledged gateway event batches: count=" + unacknowledgedBatches.size());
+        long now = System.currentTimeMillis();
+        unacknowledgedBatches.replaceAll((batchSequence, pending) -> {
+            sender.accept(pending.batch());
+            if (resentBatchesCounter != null) {
+                resentBatchesCounter.increment();
+            }
+            return new PendingBatch(pending.batch(), pending.eventCount(), pending.firstSentMillis(), now);
+        });
+        scheduleAckTimeout();
+    }
+
+    protected synchronized void scheduleAckTimeout() {
+        if (ackTimeoutFuture == null && !unacknowledgedBatches.isEmpty()) {
+            ackTimeoutFuture = executorService.schedule(this::onAckTimeout, ACK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    protected synchronized void onAckTimeout() {
+        ackTimeoutFuture = null;
+
+        if (!peerSupportsBatches || unacknowledgedBatches.isEmpty()) {
+            return;
+        }
+
+        long oldestSentMillis = unacknowledgedBatches.values().iterator().next().lastSentMillis();
+        if (System.currentTimeMillis() - oldestSentMillis >= ACK_TIMEOUT_MILLIS) {
+            LOG.info("Gateway event batches not acknowledged in time: count=" + unacknowledgedBatches.size());
+            resendUnacknowledged();
+        } else {
+            scheduleAckTimeout();
+        }
+    }
+
+    public synchronized int getUnacknowledgedBatchCount() {
+        return unacknowledgedBatches.size();
+    }
+
+    /**
+     * Discard any queued events and state from a previous connection
+     */
+    public synchronized void reset() {
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+            flushFuture = null;
+        }
+        if (ackTimeoutFuture != null) {
+            ackTimeoutFuture.cancel(false);
+            ackTimeoutFuture = null;
+        }
+        queue.clear();
+        unacknowledgedBatches.clear();
+        lastReceivedSequence = 0L;
+    }
+
+    protected static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setDictionary(DEFLATE_DICTIONARY);
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4 + 64);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    protected static byte[] inflate(byte[] input) throws DataFormatException, IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DEFLATE_DICTIONARY);
+                    } else if (inflater.needsInput()) {
+                        throw new IOException("Truncated deflate data");
+                    }
+                }
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+}
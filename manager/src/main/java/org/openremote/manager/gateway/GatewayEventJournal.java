@@ -0,0 +1,316 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.gateway;
+
+import org.openremote.model.attribute.AttributeEvent;
+import org.openremote.model.syslog.SyslogCategory;
+import org.openremote.model.util.ValueUtil;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.GATEWAY;
+
+/**
+ * A bounded, append only journal of {@link AttributeEvent}s backed by a memory mapped file; used to hold events that
+ * cannot be sent to the central manager whilst the gateway connection is down so they can be forwarded in order once
+ * it is re-established. The read and write positions are stored in the file header so the journal survives restarts.
+ * <p>
+ * Only the latest value of each attribute is delivered: when an event is appended for an attribute that already has an
+ * undelivered record then that record is marked as superseded (by negating its ref length) so it is skipped when
+ * draining, this means a long outage only replays the latest value of each attribute. Only the latest journal offset
+ * and a hash of the latest value for each attribute are held in memory, so memory use depends on the number of
+ * attributes not the length of the outage. Identical values for an attribute are not journaled and when the journal is
+ * full it is compacted in place to reclaim the space of superseded records; if there is still no space then new events
+ * are dropped.
+ */
+public class GatewayEventJournal {
+
+    protected record LatestRecord(int offset, long valueHash) {}
+
+    private static final Logger LOG = SyslogCategory.getLogger(GATEWAY, GatewayEventJournal.class.getName());
+    protected static final int MAGIC = 0x4F524A31; // ORJ1
+    protected static final int HEADER_SIZE = 12; // magic, read position, write position
+    protected final Path path;
+    protected final int capacity;
+    protected final Map<String, LatestRecord> latestRecords = new HashMap<>();
+    protected FileChannel channel;
+    protected MappedByteBuffer buffer;
+    protected int readPosition;
+    protected int writePosition;
+    protected long droppedCount;
+
+    public GatewayEventJournal(Path path, int capacity) throws IOException {
+        this.path = path;
+        this.capacity = capacity;
+        Files.createDirectories(path.getParent());
+        boolean resize = Files.exists(path) && Files.size(path) != capacity;
+
+        if (resize) {
+            LOG.warning("Gateway event journal size has changed so existing journal will be discarded: " + path);
+            Files.delete(path);
+        }
+
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+        if (buffer.getInt(0) == MAGIC && isValidPosition(buffer.getInt(4)) && isValidPosition(buffer.getInt(8)) && buffer.getInt(4) <= buffer.getInt(8)) {
+            readPosition = buffer.getInt(4);
+            writePosition = buffer.getInt(8);
+            rebuildLatestRecords();
+            if (!isEmpty()) {
+                LOG.info("Gateway event journal contains undelivered events: path=" + path + ", bytes=" + (writePosition - readPosition));
+            }
+        } else {
+            buffer.putInt(0, MAGIC);
+            reset();
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return readPosition >= writePosition;
+    }
+
+    public synchronized int getSize() {
+        return writePosition - readPosition;
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Append the event to the journal; returns false if the event was not journaled because it duplicates the previous
+     * journaled value of the attribute or because the journal is full
+     */
+    public synchronized boolean append(AttributeEvent event) {
+        if (buffer == null) {
+            return false;
+        }
+
+        try {
+            String ref = event.getId() + ":" + event.getName();
+            byte[] refBytes = ref.getBytes(StandardCharsets.UTF_8);
+            long valueHash = hash(ValueUtil.JSON.writeValueAsBytes(event.getValue().orElse(null)));
+            LatestRecord latest = latestRecords.get(ref);
+
+            if (latest != null && latest.valueHash() == valueHash) {
+                return false;
+            }
+
+            byte[] json = ValueUtil.JSON.writeValueAsBytes(event);
+            int recordLength = 2 + refBytes.length + json.length;
+
+            if (writePosition + 4 + recordLength > capacity) {
+                compact();
+                if (writePosition + 4 + recordLength > capacity) {
+                    if (droppedCount++ % 1000 == 0) {
+                        LOG.warning("Gateway event journal is full so events are being dropped: path=" + path + ", dropped=" + droppedCount);
+                    }
+                    return false;
+                }
+            }
+
+            if (latest != null) {
+                markSuperseded(latest.offset());
+            }
+
+            int offset = writePosition;
+            buffer.putInt(offset, recordLength);
+            buffer.putShort(offset + 4, (short) refBytes.length);
+            buffer.put(offset + 6, refBytes);
+            buffer.put(offset + 6 + refBytes.length, json);
+            writePosition = offset + 4 + recordLength;
+            buffer.putInt(8, writePosition);
+            latestRecords.put(ref, new LatestRecord(offset, valueHash));
+            return true;
+        } catch (Exception e) {
+            LOG.log(Level.WARNING, "Failed to append event to gateway event journal: " + event, e);
+            return false;
+        }
+    }
+
+    /**
+     * Pass up to the specified number of journaled events to the consumer in the order they were journaled
+     * @return The number of events passed to the consumer
+     */
+    public synchronized int drain(Consumer<AttributeEvent> consumer, int maxEvents) {
+        int count = 0;
+
+        while (count < maxEvents && !isEmpty()) {
+            int offset = readPosition;
+            int recordLength = buffer.getInt(offset);
+            readPosition = offset + 4 + recordLength;
+            buffer.putInt(4, readPosition);
+
+            if (isSuperseded(offset)) {
+                continue;
+            }
+
+            String ref = readRef(offset);
+            int refLength = buffer.getShort(offset + 4);
+            byte[] json = new byte[recordLength - 2 - refLength];
+            buffer.get(offset + 6 + refLength, json);
+
+            LatestRecord latest = latestRecords.get(ref);
+            if (latest != null && latest.offset() == offset) {
+                latestRecords.remove(ref);
+            }
+
+            try {
+                consumer.accept(ValueUtil.JSON.readValue(json, AttributeEvent.class));
+                count++;
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Failed to read event from gateway event journal so skipping it: path=" + path, e);
+            }
+        }
+
+        if (isEmpty()) {
+            reset();
+        }
+
+        return count;
+    }
+
+    public synchronized void close() {
+        if (buffer != null) {
+            buffer.force();
+            buffer = null;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.log(Level.INFO, "Failed to close gateway event journal: " + path, e);
+        }
+        latestRecords.clear();
+    }
+
+    public synchronized void delete() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOG.log(Level.INFO, "Failed to delete gateway event journal: " + path, e);
+        }
+    }
+
+    /**
+     * Move the latest record of each attribute to the start of the journal discarding all superseded records; records
+     * only ever move towards the start of the buffer so this can be done in place
+     */
+    protected void compact() {
+        int source = readPosition;
+        int target = HEADER_SIZE;
+        int before = getSize();
+
+        while (source < writePosition) {
+            int recordLength = buffer.getInt(source);
+            int length = 4 + recordLength;
+            String ref = isSuperseded(source) ? null : readRef(source);
+            LatestRecord latest = ref != null ? latestRecords.get(ref) : null;
+
+            if (latest != null && latest.offset() == source) {
+                if (target != source) {
+                    byte[] record = new byte[length];
+                    buffer.get(source, record);
+                    buffer.put(target, record);
+                }
+                latestRecords.put(ref, new LatestRecord(target, latest.valueHash()));
+                target += length;
+            }
+            source += length;
+        }
+
+        readPosition = HEADER_SIZE;
+        writePosition = target;
+        buffer.putInt(4, readPosition);
+        buffer.putInt(8, writePosition);
+        LOG.info("Compacted gateway event journal: path=" + path + ", bytesBefore=" + before + ", bytesAfter=" + getSize());
+    }
+
+    protected void reset() {
+        readPosition = HEADER_SIZE;
+        writePosition = HEADER_SIZE;
+        buffer.putInt(4, readPosition);
+        buffer.putInt(8, writePosition);
+        latestRecords.clear();
+    }
+
+    protected void rebuildLatestRecords() {
+        int position = readPosition;
+        while (position < writePosition) {
+            int recordLength = buffer.getInt(position);
+            if (recordLength <= 2 || position + 4 + recordLength > writePosition) {
+                LOG.warning("Gateway event journal is corrupt so discarding remaining events: path=" + path + ", position=" + position);
+                writePosition = position;
+                buffer.putInt(8, writePosition);
+                break;
+            }
+            if (!isSuperseded(position)) {
+                // Value hash isn't journaled so use 0 which means the next value will always be appended
+                latestRecords.put(readRef(position), new LatestRecord(position, 0L));
+            }
+            position += 4 + recordLength;
+        }
+    }
+
+    protected boolean isSuperseded(int offset) {
+        return buffer.getShort(offset + 4) < 0;
+    }
+
+    protected void markSuperseded(int offset) {
+        short refLength = buffer.getShort(offset + 4);
+        if (refLength > 0) {
+            buffer.putShort(offset + 4, (short) -refLength);
+        }
+    }
+
+    protected String readRef(int offset) {
+        byte[] refBytes = new byte[buffer.getShort(offset + 4)];
+        buffer.get(offset + 6, refBytes);
+        return new String(refBytes, StandardCharsets.UTF_8);
+    }
+
+    protected boolean isValidPosition(int position) {
+        return position >= HEADER_SIZE && position <= capacity;
+    }
+
+    /**
+     * 64 bit FNV-1a hash
+     */
+    protected static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -19,10 +19,12 @@
  */
 package org.openremote.manager.gateway;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.persistence.EntityManager;
 import org.apache.camel.Exchange;
 import org.apache.camel.Predicate;
 import org.apache.camel.builder.RouteBuilder;
+import org.openremote.container.concurrent.ContainerExecutor;
 import org.openremote.container.message.MessageBrokerService;
 import org.openremote.manager.asset.AssetProcessingException;
 import org.openremote.manager.asset.AssetProcessingService;
@@ -54,14 +56,18 @@ import org.openremote.model.util.TextUtil;
 import org.openremote.model.value.MetaItemType;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import static org.apache.camel.builder.PredicateBuilder.or;
+import static org.openremote.container.util.MapAccess.getBoolean;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.container.persistence.PersistenceService.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceService.isPersistenceEventForEntityType;
 import static org.openremote.manager.gateway.GatewayConnector.mapAssetId;
@@ -82,6 +88,23 @@ public class GatewayService extends RouteBuilder implements ContainerService {
     // Need a high priority so that event authorizer can get the events before other authorizers
     public static final int PRIORITY = HIGH_PRIORITY + 100;
     public static final String GATEWAY_CLIENT_ID_PREFIX = "gateway-";
+    /**
+     * How long attribute events sent over a gateway connection can be held back so they can be sent together in a
+     * single message; 0 disables batching. This applies to both outbound gateway connections and connected gateways,
+     * the central manager only sends batches to gateways that send batches.
+     */
+    public static final String OR_GATEWAY_TUNNEL_BATCH_MILLIS = "OR_GATEWAY_TUNNEL_BATCH_MILLIS";
+    public static final int OR_GATEWAY_TUNNEL_BATCH_MILLIS_DEFAULT = 0;
+    public static final String OR_GATEWAY_TUNNEL_BATCH_SIZE = "OR_GATEWAY_TUNNEL_BATCH_SIZE";
+    public static final int OR_GATEWAY_TUNNEL_BATCH_SIZE_DEFAULT = 200;
+    public static final String OR_GATEWAY_TUNNEL_COMPRESSION = "OR_GATEWAY_TUNNEL_COMPRESSION";
+    public static final boolean OR_GATEWAY_TUNNEL_COMPRESSION_DEFAULT = true;
+    /**
+     * How many threads process events received from connected gateways; these threads merge assets and write attributes
+     * so they are kept separate from the container's scheduled executor which timers depend on.
+     */
+    public static final String OR_GATEWAY_EVENT_THREADS = "OR_GATEWAY_EVENT_THREADS";
+    public static final int OR_GATEWAY_EVENT_THREADS_DEFAULT = Math.max(2, Runtime.getRuntime().availableProcessors());
     private static final Logger LOG = SyslogCategory.getLogger(GATEWAY, GatewayService.class.getName());
     protected AssetStorageService assetStorageService;
     protected AssetProcessingService assetProcessingService;
@@ -91,13 +114,16 @@ public class GatewayService extends RouteBuilder implements ContainerService {
     protected RulesetStorageService rulesetStorageService;
     protected RulesService rulesService;
     protected ScheduledExecutorService executorService;
+    protected ExecutorService gatewayEventExecutor;
+    protected MeterRegistry meterRegistry;
+    protected GatewayEventBatcher.Settings tunnelSettings;
     /**
      * Maps gateway asset IDs to connections; note that gateway asset IDs are stored lower case so that they can be
      * matched up to the service user client ID (which needs to be all lower case); this could technically cause an
      * ID collision but for now the odds of that are low enough to not be a concern.
      */
-    protected final Map<String, GatewayConnector> gatewayConnectorMap = new HashMap<>();
-    protected final Map<String, String> assetIdGatewayIdMap = new HashMap<>();
+    protected final Map<String, GatewayConnector> gatewayConnectorMap = new ConcurrentHashMap<>();
+    protected final Map<String, String> assetIdGatewayIdMap = new ConcurrentHashMap<>();
     protected boolean active;
     protected List<String> realmIds = new ArrayList<>();
 
@@ -149,6 +175,13 @@ public class GatewayService extends RouteBuilder implements ContainerService {
         return clientId.substring(GATEWAY_CLIENT_ID_PREFIX.length());
     }
 
+    public static GatewayEventBatcher.Settings getTunnelSettings(Container container) {
+        return new GatewayEventBatcher.Settings(
+            getInteger(container.getConfig(), OR_GATEWAY_TUNNEL_BATCH_SIZE, OR_GATEWAY_TUNNEL_BATCH_SIZE_DEFAULT),
+            getInteger(container.getConfig(), OR_GATEWAY_TUNNEL_BATCH_MILLIS, OR_GATEWAY_TUNNEL_BATCH_MILLIS_DEFAULT),
+            getBoolean(container.getConfig(), OR_GATEWAY_TUNNEL_COMPRESSION, OR_GATEWAY_TUNNEL_COMPRESSION_DEFAULT));
+    }
+
     @Override
     public int getPriority() {
         return PRIORITY;
@@ -163,6 +196,17 @@ public class GatewayService extends RouteBuilder implements ContainerService {
         executorService = container.getExecutorService();
         rulesetStorageService = container.getService(RulesetStorageService.class);
         rulesService = container.getService(RulesService.class);
+        meterRegistry = container.getMeterRegistry();
+        tunnelSettings = getTunnelSettings(container);
+        int gatewayEventThreads = getInteger(container.getConfig(), OR_GATEWAY_EVENT_THREADS, OR_GATEWAY_EVENT_THREADS_DEFAULT);
+        // Each connector has at most one dispatch task queued so the queue only needs room for one task per gateway
+        gatewayEventExecutor = new ContainerExecutor(
+            "Gateway events",
+            gatewayEventThreads,
+            gatewayEventThreads,
+            60,
+            10000,
+            new ThreadPoolExecutor.AbortPolicy());
 
         if (!identityService.isKeycloakEnabled()) {
             LOG.warning("Incoming edge gateway connections disabled: Not supported when not using Keycloak identity provider");
@@ -232,18 +276,16 @@ public class GatewayService extends RouteBuilder implements ContainerService {
                 }
 
                 // Create connector
-                GatewayConnector connector = new GatewayConnector(assetStorageService, assetProcessingService, executorService, gateway);
+                GatewayConnector connector = new GatewayConnector(assetStorageService, assetProcessingService, executorService, gatewayEventExecutor, gateway, tunnelSettings, meterRegistry);
                 gatewayConnectorMap.put(gateway.getId().toLowerCase(Locale.ROOT), connector);
 
                 // Get IDs of all assets under this gateway
-                List<Asset<?>> gatewayAssets = assetStorageService
-                    .findAll(
+                assetStorageService
+                    .findAllIds(
                         new AssetQuery()
                             .parents(gateway.getId())
-                            .select(new AssetQuery.Select().excludeAttributes())
-                            .recursive(true));
-
-                gatewayAssets.forEach(asset -> assetIdGatewayIdMap.put(asset.getId(), gateway.getId()));
+                            .recursive(true))
+                    .forEach(assetId -> assetIdGatewayIdMap.put(assetId, gateway.getId()));
             });
         }
     }
@@ -254,6 +296,10 @@ public class GatewayService extends RouteBuilder implements ContainerService {
         gatewayConnectorMap.values().forEach(GatewayConnector::disconnect);
         gatewayConnectorMap.clear();
         assetIdGatewayIdMap.clear();
+
+        if (gatewayEventExecutor != null) {
+            gatewayEventExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -571,10 +617,8 @@ public class GatewayService extends RouteBuilder implements ContainerService {
 
             case CREATE -> {
                 createUpdateGatewayServiceUser(gateway);
-                synchronized (gatewayConnectorMap) {
-                    GatewayConnector connector = new GatewayConnector(assetStorageService, assetProcessingService, executorService, gateway);
-                    gatewayConnectorMap.put(gateway.getId().toLowerCase(Locale.ROOT), connector);
-                }
+                GatewayConnector connector = new GatewayConnector(assetStorageService, assetProcessingService, executorService, gatewayEventExecutor, gateway, tunnelSettings, meterRegistry);
+                gatewayConnectorMap.put(gateway.getId().toLowerCase(Locale.ROOT), connector);
             }
             case UPDATE -> {
                 // Check if this gateway has a connector
@@ -604,18 +648,12 @@ public class GatewayService extends RouteBuilder implements ContainerService {
             }
             case DELETE -> {
                 // Check if this gateway has a connector
-                GatewayConnector connector = gatewayConnectorMap.get(gateway.getId().toLowerCase(Locale.ROOT));
+                GatewayConnector connector = gatewayConnectorMap.remove(gateway.getId().toLowerCase(Locale.ROOT));
                 if (connector == null) {
                     break;
                 }
 
-                synchronized (gatewayConnectorMap) {
-                    connector = gatewayConnectorMap.remove(gateway.getId().toLowerCase(Locale.ROOT));
-
-                    if (connector != null) {
-                        connector.disconnect();
-                    }
-                }
+                connector.disconnect();
 
                 removeGatewayServiceUser(gateway);
             }
@@ -625,28 +663,14 @@ public class GatewayService extends RouteBuilder implements ContainerService {
     protected void processGatewayChildAssetChange(String gatewayId, Asset<?> childAsset, PersistenceEvent<Asset<?>> persistenceEvent) {
         // The asset would have been modified by the gateway connector so all we need to do here is update the id map
         switch (persistenceEvent.getCause()) {
-            case CREATE, UPDATE -> {
-                synchronized (assetIdGatewayIdMap) {
-                    assetIdGatewayIdMap.put(childAsset.getId(), gatewayId);
-                }
-            }
-            case DELETE -> {
-                synchronized (assetIdGatewayIdMap) {
-                    assetIdGatewayIdMap.remove(childAsset.getId());
-                }
-            }
+            case CREATE, UPDATE -> assetIdGatewayIdMap.put(childAsset.getId(), gatewayId);
+            case DELETE -> assetIdGatewayIdMap.remove(childAsset.getId());
         }
     }
 
     protected boolean isGatewayConnected(String gatewayId) {
-        AtomicBoolean connected = new AtomicBoolean(false);
-
-        gatewayConnectorMap.computeIfPresent(gatewayId.toLowerCase(Locale.ROOT), (id, gatewayConnector) -> {
-            connected.set(gatewayConnector.isConnected());
-            return gatewayConnector;
-        });
-
-        return connected.get();
+        GatewayConnector connector = gatewayConnectorMap.get(gatewayId.toLowerCase(Locale.ROOT));
+        return connector != null && connector.isConnected();
     }
 
     public static String getGatewayClientId(String gatewayAssetId) {
@@ -713,7 +737,7 @@ public class GatewayService extends RouteBuilder implements ContainerService {
     protected void onGatewayClientEventReceived(String gatewayId, String messageId, SharedEvent event) {
         GatewayConnector connector = gatewayConnectorMap.get(gatewayId.toLowerCase(Locale.ROOT));
         if (connector != null) {
-            connector.onGatewayEvent(messageId, event);
+            connector.queueGatewayEvent(messageId, event);
         }
     }
 
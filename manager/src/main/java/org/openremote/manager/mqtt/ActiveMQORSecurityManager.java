@@ -19,6 +19,9 @@
  */
 package org.openremote.manager.mqtt;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
 import org.apache.activemq.artemis.core.config.impl.SecurityConfiguration;
 import org.apache.activemq.artemis.core.security.CheckType;
 import org.apache.activemq.artemis.core.security.Role;
@@ -36,7 +39,11 @@ import org.openremote.model.syslog.SyslogCategory;
 import javax.security.auth.Subject;
 import javax.security.auth.login.LoginContext;
 import javax.security.auth.login.LoginException;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -57,6 +64,9 @@ public class ActiveMQORSecurityManager extends ActiveMQJAASSecurityManager {
     protected AuthorisationService authorisationService;
     protected MQTTBrokerService brokerService;
     protected Function<String, KeycloakDeployment> deploymentResolver;
+    protected MQTTConnectAdmissionController admissionController;
+    // Recently validated credentials so reconnecting clients don't need a new identity provider login
+    protected Cache<String, Subject> credentialCache;
 
     // Duplicate fields due to being private in super class
     protected String certificateConfigName;
@@ -66,12 +76,24 @@ public class ActiveMQORSecurityManager extends ActiveMQJAASSecurityManager {
     protected ActiveMQServer server;
 
     public ActiveMQORSecurityManager(AuthorisationService authorisationService, MQTTBrokerService brokerService, Function<String, KeycloakDeployment> deploymentResolver, String configurationName, SecurityConfiguration configuration) {
+        this(authorisationService, brokerService, deploymentResolver, configurationName, configuration, null, 0);
+    }
+
+    public ActiveMQORSecurityManager(AuthorisationService authorisationService, MQTTBrokerService brokerService, Function<String, KeycloakDeployment> deploymentResolver, String configurationName, SecurityConfiguration configuration, MQTTConnectAdmissionController admissionController, long credentialCacheMillis) {
         super(configurationName, configuration);
         this.authorisationService = authorisationService;
         this.brokerService = brokerService;
         this.deploymentResolver = deploymentResolver;
         this.configName = configurationName;
         this.config = configuration;
+        this.admissionController = admissionController;
+
+        if (credentialCacheMillis > 0) {
+            credentialCache = CacheBuilder.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(credentialCacheMillis, TimeUnit.MILLISECONDS)
+                .build();
+        }
     }
 
     @Override
@@ -100,13 +122,32 @@ public class ActiveMQORSecurityManager extends ActiveMQJAASSecurityManager {
             }
         }
 
+        boolean isCertificateLogin = securityDomain == null && certificateConfigName != null && certificateConfigName.length() > 0 && getCertsFromConnection(remotingConnection) != null;
+        String credentialCacheKey = credentialCache != null && !isCertificateLogin && securityDomain == null && user != null && password != null
+            ? getCredentialCacheKey(realm, user, password)
+            : null;
+
+        if (credentialCacheKey != null) {
+            Subject cachedSubject = credentialCache.getIfPresent(credentialCacheKey);
+            if (cachedSubject != null && isSubjectValid(cachedSubject)) {
+                LOG.finest(() -> "Using cached credentials for connection: " + connectionToString(remotingConnection));
+                return setConnectionSubject(copySubject(cachedSubject), remotingConnection);
+            }
+        }
+
+        // Anonymous logins don't touch the identity provider so don't need admission control
+        if (user != null && admissionController != null && !admissionController.admit(realm)) {
+            LOG.fine("Too many MQTT connection attempts for this realm so rejecting: " + connectionToString(remotingConnection));
+            throw new LoginException("Too many connection attempts");
+        }
+
         try {
             if (thisLoader != currentLoader) {
                 Thread.currentThread().setContextClassLoader(thisLoader);
             }
             if (securityDomain != null) {
                 lc = new LoginContext(securityDomain, null, new MultiTenantJaasCallbackHandler(deploymentResolver, realm, user, password, remotingConnection), null);
-            } else if (certificateConfigName != null && certificateConfigName.length() > 0 && getCertsFromConnection(remotingConnection) != null) {
+            } else if (isCertificateLogin) {
                 lc = new LoginContext(certificateConfigName, null, new MultiTenantJaasCallbackHandler(deploymentResolver, realm, user, password, remotingConnection), certificateConfig);
             } else {
                 lc = new LoginContext(configName, null, new MultiTenantJaasCallbackHandler(deploymentResolver, realm, user, password, remotingConnection), config);
@@ -119,9 +160,10 @@ public class ActiveMQORSecurityManager extends ActiveMQJAASSecurityManager {
             Subject subject = lc.getSubject();
 
             if (subject != null) {
-                // Set subject here so any code that calls this method behaves like a normal ActiveMQ SecurityStoreImpl::authenticate call
-                remotingConnection.setSubject(subject);
-                subject.getPrincipals().add(new RemotingConnectionPrincipal(remotingConnection));
+                if (credentialCacheKey != null && isSubjectValid(subject)) {
+                    credentialCache.put(credentialCacheKey, copySubject(subject));
+                }
+                setConnectionSubject(subject, remotingConnection);
             }
 
             return subject;
@@ -132,6 +174,42 @@ public class ActiveMQORSecurityManager extends ActiveMQJAASSecurityManager {
         }
     }
 
+    /**
+     * Set subject here so any code that calls this method behaves like a normal ActiveMQ SecurityStoreImpl::authenticate call
+     */
+    protected Subject setConnectionSubject(Subject subject, RemotingConnection remotingConnection) {
+        remotingConnection.setSubject(subject);
+        subject.getPrincipals().add(new RemotingConnectionPrincipal(remotingConnection));
+        return subject;
+    }
+
+    /**
+     * Copy the subject without any connection specific principals so it can be used for another connection
+     */
+    protected static Subject copySubject(Subject subject) {
+        Set<Principal> principals = new HashSet<>(subject.getPrincipals());
+        principals.removeIf(principal -> principal instanceof RemotingConnectionPrincipal);
+        return new Subject(false, principals, new HashSet<>(subject.getPublicCredentials()), new HashSet<>(subject.getPrivateCredentials()));
+    }
+
+    /**
+     * Only subjects with an unexpired keycloak token are cached/re-used; anonymous subjects are cheap to create
+     */
+    protected static boolean isSubjectValid(Subject subject) {
+        KeycloakSecurityContext securityContext = KeycloakIdentityProvider.getSecurityContext(subject);
+        return securityContext != null && securityContext.getToken() != null && !securityContext.getToken().isExpired();
+    }
+
+    protected static String getCredentialCacheKey(String realm, String user, String password) {
+        return realm + ":" + user + ":" + Hashing.sha256().hashString(password, StandardCharsets.UTF_8);
+    }
+
+    public void invalidateCredentialCache() {
+        if (credentialCache != null) {
+            credentialCache.invalidateAll();
+        }
+    }
+
     @Override
     public boolean authorize(Subject subject, Set<Role> roles, CheckType checkType, String address) {
 
@@ -22,37 +22,45 @@ package org.openremote.manager.mqtt;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import org.apache.activemq.artemis.spi.core.protocol.RemotingConnection;
 import org.apache.activemq.artemis.utils.collections.ConcurrentHashSet;
-import org.apache.camel.builder.RouteBuilder;
 import org.keycloak.KeycloakSecurityContext;
 import org.openremote.container.security.AuthContext;
+import org.openremote.container.security.keycloak.KeycloakIdentityProvider;
+import org.openremote.container.timer.TimerService;
 import org.openremote.manager.event.ClientEventService;
+import org.openremote.manager.event.EventDeliveryThrottle;
 import org.openremote.model.Container;
 import org.openremote.model.PersistenceEvent;
 import org.openremote.model.asset.AssetEvent;
 import org.openremote.model.asset.AssetFilter;
+import org.openremote.model.asset.AssetInfo;
 import org.openremote.model.asset.UserAssetLink;
 import org.openremote.model.attribute.AttributeEvent;
-import org.openremote.model.event.TriggeredEventSubscription;
-import org.openremote.model.event.shared.CancelEventSubscription;
+import org.openremote.model.event.shared.EventDeliveryPolicy;
 import org.openremote.model.event.shared.EventSubscription;
 import org.openremote.model.event.shared.SharedEvent;
 import org.openremote.model.syslog.SyslogCategory;
 import org.openremote.model.util.ValueUtil;
 
+import java.io.InputStream;
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
-import static org.apache.camel.support.builder.PredicateBuilder.and;
+import static org.openremote.container.util.MapAccess.getDecimal;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.manager.event.ClientEventService.*;
 import static org.openremote.manager.mqtt.MQTTBrokerService.getConnectionIDString;
 import static org.openremote.model.Constants.*;
@@ -61,23 +69,42 @@ import static org.openremote.model.syslog.SyslogCategory.API;
 /**
  * This handler uses the {@link ClientEventService} to publish and subscribe to asset and attribute events; converting
  * subscription topics into {@link AssetFilter}s to ensure only the correct events are returned for the subscription.
+ * <p>
+ * The handler makes a single internal subscription for asset and attribute events; client subscriptions are indexed in
+ * a {@link MQTTTopicTrie} keyed on realm, event type, attribute name and asset selector so each event is only checked
+ * against the subscriptions that could match it rather than every subscription of every connected client.
  */
 public class DefaultMQTTHandler extends MQTTHandler {
 
+    /**
+     * A client subscription; the filter has been through subscription authorisation so also enforces the access rules
+     * of the subscriber
+     */
+    protected record TopicSubscription(String connectionID, String topic, List<String> key, AssetFilter<?> filter, boolean isAssetTopic, boolean isValueSubscription, Function<SharedEvent, String> topicExpander, EventDeliveryThrottle throttle) {
+        protected void close() {
+            if (throttle != null) {
+                throttle.close();
+            }
+        }
+    }
+
     public static class SubscriberInfo {
-        protected Map<String, Consumer<SharedEvent>> topicSubscriptionMap;
+        protected Map<String, TopicSubscription> topicSubscriptionMap;
 
-        public SubscriberInfo(String topic, Consumer<SharedEvent> subscriptionConsumer) {
+        public SubscriberInfo(TopicSubscription subscription) {
             this.topicSubscriptionMap = new HashMap<>();
-            this.topicSubscriptionMap.put(topic, subscriptionConsumer);
+            this.topicSubscriptionMap.put(subscription.topic(), subscription);
         }
 
-        protected void add(String topic, Consumer<SharedEvent> subscriptionConsumer) {
-            topicSubscriptionMap.put(topic, subscriptionConsumer);
+        protected TopicSubscription add(TopicSubscription subscription) {
+            return topicSubscriptionMap.put(subscription.topic(), subscription);
         }
 
-        protected int remove(String topic) {
-            topicSubscriptionMap.remove(topic);
+        protected TopicSubscription remove(String topic) {
+            return topicSubscriptionMap.remove(topic);
+        }
+
+        protected int size() {
             return topicSubscriptionMap.size();
         }
     }
@@ -87,8 +114,28 @@ public class DefaultMQTTHandler extends MQTTHandler {
     public static final String ATTRIBUTE_TOPIC = "attribute";
     public static final String ATTRIBUTE_VALUE_TOPIC = "attributevalue";
     public static final String ATTRIBUTE_VALUE_WRITE_TOPIC = "writeattributevalue";
+    /**
+     * Minimum interval between attribute events delivered to each attribute and attribute value subscription, events
+     * received in between are coalesced so only the latest value is delivered; 0 delivers every event
+     */
+    public static final String MQTT_ATTRIBUTE_DELIVERY_MIN_INTERVAL_MILLIS = "MQTT_ATTRIBUTE_DELIVERY_MIN_INTERVAL_MILLIS";
+    public static int MQTT_ATTRIBUTE_DELIVERY_MIN_INTERVAL_MILLIS_DEFAULT = 0;
+    /**
+     * Numeric attribute values that differ from the last value delivered to a subscription by less than this amount
+     * are not delivered; 0 delivers every change
+     */
+    public static final String MQTT_ATTRIBUTE_DELIVERY_DEADBAND = "MQTT_ATTRIBUTE_DELIVERY_DEADBAND";
+    public static BigDecimal MQTT_ATTRIBUTE_DELIVERY_DEADBAND_DEFAULT = BigDecimal.ZERO;
     private static final Logger LOG = SyslogCategory.getLogger(API, DefaultMQTTHandler.class);
+    protected static final String KEY_ID = "id";
+    protected static final String KEY_PARENT = "parent";
+    protected static final String KEY_PATH = "path";
+    protected static final String KEY_NO_PARENT = "";
     protected final ConcurrentMap<String, SubscriberInfo> connectionSubscriberInfoMap = new ConcurrentHashMap<>();
+    protected final MQTTTopicTrie<TopicSubscription> subscriptionTrie = new MQTTTopicTrie<>();
+    protected EventDeliveryPolicy attributeDeliveryPolicy;
+    protected ScheduledExecutorService executorService;
+    protected TimerService timerService;
     // An authorisation cache for publishing
     // TODO: Switch to caffeine library once ActiveMQ has migrated
     protected final Cache<String, ConcurrentHashSet<String>> authorizationCache = CacheBuilder.newBuilder()
@@ -103,36 +150,20 @@ public class DefaultMQTTHandler extends MQTTHandler {
     }
 
     @Override
-    public void init(Container container) throws Exception {
-        super.init(container);
-        messageBrokerService.getContext().addRoutes(new RouteBuilder() {
-            @Override
-            public void configure() throws Exception {
-
-                // Route messages destined for MQTT clients
-                from(CLIENT_OUTBOUND_QUEUE)
-                    .routeId("ClientOutbound-DefaultMQTTHandler")
-                    .filter(and(
-                        header(HEADER_CONNECTION_TYPE).isEqualTo(HEADER_CONNECTION_TYPE_MQTT),
-                        body().isInstanceOf(TriggeredEventSubscription.class)
-                    ))
-                    .process(exchange -> {
-                        // Get the subscriber consumer
-                        String connectionID = exchange.getIn().getHeader(SESSION_KEY, String.class);
-                        SubscriberInfo subscriberInfo = connectionSubscriberInfoMap.get(connectionID);
-                        if (subscriberInfo != null) {
-                            TriggeredEventSubscription<?> triggeredEventSubscription = exchange.getIn().getBody(TriggeredEventSubscription.class);
-                            String topic = triggeredEventSubscription.getSubscriptionId();
-                            // Should only be a single event in here
-                            SharedEvent event = triggeredEventSubscription.getEvents().get(0);
-                            Consumer<SharedEvent> eventConsumer = subscriberInfo.topicSubscriptionMap.get(topic);
-                            if (eventConsumer != null) {
-                                eventConsumer.accept(event);
-                            }
-                        }
-                    });
-            }
-        });
+    public void start(Container container) throws Exception {
+        super.start(container);
+
+        executorService = container.getExecutorService();
+        timerService = container.getService(TimerService.class);
+        attributeDeliveryPolicy = new EventDeliveryPolicy(
+            (long) getInteger(container.getConfig(), MQTT_ATTRIBUTE_DELIVERY_MIN_INTERVAL_MILLIS, MQTT_ATTRIBUTE_DELIVERY_MIN_INTERVAL_MILLIS_DEFAULT),
+            getDecimal(container.getConfig(), MQTT_ATTRIBUTE_DELIVERY_DEADBAND, MQTT_ATTRIBUTE_DELIVERY_DEADBAND_DEFAULT).doubleValue()
+        );
+
+        if (isKeycloak) {
+            clientEventService.addInternalSubscription(getClass().getSimpleName() + "-Asset", AssetEvent.class, null, this::onSubscribedEvent);
+            clientEventService.addInternalSubscription(getClass().getSimpleName() + "-Attribute", AttributeEvent.class, null, this::onSubscribedEvent);
+        }
     }
 
     @Override
@@ -165,7 +196,7 @@ public class DefaultMQTTHandler extends MQTTHandler {
             .withHeaders(headers)
             .to(CLIENT_INBOUND_QUEUE)
             .asyncSend();
-        connectionSubscriberInfoMap.remove(getConnectionIDString(connection));
+        removeSubscriptions(getConnectionIDString(connection));
         authorizationCache.invalidate(getConnectionIDString(connection));
     }
 
@@ -178,7 +209,7 @@ public class DefaultMQTTHandler extends MQTTHandler {
             .withHeaders(headers)
             .to(CLIENT_INBOUND_QUEUE)
             .asyncSend();
-        connectionSubscriberInfoMap.remove(getConnectionIDString(connection));
+        removeSubscriptions(getConnectionIDString(connection));
     }
 
     @Override
@@ -351,68 +382,169 @@ public class DefaultMQTTHandler extends MQTTHandler {
     public void onSubscribe(RemotingConnection connection, Topic topic) {
 
         boolean isAssetTopic = isAssetTopic(topic);
-        String subscriptionId = topic.getString(); // Use topic as unique subscription ID
         AssetFilter filter = buildAssetFilter(topic);
-        Class subscriptionClass = isAssetTopic ? AssetEvent.class : AttributeEvent.class;
+        List<String> key = buildSubscriptionKey(topic);
 
-        if (filter == null) {
+        if (filter == null || key == null) {
             LOG.info("Invalid event filter generated for topic '" + topic + "': " + connection);
             return;
         }
 
-        Consumer<SharedEvent> eventConsumer = getSubscriptionEventConsumer(connection, topic);
+        // Authorise again to get the filter with the access rules of the subscriber applied
+        AuthContext authContext = getAuthContextFromSecurityContext(KeycloakIdentityProvider.getSecurityContext(connection.getSubject()));
+        EventSubscription subscription = new EventSubscription(isAssetTopic ? AssetEvent.class : AttributeEvent.class, filter, topic.getString());
 
-        EventSubscription subscription = new EventSubscription(
-            subscriptionClass,
-            filter,
-            subscriptionId
-        );
+        if (authContext == null || !clientEventService.authorizeEventSubscription(topicRealm(topic), authContext, subscription)) {
+            LOG.info("Subscription was not authorised for this user and topic: topic=" + topic + ", " + MQTTBrokerService.connectionToString(connection));
+            return;
+        }
 
-        Map<String, Object> headers = prepareHeaders(topicRealm(topic), connection);
-        messageBrokerService.getFluentProducerTemplate()
-            .withHeaders(headers)
-            .withBody(subscription)
-            .to(CLIENT_INBOUND_QUEUE)
-            .asyncSend();
+        String connectionID = getConnectionIDString(connection);
+        boolean isValueSubscription = ATTRIBUTE_VALUE_TOPIC.equalsIgnoreCase(topicTokenIndexToString(topic, 2));
+        Function<SharedEvent, String> topicExpander = buildTopicExpander(topic);
+        EventDeliveryThrottle throttle = null;
+
+        if (!isAssetTopic && attributeDeliveryPolicy != null && attributeDeliveryPolicy.isActive()) {
+            throttle = new EventDeliveryThrottle(attributeDeliveryPolicy, timerService, executorService, event -> {
+                byte[] payload = toPayload(isValueSubscription ? event.getValue().orElse(null) : event);
+                if (payload != null) {
+                    mqttBrokerService.publishMessagePayload(topicExpander.apply(event), payload, MqttQoS.AT_MOST_ONCE);
+                }
+            });
+        }
+
+        TopicSubscription topicSubscription = new TopicSubscription(
+            connectionID,
+            topic.getString(),
+            key,
+            (AssetFilter<?>) subscription.getFilter(),
+            isAssetTopic,
+            isValueSubscription,
+            topicExpander,
+            throttle);
 
         // Track connection subscriptions for restricted user asset link changes (to determine if the client should be disconnected)
         synchronized (connectionSubscriberInfoMap) {
-            connectionSubscriberInfoMap.compute(getConnectionIDString(connection), (connectionID, subscriberInfo) -> {
+            connectionSubscriberInfoMap.compute(connectionID, (id, subscriberInfo) -> {
                 if (subscriberInfo == null) {
-                    return new SubscriberInfo(topic.getString(), eventConsumer);
-                } else {
-                    subscriberInfo.add(topic.getString(), eventConsumer);
-                    return subscriberInfo;
+                    return new SubscriberInfo(topicSubscription);
                 }
+                TopicSubscription existing = subscriberInfo.add(topicSubscription);
+                if (existing != null) {
+                    subscriptionTrie.remove(existing.key(), existing);
+                    existing.close();
+                }
+                return subscriberInfo;
             });
+            subscriptionTrie.add(key, topicSubscription);
         }
     }
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
     @Override
     public void onUnsubscribe(RemotingConnection connection, Topic topic) {
-        String subscriptionId = topic.toString();
-        boolean isAssetTopic = subscriptionId.startsWith(ASSET_TOPIC);
-        Map<String, Object> headers = prepareHeaders(topicRealm(topic), connection);
-        Class<SharedEvent> subscriptionClass = (Class) (isAssetTopic ? AssetEvent.class : AttributeEvent.class);
-        CancelEventSubscription cancelEventSubscription = new CancelEventSubscription(subscriptionClass, subscriptionId);
-        messageBrokerService.getFluentProducerTemplate()
-            .withHeaders(headers)
-            .withBody(cancelEventSubscription)
-            .to(CLIENT_INBOUND_QUEUE)
-            .asyncSend();
-
-        // Track connection subscriptions for restricted user asset link changes (to determine if the client should be disconnected)
         synchronized (connectionSubscriberInfoMap) {
             connectionSubscriberInfoMap.computeIfPresent(getConnectionIDString(connection), (connectionID, subscriberInfo) -> {
-                if (subscriberInfo.remove(topic.getString()) == 0) {
-                    return null;
+                TopicSubscription subscription = subscriberInfo.remove(topic.getString());
+                if (subscription != null) {
+                    subscriptionTrie.remove(subscription.key(), subscription);
+                    subscription.close();
                 }
-                return subscriberInfo;
+                return subscriberInfo.size() == 0 ? null : subscriberInfo;
             });
         }
     }
 
+    protected void removeSubscriptions(String connectionID) {
+        synchronized (connectionSubscriberInfoMap) {
+            SubscriberInfo subscriberInfo = connectionSubscriberInfoMap.remove(connectionID);
+            if (subscriberInfo != null) {
+                subscriberInfo.topicSubscriptionMap.values().forEach(subscription -> {
+                    subscriptionTrie.remove(subscription.key(), subscription);
+                    subscription.close();
+                });
+            }
+        }
+    }
+
+    /**
+     * Find the subscriptions that could match the event using the trie, apply each subscription's filter and publish
+     * to the matching subscribers; the event and value payloads are only serialised once per event
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected void onSubscribedEvent(SharedEvent event) {
+        if (!(event instanceof AssetInfo assetInfo) || assetInfo.getRealm() == null) {
+            return;
+        }
+
+        boolean isAssetEvent = event instanceof AssetEvent;
+        List<String> base = isAssetEvent
+            ? List.of(assetInfo.getRealm(), ASSET_TOPIC)
+            : List.of(assetInfo.getRealm(), ATTRIBUTE_TOPIC, ((AttributeEvent)event).getName());
+        Set<TopicSubscription> candidates = new HashSet<>();
+        Consumer<TopicSubscription> collector = candidates::add;
+
+        subscriptionTrie.match(concat(base, KEY_ID, assetInfo.getId()), collector);
+        subscriptionTrie.match(concat(base, KEY_PARENT, assetInfo.getParentId() != null ? assetInfo.getParentId() : KEY_NO_PARENT), collector);
+        if (assetInfo.getPath() != null) {
+            for (String pathId : assetInfo.getPath()) {
+                subscriptionTrie.match(concat(base, KEY_PATH, pathId), collector);
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        byte[] eventPayload = null;
+        byte[] valuePayload = null;
+
+        for (TopicSubscription subscription : candidates) {
+            SharedEvent filteredEvent = ((AssetFilter)subscription.filter()).apply(event);
+
+            if (filteredEvent == null) {
+                continue;
+            }
+
+            if (subscription.throttle() != null && filteredEvent instanceof AttributeEvent attributeEvent) {
+                // Coalesced delivery so payload is serialised when the throttle releases the event
+                subscription.throttle().offer(attributeEvent);
+                continue;
+            }
+
+            String publishTopic = subscription.topicExpander().apply(filteredEvent);
+            byte[] payload;
+
+            if (subscription.isValueSubscription()) {
+                if (valuePayload == null) {
+                    valuePayload = toPayload(((AttributeEvent)event).getValue().orElse(null));
+                }
+                payload = valuePayload;
+            } else if (filteredEvent != event) {
+                payload = toPayload(filteredEvent);
+            } else {
+                if (eventPayload == null) {
+                    eventPayload = toPayload(event);
+                }
+                payload = eventPayload;
+            }
+
+            if (payload != null) {
+                mqttBrokerService.publishMessagePayload(publishTopic, payload, MqttQoS.AT_MOST_ONCE);
+            }
+        }
+    }
+
+    protected static byte[] toPayload(Object data) {
+        return ValueUtil.asJSON(data).map(str -> str.getBytes(StandardCharsets.UTF_8)).orElse(null);
+    }
+
+    protected static List<String> concat(List<String> base, String... tokens) {
+        List<String> result = new ArrayList<>(base.size() + tokens.length);
+        result.addAll(base);
+        result.addAll(Arrays.asList(tokens));
+        return result;
+    }
+
     @Override
     public Set<String> getPublishListenerTopics() {
         return Set.of(
@@ -423,10 +555,17 @@ public class DefaultMQTTHandler extends MQTTHandler {
     @Override
     public void onPublish(RemotingConnection connection, Topic topic, ByteBuf body) {
         List<String> topicTokens = topic.getTokens();
-        String payloadContent = body.toString(StandardCharsets.UTF_8);
-        Object value = ValueUtil.parse(payloadContent).orElse(null);
+        Object value = parsePayload(body);
         AttributeEvent attributeEvent = buildAttributeEvent(topicTokens, value);
         Map<String, Object> headers = prepareHeaders(topicRealm(topic), connection);
+
+        // This runs on the consumer shared by all connections so never block; a flooding connection is disconnected
+        if (!clientEventService.reserveInboundEvent(getConnectionIDString(connection), () -> mqttBrokerService.doForceDisconnect(connection))) {
+            LOG.fine("Discarding publish as connection has too many events waiting to be processed: " + MQTTBrokerService.connectionToString(connection));
+            return;
+        }
+        headers.put(HEADER_INBOUND_EVENT_RESERVED, true);
+
         LOG.finer("Publishing to client inbound queue: " + attributeEvent);
         messageBrokerService.getFluentProducerTemplate()
             .withHeaders(headers)
@@ -435,6 +574,21 @@ public class DefaultMQTTHandler extends MQTTHandler {
             .asyncSend();
     }
 
+    /**
+     * Parses the JSON payload directly from the buffer without first copying it into a string.
+     */
+    protected static Object parsePayload(ByteBuf body) {
+        if (!body.isReadable()) {
+            return null;
+        }
+        try (InputStream inputStream = new ByteBufInputStream(body.duplicate())) {
+            return ValueUtil.JSON.readValue(inputStream, Object.class);
+        } catch (Exception e) {
+            LOG.log(Level.INFO, "Failed to parse JSON payload: " + body.toString(StandardCharsets.UTF_8), e);
+        }
+        return null;
+    }
+
     @Override
     public void onUserAssetLinksChanged(RemotingConnection connection, List<PersistenceEvent<UserAssetLink>> changes) {
         if (connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))) {
@@ -536,55 +690,84 @@ public class DefaultMQTTHandler extends MQTTHandler {
         return assetFilter;
     }
 
-    protected Consumer<SharedEvent> getSubscriptionEventConsumer(RemotingConnection connection, Topic topic) {
-        boolean isValueSubscription = ATTRIBUTE_VALUE_TOPIC.equalsIgnoreCase(topicTokenIndexToString(topic, 2));
+    /**
+     * Get the trie key for a subscription topic: realm/asset/{selector} or realm/attribute/{attributeName|+}/{selector}
+     * where the selector is one of: # (all assets), id/{assetId}, parent/{parentId} (empty for root assets) or
+     * path/{ancestorId}; this mirrors {@link #buildAssetFilter} which is still applied to every candidate event
+     */
+    protected static List<String> buildSubscriptionKey(Topic topic) {
         boolean isAssetTopic = isAssetTopic(topic);
+        int selectorIndex = isAssetTopic ? 3 : 4;
+        List<String> key = new ArrayList<>();
+        key.add(topicRealm(topic));
+        key.add(isAssetTopic ? ASSET_TOPIC : ATTRIBUTE_TOPIC);
 
-        // Always publish asset/attribute messages with QoS 0
-        MqttQoS mqttQoS = MqttQoS.AT_MOST_ONCE;
+        if (!isAssetTopic) {
+            key.add(topicTokenIndexToString(topic, 3));
+        }
 
-        // Build topic expander (replace wildcards) so it isn't computed for each event
-        Function<SharedEvent, String> topicExpander;
+        String firstTokenStr = topicTokenIndexToString(topic, selectorIndex);
 
-        if (isAssetTopic) {
-            String topicStr = topic.toString();
-            String replaceToken = topicStr.endsWith(TOKEN_MULTI_LEVEL_WILDCARD) ? TOKEN_MULTI_LEVEL_WILDCARD : topicStr.endsWith(TOKEN_SINGLE_LEVEL_WILDCARD) ? TOKEN_SINGLE_LEVEL_WILDCARD : null;
-            topicExpander = ev -> replaceToken != null ? topicStr.replace(replaceToken, ((AssetEvent)ev).getId()) : topicStr;
+        if (topic.getTokens().size() == selectorIndex + 1) {
+            if (TOKEN_MULTI_LEVEL_WILDCARD.equals(firstTokenStr)) {
+                key.add(TOKEN_MULTI_LEVEL_WILDCARD);
+            } else if (TOKEN_SINGLE_LEVEL_WILDCARD.equals(firstTokenStr)) {
+                key.add(KEY_PARENT);
+                key.add(KEY_NO_PARENT);
+            } else {
+                key.add(KEY_ID);
+                key.add(firstTokenStr);
+            }
+        } else if (topic.getTokens().size() == selectorIndex + 2) {
+            String secondTokenStr = topicTokenIndexToString(topic, selectorIndex + 1);
+            if (TOKEN_MULTI_LEVEL_WILDCARD.equals(secondTokenStr)) {
+                key.add(KEY_PATH);
+            } else if (TOKEN_SINGLE_LEVEL_WILDCARD.equals(secondTokenStr)) {
+                key.add(KEY_PARENT);
+            } else {
+                return null;
+            }
+            key.add(firstTokenStr);
         } else {
-            String topicStr = topic.toString();
-            boolean injectAttributeName = TOKEN_SINGLE_LEVEL_WILDCARD.equals(topicTokenIndexToString(topic, 3));
+            return null;
+        }
 
-            if (injectAttributeName) {
-                topicStr = topicStr.replaceFirst("\\"+ TOKEN_SINGLE_LEVEL_WILDCARD, "\\$");
-            }
+        return key;
+    }
 
-            String replaceToken = topicStr.endsWith(TOKEN_MULTI_LEVEL_WILDCARD) ? TOKEN_MULTI_LEVEL_WILDCARD : topicStr.endsWith(TOKEN_SINGLE_LEVEL_WILDCARD) ? TOKEN_SINGLE_LEVEL_WILDCARD : null;
-            String finalTopicStr = topicStr;
-            topicExpander = ev -> {
-                String expanded = replaceToken != null ? finalTopicStr.replace(replaceToken, ((AttributeEvent)ev).getId()) : finalTopicStr;
-                if (injectAttributeName) {
-                    expanded = expanded.replace("$", ((AttributeEvent)ev).getName());
-                }
-                return expanded;
-            };
+    /**
+     * Build topic expander (replace wildcards with the attribute name and/or asset ID of the event) so the topic only
+     * needs concatenating for each event
+     */
+    protected static Function<SharedEvent, String> buildTopicExpander(Topic topic) {
+        List<String> tokens = topic.getTokens();
+        int lastIndex = tokens.size() - 1;
+        String lastToken = tokens.get(lastIndex);
+        boolean injectAttributeName = !isAssetTopic(topic) && TOKEN_SINGLE_LEVEL_WILDCARD.equals(topicTokenIndexToString(topic, 3));
+        boolean injectAssetId = TOKEN_MULTI_LEVEL_WILDCARD.equals(lastToken) || TOKEN_SINGLE_LEVEL_WILDCARD.equals(lastToken);
+
+        if (!injectAttributeName && !injectAssetId) {
+            String topicStr = topic.toString();
+            return ev -> topicStr;
         }
 
+        String prefix = String.join("/", tokens.subList(0, injectAttributeName ? 3 : lastIndex)) + "/";
+        String middle = injectAttributeName && lastIndex > 4 ? "/" + String.join("/", tokens.subList(4, lastIndex)) : "";
+        String suffix = injectAttributeName && !injectAssetId ? "/" + tokens.get(lastIndex) : "";
 
         return ev -> {
-
-            if (isAssetTopic) {
-                if (ev instanceof AssetEvent) {
-                    mqttBrokerService.publishMessage(topicExpander.apply(ev), ev, mqttQoS);
+            StringBuilder sb = new StringBuilder(prefix.length() + 64).append(prefix);
+            if (injectAttributeName) {
+                sb.append(((AttributeEvent)ev).getName()).append(middle);
+                if (injectAssetId) {
+                    sb.append('/').append(((AssetInfo)ev).getId());
+                } else {
+                    sb.append(suffix);
                 }
             } else {
-                if (ev instanceof AttributeEvent attributeEvent) {
-                    if (isValueSubscription) {
-                        mqttBrokerService.publishMessage(topicExpander.apply(ev), attributeEvent.getValue().orElse(null), mqttQoS);
-                    } else {
-                        mqttBrokerService.publishMessage(topicExpander.apply(ev), ev, mqttQoS);
-                    }
-                }
+                sb.append(((AssetInfo)ev).getId());
             }
+            return sb.toString();
         };
     }
 
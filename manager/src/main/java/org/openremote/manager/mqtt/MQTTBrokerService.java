@@ -96,6 +96,18 @@ public class MQTTBrokerService extends RouteBuilder implements ContainerService,
 
     public static final String MQTT_FORCE_USER_DISCONNECT_DEBOUNCE_MILLIS = "MQTT_FORCE_USER_DISCONNECT_DEBOUNCE_MILLIS";
     public static int MQTT_FORCE_USER_DISCONNECT_DEBOUNCE_MILLIS_DEFAULT = 5000;
+    /**
+     * Sustained rate of MQTT CONNECTs per realm that will be passed to the identity provider for authentication; 0
+     * disables admission control
+     */
+    public static final String MQTT_CONNECT_RATE_PER_REALM = "MQTT_CONNECT_RATE_PER_REALM";
+    public static int MQTT_CONNECT_RATE_PER_REALM_DEFAULT = 100;
+    /**
+     * How long successfully validated client credentials are cached for so reconnecting clients don't require another
+     * identity provider login; 0 disables the cache
+     */
+    public static final String MQTT_CREDENTIAL_CACHE_MILLIS = "MQTT_CREDENTIAL_CACHE_MILLIS";
+    public static int MQTT_CREDENTIAL_CACHE_MILLIS_DEFAULT = 30000;
     public static final int PRIORITY = MED_PRIORITY;
     public static final String MQTT_SERVER_LISTEN_HOST = "MQTT_SERVER_LISTEN_HOST";
     public static final String MQTT_SERVER_LISTEN_PORT = "MQTT_SERVER_LISTEN_PORT";
@@ -123,6 +135,8 @@ public class MQTTBrokerService extends RouteBuilder implements ContainerService,
     protected int port;
     protected EmbeddedActiveMQ server;
     protected ActiveMQORSecurityManager securityManager;
+    protected MQTTConnectAdmissionController admissionController;
+    protected int credentialCacheMillis;
     protected ClientProducer producer;
     protected ClientSessionInternal internalSession;
 
@@ -144,6 +158,10 @@ public class MQTTBrokerService extends RouteBuilder implements ContainerService,
         executorService = container.getExecutorService();
         timerService = container.getService(TimerService.class);
         assetProcessingService = container.getService(AssetProcessingService.class);
+        credentialCacheMillis = getInteger(container.getConfig(), MQTT_CREDENTIAL_CACHE_MILLIS, MQTT_CREDENTIAL_CACHE_MILLIS_DEFAULT);
+        admissionController = new MQTTConnectAdmissionController(
+            getInteger(container.getConfig(), MQTT_CONNECT_RATE_PER_REALM, MQTT_CONNECT_RATE_PER_REALM_DEFAULT),
+            container.getMeterRegistry());
 
         userAssetDisconnectDebouncer = new Debouncer<>(executorService, id -> processUserAssetLinkChange(id, userAssetLinkChangeMap.remove(id)), debounceMillis);
         disconnectedConnectionCache = CacheBuilder.newBuilder()
@@ -234,7 +252,7 @@ public class MQTTBrokerService extends RouteBuilder implements ContainerService,
                     new AppConfigurationEntry(PrincipalConversionLoginModule.class.getName(), AppConfigurationEntry.LoginModuleControlFlag.REQUISITE, Map.of(PrincipalConversionLoginModule.PRINCIPAL_CLASS_LIST, KeycloakPrincipal.class.getName()))
                 };
             }
-        });
+        }, admissionController, credentialCacheMillis);
 
         server.setSecurityManager(securityManager);
         server.start();
@@ -312,6 +330,8 @@ public class MQTTBrokerService extends RouteBuilder implements ContainerService,
 
                         if (forceDisconnect) {
                             LOG.log(TRACE, "User modified or deleted so force closing any sessions for this user: " + user);
+                            // Cached credentials may no longer be valid
+                            securityManager.invalidateCredentialCache();
                             // Find existing connection for this user
                             getUserConnections(user.getId()).forEach(this::doForceDisconnect);
                         }
@@ -497,13 +517,25 @@ public class MQTTBrokerService extends RouteBuilder implements ContainerService,
     }
 
     public void publishMessage(String topic, Object data, MqttQoS qoS) {
+        try {
+            publishMessagePayload(topic, ValueUtil.asJSON(data).map(String::getBytes).orElseThrow(() -> new IllegalStateException("Failed to convert payload to JSON string: " + data)), qoS);
+        } catch (Exception e) {
+            LOG.log(WARNING, "Couldn't publish to MQTT client: topic=" + topic, e);
+        }
+    }
+
+    /**
+     * Publish an already serialised payload; allows the same payload to be published to many topics without
+     * serialising it each time
+     */
+    public void publishMessagePayload(String topic, byte[] payload, MqttQoS qoS) {
         try {
             if (internalSession != null) {
                 // Artemis' sessions are not threadsafe
                 synchronized (internalSession) {
                     ClientMessage message = internalSession.createMessage(false);
                     message.putIntProperty(MQTT_QOS_LEVEL_KEY, qoS.value());
-                    message.writeBodyBufferBytes(ValueUtil.asJSON(data).map(String::getBytes).orElseThrow(() -> new IllegalStateException("Failed to convert payload to JSON string: " + data)));
+                    message.writeBodyBufferBytes(payload);
                     producer.send(MQTTUtil.convertMqttTopicFilterToCoreAddress(topic, server.getConfiguration().getWildcardConfiguration()), message);
                 }
             }
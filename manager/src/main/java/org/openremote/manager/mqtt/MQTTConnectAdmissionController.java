@@ -0,0 +1,91 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.mqtt;
+
+import com.google.common.util.concurrent.RateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.openremote.model.syslog.SyslogCategory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.API;
+
+/**
+ * Limits the rate at which MQTT CONNECTs that require an identity provider login are admitted using a token bucket per
+ * realm; a CONNECT that arrives when no token is available is rejected immediately rather than waiting as the caller is
+ * an Artemis authentication thread. This stops a reconnect storm (e.g. after an outage) from overwhelming Keycloak;
+ * rejected clients will retry with their own back off.
+ */
+public class MQTTConnectAdmissionController {
+
+    private static final Logger LOG = SyslogCategory.getLogger(API, MQTTConnectAdmissionController.class);
+    protected final double connectsPerSecond;
+    protected final Map<String, RateLimiter> realmRateLimiters = new ConcurrentHashMap<>();
+    protected Counter admittedCounter;
+    protected Counter rejectedCounter;
+
+    /**
+     * @param connectsPerSecond Sustained CONNECT rate per realm (up to one second's worth can arrive in a burst), a
+     *                          value of 0 or less disables admission control
+     */
+    public MQTTConnectAdmissionController(double connectsPerSecond, MeterRegistry meterRegistry) {
+        this.connectsPerSecond = connectsPerSecond;
+
+        if (meterRegistry != null) {
+            admittedCounter = meterRegistry.counter("or.mqtt.connect.admission", "result", "admitted");
+            rejectedCounter = meterRegistry.counter("or.mqtt.connect.admission", "result", "rejected");
+        }
+    }
+
+    public boolean isEnabled() {
+        return connectsPerSecond > 0;
+    }
+
+    /**
+     * Never blocks
+     * @return true if the CONNECT can proceed
+     */
+    public boolean admit(String realm) {
+        if (!isEnabled()) {
+            return true;
+        }
+
+        RateLimiter rateLimiter = realmRateLimiters.computeIfAbsent(realm != null ? realm : "", r -> RateLimiter.create(connectsPerSecond));
+        return rateLimiter.tryAcquire() ? onAdmitted() : onRejected(realm);
+    }
+
+    protected boolean onAdmitted() {
+        if (admittedCounter != null) {
+            admittedCounter.increment();
+        }
+        return true;
+    }
+
+    protected boolean onRejected(String realm) {
+        if (rejectedCounter != null) {
+            rejectedCounter.increment();
+        }
+        LOG.fine(() -> "MQTT CONNECT rejected by admission control: realm=" + realm);
+        return false;
+    }
+}
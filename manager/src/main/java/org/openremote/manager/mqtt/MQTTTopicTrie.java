@@ -0,0 +1,112 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.manager.mqtt;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+import static org.openremote.manager.mqtt.MQTTHandler.TOKEN_MULTI_LEVEL_WILDCARD;
+import static org.openremote.manager.mqtt.MQTTHandler.TOKEN_SINGLE_LEVEL_WILDCARD;
+
+/**
+ * A trie of values keyed on topic tokens that supports the MQTT single level ({@value MQTTHandler#TOKEN_SINGLE_LEVEL_WILDCARD})
+ * and multi level ({@value MQTTHandler#TOKEN_MULTI_LEVEL_WILDCARD}) wildcards in the keys; matching a topic visits only
+ * the branches that can match so the cost depends on the topic length and number of matches rather than the number of
+ * entries. Matching is lock free; modifications are serialised.
+ */
+public class MQTTTopicTrie<T> {
+
+    protected static class Node<T> {
+        protected final Map<String, Node<T>> children = new ConcurrentHashMap<>();
+        protected final Set<T> values = new CopyOnWriteArraySet<>();
+
+        protected boolean isEmpty() {
+            return children.isEmpty() && values.isEmpty();
+        }
+    }
+
+    protected final Node<T> root = new Node<>();
+
+    public synchronized void add(List<String> tokens, T value) {
+        Node<T> node = root;
+        for (String token : tokens) {
+            node = node.children.computeIfAbsent(token, t -> new Node<>());
+        }
+        node.values.add(value);
+    }
+
+    public synchronized boolean remove(List<String> tokens, T value) {
+        return remove(root, tokens, 0, value);
+    }
+
+    protected boolean remove(Node<T> node, List<String> tokens, int index, T value) {
+        if (index == tokens.size()) {
+            return node.values.remove(value);
+        }
+
+        Node<T> child = node.children.get(tokens.get(index));
+        if (child == null) {
+            return false;
+        }
+
+        boolean removed = remove(child, tokens, index + 1, value);
+        if (removed && child.isEmpty()) {
+            node.children.remove(tokens.get(index));
+        }
+        return removed;
+    }
+
+    /**
+     * Pass each value whose key matches the specified topic (which should not contain wildcards) to the consumer
+     */
+    public void match(List<String> topicTokens, Consumer<T> consumer) {
+        match(root, topicTokens, 0, consumer);
+    }
+
+    protected void match(Node<T> node, List<String> topicTokens, int index, Consumer<T> consumer) {
+        Node<T> multiLevel = node.children.get(TOKEN_MULTI_LEVEL_WILDCARD);
+        if (multiLevel != null) {
+            multiLevel.values.forEach(consumer);
+        }
+
+        if (index == topicTokens.size()) {
+            node.values.forEach(consumer);
+            return;
+        }
+
+        Node<T> child = node.children.get(topicTokens.get(index));
+        if (child != null) {
+            match(child, topicTokens, index + 1, consumer);
+        }
+
+        Node<T> singleLevel = node.children.get(TOKEN_SINGLE_LEVEL_WILDCARD);
+        if (singleLevel != null) {
+            match(singleLevel, topicTokens, index + 1, consumer);
+        }
+    }
+
+    public boolean isEmpty() {
+        return root.isEmpty();
+    }
+}
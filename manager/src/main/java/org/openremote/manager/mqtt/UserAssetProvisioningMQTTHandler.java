@@ -19,6 +19,9 @@
  */
 package org.openremote.manager.mqtt;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
 import io.netty.buffer.ByteBuf;
 import io.netty.handler.codec.mqtt.MqttQoS;
 import org.apache.activemq.artemis.spi.core.protocol.RemotingConnection;
@@ -51,11 +54,13 @@ import java.security.cert.X509Certificate;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static org.openremote.container.persistence.PersistenceService.PERSISTENCE_TOPIC;
 import static org.openremote.container.persistence.PersistenceService.isPersistenceEventForEntityType;
+import static org.openremote.container.util.MapAccess.getInteger;
 import static org.openremote.model.Constants.RESTRICTED_USER_REALM_ROLE;
 import static org.openremote.model.syslog.SyslogCategory.API;
 
@@ -93,9 +98,35 @@ public class UserAssetProvisioningMQTTHandler extends MQTTHandler {
 
                     if (forceDisconnect) {
                         LOG.fine("Provisioning config modified or deleted so forcing connected clients to disconnect: " + persistenceEvent.getEntity());
+                        mqttHandler.invalidateProvisioningCache();
                         mqttHandler.forceClientDisconnects(persistenceEvent.getEntity().getId());
                     }
                 });
+
+            from(PERSISTENCE_TOPIC)
+                .routeId("Persistence-ProvisioningUser")
+                .filter(isPersistenceEventForEntityType(User.class))
+                .process(exchange -> {
+                    PersistenceEvent<User> persistenceEvent = (PersistenceEvent<User>)exchange.getIn().getBody(PersistenceEvent.class);
+                    String username = persistenceEvent.getEntity().getUsername();
+
+                    // Cached provisioning outcomes may include this user
+                    if (persistenceEvent.getCause() != PersistenceEvent.Cause.CREATE && username != null && username.startsWith(User.SERVICE_ACCOUNT_PREFIX + PROVISIONING_USER_PREFIX)) {
+                        mqttHandler.invalidateProvisioningCache();
+                    }
+                });
+
+            from(PERSISTENCE_TOPIC)
+                .routeId("Persistence-ProvisioningAsset")
+                .filter(isPersistenceEventForEntityType(Asset.class))
+                .process(exchange -> {
+                    PersistenceEvent<Asset<?>> persistenceEvent = (PersistenceEvent<Asset<?>>)exchange.getIn().getBody(PersistenceEvent.class);
+
+                    // Cached provisioning outcomes must not return a deleted or outdated asset
+                    if (persistenceEvent.getCause() != PersistenceEvent.Cause.CREATE) {
+                        mqttHandler.invalidateProvisioningCache(persistenceEvent.getEntity().getId());
+                    }
+                });
         }
     }
 
@@ -105,12 +136,22 @@ public class UserAssetProvisioningMQTTHandler extends MQTTHandler {
     public static final String RESPONSE_TOKEN = "response";
     public static final String UNIQUE_ID_PLACEHOLDER = "%UNIQUE_ID%";
     public static final String PROVISIONING_USER_PREFIX = "ps-";
+    /**
+     * How long the outcome of a successful X.509 provisioning request is cached for so a reconnecting client doesn't
+     * cause another service user and asset lookup; 0 disables the cache
+     */
+    public static final String MQTT_PROVISIONING_CACHE_MILLIS = "MQTT_PROVISIONING_CACHE_MILLIS";
+    public static int MQTT_PROVISIONING_CACHE_MILLIS_DEFAULT = 60000;
+
+    protected record ProvisioningOutcome(User serviceUser, Asset<?> asset) {}
+
     protected ProvisioningService provisioningService;
     protected TimerService timerService;
     protected AssetStorageService assetStorageService;
     protected ManagerKeycloakIdentityProvider identityProvider;
     protected boolean isKeycloak;
     protected final ConcurrentMap<Long, Set<RemotingConnection>> provisioningConfigAuthenticatedConnectionMap = new ConcurrentHashMap<>();
+    protected Cache<String, ProvisioningOutcome> provisioningOutcomeCache;
 
     @Override
     public void start(Container container) throws Exception {
@@ -118,6 +159,13 @@ public class UserAssetProvisioningMQTTHandler extends MQTTHandler {
         provisioningService = container.getService(ProvisioningService.class);
         timerService = container.getService(TimerService.class);
         assetStorageService = container.getService(AssetStorageService.class);
+        int provisioningCacheMillis = getInteger(container.getConfig(), MQTT_PROVISIONING_CACHE_MILLIS, MQTT_PROVISIONING_CACHE_MILLIS_DEFAULT);
+        if (provisioningCacheMillis > 0) {
+            provisioningOutcomeCache = CacheBuilder.newBuilder()
+                .maximumSize(10000)
+                .expireAfterWrite(provisioningCacheMillis, TimeUnit.MILLISECONDS)
+                .build();
+        }
         ManagerIdentityService identityService = container.getService(ManagerIdentityService.class);
 
         if (!identityService.isKeycloakEnabled()) {
@@ -308,62 +356,75 @@ public class UserAssetProvisioningMQTTHandler extends MQTTHandler {
 
         String realm = matchingConfig.getRealm();
 
-        // Get/create service user
-        String serviceUsername = (PROVISIONING_USER_PREFIX + uniqueId).toLowerCase(); // Keycloak clients are case sensitive but pretends not to be so always force lowercase
-        if (serviceUsername.length() > 255) {
-            // Keycloak has a 255 character limit on clientId
-            serviceUsername = serviceUsername.substring(0, 254);
-        }
+        // Reconnecting clients can re-use the outcome of a recent provisioning request for the same certificate
+        String outcomeCacheKey = matchingConfig.getId() + ":" + uniqueId + ":" + Hashing.sha256().hashString(provisioningMessage.getCert(), StandardCharsets.UTF_8);
+        ProvisioningOutcome cachedOutcome = provisioningOutcomeCache != null ? provisioningOutcomeCache.getIfPresent(outcomeCacheKey) : null;
         User serviceUser;
+        Asset<?> asset;
 
-        try {
-            LOG.finest("Checking service user for this client");
-            serviceUser = identityProvider.getUserByUsername(realm, User.SERVICE_ACCOUNT_PREFIX + serviceUsername);
-
-            if (serviceUser != null) {
-                if (!serviceUser.getEnabled()) {
-                    LOG.info(() -> "Service user exists and has been disabled so cannot continue: topic=" + topic + ", " + MQTTBrokerService.connectionToString(connection));
-                    mqttBrokerService.publishMessage(getResponseTopic(topic), new ErrorResponseMessage(ErrorResponseMessage.Error.USER_DISABLED), MqttQoS.AT_MOST_ONCE);
-                    return;
-                }
-                LOG.finest("Service user exists and is enabled");
-            } else {
-                LOG.fine("Creating service user");
-                serviceUser = createClientServiceUser(realm, serviceUsername, matchingConfig);
-                LOG.fine("Service user has been created: username=" + serviceUser.getUsername());
+        if (cachedOutcome != null) {
+            LOG.finest("Using cached provisioning outcome for this client");
+            serviceUser = cachedOutcome.serviceUser();
+            asset = cachedOutcome.asset();
+        } else {
+            // Get/create service user
+            String serviceUsername = (PROVISIONING_USER_PREFIX + uniqueId).toLowerCase(); // Keycloak clients are case sensitive but pretends not to be so always force lowercase
+            if (serviceUsername.length() > 255) {
+                // Keycloak has a 255 character limit on clientId
+                serviceUsername = serviceUsername.substring(0, 254);
             }
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, "Failed to retrieve/create service user: topic=" + topic + ", " + MQTTBrokerService.connectionToString(connection), e);
-            mqttBrokerService.publishMessage(getResponseTopic(topic), new ErrorResponseMessage(ErrorResponseMessage.Error.SERVER_ERROR), MqttQoS.AT_MOST_ONCE);
-            return;
-        }
 
-        Asset<?> asset;
+            try {
+                LOG.finest("Checking service user for this client");
+                serviceUser = identityProvider.getUserByUsername(realm, User.SERVICE_ACCOUNT_PREFIX + serviceUsername);
+
+                if (serviceUser != null) {
+                    if (!serviceUser.getEnabled()) {
+                        LOG.info(() -> "Service user exists and has been disabled so cannot continue: topic=" + topic + ", " + MQTTBrokerService.connectionToString(connection));
+                        mqttBrokerService.publishMessage(getResponseTopic(topic), new ErrorResponseMessage(ErrorResponseMessage.Error.USER_DISABLED), MqttQoS.AT_MOST_ONCE);
+                        return;
+                    }
+                    LOG.finest("Service user exists and is enabled");
+                } else {
+                    LOG.fine("Creating service user");
+                    serviceUser = createClientServiceUser(realm, serviceUsername, matchingConfig);
+                    LOG.fine("Service user has been created: username=" + serviceUser.getUsername());
+                }
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Failed to retrieve/create service user: topic=" + topic + ", " + MQTTBrokerService.connectionToString(connection), e);
+                mqttBrokerService.publishMessage(getResponseTopic(topic), new ErrorResponseMessage(ErrorResponseMessage.Error.SERVER_ERROR), MqttQoS.AT_MOST_ONCE);
+                return;
+            }
 
-        // Prepend realm name to unique ID to generate asset ID to further improve uniqueness
-        String assetId = UniqueIdentifierGenerator.generateId(matchingConfig.getRealm() + uniqueId);
+            // Prepend realm name to unique ID to generate asset ID to further improve uniqueness
+            String assetId = UniqueIdentifierGenerator.generateId(matchingConfig.getRealm() + uniqueId);
 
-        try {
-            LOG.finest(() -> "Checking provisioned asset: assetId=" + assetId);
-            // Look for existing asset
-            asset = assetStorageService.find(assetId);
+            try {
+                LOG.finest(() -> "Checking provisioned asset: assetId=" + assetId);
+                // Look for existing asset
+                asset = assetStorageService.find(assetId);
 
-            if (asset != null) {
-                LOG.finest("Asset exists");
+                if (asset != null) {
+                    LOG.finest("Asset exists");
 
-                if (!matchingConfig.getRealm().equals(asset.getRealm())) {
-                    LOG.warning("Client asset realm mismatch");
-                    mqttBrokerService.publishMessage(getResponseTopic(topic), new ErrorResponseMessage(ErrorResponseMessage.Error.ASSET_ERROR), MqttQoS.AT_MOST_ONCE);
-                    return;
+                    if (!matchingConfig.getRealm().equals(asset.getRealm())) {
+                        LOG.warning("Client asset realm mismatch");
+                        mqttBrokerService.publishMessage(getResponseTopic(topic), new ErrorResponseMessage(ErrorResponseMessage.Error.ASSET_ERROR), MqttQoS.AT_MOST_ONCE);
+                        return;
+                    }
+                } else {
+                    LOG.finest("Asset doesn't exist so creating");
+                    asset = createClientAsset(realm, assetId, uniqueId, serviceUser, matchingConfig);
                 }
-            } else {
-                LOG.finest("Asset doesn't exist so creating");
-                asset = createClientAsset(realm, assetId, uniqueId, serviceUser, matchingConfig);
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Failed to retrieve/create asset: topic=" + topic + ", " + MQTTBrokerService.connectionToString(connection) + ", config=" + matchingConfig, e);
+                mqttBrokerService.publishMessage(getResponseTopic(topic), new ErrorResponseMessage(ErrorResponseMessage.Error.SERVER_ERROR), MqttQoS.AT_MOST_ONCE);
+                return;
+            }
+
+            if (provisioningOutcomeCache != null) {
+                provisioningOutcomeCache.put(outcomeCacheKey, new ProvisioningOutcome(serviceUser, asset));
             }
-        } catch (Exception e) {
-            LOG.log(Level.WARNING, "Failed to retrieve/create asset: topic=" + topic + ", " + MQTTBrokerService.connectionToString(connection) + ", config=" + matchingConfig, e);
-            mqttBrokerService.publishMessage(getResponseTopic(topic), new ErrorResponseMessage(ErrorResponseMessage.Error.SERVER_ERROR), MqttQoS.AT_MOST_ONCE);
-            return;
         }
 
         // Authenticate the connection using this service user's credentials - this will also update the connection's subject
@@ -485,6 +546,18 @@ public class UserAssetProvisioningMQTTHandler extends MQTTHandler {
         return asset;
     }
 
+    protected void invalidateProvisioningCache() {
+        if (provisioningOutcomeCache != null) {
+            provisioningOutcomeCache.invalidateAll();
+        }
+    }
+
+    protected void invalidateProvisioningCache(String assetId) {
+        if (provisioningOutcomeCache != null && assetId != null) {
+            provisioningOutcomeCache.asMap().values().removeIf(outcome -> assetId.equals(outcome.asset().getId()));
+        }
+    }
+
     protected void forceClientDisconnects(long provisioningConfigId) {
         provisioningConfigAuthenticatedConnectionMap.computeIfPresent(provisioningConfigId, (id, connections) -> {
             // Force disconnect of each connection and the disconnect handler will remove the connection from the map
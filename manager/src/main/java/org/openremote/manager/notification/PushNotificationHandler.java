@@ -34,7 +34,6 @@ import org.openremote.manager.security.ManagerIdentityService;
 import org.openremote.model.Container;
 import org.openremote.model.ContainerService;
 import org.openremote.model.PersistenceEvent;
-import org.openremote.model.asset.Asset;
 import org.openremote.model.asset.impl.ConsoleAsset;
 import org.openremote.model.console.ConsoleProvider;
 import org.openremote.model.notification.AbstractNotificationMessage;
@@ -198,9 +197,8 @@ public class PushNotificationHandler extends RouteBuilder implements Notificatio
                     .map(Notification.Target::getId).toArray(String[]::new);
 
             if (assetTargets.length > 0) {
-                List<String> consoleAssets = assetStorageService.findAll(new AssetQuery().ids(assetTargets)
-                        .select(new AssetQuery.Select().excludeAttributes()).types(ConsoleAsset.class))
-                    .stream().map(Asset::getId).toList();
+                List<String> consoleAssets = assetStorageService.findAllIds(new AssetQuery().ids(assetTargets)
+                        .types(ConsoleAsset.class));
 
                 if (!consoleAssets.isEmpty()) {
                     targets = targets.stream()
@@ -220,7 +218,6 @@ public class PushNotificationHandler extends RouteBuilder implements Notificatio
                 Notification.TargetType targetType = target.getType();
                 String targetId = target.getId();
                 AssetQuery assetQuery = new AssetQuery()
-                    .select(new AssetQuery.Select().excludeAttributes())
                     .types(ConsoleAsset.class)
                     .attributes(new AttributePredicate(ConsoleAsset.CONSOLE_PROVIDERS, new ValueEmptyPredicate().negate(true), false, new NameValuePredicate.Path(PushNotificationMessage.TYPE, "data", "token")));
 
@@ -241,7 +238,7 @@ public class PushNotificationHandler extends RouteBuilder implements Notificatio
                                 .toArray(String[]::new));
                 }
 
-                List<String> consoleAssetIds = assetStorageService.findAll(assetQuery).stream().map(Asset::getId).distinct().toList();
+                List<String> consoleAssetIds = assetStorageService.findAllIds(assetQuery).stream().distinct().toList();
 
                 if (!consoleAssetIds.isEmpty()) {
                     // Special handling if target type is user (don't need to find all linked users)
@@ -320,14 +320,13 @@ public class RulesService extends RouteBuilder implements ContainerService {
             .count();//Needed in order to execute the stream. TODO: can this be done differently?
 
         LOG.fine("Loading all assets with fact attributes to initialize state of rules engines");
-        Stream<Pair<Asset<?>, Stream<Attribute<?>>>> stateAttributes = findRuleStateAttributes();
-
-        // Push each attribute as an asset update through the rule engine chain
-        // that will ensure the insert only happens to the engines in scope
-        stateAttributes
-            .forEach(pair -> {
-                Asset<?> asset = pair.key;
-                pair.value.forEach(ruleAttribute -> {
+        // Push each rule state attribute as an asset update through the rule engine chain
+        // that will ensure the insert only happens to the engines in scope; assets are streamed from the DB
+        // so they don't all have to be held in memory
+        assetStorageService.streamAll(new AssetQuery(), asset ->
+            asset.getAttributes().stream()
+                .filter(RulesService::isRuleState)
+                .forEach(ruleAttribute -> {
                     AttributeEvent attributeEvent = new AttributeEvent(
                         asset,
                         ruleAttribute,
@@ -337,8 +336,7 @@ public class RulesService extends RouteBuilder implements ContainerService {
                         ruleAttribute.getValue().orElse(null),
                         ruleAttribute.getTimestamp().orElse(0L));
                     updateAttributeEvent(attributeEvent);
-                });
-            });
+                }));
 
         // Start the engines
         if (globalEngine != null) {
@@ -874,17 +872,6 @@ public class RulesService extends RouteBuilder implements ContainerService {
         return rulesEngines;
     }
 
-    protected Stream<Pair<Asset<?>, Stream<Attribute<?>>>> findRuleStateAttributes() {
-        // Get all assets then filter out any attributes with RULE_STATE=false
-        List<Asset<?>> assets = assetStorageService.findAll(new AssetQuery());
-
-        return assets.stream()
-            .map(asset ->
-                new Pair<>(asset, asset.getAttributes().stream()
-                    .filter(RulesService::isRuleState))
-            );
-    }
-
     /**
      * Called when an engine's rules change identifying assets with location attributes that also have {@link
      * LocationAttributePredicate} in the rules. The job here is to identify the asset's (via {@link AttributeInfo}) that
@@ -56,6 +56,23 @@ public class AssetsFacade<T extends Ruleset> extends Assets {
     @Override
     public Stream<Asset<?>> getResults(AssetQuery assetQuery) {
 
+        restrictToScope(assetQuery);
+
+        AssetQuery.Select oldValue = assetQuery.select;
+        assetQuery.select = new AssetQuery.Select().excludeAttributes();
+
+        try {
+            return assetStorageService.findAll(assetQuery).stream();
+        } finally {
+            assetQuery.select = oldValue;
+        }
+    }
+
+    /**
+     * Applies the realm and path restrictions of the rules engine scope to the query.
+     */
+    protected void restrictToScope(AssetQuery assetQuery) {
+
         if (RealmRuleset.class.isAssignableFrom(rulesEngineId.getScope())) {
             // Realm is restricted to rules
             assetQuery.realm = new RealmPredicate(
@@ -76,15 +93,6 @@ public class AssetsFacade<T extends Ruleset> extends Assets {
             }
             assetQuery.paths(new PathPredicate(restrictedAsset.getPath()));
         }
-
-        AssetQuery.Select oldValue = assetQuery.select;
-        assetQuery.select = new AssetQuery.Select().excludeAttributes();
-
-        try {
-            return assetStorageService.findAll(assetQuery).stream();
-        } finally {
-            assetQuery.select = oldValue;
-        }
     }
 
     public AssetsFacade<T> dispatch(AttributeEvent... events) {
@@ -95,7 +103,8 @@ public class AssetsFacade<T extends Ruleset> extends Assets {
         String[] ids = Arrays.stream(events).map(AttributeEvent::getId).toArray(String[]::new);
 
         AssetQuery query = new AssetQuery().ids(ids);
-        long count = this.getResults(query).count();
+        restrictToScope(query);
+        long count = assetStorageService.findAllIds(query).size();
 
         if (ids.length != count) {
             LOG.warning("Access to asset(s) not allowed for this rule engine scope " + rulesEngineId + " for asset IDs: " + String.join(", ", ids));
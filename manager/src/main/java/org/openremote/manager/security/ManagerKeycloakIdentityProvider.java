@@ -47,7 +47,6 @@ import org.openremote.manager.event.ClientEventService;
 import org.openremote.model.Constants;
 import org.openremote.model.Container;
 import org.openremote.model.PersistenceEvent;
-import org.openremote.model.asset.Asset;
 import org.openremote.model.auth.OAuthGrant;
 import org.openremote.model.auth.OAuthPasswordGrant;
 import org.openremote.model.event.shared.RealmFilter;
@@ -964,7 +963,7 @@ public class ManagerKeycloakIdentityProvider extends KeycloakIdentityProvider im
             query.executeUpdate();
 
             // Delete Assets
-            List<String> assetIds = assetStorageService.findAll(new AssetQuery().select(new AssetQuery.Select().excludeAttributes()).realm(new RealmPredicate(realmName))).stream().map(Asset::getId).toList();
+            List<String> assetIds = assetStorageService.findAllIds(new AssetQuery().realm(new RealmPredicate(realmName)));
             assetStorageService.delete(assetIds);
         });
 
@@ -0,0 +1,19 @@
+/*
+  Mirrors the location attribute value into a generated geometry column so geofence queries can use a GiST index
+  rather than extracting the coordinates from the attributes JSON of every asset; being a generated column it is
+  kept in sync with every update of the attributes (attribute events and asset merges).
+ */
+alter table ASSET add column LOCATION geometry(Point, 4326) generated always as (
+    case
+        when jsonb_typeof(ATTRIBUTES #> '{location,value,coordinates,0}') = 'number'
+            and jsonb_typeof(ATTRIBUTES #> '{location,value,coordinates,1}') = 'number'
+        then ST_SetSRID(ST_MakePoint(
+            (ATTRIBUTES #> '{location,value,coordinates,0}')::float8,
+            (ATTRIBUTES #> '{location,value,coordinates,1}')::float8), 4326)
+    end
+) stored;
+
+/* Bounding box (rectangular geofence) queries */
+create index ASSET_LOCATION_IDX on ASSET using gist (LOCATION);
+/* Distance (radial geofence) queries */
+create index ASSET_LOCATION_GEOGRAPHY_IDX on ASSET using gist ((LOCATION::geography));
@@ -62,6 +62,7 @@ import static jakarta.ws.rs.core.MediaType.APPLICATION_JSON;
  * <ul>
  * <li>{@link #getCurrentUserAssets}</li>
  * <li>{@link #queryAssets}</li>
+ * <li>{@link #queryAssetsStream}</li>
  * <li>{@link #get}</li>
  * <li>{@link #update}</li>
  * <li>{@link #writeAttributeValue}</li>
@@ -74,6 +75,7 @@ public interface AssetResource {
     @TsIgnore
     class Util {
         public static final String WRITE_ATTRIBUTE_HTTP_METHOD = "PUT";
+        public static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
 
         public static String getWriteAttributeUrl(AttributeRef attributeRef) {
             return "/asset/" + attributeRef.getId() + "/attribute/" + attributeRef.getName();
@@ -280,6 +282,17 @@ public interface AssetResource {
     @Produces(APPLICATION_JSON)
     Asset<?>[] queryAssets(@BeanParam RequestParams requestParams, AssetQuery query);
 
+    /**
+     * Same as {@link #queryAssets} but the assets are written to the response as newline delimited JSON (one asset per
+     * line) as they are read from the database, rather than being collected into a single array; this should be used
+     * for queries that can return a large number of assets (e.g. exporting all assets of a realm).
+     */
+    @POST
+    @Path("query/stream")
+    @Consumes(APPLICATION_JSON)
+    @Produces(Util.NDJSON_MEDIA_TYPE)
+    Response queryAssetsStream(@BeanParam RequestParams requestParams, AssetQuery query);
+
     /**
      * Change parent for a set of asset
      */
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.event.shared;
+
+/**
+ * Optional delivery policy for an {@link EventSubscription} that limits how often
+ * {@link org.openremote.model.attribute.AttributeEvent}s are delivered to a subscriber:
+ * <ul>
+ * <li>{@link #minIntervalMillis} - at most one event per attribute is delivered within this interval; events received
+ * in between are coalesced so only the latest value of each attribute is delivered when the interval elapses</li>
+ * <li>{@link #deadband} - numeric values that differ from the last delivered value by less than this amount are not
+ * delivered</li>
+ * </ul>
+ * Other event types are not affected by the policy.
+ */
+public class EventDeliveryPolicy {
+
+    protected Long minIntervalMillis;
+    protected Double deadband;
+
+    public EventDeliveryPolicy() {
+    }
+
+    public EventDeliveryPolicy(Long minIntervalMillis, Double deadband) {
+        this.minIntervalMillis = minIntervalMillis;
+        this.deadband = deadband;
+    }
+
+    public Long getMinIntervalMillis() {
+        return minIntervalMillis;
+    }
+
+    public EventDeliveryPolicy setMinIntervalMillis(Long minIntervalMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+        return this;
+    }
+
+    public Double getDeadband() {
+        return deadband;
+    }
+
+    public EventDeliveryPolicy setDeadband(Double deadband) {
+        this.deadband = deadband;
+        return this;
+    }
+
+    public boolean isActive() {
+        return (minIntervalMillis != null && minIntervalMillis > 0) || (deadband != null && deadband > 0);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "minIntervalMillis=" + minIntervalMillis +
+            ", deadband=" + deadband +
+            '}';
+    }
+}
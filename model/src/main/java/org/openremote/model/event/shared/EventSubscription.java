@@ -31,6 +31,9 @@ import java.util.function.Consumer;
  * <p>
  * A subscription can optionally contain a {@link #subscriptionId} which allows a client
  * to have multiple subscriptions for the same event type.
+ * <p>
+ * A subscription can optionally contain an {@link EventDeliveryPolicy} to limit the rate at which attribute events are
+ * delivered to the client.
  */
 public class EventSubscription<E extends SharedEvent> {
 
@@ -40,6 +43,7 @@ public class EventSubscription<E extends SharedEvent> {
     protected String eventType;
     protected EventFilter<E> filter;
     protected String subscriptionId;
+    protected EventDeliveryPolicy deliveryPolicy;
     @JsonIgnore
     protected boolean subscribed;
 
@@ -124,6 +128,14 @@ public class EventSubscription<E extends SharedEvent> {
         return subscriptionId;
     }
 
+    public EventDeliveryPolicy getDeliveryPolicy() {
+        return deliveryPolicy;
+    }
+
+    public void setDeliveryPolicy(EventDeliveryPolicy deliveryPolicy) {
+        this.deliveryPolicy = deliveryPolicy;
+    }
+
     public void setSubscribed(boolean subscribed) {
         this.subscribed = subscribed;
     }
@@ -138,6 +150,7 @@ public class EventSubscription<E extends SharedEvent> {
             "eventType='" + eventType + '\'' +
             ", filter=" + filter +
             ", subscriptionId='" + subscriptionId + '\'' +
+            ", deliveryPolicy=" + deliveryPolicy +
             '}';
     }
 }
@@ -24,7 +24,11 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 import org.openremote.model.asset.*;
 import org.openremote.model.attribute.AttributeEvent;
 import org.openremote.model.event.Event;
+import org.openremote.model.gateway.GatewayAssetManifestEvent;
+import org.openremote.model.gateway.GatewayAssetManifestRequestEvent;
 import org.openremote.model.gateway.GatewayConnectionStatusEvent;
+import org.openremote.model.gateway.GatewayEventBatchAckEvent;
+import org.openremote.model.gateway.GatewayEventBatchEvent;
 import org.openremote.model.gateway.GatewayDisconnectEvent;
 import org.openremote.model.rules.RulesEngineStatusEvent;
 import org.openremote.model.rules.RulesetChangedEvent;
@@ -51,7 +55,11 @@ import org.openremote.model.syslog.SyslogEvent;
     @JsonSubTypes.Type(value = GatewayDisconnectEvent.class, name = "gateway-disconnect"),
     @JsonSubTypes.Type(value = GatewayConnectionStatusEvent.class, name = "gateway-connection-status"),
     @JsonSubTypes.Type(value = DeleteAssetsRequestEvent.class, name = "delete-assets-request"),
-    @JsonSubTypes.Type(value = DeleteAssetsResponseEvent.class, name = "delete-assets-response")
+    @JsonSubTypes.Type(value = DeleteAssetsResponseEvent.class, name = "delete-assets-response"),
+    @JsonSubTypes.Type(value = GatewayAssetManifestRequestEvent.class, name = "gateway-asset-manifest-request"),
+    @JsonSubTypes.Type(value = GatewayAssetManifestEvent.class, name = "gateway-asset-manifest"),
+    @JsonSubTypes.Type(value = GatewayEventBatchEvent.class, name = "gateway-event-batch"),
+    @JsonSubTypes.Type(value = GatewayEventBatchAckEvent.class, name = "gateway-event-batch-ack")
 })
 @JsonTypeInfo(
     use = JsonTypeInfo.Id.NAME,
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.gateway;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.openremote.model.event.shared.SharedEvent;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * This event is used in response to a {@link GatewayAssetManifestRequestEvent}; each {@link Entry} contains the ID
+ * and parent ID of an asset along with a hash of its content (name, type and attributes including value timestamps
+ * but excluding values) so the receiver can determine which assets need to be re-read.
+ */
+public class GatewayAssetManifestEvent extends SharedEvent {
+
+    public static class Entry {
+        protected String id;
+        protected String parentId;
+        protected String hash;
+
+        @JsonCreator
+        public Entry(@JsonProperty("id") String id, @JsonProperty("parentId") String parentId, @JsonProperty("hash") String hash) {
+            this.id = id;
+            this.parentId = parentId;
+            this.hash = hash;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getParentId() {
+            return parentId;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Entry that = (Entry) o;
+            return Objects.equals(id, that.id) && Objects.equals(parentId, that.parentId) && Objects.equals(hash, that.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, parentId, hash);
+        }
+
+        @Override
+        public String toString() {
+            return Entry.class.getSimpleName() + "{" +
+                "id='" + id + '\'' +
+                ", parentId='" + parentId + '\'' +
+                ", hash='" + hash + '\'' +
+                '}';
+        }
+    }
+
+    protected List<Entry> entries;
+
+    @JsonCreator
+    public GatewayAssetManifestEvent(@JsonProperty("entries") List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "entries=" + (entries == null ? "null" : entries.size()) +
+            '}';
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.gateway;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import org.openremote.model.event.shared.SharedEvent;
+
+/**
+ * Sent by the central manager to a connected gateway to request a {@link GatewayAssetManifestEvent} describing every
+ * asset in the gateway's realm; the manifest is used to only transfer assets that have changed since the last sync.
+ */
+public class GatewayAssetManifestRequestEvent extends SharedEvent {
+
+    @JsonCreator
+    public GatewayAssetManifestRequestEvent() {
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{}";
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.gateway;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.openremote.model.event.shared.SharedEvent;
+
+import java.util.List;
+
+/**
+ * Used to tunnel multiple {@link SharedEvent}s between a gateway and the central manager in a single message; the
+ * events are either contained in {@link #events} or, when {@link #encoding} is {@link #ENCODING_DEFLATE}, as a base64
+ * encoded and deflated JSON array in {@link #data}. Events must be processed in the order they appear and the receiver
+ * should respond with a {@link GatewayEventBatchAckEvent} containing the {@link #sequence}.
+ */
+public class GatewayEventBatchEvent extends SharedEvent {
+
+    public static final String ENCODING_NONE = "none";
+    public static final String ENCODING_DEFLATE = "deflate";
+
+    protected long sequence;
+    protected String encoding;
+    protected List<SharedEvent> events;
+    protected String data;
+
+    @JsonCreator
+    public GatewayEventBatchEvent(@JsonProperty("sequence") long sequence,
+                                  @JsonProperty("encoding") String encoding,
+                                  @JsonProperty("events") List<SharedEvent> events,
+                                  @JsonProperty("data") String data) {
+        this.sequence = sequence;
+        this.encoding = encoding;
+        this.events = events;
+        this.data = data;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public List<SharedEvent> getEvents() {
+        return events;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{" +
+            "sequence=" + sequence +
+            ", encoding='" + encoding + '\'' +
+            ", events=" + (events == null ? "null" : events.size()) +
+            ", dataLength=" + (data == null ? 0 : data.length()) +
+            '}';
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.model.protocol;
+
+import org.openremote.model.asset.agent.AgentLink;
+import org.openremote.model.attribute.AttributeRef;
+import org.openremote.model.query.AssetQuery;
+import org.openremote.model.query.filter.StringPredicate;
+import org.openremote.model.query.filter.ValuePredicate;
+import org.openremote.model.syslog.SyslogCategory;
+import org.openremote.model.util.TextUtil;
+import org.openremote.model.util.TsIgnore;
+import org.openremote.model.util.ValueUtil;
+import org.openremote.model.value.JsonPathFilter;
+import org.openremote.model.value.RegexValueFilter;
+import org.openremote.model.value.ValueFilter;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.openremote.model.syslog.SyslogCategory.PROTOCOL;
+
+/**
+ * Dispatches inbound string messages to the linked attributes whose {@link AgentLink#getMessageMatchFilters} and
+ * {@link AgentLink#getMessageMatchPredicate} match the message; this is the equivalent of a
+ * {@link ProtocolUtil#createGenericAttributeMessageConsumer} per linked attribute but:
+ * <ul>
+ * <li>Attributes with identical match filters are grouped so the filters are applied once per message per group</li>
+ * <li>Each message is parsed at most once when any group starts with a {@link JsonPathFilter}</li>
+ * <li>Match predicates are compiled once and attributes with identical predicates are grouped</li>
+ * <li>Exact case sensitive {@link StringPredicate}s are looked up by the filtered value rather than evaluated</li>
+ * </ul>
+ * Matching attributes are passed the un-filtered message, exactly as for the per attribute consumer.
+ */
+@TsIgnore
+public class GenericAttributeMessageDispatcher {
+
+    protected static class Link {
+        final AttributeRef attributeRef;
+        final ValueFilter[] matchFilters;
+        final ValuePredicate matchPredicate;
+
+        protected Link(AttributeRef attributeRef, ValueFilter[] matchFilters, ValuePredicate matchPredicate) {
+            this.attributeRef = attributeRef;
+            this.matchFilters = matchFilters;
+            this.matchPredicate = matchPredicate;
+        }
+    }
+
+    protected static class PredicateGroup {
+        final Predicate<Object> predicate;
+        final List<AttributeRef> attributeRefs = new ArrayList<>();
+
+        protected PredicateGroup(Predicate<Object> predicate) {
+            this.predicate = predicate;
+        }
+    }
+
+    protected static class FilterGroup {
+        final ValueFilter[] matchFilters;
+        final boolean startsWithJsonPath;
+        final Map<String, List<AttributeRef>> exactMatches = new HashMap<>();
+        final Map<String, PredicateGroup> predicateGroups = new LinkedHashMap<>();
+
+        protected FilterGroup(ValueFilter[] matchFilters) {
+            this.matchFilters = matchFilters;
+            this.startsWithJsonPath = matchFilters != null && matchFilters.length > 0 && matchFilters[0] instanceof JsonPathFilter;
+        }
+    }
+
+    private static final Logger LOG = SyslogCategory.getLogger(PROTOCOL, GenericAttributeMessageDispatcher.class);
+    protected final Map<AttributeRef, Link> links = new LinkedHashMap<>();
+    protected final Supplier<Long> currentMillisSupplier;
+    protected final BiConsumer<AttributeRef, Object> stateConsumer;
+    protected volatile List<FilterGroup> filterGroups = Collections.emptyList();
+    protected volatile boolean parseJson;
+
+    public GenericAttributeMessageDispatcher(Supplier<Long> currentMillisSupplier, BiConsumer<AttributeRef, Object> stateConsumer) {
+        this.currentMillisSupplier = currentMillisSupplier;
+        this.stateConsumer = stateConsumer;
+    }
+
+    /**
+     * Add or replace the attribute; returns false if the agent link has no message match predicate so the attribute
+     * will never receive messages
+     */
+    public synchronized boolean add(AttributeRef attributeRef, AgentLink<?> agentLink) {
+        ValuePredicate matchPredicate = agentLink.getMessageMatchPredicate().orElse(null);
+
+        if (matchPredicate == null) {
+            if (links.remove(attributeRef) != null) {
+                rebuild();
+            }
+            return false;
+        }
+
+        links.put(attributeRef, new Link(attributeRef, agentLink.getMessageMatchFilters().orElse(null), matchPredicate));
+        rebuild();
+        return true;
+    }
+
+    public synchronized void remove(AttributeRef attributeRef) {
+        if (links.remove(attributeRef) != null) {
+            rebuild();
+        }
+    }
+
+    public synchronized void clear() {
+        links.clear();
+        rebuild();
+    }
+
+    public synchronized int size() {
+        return links.size();
+    }
+
+    public boolean isEmpty() {
+        return filterGroups.isEmpty();
+    }
+
+    public void accept(String message) {
+        if (TextUtil.isNullOrEmpty(message)) {
+            return;
+        }
+
+        List<FilterGroup> groups = filterGroups;
+        Object document = null;
+
+        if (parseJson) {
+            try {
+                document = JsonPathFilter.parseDocument(message);
+            } catch (Exception e) {
+                LOG.log(Level.FINEST, "Inbound message is not valid JSON so JSON path filters will be applied to the string", e);
+            }
+        }
+
+        for (FilterGroup group : groups) {
+            Object input = group.startsWithJsonPath && document != null ? document : message;
+            Object messageFiltered = ValueUtil.applyValueFilters(input, group.matchFilters);
+
+            if (messageFiltered == null) {
+                continue;
+            }
+
+            if (!group.exactMatches.isEmpty()) {
+                ValueUtil.getValueCoerced(messageFiltered, String.class).ifPresent(key -> {
+                    List<AttributeRef> attributeRefs = group.exactMatches.get(key);
+                    if (attributeRefs != null) {
+                        attributeRefs.forEach(attributeRef -> notifyMatch(attributeRef, message));
+                    }
+                });
+            }
+
+            for (PredicateGroup predicateGroup : group.predicateGroups.values()) {
+                if (predicateGroup.predicate.test(messageFiltered)) {
+                    predicateGroup.attributeRefs.forEach(attributeRef -> notifyMatch(attributeRef, message));
+                }
+            }
+        }
+    }
+
+    protected void notifyMatch(AttributeRef attributeRef, String message) {
+        LOG.finest("Inbound message meets attribute matching meta so writing state to state consumer for attribute: " + attributeRef);
+        stateConsumer.accept(attributeRef, message);
+    }
+
+    /**
+     * Rebuild the groups from the links; the groups are replaced as a whole so messages can be dispatched without
+     * locking
+     */
+    protected void rebuild() {
+        Map<String, FilterGroup> groups = new LinkedHashMap<>();
+
+        for (Link link : links.values()) {
+            FilterGroup group = groups.computeIfAbsent(getFiltersKey(link.matchFilters), key -> new FilterGroup(link.matchFilters));
+
+            if (isExactMatch(link.matchPredicate)) {
+                group.exactMatches.computeIfAbsent(((StringPredicate) link.matchPredicate).value, key -> new ArrayList<>()).add(link.attributeRef);
+            } else {
+                group.predicateGroups.computeIfAbsent(getPredicateKey(link.matchPredicate),
+                    key -> new PredicateGroup(link.matchPredicate.asPredicate(currentMillisSupplier))).attributeRefs.add(link.attributeRef);
+            }
+        }
+
+        parseJson = groups.values().stream().anyMatch(group -> group.startsWithJsonPath);
+        filterGroups = new ArrayList<>(groups.values());
+    }
+
+    protected static boolean isExactMatch(ValuePredicate predicate) {
+        return predicate instanceof StringPredicate stringPredicate
+            && stringPredicate.match == AssetQuery.Match.EXACT
+            && stringPredicate.caseSensitive
+            && !stringPredicate.negate
+            && stringPredicate.value != null;
+    }
+
+    protected static String getFiltersKey(ValueFilter[] filters) {
+        if (filters == null) {
+            return "";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (ValueFilter filter : filters) {
+            sb.append(filter.getClass().getName()).append(ValueUtil.asJSON(filter).orElseGet(() -> Integer.toString(System.identityHashCode(filter))));
+            // Pattern flags aren't serialised
+            if (filter instanceof RegexValueFilter regexValueFilter && regexValueFilter.pattern != null) {
+                sb.append(regexValueFilter.pattern.flags());
+            }
+            sb.append(';');
+        }
+        return sb.toString();
+    }
+
+    protected static String getPredicateKey(ValuePredicate predicate) {
+        return predicate.getClass().getName() + ValueUtil.asJSON(predicate).orElseGet(() -> Integer.toString(System.identityHashCode(predicate)));
+    }
+}
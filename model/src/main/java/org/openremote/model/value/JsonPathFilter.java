@@ -20,9 +20,11 @@
 package org.openremote.model.value;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ContainerNode;
 import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
@@ -30,6 +32,7 @@ import com.jayway.jsonpath.ParseContext;
 import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
 import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
 import com.kjetland.jackson.jsonSchema.annotations.JsonSchemaTitle;
+import org.openremote.model.util.Pair;
 import org.openremote.model.util.TextUtil;
 import org.openremote.model.util.ValueUtil;
 
@@ -38,6 +41,9 @@ import jakarta.validation.constraints.NotNull;
 /**
  * This filter works on any type of data; when applying the filter the data should be converted to JSON representation
  * using a tool like Jackson and then the JSON path expression should be applied to this JSON string.
+ * <p>
+ * A JSON object or array that has already been parsed (see {@link #parseDocument}) is used as is so the same document
+ * can be shared by many filters without being parsed again; the path expression is compiled once.
  */
 @JsonSchemaTitle("JSON Path")
 @JsonTypeName(JsonPathFilter.NAME)
@@ -63,6 +69,9 @@ public class JsonPathFilter extends ValueFilter {
     @JsonProperty
     public boolean returnLast;
 
+    @JsonIgnore
+    protected volatile Pair<String, JsonPath> compiledPath;
+
     @JsonCreator
     public JsonPathFilter(@JsonProperty("path") String path,
                           @JsonProperty("returnFirst") boolean returnFirst,
@@ -78,17 +87,40 @@ public class JsonPathFilter extends ValueFilter {
             return null;
         }
 
-        String valueStr = ValueUtil.convert(value, String.class);
+        Object obj;
 
-        if (valueStr == null) {
-            return null;
-        }
+        if (value instanceof ContainerNode<?> node) {
+            obj = jsonPathParser.parse(node).read(getCompiledPath());
+        } else {
+            String valueStr = ValueUtil.convert(value, String.class);
 
-        Object obj = jsonPathParser.parse(valueStr).read(path);
+            if (valueStr == null) {
+                return null;
+            }
+
+            obj = jsonPathParser.parse(valueStr).read(getCompiledPath());
+        }
 
         if ((returnFirst || returnLast) && obj instanceof ArrayNode arrayNode) {
             obj = arrayNode.get(returnFirst ? 0 : arrayNode.size() - 1);
         }
         return obj;
     }
+
+    protected JsonPath getCompiledPath() {
+        // Path is a public field so recompile if it has been changed
+        Pair<String, JsonPath> compiled = compiledPath;
+        if (compiled == null || !path.equals(compiled.key)) {
+            compiled = new Pair<>(path, JsonPath.compile(path));
+            compiledPath = compiled;
+        }
+        return compiled.value;
+    }
+
+    /**
+     * Parse a JSON string into a document that can be passed to {@link #filter} of any number of filters
+     */
+    public static Object parseDocument(String json) {
+        return jsonPathParser.parse(json).json();
+    }
 }
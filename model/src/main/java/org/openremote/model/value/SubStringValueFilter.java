@@ -52,29 +52,29 @@ public class SubStringValueFilter extends ValueFilter {
     @Override
     public Object filter(Object value) {
         Optional<String> valueStr = ValueUtil.getValue(value, String.class, true);
-        if (!valueStr.isPresent()) {
-            return null;
-        }
-
-        String result = null;
+        return valueStr.map(str -> substring(str, beginIndex, endIndex)).orElse(null);
+    }
 
+    /**
+     * Negative indexes are resolved against the length of each value rather than being stored back in the filter
+     */
+    protected static String substring(String str, int beginIndex, Integer endIndex) {
         if (beginIndex < 0) {
-            beginIndex = valueStr.get().length() + 1 + beginIndex;
+            beginIndex = str.length() + 1 + beginIndex;
             beginIndex = Math.max(0, beginIndex);
         }
 
         try {
             if (endIndex != null) {
                 if (endIndex < 0) {
-                    endIndex = valueStr.get().length() + endIndex;
+                    endIndex = str.length() + endIndex;
                     endIndex = Math.max(beginIndex, endIndex);
                 }
-                result = valueStr.get().substring(beginIndex, endIndex);
-            } else {
-                result = valueStr.get().substring(beginIndex);
+                return str.substring(beginIndex, endIndex);
             }
+            return str.substring(beginIndex);
         } catch (IndexOutOfBoundsException ignored) {}
 
-        return result;
+        return null;
     }
 }
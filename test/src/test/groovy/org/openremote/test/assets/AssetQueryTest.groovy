@@ -28,6 +28,7 @@ import spock.util.concurrent.PollingConditions
 import java.time.Instant
 import java.time.ZoneOffset
 import java.time.ZonedDateTime
+import java.util.logging.Logger
 
 import static java.time.format.DateTimeFormatter.ISO_ZONED_DATE_TIME
 import static org.openremote.model.query.AssetQuery.*
@@ -41,6 +42,8 @@ import static org.openremote.model.value.ValueType.TIMESTAMP_ISO8601
 
 class AssetQueryTest extends Specification implements ManagerContainerTrait {
 
+    private static final Logger LOG = Logger.getLogger(AssetQueryTest.class.getName())
+
     @Shared
     static ManagerTestSetup managerTestSetup
     @Shared
@@ -754,6 +757,36 @@ class AssetQueryTest extends Specification implements ManagerContainerTrait {
         assets.size() == 4
         !assets.any {it.name == "Lobby"}
 
+        when: "the query plan is retrieved with sequential scans disabled (the test data set is too small otherwise)"
+        def locationQuery = new AssetQuery()
+            .attributes(new LocationAttributePredicate(new RadialGeofencePredicate(10, 51.44541688237109d, 5.460315214821094d)))
+        def preparedQuery = AssetStorageService.buildQuery(locationQuery, AssetStorageService.QueryProjection.ENTITY)
+        def plan = persistenceService.doReturningTransaction { em ->
+            em.createNativeQuery("select set_config('enable_seqscan', 'off', true)").getSingleResult()
+            def explainQuery = em.createNativeQuery("EXPLAIN " + preparedQuery.querySql).unwrap(org.hibernate.query.Query.class)
+            preparedQuery.apply(explainQuery, locationQuery, { System.currentTimeMillis() })
+            explainQuery.getResultList().join("\n")
+        }
+
+        then: "the GiST index on the location column should be used"
+        plan.toLowerCase(Locale.ROOT).contains("asset_location_geography_idx")
+
+        when: "the location predicate is only one of the alternatives of an OR group"
+        assets = assetStorageService.findAll(
+            new AssetQuery()
+                .select(new Select().excludeAttributes())
+                .attributes(new LogicGroup<AttributePredicate>(LogicGroup.Operator.OR, [
+                    new LocationAttributePredicate(new RadialGeofencePredicate(10, 51.44541688237109d, 5.460315214821094d)),
+                    new AttributePredicate(new StringPredicate("lobbyLocations"), null)
+                ]))
+                .realm(new RealmPredicate(keycloakTestSetup.realmMaster.name))
+                .orderBy(new OrderBy(NAME))
+        )
+
+        then: "the moved asset should also be retrieved as it matches the other alternative"
+        assets.size() == 5
+        assets.any {it.name == "Lobby"}
+
         when: "a rectangular region is used that includes previous assets and moved asset"
         assets = assetStorageService.findAll(
             new AssetQuery()
@@ -991,4 +1024,126 @@ class AssetQueryTest extends Specification implements ManagerContainerTrait {
         assets.size() == 1
         assets[0].id == lobby.id
     }
+
+    def "Queries with the same shape reuse the prepared query"() {
+
+        when: "two queries with the same structure but different values are prepared"
+        def query1 = new AssetQuery()
+            .ids(managerTestSetup.lobbyId)
+            .realm(new RealmPredicate(keycloakTestSetup.realmMaster.name))
+            .attributes(new AttributePredicate("location", new ValueEmptyPredicate().negate(true)))
+        def query2 = new AssetQuery()
+            .ids(managerTestSetup.thingId, managerTestSetup.agentId)
+            .realm(new RealmPredicate(keycloakTestSetup.realmMaster.name))
+            .attributes(new AttributePredicate("location", new ValueEmptyPredicate().negate(true)))
+
+        then: "they should have the same shape and produce the same SQL"
+        AssetStorageService.getQueryShapeKey(query1) == AssetStorageService.getQueryShapeKey(query2)
+        assetStorageService.getPreparedQuery(query1, AssetStorageService.QueryProjection.ENTITY).is(assetStorageService.getPreparedQuery(query2, AssetStorageService.QueryProjection.ENTITY))
+
+        when: "a query with a different attribute name is prepared"
+        def query3 = new AssetQuery()
+            .ids(managerTestSetup.lobbyId)
+            .realm(new RealmPredicate(keycloakTestSetup.realmMaster.name))
+            .attributes(new AttributePredicate("humidity", new ValueEmptyPredicate().negate(true)))
+
+        then: "the shape should differ"
+        AssetStorageService.getQueryShapeKey(query1) != AssetStorageService.getQueryShapeKey(query3)
+
+        when: "the queries with the same shape are executed using the cached prepared query"
+        def assets1 = assetStorageService.findAll(query1)
+        def assets2 = assetStorageService.findAll(query2)
+        def assets1Again = assetStorageService.findAll(query1)
+
+        then: "each query should return the assets for its own parameter values"
+        assets1.collect { it.id } == [managerTestSetup.lobbyId]
+        assets2.collect { it.id } as Set == [managerTestSetup.thingId, managerTestSetup.agentId] as Set
+        assets1Again.collect { it.id } == [managerTestSetup.lobbyId]
+
+        when: "a query with the same shape but for another realm is executed"
+        def query4 = new AssetQuery()
+            .ids(managerTestSetup.lobbyId)
+            .realm(new RealmPredicate(keycloakTestSetup.realmBuilding.name))
+            .attributes(new AttributePredicate("location", new ValueEmptyPredicate().negate(true)))
+
+        then: "no assets should be returned"
+        AssetStorageService.getQueryShapeKey(query4) == AssetStorageService.getQueryShapeKey(query1)
+        assetStorageService.findAll(query4).isEmpty()
+    }
+
+    def "Projection queries return the same assets as entity queries"() {
+
+        given: "a recursive query for all assets in the building realm"
+        def query = {
+            new AssetQuery()
+                .realm(new RealmPredicate(keycloakTestSetup.realmBuilding.name))
+                .parents(managerTestSetup.smartBuildingId)
+                .recursive(true)
+                .orderBy(new OrderBy(NAME))
+        }
+
+        when: "the query is executed repeatedly using the entity, summary and ID paths"
+        def iterations = 50
+        def assets = null
+        def summaries = null
+        def ids = null
+        def entityStart = System.nanoTime()
+        iterations.times { assets = assetStorageService.findAll(query().select(new Select().excludeAttributes())) }
+        def entityMillis = (System.nanoTime() - entityStart) / 1000000
+        def summaryStart = System.nanoTime()
+        iterations.times { summaries = assetStorageService.findAllSummaries(query()) }
+        def summaryMillis = (System.nanoTime() - summaryStart) / 1000000
+        def idStart = System.nanoTime()
+        iterations.times { ids = assetStorageService.findAllIds(query()) }
+        def idMillis = (System.nanoTime() - idStart) / 1000000
+        LOG.info("Asset query x$iterations: entity=${entityMillis}ms, summary=${summaryMillis}ms, ids=${idMillis}ms")
+
+        then: "the results should match"
+        assets.size() > 1
+        summaries.collect { it.id } == assets.collect { it.id }
+        ids == assets.collect { it.id }
+        summaries.every { summary ->
+            def asset = assets.find { it.id == summary.id }
+            summary.name == asset.name &&
+                summary.type == asset.type &&
+                summary.parentId == asset.parentId &&
+                summary.realm == asset.realm &&
+                summary.path as List == asset.path as List &&
+                summary.version == asset.version
+        }
+
+        when: "names are requested for a set of IDs"
+        def names = assetStorageService.findNames(managerTestSetup.smartBuildingId, "invalidId", managerTestSetup.apartment1Id)
+
+        then: "the names should be returned in request order"
+        names == [
+            assetStorageService.find(managerTestSetup.smartBuildingId).name,
+            assetStorageService.find(managerTestSetup.apartment1Id).name
+        ]
+    }
+
+    def "Streaming query returns the same assets as a list query"() {
+
+        when: "all assets of a realm are queried as a list and as a stream"
+        def assets = assetStorageService.findAll(new AssetQuery().realm(new RealmPredicate(keycloakTestSetup.realmBuilding.name)))
+        def streamedAssets = []
+        def count = assetStorageService.streamAll(new AssetQuery().realm(new RealmPredicate(keycloakTestSetup.realmBuilding.name)), { streamedAssets.add(it) })
+
+        then: "the same assets should be returned in the same order"
+        assets.size() > 1
+        count == assets.size()
+        streamedAssets.collect { it.id } == assets.collect { it.id }
+        streamedAssets.every { streamed ->
+            def asset = assets.find { it.id == streamed.id }
+            streamed.attributes.size() == asset.attributes.size()
+        }
+
+        when: "a query with no matching assets is streamed"
+        streamedAssets.clear()
+        count = assetStorageService.streamAll(new AssetQuery().ids(), { streamedAssets.add(it) })
+
+        then: "no assets should be returned"
+        count == 0
+        streamedAssets.isEmpty()
+    }
 }
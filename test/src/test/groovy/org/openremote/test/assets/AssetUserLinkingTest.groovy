@@ -3,14 +3,17 @@ package org.openremote.test.assets
 import org.keycloak.adapters.rotation.AdapterTokenVerifier
 import org.openremote.container.security.keycloak.AccessTokenAuthContext
 import org.openremote.container.timer.TimerService
+import org.openremote.manager.event.ClientEventService
 import org.openremote.manager.security.ManagerIdentityService
 import org.openremote.manager.setup.SetupService
 import org.openremote.setup.integration.KeycloakTestSetup
 import org.openremote.setup.integration.ManagerTestSetup
 import org.openremote.model.asset.AssetResource
 import org.openremote.model.asset.UserAssetLink
+import org.openremote.model.attribute.AttributeEvent
 import org.openremote.test.ManagerContainerTrait
 import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
 
 import jakarta.ws.rs.WebApplicationException
 
@@ -194,6 +197,23 @@ class AssetUserLinkingTest extends Specification implements ManagerContainerTrai
         then: "result should match"
         userAssetLinks.length == 0
 
+        when: "a restricted user writes to a restricted write attribute of a linked asset"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+        def clientEventService = container.getService(ClientEventService.class)
+        def kitchenLightsEvent = new AttributeEvent(managerTestSetup.apartment1KitchenId, "lights", false)
+
+        then: "the write should be allowed and the decision should be cached"
+        clientEventService.authorizeEventWrite(keycloakTestSetup.realmBuilding.name, testUser3Token, kitchenLightsEvent)
+        clientEventService.authorizeEventWrite(keycloakTestSetup.realmBuilding.name, testUser3Token, kitchenLightsEvent)
+
+        when: "the user asset link is deleted"
+        assetResource.deleteUserAssetLink(null, keycloakTestSetup.realmBuilding.name, keycloakTestSetup.testuser3Id, managerTestSetup.apartment1KitchenId)
+
+        then: "the cached decision should be invalidated and the write should no longer be allowed"
+        conditions.eventually {
+            assert !clientEventService.authorizeEventWrite(keycloakTestSetup.realmBuilding.name, testUser3Token, kitchenLightsEvent)
+        }
+
         when: "all of a user assets are deleted"
         assetResource.deleteAllUserAssetLinks(null, keycloakTestSetup.realmBuilding.name, keycloakTestSetup.testuser3Id)
         userAssetLinks = assetResource.getUserAssetLinks(null, keycloakTestSetup.realmBuilding.name, keycloakTestSetup.testuser3Id, null)
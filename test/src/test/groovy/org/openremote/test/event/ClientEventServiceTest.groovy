@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.test.event
+
+import org.openremote.container.message.MessageBrokerService
+import org.openremote.manager.event.ClientEventService
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.test.ManagerContainerTrait
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.atomic.AtomicInteger
+
+import static org.openremote.manager.event.ClientEventService.CLIENT_INBOUND_QUEUE
+import static org.openremote.manager.event.ClientEventService.HEADER_INBOUND_EVENT_RESERVED
+import static org.openremote.model.Constants.SESSION_KEY
+
+class ClientEventServiceTest extends Specification implements ManagerContainerTrait {
+
+    def "Client sessions with too many inbound events waiting to be processed are disconnected"() {
+
+        given: "the container is started"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+        def container = startContainer(defaultConfig(), defaultServices())
+        def clientEventService = container.getService(ClientEventService.class)
+        def messageBrokerService = container.getService(MessageBrokerService.class)
+
+        and: "the max pending events per session is reduced for testing"
+        def originalMaxPendingEvents = clientEventService.sessionMaxPendingEvents
+        clientEventService.sessionMaxPendingEvents = 2
+        def terminations = new AtomicInteger()
+        def otherTerminations = new AtomicInteger()
+
+        when: "a session reserves places for as many events as allowed"
+        def first = clientEventService.reserveInboundEvent("session1", { terminations.incrementAndGet() })
+        def second = clientEventService.reserveInboundEvent("session1", { terminations.incrementAndGet() })
+
+        then: "the events should be accepted"
+        first
+        second
+
+        when: "the session sends another event"
+        def third = clientEventService.reserveInboundEvent("session1", { terminations.incrementAndGet() })
+
+        then: "the event should be rejected and the session disconnected"
+        !third
+        conditions.eventually {
+            assert terminations.get() == 1
+        }
+
+        and: "other sessions should not be affected"
+        clientEventService.reserveInboundEvent("session2", { otherTerminations.incrementAndGet() })
+
+        when: "the waiting events of the session are taken off the inbound queue"
+        [1, 2].each {
+            messageBrokerService.getFluentProducerTemplate()
+                .withHeader(SESSION_KEY, "session1")
+                .withHeader(HEADER_INBOUND_EVENT_RESERVED, true)
+                .withBody(new AttributeEvent("unknownAsset", "unknownAttribute", it))
+                .to(CLIENT_INBOUND_QUEUE)
+                .asyncSend()
+        }
+
+        then: "their places should be released"
+        conditions.eventually {
+            assert clientEventService.sessionPendingEvents.get("session1").count.get() == 0
+        }
+
+        and: "the session should still be rejected without being disconnected again"
+        !clientEventService.reserveInboundEvent("session1", { terminations.incrementAndGet() })
+        terminations.get() == 1
+        otherTerminations.get() == 0
+
+        cleanup: "the max pending events is restored"
+        clientEventService?.sessionMaxPendingEvents = originalMaxPendingEvents
+        clientEventService?.sessionPendingEvents?.clear()
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.test.event
+
+import io.netty.channel.ChannelHandler
+import org.apache.http.client.utils.URIBuilder
+import org.openremote.agent.protocol.io.AbstractNettyIOClient
+import org.openremote.agent.protocol.websocket.WebsocketIOClient
+import org.openremote.container.timer.TimerService
+import org.openremote.manager.asset.AssetProcessingService
+import org.openremote.manager.event.EventDeliveryThrottle
+import org.openremote.manager.event.SessionSendQueue
+import org.openremote.manager.setup.SetupService
+import org.openremote.model.asset.AssetFilter
+import org.openremote.model.asset.agent.ConnectionStatus
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.model.auth.OAuthPasswordGrant
+import org.openremote.model.event.TriggeredEventSubscription
+import org.openremote.model.event.shared.EventDeliveryPolicy
+import org.openremote.model.event.shared.EventSubscription
+import org.openremote.model.event.shared.SharedEvent
+import org.openremote.model.util.ValueUtil
+import org.openremote.setup.integration.ManagerTestSetup
+import org.openremote.test.ManagerContainerTrait
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.function.Consumer
+import java.util.function.Function
+
+import static org.openremote.container.util.MapAccess.getString
+import static org.openremote.manager.security.ManagerIdentityProvider.OR_ADMIN_PASSWORD
+import static org.openremote.manager.security.ManagerIdentityProvider.OR_ADMIN_PASSWORD_DEFAULT
+import static org.openremote.model.Constants.KEYCLOAK_CLIENT_ID
+import static org.openremote.model.Constants.MASTER_REALM_ADMIN_USER
+
+class EventDeliveryTest extends Specification implements ManagerContainerTrait {
+
+    def "Check event delivery policy coalesces attribute events"() {
+
+        given: "a stopped pseudo clock and an executor whose scheduled tasks are run by the test"
+        def timerService = new TimerService()
+        timerService.clock = TimerService.Clock.PSEUDO
+        timerService.clock.stop()
+        List<Runnable> scheduledTasks = []
+        def executor = Mock(ScheduledExecutorService) {
+            schedule(_ as Runnable, _ as Long, TimeUnit.MILLISECONDS) >> { Runnable task, long delay, TimeUnit unit ->
+                scheduledTasks.add(task)
+                null
+            }
+        }
+        def runScheduledTasks = {
+            def tasks = new ArrayList<>(scheduledTasks)
+            scheduledTasks.clear()
+            tasks.each {it.run()}
+        }
+
+        and: "a throttle with a minimum interval and deadband"
+        def delivered = []
+        def throttle = new EventDeliveryThrottle(new EventDeliveryPolicy(500L, 1d), timerService, executor, { delivered.add(it) } as Consumer<AttributeEvent>)
+
+        when: "several values are offered for the same attribute within the interval"
+        throttle.offer(new AttributeEvent("asset1", "temp", 10d))
+        throttle.offer(new AttributeEvent("asset1", "temp", 12d))
+        throttle.offer(new AttributeEvent("asset1", "temp", 15d))
+
+        then: "the first value is delivered immediately and a single flush is scheduled for the rest"
+        delivered*.value*.orElse(null) == [10d]
+        scheduledTasks.size() == 1
+
+        when: "the flush runs before the clock has reached the end of the interval"
+        timerService.clock.advanceTime(200, TimeUnit.MILLISECONDS)
+        runScheduledTasks()
+
+        then: "nothing should be delivered and the flush should be rescheduled"
+        delivered.size() == 1
+        scheduledTasks.size() == 1
+
+        when: "the clock reaches the end of the interval and the flush runs"
+        timerService.clock.advanceTime(300, TimeUnit.MILLISECONDS)
+        runScheduledTasks()
+
+        then: "only the latest value should be delivered"
+        delivered*.value*.orElse(null) == [10d, 15d]
+        scheduledTasks.isEmpty()
+
+        when: "a value within the deadband of the last delivered value is offered after the interval"
+        timerService.clock.advanceTime(600, TimeUnit.MILLISECONDS)
+        throttle.offer(new AttributeEvent("asset1", "temp", 15.5d))
+
+        then: "it should not be delivered or held back"
+        delivered.size() == 2
+        scheduledTasks.isEmpty()
+
+        when: "a value outside the deadband is offered"
+        throttle.offer(new AttributeEvent("asset1", "temp", 17d))
+
+        then: "it should be delivered immediately"
+        delivered*.value*.orElse(null) == [10d, 15d, 17d]
+
+        when: "a value is held back and the throttle is closed before the flush runs"
+        throttle.offer(new AttributeEvent("asset1", "temp", 20d))
+        throttle.close()
+        timerService.clock.advanceTime(500, TimeUnit.MILLISECONDS)
+        runScheduledTasks()
+
+        and: "another value is offered"
+        throttle.offer(new AttributeEvent("asset1", "temp", 30d))
+
+        then: "nothing more should be delivered"
+        delivered.size() == 3
+        scheduledTasks.isEmpty()
+
+        cleanup:
+        timerService.clock.reset()
+    }
+
+    def "Check session send queue applies slow consumer policy"() {
+
+        given: "a send queue whose transport never completes"
+        def sent = []
+        def actions = []
+        def closed = false
+        def sender = { String payload -> sent.add(payload); new CompletableFuture() } as Function<String, CompletableFuture<?>>
+        def queue = new SessionSendQueue(2, 1024 * 1024, 1, SessionSendQueue.SlowConsumerPolicy.CONFLATE, sender, { closed = true } as Runnable, { actions.add(it) } as Consumer<SessionSendQueue.SlowConsumerAction>)
+        def eventMessage = { Object value -> new TriggeredEventSubscription([new AttributeEvent("asset1", "temp", value)], "sub1") }
+
+        when: "more messages than the in flight and queue limits are sent"
+        queue.send(eventMessage(1), "1")
+        queue.send(eventMessage(2), "2")
+        queue.send(eventMessage(3), "3")
+        queue.send("other", "other1")
+        queue.send("other", "other2")
+
+        then: "only the first message is in flight and queued attribute events are conflated and the oldest dropped"
+        sent == ["1"]
+        queue.queuedMessages == 2
+        actions == [SessionSendQueue.SlowConsumerAction.CONFLATED, SessionSendQueue.SlowConsumerAction.DROPPED]
+        !closed
+
+        when: "a disconnect policy queue is overrun"
+        actions.clear()
+        queue = new SessionSendQueue(1, 1024 * 1024, 1, SessionSendQueue.SlowConsumerPolicy.DISCONNECT, sender, { closed = true } as Runnable, { actions.add(it) } as Consumer<SessionSendQueue.SlowConsumerAction>)
+        queue.send("other", "a")
+        queue.send("other", "b")
+        queue.send("other", "c")
+
+        then: "the session should be closed"
+        closed
+        actions == [SessionSendQueue.SlowConsumerAction.DISCONNECTED]
+        queue.queuedMessages == 0
+    }
+
+    def "Check subscription delivery policy is applied to delivered events"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 20, delay: 0.2)
+
+        and: "the container is started"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
+
+        and: "a websocket client"
+        def client = new WebsocketIOClient<String>(
+                new URIBuilder("ws://127.0.0.1:$serverPort/websocket/events?Realm=master").build(),
+                null,
+                new OAuthPasswordGrant("http://127.0.0.1:$serverPort/auth/realms/master/protocol/openid-connect/token",
+                    KEYCLOAK_CLIENT_ID,
+                    null,
+                    null,
+                    MASTER_REALM_ADMIN_USER,
+                    getString(container.getConfig(), OR_ADMIN_PASSWORD, OR_ADMIN_PASSWORD_DEFAULT)))
+        client.setEncoderDecoderProvider({
+            [new AbstractNettyIOClient.MessageToMessageDecoder<String>(String.class, client)].toArray(new ChannelHandler[0])
+        })
+        List<Object> receivedMessages = Collections.synchronizedList([])
+        client.addMessageConsumer({ String message ->
+            def isSubscription = message.startsWith(EventSubscription.SUBSCRIBED_MESSAGE_PREFIX)
+            def isTriggered = !isSubscription && message.startsWith(TriggeredEventSubscription.MESSAGE_PREFIX)
+            message = message.substring(message.indexOf(":")+1)
+            receivedMessages.add(ValueUtil.JSON.readValue(message, isSubscription ? EventSubscription.class : isTriggered ? TriggeredEventSubscription.class : SharedEvent.class))
+        })
+        def receivedValues = {
+            receivedMessages.findAll { it instanceof TriggeredEventSubscription }.collect { ((AttributeEvent)it.events[0]).value.orElse(null) }
+        }
+
+        and: "the system settles down"
+        noEventProcessedIn(assetProcessingService, 500)
+
+        when: "the client connects"
+        client.connect()
+
+        then: "the client should become connected"
+        conditions.eventually {
+            assert client.connectionStatus == ConnectionStatus.CONNECTED
+        }
+
+        // TODO: Remove this once client supports some better connection logic
+        and: "some time passes to allow the connection to be fully initialised"
+        sleep(3000)
+
+        when: "the client subscribes to attribute events with a delivery policy"
+        def subscription = new EventSubscription(
+            AttributeEvent.class,
+            new AssetFilter<AttributeEvent>().setAssetIds(managerTestSetup.apartment1LivingroomId).setAttributeNames("targetTemperature"),
+            "throttled")
+        subscription.setDeliveryPolicy(new EventDeliveryPolicy(2000L, 1d))
+        client.sendMessage(EventSubscription.SUBSCRIBE_MESSAGE_PREFIX + ValueUtil.asJSON(subscription).orElse(null))
+
+        then: "the server should return a subscribed event"
+        conditions.eventually {
+            assert receivedMessages.size() == 1
+            assert (receivedMessages[0] as EventSubscription).subscriptionId == "throttled"
+        }
+
+        when: "a burst of values is written to the attribute"
+        [11d, 12d, 13d, 14d, 15d].each {
+            assetProcessingService.sendAttributeEvent(new AttributeEvent(managerTestSetup.apartment1LivingroomId, "targetTemperature", it))
+        }
+
+        then: "the first value should be delivered straight away and the rest coalesced into the latest value"
+        conditions.eventually {
+            assert receivedValues().last() == 15d
+        }
+        receivedValues().first() == 11d
+        receivedValues().size() < 5
+
+        when: "the interval has passed and a value within the deadband is written followed by one outside of it"
+        def deliveredCount = receivedValues().size()
+        sleep(2500)
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(managerTestSetup.apartment1LivingroomId, "targetTemperature", 15.5d))
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(managerTestSetup.apartment1LivingroomId, "targetTemperature", 17d))
+
+        then: "only the value outside of the deadband should be delivered"
+        conditions.eventually {
+            assert receivedValues().size() == deliveredCount + 1
+            assert receivedValues().last() == 17d
+        }
+
+        cleanup: "the client should be disconnected"
+        if (client != null) {
+            client.disconnect()
+        }
+    }
+}
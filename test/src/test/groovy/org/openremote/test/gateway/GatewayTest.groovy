@@ -1,6 +1,8 @@
 package org.openremote.test.gateway
 
 import com.google.common.collect.Lists
+import io.micrometer.core.instrument.Tags
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
 import io.netty.channel.ChannelHandler
 import org.apache.http.client.utils.URIBuilder
 import org.openremote.agent.protocol.http.HTTPAgent
@@ -16,6 +18,8 @@ import org.openremote.manager.asset.AssetStorageService
 import org.openremote.manager.event.ClientEventService
 import org.openremote.manager.gateway.GatewayClientService
 import org.openremote.manager.gateway.GatewayConnector
+import org.openremote.manager.gateway.GatewayEventBatcher
+import org.openremote.manager.gateway.GatewayEventJournal
 import org.openremote.manager.gateway.GatewayService
 import org.openremote.manager.security.ManagerIdentityService
 import org.openremote.manager.security.ManagerKeycloakIdentityProvider
@@ -36,7 +40,11 @@ import org.openremote.model.attribute.MetaItem
 import org.openremote.model.auth.OAuthClientCredentialsGrant
 import org.openremote.model.event.shared.EventRequestResponseWrapper
 import org.openremote.model.event.shared.SharedEvent
+import org.openremote.model.gateway.GatewayAssetManifestEvent
+import org.openremote.model.gateway.GatewayAssetManifestRequestEvent
 import org.openremote.model.gateway.GatewayClientResource
+import org.openremote.model.gateway.GatewayEventBatchAckEvent
+import org.openremote.model.gateway.GatewayEventBatchEvent
 import org.openremote.model.gateway.GatewayConnection
 import org.openremote.model.geo.GeoJSONPoint
 import org.openremote.model.query.AssetQuery
@@ -46,9 +54,15 @@ import org.openremote.test.ManagerContainerTrait
 import spock.lang.Specification
 import spock.util.concurrent.PollingConditions
 
+import java.nio.file.Files
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
 import java.util.concurrent.ScheduledFuture
 import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
 import java.util.concurrent.atomic.AtomicReference
+import java.util.logging.Logger
 import java.util.stream.Collectors
 import java.util.stream.IntStream
 
@@ -64,6 +78,8 @@ import static org.openremote.model.value.ValueType.*
 
 class GatewayTest extends Specification implements ManagerContainerTrait {
 
+    private static final Logger LOG = Logger.getLogger(GatewayTest.class.getName())
+
     def "Gateway asset provisioning and local manager logic test"() {
 
         given: "the container environment is started"
@@ -145,15 +161,16 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
             assert gateway.getGatewayStatus().orElse(null) == ConnectionStatus.CONNECTING
         }
 
-        and: "the server should have sent a CONNECTED message and an asset read request"
+        and: "the server should have advertised event batch support and sent an asset manifest request"
         conditions.eventually {
-            assert clientReceivedMessages.size() >= 1
-            assert clientReceivedMessages[0].startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX)
-            def response = ValueUtil.JSON.readValue(clientReceivedMessages[0].substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
-            assert response.messageId == GatewayConnector.ASSET_READ_EVENT_NAME_INITIAL
-            def localReadAssetsEvent = response.event as ReadAssetsEvent
-            assert localReadAssetsEvent.assetQuery != null
-            assert localReadAssetsEvent.assetQuery.recursive
+            assert clientReceivedMessages.size() >= 2
+            def advertisement = ValueUtil.JSON.readValue(clientReceivedMessages[0].substring(SharedEvent.MESSAGE_PREFIX.length()), SharedEvent.class)
+            assert advertisement instanceof GatewayEventBatchAckEvent
+            assert (advertisement as GatewayEventBatchAckEvent).sequence == GatewayEventBatcher.ADVERTISEMENT_SEQUENCE
+            assert clientReceivedMessages[1].startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX)
+            def response = ValueUtil.JSON.readValue(clientReceivedMessages[1].substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
+            assert response.messageId == GatewayConnector.ASSET_READ_EVENT_NAME_MANIFEST
+            assert response.event instanceof GatewayAssetManifestRequestEvent
         }
 
         when: "the previously received messages are cleared"
@@ -226,22 +243,23 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
             assets.add(buildingAsset)
         }
 
-        and: "the gateway client replies to the central manager with the assets of the gateway"
+        and: "the gateway client replies to the central manager with the asset manifest of the gateway"
         List<Asset> sendAssets = []
         sendAssets.addAll(agentAssets)
         sendAssets.addAll(assets)
-        def readAssetsReplyEvent = new EventRequestResponseWrapper(
-            GatewayConnector.ASSET_READ_EVENT_NAME_INITIAL,
-            new AssetsEvent(sendAssets))
-        gatewayClient.sendMessage(EventRequestResponseWrapper.MESSAGE_PREFIX + ValueUtil.asJSON(readAssetsReplyEvent).get())
+        def manifestReplyEvent = new EventRequestResponseWrapper(
+            GatewayConnector.ASSET_READ_EVENT_NAME_MANIFEST,
+            new GatewayAssetManifestEvent(sendAssets.collect {new GatewayAssetManifestEvent.Entry(it.id, it.parentId, "initial")}))
+        gatewayClient.sendMessage(EventRequestResponseWrapper.MESSAGE_PREFIX + ValueUtil.asJSON(manifestReplyEvent).get())
 
-        then: "the central manager should have requested the full loading of the first batch of assets"
+        then: "the central manager should have requested the full loading of both batches of assets without waiting for a response"
         String messageId = null
         ReadAssetsEvent readAssetsEvent = null
+        String messageId2 = null
+        ReadAssetsEvent readAssetsEvent2 = null
         conditions.eventually {
-            assert clientReceivedMessages.size() == 1
-            assert clientReceivedMessages.get(0).startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX)
-            assert clientReceivedMessages.get(0).contains("read-assets")
+            assert clientReceivedMessages.size() == 2
+            assert clientReceivedMessages.every {it.startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX) && it.contains("read-assets")}
             def response = ValueUtil.JSON.readValue(clientReceivedMessages[0].substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
             messageId = response.messageId
             readAssetsEvent = response.event as ReadAssetsEvent
@@ -251,13 +269,21 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
             assert readAssetsEvent.assetQuery.ids.length == GatewayConnector.SYNC_ASSET_BATCH_SIZE
             assert agentAssetIds.stream().filter{readAssetsEvent.assetQuery.ids.contains(it)}.count() == agentAssetIds.size()
             assert assetIds.stream().filter{readAssetsEvent.assetQuery.ids.contains(it)}.count() == GatewayConnector.SYNC_ASSET_BATCH_SIZE - agentAssetIds.size()
+            def response2 = ValueUtil.JSON.readValue(clientReceivedMessages[1].substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
+            messageId2 = response2.messageId
+            readAssetsEvent2 = response2.event as ReadAssetsEvent
+            assert messageId2 == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + GatewayConnector.SYNC_ASSET_BATCH_SIZE
+            assert readAssetsEvent2.assetQuery != null
+            assert readAssetsEvent2.assetQuery.ids != null
+            assert readAssetsEvent2.assetQuery.ids.length == agentAssetIds.size() + assetIds.size() - GatewayConnector.SYNC_ASSET_BATCH_SIZE
+            assert Arrays.stream(readAssetsEvent2.assetQuery.ids).noneMatch{readAssetsEvent.assetQuery.ids.contains(it)}
         }
 
         when: "the gateway returns the requested assets"
         sendAssets = []
         sendAssets.addAll(agentAssets)
         sendAssets.addAll(Arrays.stream(readAssetsEvent.assetQuery.ids).filter{!agentAssetIds.contains(it)}.map{id -> assets.stream().filter{asset -> asset.id == id}.findFirst().orElse(null)}.collect(Collectors.toList()))
-        readAssetsReplyEvent = new EventRequestResponseWrapper(
+        def readAssetsReplyEvent = new EventRequestResponseWrapper(
             messageId,
             new AssetsEvent(sendAssets)
         )
@@ -304,26 +330,14 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
             assert syncedAssets.find {mapAssetId(gateway.getId(), it.id, true) == assetIds[6]}.getAttribute("tempSetpoint").map{it.hasMeta(AGENT_LINK)}.orElse(false)
         }
 
-        and: "the central manager should have requested the full loading of the second batch of assets"
-        conditions.eventually {
-            assert clientReceivedMessages.size() == 2
-            assert clientReceivedMessages.get(1).startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX)
-            assert clientReceivedMessages.get(1).contains("read-assets")
-            def response = ValueUtil.JSON.readValue(clientReceivedMessages[1].substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
-            messageId = response.messageId
-            readAssetsEvent = response.event as ReadAssetsEvent
-            assert messageId == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + GatewayConnector.SYNC_ASSET_BATCH_SIZE
-            assert readAssetsEvent.assetQuery != null
-            assert readAssetsEvent.assetQuery.ids != null
-            assert readAssetsEvent.assetQuery.ids.length == agentAssetIds.size() + assetIds.size() - GatewayConnector.SYNC_ASSET_BATCH_SIZE
-            assert assetIds.stream().filter{id -> sendAssets.stream().noneMatch{it.id == id}}.count() == readAssetsEvent.assetQuery.ids.length
-        }
+        and: "the second batch should contain the remaining assets"
+        assert assetIds.stream().filter{id -> sendAssets.stream().noneMatch{it.id == id}}.count() == readAssetsEvent2.assetQuery.ids.length
 
-        when: "the gateway returns the requested assets"
+        when: "the gateway returns the second batch of requested assets"
         sendAssets = []
-        sendAssets.addAll(Arrays.stream(readAssetsEvent.assetQuery.ids).map{id -> assets.stream().filter{asset -> asset.id == id}.findFirst().orElse(null)}.collect(Collectors.toList()))
+        sendAssets.addAll(Arrays.stream(readAssetsEvent2.assetQuery.ids).map{id -> assets.stream().filter{asset -> asset.id == id}.findFirst().orElse(null)}.collect(Collectors.toList()))
         readAssetsReplyEvent = new EventRequestResponseWrapper(
-            messageId,
+            messageId2,
             new AssetsEvent(sendAssets))
         gatewayClient.sendMessage(EventRequestResponseWrapper.MESSAGE_PREFIX + ValueUtil.asJSON(readAssetsReplyEvent).get())
 
@@ -624,26 +638,31 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
             assert gateway.getGatewayStatus().orElse(null) == ConnectionStatus.CONNECTING
         }
 
-        and: "the local manager should have sent an asset read request"
+        and: "the local manager should have sent an asset manifest request"
         conditions.eventually {
             assert clientReceivedMessages.size() >= 1
-            assert clientReceivedMessages.find {it.startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX) && it.contains("read-assets")} != null
+            assert clientReceivedMessages.find {it.startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX) && it.contains("gateway-asset-manifest-request")} != null
         }
 
         when: "the previously received messages are cleared"
         clientReceivedMessages.clear()
 
-        and: "the gateway client replies to the central manager with the assets of the gateway"
+        and: "the gateway client replies with a manifest in which only the modified and re-added assets differ from the local copies"
+        def changedAssetIds = [building1Room5Asset.id, assets[4].id, assets[0].id]
+        def localManifest = assetStorageService.findAssetManifest(managerTestSetup.realmBuildingName, gateway.id)
+            .collectEntries {[(mapAssetId(gateway.id, it.id, true)): it.hash]}
         sendAssets = [building1Room5Asset]
         sendAssets.addAll(agentAssets)
         sendAssets.addAll(assets)
-        readAssetsReplyEvent = new EventRequestResponseWrapper(
-            GatewayConnector.ASSET_READ_EVENT_NAME_INITIAL,
-            new AssetsEvent(sendAssets)
+        manifestReplyEvent = new EventRequestResponseWrapper(
+            GatewayConnector.ASSET_READ_EVENT_NAME_MANIFEST,
+            new GatewayAssetManifestEvent(sendAssets.collect {
+                new GatewayAssetManifestEvent.Entry(it.id, it.parentId, changedAssetIds.contains(it.id) ? "changed" : localManifest[it.id] as String)
+            })
         )
-        gatewayClient.sendMessage(EventRequestResponseWrapper.MESSAGE_PREFIX + ValueUtil.asJSON(readAssetsReplyEvent).get())
+        gatewayClient.sendMessage(EventRequestResponseWrapper.MESSAGE_PREFIX + ValueUtil.asJSON(manifestReplyEvent).get())
 
-        then: "the central manager should have requested the full loading of the first batch of assets"
+        then: "the central manager should have only requested the changed assets"
         conditions.eventually {
             assert clientReceivedMessages.size() == 1
             assert clientReceivedMessages.get(0).startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX)
@@ -654,9 +673,10 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
             assert messageId == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + "0"
             assert readAssetsEvent.assetQuery != null
             assert readAssetsEvent.assetQuery.ids != null
-            assert readAssetsEvent.assetQuery.ids.length == GatewayConnector.SYNC_ASSET_BATCH_SIZE
-            assert agentAssetIds.stream().filter{readAssetsEvent.assetQuery.ids.contains(it)}.count() == agentAssetIds.size()
-            assert assetIds.stream().filter{readAssetsEvent.assetQuery.ids.contains(it)}.count() + 1 == GatewayConnector.SYNC_ASSET_BATCH_SIZE - agentAssetIds.size()
+            assert readAssetsEvent.assetQuery.ids.length == changedAssetIds.size()
+            assert changedAssetIds.every {readAssetsEvent.assetQuery.ids.contains(it)}
+            // Parents must be requested before their children
+            assert readAssetsEvent.assetQuery.ids.findIndexOf {it == assets[4].id} < readAssetsEvent.assetQuery.ids.findIndexOf {it == assets[0].id}
         }
 
         when: "another asset is added to the gateway during the initial sync process"
@@ -689,31 +709,13 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
         def removedAsset = assets.remove(10)
         gatewayClient.sendMessage(SharedEvent.MESSAGE_PREFIX + ValueUtil.asJSON(new AssetEvent(AssetEvent.Cause.DELETE, removedAsset, null)).get())
 
-        and: "the gateway returns the requested assets (minus the deleted Building 3 Room 1 asset)"
-        sendAssets = [building1Room5Asset]
-        sendAssets.addAll(agentAssets)
-        sendAssets.addAll(Arrays.stream(readAssetsEvent.assetQuery.ids).filter{!agentAssetIds.contains(it) && it != removedAsset.id && it != building1Room5Asset.id}.map{id -> assets.stream().filter{it.id == id}.findFirst().orElse(null)}.collect(Collectors.toList()))
-        readAssetsReplyEvent = new EventRequestResponseWrapper(messageId, new AssetsEvent(sendAssets))
-        gatewayClient.sendMessage(EventRequestResponseWrapper.MESSAGE_PREFIX + ValueUtil.asJSON(readAssetsReplyEvent).get())
-
-        then: "the central manager should have requested the full loading of the second batch of assets"
-        conditions.eventually {
-            assert clientReceivedMessages.size() == 2
-            assert clientReceivedMessages.get(1).startsWith(EventRequestResponseWrapper.MESSAGE_PREFIX)
-            assert clientReceivedMessages.get(1).contains("read-assets")
-            def request = ValueUtil.JSON.readValue(clientReceivedMessages[1].substring(EventRequestResponseWrapper.MESSAGE_PREFIX.length()), EventRequestResponseWrapper.class)
-            messageId = request.messageId
-            readAssetsEvent = request.event as ReadAssetsEvent
-            assert messageId == GatewayConnector.ASSET_READ_EVENT_NAME_BATCH + (GatewayConnector.SYNC_ASSET_BATCH_SIZE - 1)
-            assert readAssetsEvent.assetQuery != null
-            assert readAssetsEvent.assetQuery.ids != null
-            assert readAssetsEvent.assetQuery.ids.length == agentAssetIds.size() + assets.size() + 1 - GatewayConnector.SYNC_ASSET_BATCH_SIZE + 1
-            assert assets.stream().filter{asset -> sendAssets.stream().noneMatch{it.id == asset.id}}.count() == readAssetsEvent.assetQuery.ids.length
-        }
+        and: "an attribute value is changed on the gateway during the initial sync process"
+        advancePseudoClock(1, TimeUnit.SECONDS, container)
+        gatewayClient.sendMessage(SharedEvent.MESSAGE_PREFIX + ValueUtil.asJSON(new AttributeEvent(assetIds[6], "tempSetpoint", 25d, timerService.getCurrentTimeMillis())).get())
 
-        when: "the gateway returns the requested assets"
-        sendAssets = []
-        sendAssets.addAll(Arrays.stream(readAssetsEvent.assetQuery.ids).map{id -> assets.stream().filter{asset -> asset.id == id}.findFirst().orElse(null)}.collect(Collectors.toList()))
+        and: "the gateway returns the requested assets"
+        sendAssets = [building1Room5Asset]
+        sendAssets.addAll(Arrays.stream(readAssetsEvent.assetQuery.ids).filter{it != building1Room5Asset.id}.map{id -> assets.stream().filter{it.id == id}.findFirst().orElse(null)}.collect(Collectors.toList()))
         readAssetsReplyEvent = new EventRequestResponseWrapper(messageId, new AssetsEvent(sendAssets))
         gatewayClient.sendMessage(EventRequestResponseWrapper.MESSAGE_PREFIX + ValueUtil.asJSON(readAssetsReplyEvent).get())
 
@@ -726,6 +728,13 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
         and: "the gateway should have the correct assets"
         def gatewayAssets = assetStorageService.findAll(new AssetQuery().parents(gateway.getId()).recursive(true))
         assert gatewayAssets.size() == 2 + agentAssets.size() + assets.size()
+        assert gatewayAssets.find {it.id == mapAssetId(gateway.id, assets[4].id, false)}.name == "Test Building 1 Updated"
+
+        and: "the attribute event received during the sync should have been replayed"
+        conditions.eventually {
+            def building2Room1Asset = assetStorageService.find(mapAssetId(gateway.id, assetIds[6], false))
+            assert building2Room1Asset.getAttribute("tempSetpoint").flatMap {it.getValue()}.orElse(0d) == 25d
+        }
 
         when: "the gateway asset is deleted"
         deleted = assetStorageService.delete([gateway.id])
@@ -937,4 +946,251 @@ class GatewayTest extends Specification implements ManagerContainerTrait {
             assert assetStorageService.find(mapAssetId(gateway.id, managerTestSetup.microphone1Id, false)) == null
         }
     }
+
+    def "Gateway event batches preserve event order and reduce message size"() {
+
+        given: "a batcher that records sent messages and a batcher that receives them"
+        def executor = Executors.newSingleThreadScheduledExecutor()
+        List<Object> sentMessages = new CopyOnWriteArrayList<>()
+        List<Object> receiverMessages = new CopyOnWriteArrayList<>()
+        def registry = new SimpleMeterRegistry()
+        def sender = new GatewayEventBatcher(executor, {sentMessages.add(it)}, new GatewayEventBatcher.Settings(50, 100, true), registry, Tags.of("test", "sender"))
+        def receiver = new GatewayEventBatcher(executor, {receiverMessages.add(it)}, GatewayEventBatcher.Settings.DISABLED, null, Tags.empty())
+        def conditions = new PollingConditions(timeout: 5, delay: 0.1)
+
+        when: "events are sent before the peer is known to support batches"
+        sender.send(new AttributeEvent("asset0", "value", 0))
+
+        then: "the event should be sent immediately"
+        assert sentMessages.size() == 1
+        assert sentMessages[0] instanceof AttributeEvent
+
+        when: "the peer supports batches and more events than the batch size are sent"
+        sentMessages.clear()
+        sender.setPeerSupportsBatches(true)
+        IntStream.range(0, 120).forEach {
+            sender.send(new AttributeEvent("asset" + (it % 5), "value", it, 1700000000000L + it))
+        }
+
+        then: "full batches should be sent immediately and the remainder after the batch delay"
+        assert sentMessages.size() == 2
+        conditions.eventually {
+            assert sentMessages.size() == 3
+        }
+        assert sentMessages.every {it instanceof GatewayEventBatchEvent && it.encoding == GatewayEventBatchEvent.ENCODING_DEFLATE}
+
+        and: "the encoded batches should be smaller than the raw events"
+        assert registry.counter("or.gateway.tunnel.bytes", Tags.of("test", "sender", "type", "encoded")).count() < registry.counter("or.gateway.tunnel.bytes", Tags.of("test", "sender", "type", "raw")).count()
+
+        when: "the receiver decodes the batches after a JSON round trip"
+        List<SharedEvent> received = []
+        sentMessages.forEach {
+            def batch = ValueUtil.JSON.readValue(ValueUtil.asJSON(it).get(), SharedEvent.class) as GatewayEventBatchEvent
+            received.addAll(receiver.onBatchReceived(batch))
+        }
+
+        then: "all events should be received in the order they were sent and each batch acknowledged"
+        assert received.size() == 120
+        assert received.withIndex().every {event, i -> (event as AttributeEvent).value.orElse(null) == i && (event as AttributeEvent).id == "asset" + (i % 5)}
+        assert receiverMessages.size() == 3
+        assert receiverMessages.every {it instanceof GatewayEventBatchAckEvent}
+
+        when: "the acknowledgements are returned to the sender"
+        receiverMessages.forEach {sender.onAck((it as GatewayEventBatchAckEvent).sequence)}
+
+        then: "no batches should be unacknowledged"
+        assert sender.unacknowledgedBatchCount == 0
+
+        when: "the connection is lost with events queued and a batch unacknowledged"
+        sentMessages.clear()
+        receiverMessages.clear()
+        IntStream.range(120, 170).forEach {
+            sender.send(new AttributeEvent("asset" + (it % 5), "value", it, 1700000000000L + it))
+        }
+        sender.send(new AttributeEvent("asset0", "value", 170, 1700000000170L))
+        sender.onDisconnected()
+
+        then: "the queued events should be held in a batch and batching disabled"
+        assert sentMessages.size() == 1
+        assert sender.unacknowledgedBatchCount == 2
+        assert !sender.isBatching()
+
+        when: "the peer advertises batch support on the next connection"
+        sender.onAck(GatewayEventBatcher.ADVERTISEMENT_SEQUENCE)
+
+        then: "the unacknowledged batches should be re-sent in order"
+        assert sender.isBatching()
+        assert sentMessages.size() == 3
+        assert (sentMessages[1] as GatewayEventBatchEvent).sequence == (sentMessages[0] as GatewayEventBatchEvent).sequence
+        assert (sentMessages[2] as GatewayEventBatchEvent).sequence == (sentMessages[1] as GatewayEventBatchEvent).sequence + 1
+
+        when: "the receiver gets the original and re-sent batches"
+        received.clear()
+        sentMessages.forEach {received.addAll(receiver.onBatchReceived(it as GatewayEventBatchEvent))}
+
+        then: "duplicates should be acknowledged but not processed again"
+        assert received.size() == 51
+        assert received.withIndex().every {event, i -> (event as AttributeEvent).value.orElse(null) == 120 + i}
+        assert receiverMessages.size() == 3
+
+        when: "only the last batch is acknowledged"
+        sender.onAck((receiverMessages.last() as GatewayEventBatchAckEvent).sequence)
+
+        then: "acknowledgements should be cumulative"
+        assert sender.unacknowledgedBatchCount == 0
+
+        cleanup:
+        executor.shutdownNow()
+    }
+
+    def "Gateway event journal holds events in order whilst disconnected"() {
+
+        given: "a journal in a temporary directory"
+        def dir = Files.createTempDirectory("gateway-journal")
+        def path = dir.resolve("journal-test.dat")
+        def journal = new GatewayEventJournal(path, 4096)
+        List<AttributeEvent> drained = []
+
+        when: "events for several attributes are appended"
+        IntStream.range(0, 6).forEach {
+            assert journal.append(new AttributeEvent("asset" + (it % 3), "value", it, 1700000000000L + it))
+        }
+
+        then: "a repeated value for an attribute should not be journaled"
+        assert !journal.append(new AttributeEvent("asset2", "value", 5, 1700000000010L))
+        assert !journal.isEmpty()
+
+        when: "the journal is re-opened"
+        journal.close()
+        journal = new GatewayEventJournal(path, 4096)
+
+        and: "the events are drained"
+        def count = journal.drain({drained.add(it)}, 4)
+
+        then: "only the latest value of each attribute should be drained in the order they were appended"
+        assert count == 3
+        assert drained.collect {it.value.orElse(null)} == [3, 4, 5]
+        assert journal.isEmpty()
+
+        when: "events are appended and partially drained"
+        drained.clear()
+        IntStream.range(0, 4).forEach {
+            assert journal.append(new AttributeEvent("asset" + (it % 2), "value", it, 1700000000000L + it))
+        }
+        journal.drain({drained.add(it)}, 1)
+
+        and: "a newer value is appended for an attribute that hasn't been drained yet"
+        assert journal.append(new AttributeEvent("asset1", "value", 10, 1700000000020L))
+        journal.drain({drained.add(it)}, 100)
+
+        then: "the superseded value should not be drained"
+        assert drained.collect {it.value.orElse(null)} == [2, 10]
+        assert journal.isEmpty()
+
+        when: "more events are appended than will fit in the journal"
+        drained.clear()
+        IntStream.range(0, 100).forEach {
+            journal.append(new AttributeEvent("asset" + (it % 2), "value", it, 1700000000000L + it))
+        }
+
+        then: "the journal should have been compacted rather than dropping events and only the latest values drained"
+        assert journal.getDroppedCount() == 0
+        journal.drain({drained.add(it)}, 100)
+        assert drained.collect {it.value.orElse(null)} == [98, 99]
+
+        cleanup:
+        journal?.delete()
+        Files.deleteIfExists(dir)
+    }
+
+    def "Gateway connectors process events from many gateways in parallel"() {
+
+        given: "many in process gateways with connectors that record processed attribute events"
+        def gatewayCount = 200
+        def eventsPerGateway = 500
+        def executor = Executors.newScheduledThreadPool(8)
+        def producer = Executors.newFixedThreadPool(8)
+        def processedCount = new AtomicInteger()
+        Map<String, List<Integer>> processedValues = new ConcurrentHashMap<>()
+        def assetProcessingService = Stub(AssetProcessingService) {
+            sendAttributeEvent(_ as AttributeEvent, _) >> { AttributeEvent event, Object source ->
+                if (event.name == "value") {
+                    processedValues.computeIfAbsent(event.id, {new CopyOnWriteArrayList<>()}).add(event.value.orElse(null) as Integer)
+                    processedCount.incrementAndGet()
+                }
+            }
+        }
+        def gatewayService = new GatewayService()
+        def gatewayAssetIds = [:]
+        IntStream.range(0, gatewayCount).forEach {
+            def gateway = new GatewayAsset("Gateway " + it).setRealm("test")
+            gateway.setId(UniqueIdentifierGenerator.generateId())
+            def connector = new GatewayConnector(Stub(AssetStorageService), assetProcessingService, executor, gateway)
+            connector.connect({}, {})
+            connector.initialSyncInProgress = false
+            gatewayService.gatewayConnectorMap.put(gateway.id.toLowerCase(Locale.ROOT), connector)
+            gatewayAssetIds.put(gateway.id, UniqueIdentifierGenerator.generateId())
+        }
+        def conditions = new PollingConditions(timeout: 60, delay: 0.1)
+
+        when: "all gateways send attribute events at the same time"
+        def start = System.currentTimeMillis()
+        gatewayAssetIds.each { gatewayId, assetId ->
+            producer.execute {
+                IntStream.range(0, eventsPerGateway).forEach {
+                    gatewayService.onGatewayClientEventReceived(gatewayId, null, new AttributeEvent(assetId, "value", it))
+                }
+            }
+        }
+
+        then: "all events should be processed"
+        conditions.eventually {
+            assert processedCount.get() == gatewayCount * eventsPerGateway
+        }
+        def elapsed = Math.max(1, System.currentTimeMillis() - start)
+        LOG.info("Processed ${processedCount.get()} gateway events from $gatewayCount gateways in ${elapsed}ms (${(processedCount.get() * 1000L / elapsed) as long} events/s)")
+
+        and: "the events of each gateway should have been processed in the order they were received"
+        assert processedValues.size() == gatewayCount
+        assert processedValues.values().every {it == (0..<eventsPerGateway).toList()}
+
+        cleanup:
+        gatewayService.gatewayConnectorMap.values().forEach {it.disconnect()}
+        producer.shutdownNow()
+        executor.shutdownNow()
+    }
+
+    def "Gateway connector disconnects the gateway when its event queue overflows"() {
+
+        given: "a connector with a small event queue whose event executor is not processing events"
+        def originalCapacity = GatewayConnector.GATEWAY_EVENT_QUEUE_CAPACITY
+        GatewayConnector.GATEWAY_EVENT_QUEUE_CAPACITY = 2
+        def executor = Executors.newScheduledThreadPool(1)
+        def stalledTasks = []
+        def disconnects = new AtomicInteger()
+        def gateway = new GatewayAsset("Gateway").setRealm("test")
+        gateway.setId(UniqueIdentifierGenerator.generateId())
+        def connector = new GatewayConnector(Stub(AssetStorageService), Stub(AssetProcessingService), executor, { stalledTasks.add(it) }, gateway, GatewayEventBatcher.Settings.DISABLED, null)
+        connector.connect({}, { disconnects.incrementAndGet() })
+        def conditions = new PollingConditions(timeout: 10, delay: 0.1)
+
+        when: "more events are received than the queue can hold"
+        (0..4).forEach {
+            connector.queueGatewayEvent(null, new AttributeEvent(gateway.id, "value", it))
+        }
+
+        then: "the queue should be bounded and only one dispatch should have been scheduled"
+        connector.gatewayEventQueue.size() == 2
+        stalledTasks.size() == 1
+
+        and: "the gateway should be disconnected once so it reconnects and resyncs"
+        conditions.eventually {
+            assert !connector.isConnected()
+            assert disconnects.get() == 1
+        }
+
+        cleanup:
+        GatewayConnector.GATEWAY_EVENT_QUEUE_CAPACITY = originalCapacity
+        executor.shutdownNow()
+    }
 }
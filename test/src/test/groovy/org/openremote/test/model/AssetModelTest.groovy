@@ -23,7 +23,12 @@ import org.openremote.model.attribute.Attribute
 import org.openremote.model.attribute.AttributeEvent
 import org.openremote.model.attribute.AttributeMap
 import org.openremote.model.attribute.MetaItem
+import org.openremote.model.attribute.AttributeRef
 import org.openremote.model.geo.GeoJSONPoint
+import org.openremote.model.protocol.GenericAttributeMessageDispatcher
+import org.openremote.model.query.AssetQuery
+import org.openremote.model.query.filter.NumberPredicate
+import org.openremote.model.query.filter.StringPredicate
 import org.openremote.model.util.TimeUtil
 import org.openremote.model.util.ValueUtil
 import org.openremote.model.value.*
@@ -593,4 +598,63 @@ class AssetModelTest extends Specification implements ManagerContainerTrait {
         !attributeEventObjectNode2.has("source")
         !attributeEventObjectNode2.has("meta")
     }
+
+    def "Generic attribute message dispatcher"() {
+
+        given: "a dispatcher with attributes sharing match filters and predicates"
+        def matches = []
+        def dispatcher = new GenericAttributeMessageDispatcher({ 0L }, { ref, msg -> matches.add(ref) })
+        def typeFilter = [new JsonPathFilter("\$.type", true, false)] as ValueFilter[]
+        dispatcher.add(new AttributeRef("asset1", "temp"), new DefaultAgentLink("agent1")
+            .setMessageMatchFilters(typeFilter)
+            .setMessageMatchPredicate(new StringPredicate("temperature")))
+        dispatcher.add(new AttributeRef("asset2", "temp"), new DefaultAgentLink("agent1")
+            .setMessageMatchFilters([new JsonPathFilter("\$.type", true, false)] as ValueFilter[])
+            .setMessageMatchPredicate(new StringPredicate("temperature")))
+        dispatcher.add(new AttributeRef("asset1", "humidity"), new DefaultAgentLink("agent1")
+            .setMessageMatchFilters(typeFilter)
+            .setMessageMatchPredicate(new StringPredicate(AssetQuery.Match.BEGIN, "humid")))
+        dispatcher.add(new AttributeRef("asset1", "level"), new DefaultAgentLink("agent1")
+            .setMessageMatchFilters([new JsonPathFilter("\$.level", true, false)] as ValueFilter[])
+            .setMessageMatchPredicate(new NumberPredicate(10, AssetQuery.Operator.GREATER_THAN)))
+        def noMatchAdded = dispatcher.add(new AttributeRef("asset1", "other"), new DefaultAgentLink("agent1"))
+
+        expect: "links without a match predicate are not added and identical filters are grouped"
+        !noMatchAdded
+        dispatcher.size() == 4
+        dispatcher.filterGroups.size() == 2
+
+        when: "a temperature message is dispatched"
+        dispatcher.accept('{"type": "temperature", "level": 5}')
+
+        then: "only the temperature attributes should match"
+        matches as Set == [new AttributeRef("asset1", "temp"), new AttributeRef("asset2", "temp")] as Set
+
+        when: "a humidity message with a high level is dispatched"
+        matches.clear()
+        dispatcher.accept('{"type": "humidity", "level": 20}')
+
+        then: "the humidity and level attributes should match"
+        matches as Set == [new AttributeRef("asset1", "humidity"), new AttributeRef("asset1", "level")] as Set
+
+        when: "an attribute is removed"
+        matches.clear()
+        dispatcher.remove(new AttributeRef("asset2", "temp"))
+        dispatcher.accept('{"type": "temperature"}')
+
+        then: "it should no longer match"
+        matches == [new AttributeRef("asset1", "temp")]
+    }
+
+    def "Sub string value filter with negative indexes"() {
+
+        given: "a sub string filter relative to the end of the value"
+        def subString = [
+            new SubStringValueFilter(-6, -1)
+        ] as ValueFilter[]
+
+        expect: "the filter to be repeatable"
+        ValueUtil.applyValueFilters("value=1234;", subString) == "1234"
+        ValueUtil.applyValueFilters("value=1234;", subString) == "1234"
+    }
 }
@@ -9,10 +9,12 @@ import org.openremote.agent.protocol.mqtt.MQTTLastWill
 import org.openremote.agent.protocol.mqtt.MQTTMessage
 import org.openremote.agent.protocol.mqtt.MQTT_IOClient
 import org.openremote.agent.protocol.simulator.SimulatorProtocol
+import org.openremote.container.security.keycloak.KeycloakIdentityProvider
 import org.openremote.container.util.UniqueIdentifierGenerator
 import org.openremote.manager.agent.AgentService
 import org.openremote.manager.asset.AssetStorageService
 import org.openremote.manager.event.ClientEventService
+import org.openremote.manager.mqtt.ActiveMQORSecurityManager
 import org.openremote.manager.mqtt.DefaultMQTTHandler
 import org.openremote.manager.mqtt.MQTTHandler
 import org.openremote.manager.mqtt.MQTTBrokerService
@@ -20,6 +22,8 @@ import org.openremote.manager.setup.SetupService
 import org.openremote.model.asset.AssetEvent
 import org.openremote.model.asset.UserAssetLink
 import org.openremote.model.asset.agent.ConnectionStatus
+import org.openremote.manager.mqtt.MQTTConnectAdmissionController
+import org.openremote.manager.mqtt.MQTTTopicTrie
 import org.openremote.model.asset.impl.ThingAsset
 import org.openremote.model.attribute.Attribute
 import org.openremote.model.attribute.AttributeEvent
@@ -54,12 +58,15 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
         def managerTestSetup = container.getService(SetupService.class).getTaskOfType(ManagerTestSetup.class)
         def keycloakTestSetup = container.getService(SetupService.class).getTaskOfType(KeycloakTestSetup.class)
         def mqttBrokerService = container.getService(MQTTBrokerService.class)
+        def defaultMQTTHandler = mqttBrokerService.customHandlers.find {it instanceof DefaultMQTTHandler} as DefaultMQTTHandler
         def assetStorageService = container.getService(AssetStorageService.class)
         def clientEventService = container.getService(ClientEventService.class)
         def agentService = container.getService(AgentService.class)
         def mqttClientId = UniqueIdentifierGenerator.generateId()
         def username = keycloakTestSetup.realmBuilding.name + ":" + keycloakTestSetup.serviceUser.username // realm and OAuth client id
         def password = keycloakTestSetup.serviceUser.secret
+        def credentialCache = mqttBrokerService.securityManager.credentialCache
+        def credentialCacheKey = ActiveMQORSecurityManager.getCredentialCacheKey(keycloakTestSetup.realmBuilding.name, keycloakTestSetup.serviceUser.username, password)
 
         def mqttHost = getString(container.getConfig(), MQTT_SERVER_LISTEN_HOST, "0.0.0.0")
         def mqttPort = getInteger(container.getConfig(), MQTT_SERVER_LISTEN_PORT, 1883)
@@ -74,6 +81,9 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             assert client.getConnectionStatus() == ConnectionStatus.WAITING
         }
 
+        and: "the invalid credentials should not have been cached"
+        credentialCache.getIfPresent(ActiveMQORSecurityManager.getCredentialCacheKey("master", keycloakTestSetup.serviceUser.username, password)) == null
+
         when: "a mqtt client connects with valid credentials"
         client.disconnect()
         mqttClientId = UniqueIdentifierGenerator.generateId()
@@ -88,6 +98,11 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             assert clientEventService.sessionKeyInfoMap.containsKey(getConnectionIDString(connection))
         }
 
+        and: "the validated credentials should have been cached"
+        credentialCache.getIfPresent(credentialCacheKey) != null
+        def cachedTokenString = KeycloakIdentityProvider.getSecurityContext(credentialCache.getIfPresent(credentialCacheKey)).tokenString
+        KeycloakIdentityProvider.getSecurityContext(mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0].subject).tokenString == cachedTokenString
+
         when: "the client disconnects"
         def currentConnection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
         client.disconnect()
@@ -111,6 +126,28 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             assert clientEventService.sessionKeyInfoMap.containsKey(getConnectionIDString(connection))
         }
 
+        and: "the cached credentials should have been re-used rather than logging in again"
+        KeycloakIdentityProvider.getSecurityContext(mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0].subject).tokenString == cachedTokenString
+
+        when: "another mqtt client connects with the same username but the wrong password"
+        def wrongPasswordClient = new MQTT_IOClient(UniqueIdentifierGenerator.generateId(), mqttHost, mqttPort, false, true, new UsernamePassword(username, password + "x"), null, null)
+        wrongPasswordClient.connect()
+
+        then: "the cached credentials should not be used so the client should be rejected"
+        conditions.eventually {
+            assert wrongPasswordClient.getConnectionStatus() == ConnectionStatus.WAITING
+        }
+        mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id).size() == 1
+        credentialCache.getIfPresent(ActiveMQORSecurityManager.getCredentialCacheKey(keycloakTestSetup.realmBuilding.name, keycloakTestSetup.serviceUser.username, password + "x")) == null
+
+        when: "the client with the wrong password gives up"
+        wrongPasswordClient.disconnect()
+
+        then: "it should be disconnected"
+        conditions.eventually {
+            assert wrongPasswordClient.getConnectionStatus() == ConnectionStatus.DISCONNECTED
+        }
+
         when: "a mqtt client subscribes to an asset in another realm"
         def topic = "${keycloakTestSetup.realmCity.name}/$mqttClientId/$DefaultMQTTHandler.ATTRIBUTE_TOPIC/$MQTTHandler.TOKEN_SINGLE_LEVEL_WILDCARD/$managerTestSetup.thingId".toString()
         client.addMessageConsumer(topic, {msg -> })
@@ -119,7 +156,7 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
         conditions.eventually {
             assert client.topicConsumerMap.get(topic) == null // Consumer added and removed on failure
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert !clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
+            assert !defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
         }
 
         when: "a mqtt client subscribes with clientId missing"
@@ -130,7 +167,7 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
         conditions.eventually {
             assert client.topicConsumerMap.get(topic) == null // Consumer added and removed on failure
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert !clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
+            assert !defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
         }
 
         when: "a mqtt client subscribes with different clientId"
@@ -143,7 +180,7 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             assert client.topicConsumerMap.get(topic) == null // Consumer added and removed on failure
             assert mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id).size() == 1
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert !clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
+            assert !defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
         }
 
         when: "a mqtt client subscribes to all attributes of an asset"
@@ -160,8 +197,8 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             assert client.topicConsumerMap.get(topic).size() == 1
             assert mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id).size() == 1
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.get(getConnectionIDString(connection)).size() == 1
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.get(getConnectionIDString(connection)).size() == 1
         }
 
         when: "An attribute event occurs for a subscribed attribute"
@@ -248,7 +285,7 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
         conditions.eventually {
             assert client.topicConsumerMap.get(topic) == null
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert !clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
+            assert !defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
         }
 
         when: "another asset attribute changed without any subscriptions"
@@ -269,8 +306,8 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             assert client.topicConsumerMap.get(topic) != null
             assert client.topicConsumerMap.get(topic).size() == 1
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.get(getConnectionIDString(connection)).size() == 1
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.get(getConnectionIDString(connection)).size() == 1
         }
 
         when: "that attribute changes"
@@ -303,7 +340,7 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
         conditions.eventually {
             assert client.topicConsumerMap.get(topic) == null
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert !clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
+            assert !defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
         }
 
         when: "a mqtt client subscribes to attributes for descendants of an asset"
@@ -315,8 +352,8 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             assert client.topicConsumerMap.get(topic) != null
             assert client.topicConsumerMap.get(topic).size() == 1
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.get(getConnectionIDString(connection)).size() == 1
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.get(getConnectionIDString(connection)).size() == 1
         }
 
         when: "a child asset of the subscription attribute event occurs"
@@ -345,8 +382,8 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             assert client.topicConsumerMap.get(topic) != null
             assert client.topicConsumerMap.get(topic).size() == 1
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.get(getConnectionIDString(connection)).size() == 2
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.get(getConnectionIDString(connection)).size() == 2
         }
 
         when: "a subscribed attribute changes"
@@ -388,8 +425,8 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             assert client.topicConsumerMap.get(topic) == null
             assert client.topicConsumerMap.size() == 1
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.get(getConnectionIDString(connection)).size() == 1
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.get(getConnectionIDString(connection)).size() == 1
         }
 
         when: "a client disconnects"
@@ -418,8 +455,8 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
         then: "A subscription should exist"
         conditions.eventually {
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.get(getConnectionIDString(connection)).size() == 1
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.get(getConnectionIDString(connection)).size() == 1
         }
 
         when: "an asset is updated with a new attribute"
@@ -445,8 +482,8 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
         conditions.eventually {
             assert client.topicConsumerMap.get(topic) != null
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.get(getConnectionIDString(connection)).size() == 2
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.get(getConnectionIDString(connection)).size() == 2
         }
 
         when: "an asset is added as a descendant to the subscribed asset"
@@ -471,8 +508,8 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
         conditions.eventually {
             assert client.topicConsumerMap.get(topic) == null
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser.id)[0]
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.get(getConnectionIDString(connection)).size() == 1
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.get(getConnectionIDString(connection)).size() == 1
         }
 
         when: "the descendant asset is modified"
@@ -600,7 +637,7 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
         conditions.eventually {
             assert newClient.topicConsumerMap.get(topic) == null // Consumer added and removed on failure
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser2.id)[0]
-            assert !clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
+            assert !defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
         }
 
         when: "a restricted mqtt client subscribes to a linked asset"
@@ -611,8 +648,8 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
         conditions.eventually {
             assert newClient.topicConsumerMap.get(topic) != null
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser2.id)[0]
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.get(getConnectionIDString(connection)).size() == 1
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.get(getConnectionIDString(connection)).size() == 1
         }
 
         when: "a user asset link is added for a connected restricted user"
@@ -655,7 +692,7 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
         conditions.eventually {
             assert newClient.topicConsumerMap.get(topic) == null // Consumer added and removed on failure
             def connection = mqttBrokerService.getUserConnections(keycloakTestSetup.serviceUser2.id)[0]
-            assert !clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
+            assert !defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
         }
 
         // TODO: Further MQTT tests
@@ -691,4 +728,66 @@ class MqttBrokerTest extends Specification implements ManagerContainerTrait {
             newClient.disconnect()
         }
     }
+
+    def "MQTT connect admission control limits the rate of connects per realm"() {
+
+        given: "an admission controller that admits 5 connects per second per realm"
+        def admissionController = new MQTTConnectAdmissionController(5, null)
+        def conditions = new PollingConditions(timeout: 5, delay: 0.1)
+
+        when: "a storm of connects arrives for one realm"
+        def results = (0..<10).collect {admissionController.admit("realm1")}
+
+        then: "the first connect should be admitted and the rest rejected straight away"
+        results[0]
+        results.count {it} <= 2
+        results.count {!it} >= 8
+
+        and: "another realm should not be affected"
+        admissionController.admit("realm2")
+
+        and: "the realm should admit connects again once tokens are available"
+        conditions.eventually {
+            assert admissionController.admit("realm1")
+        }
+
+        when: "admission control is disabled"
+        admissionController = new MQTTConnectAdmissionController(0, null)
+
+        then: "all connects should be admitted"
+        (0..<100).every {admissionController.admit("realm1")}
+    }
+
+    def "MQTT topic trie wildcard matching"() {
+
+        given: "a topic trie with exact and wildcard subscriptions"
+        def trie = new MQTTTopicTrie<String>()
+        trie.add(["master", "attribute", "temp", "asset1"], "exact")
+        trie.add(["master", "attribute", "+", "asset1"], "single")
+        trie.add(["master", "attribute", "#"], "multi")
+        trie.add(["master", "asset", "asset1"], "asset")
+
+        when: "an attribute event topic is matched"
+        def matched = []
+        trie.match(["master", "attribute", "temp", "asset1"], { matched.add(it) } as Consumer<String>)
+
+        then: "only the matching subscriptions should be returned"
+        matched.sort() == ["exact", "multi", "single"]
+
+        when: "the wildcard subscriptions are removed"
+        trie.remove(["master", "attribute", "+", "asset1"], "single")
+        trie.remove(["master", "attribute", "#"], "multi")
+        matched.clear()
+        trie.match(["master", "attribute", "temp", "asset1"], { matched.add(it) } as Consumer<String>)
+
+        then: "only the exact subscription should remain"
+        matched == ["exact"]
+
+        when: "all subscriptions are removed"
+        trie.remove(["master", "attribute", "temp", "asset1"], "exact")
+        trie.remove(["master", "asset", "asset1"], "asset")
+
+        then: "the trie should be empty"
+        trie.isEmpty()
+    }
 }
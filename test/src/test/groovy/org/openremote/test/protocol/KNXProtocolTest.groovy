@@ -23,6 +23,7 @@ import org.apache.commons.lang3.SystemUtils
 import org.openremote.agent.protocol.knx.KNXAgent
 import org.openremote.agent.protocol.knx.KNXAgentLink
 import org.openremote.agent.protocol.knx.KNXProtocol
+import org.openremote.agent.protocol.knx.KNXReadScheduler
 import org.openremote.manager.agent.AgentService
 import org.openremote.manager.asset.AssetProcessingService
 import org.openremote.manager.asset.AssetStorageService
@@ -36,9 +37,15 @@ import org.openremote.model.attribute.MetaItem
 import org.openremote.test.ManagerContainerTrait
 import spock.lang.Specification
 import spock.util.concurrent.PollingConditions
+import tuwien.auto.calimero.GroupAddress
+import tuwien.auto.calimero.KNXAckTimeoutException
+import tuwien.auto.calimero.Priority
 import tuwien.auto.calimero.server.Launcher
 import tuwien.auto.calimero.server.knxnetip.DefaultServiceContainer
 
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+
 import static org.openremote.model.value.MetaItemType.*
 import static org.openremote.model.value.ValueType.*
 
@@ -163,4 +170,60 @@ class KNXProtocolTest extends Specification implements ManagerContainerTrait {
             knxTestingNetwork.close()
         }
     }
+
+    def "Check KNX read scheduler"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.1)
+
+        and: "a read scheduler whose sender times out the first read of one group address"
+        def executor = Executors.newSingleThreadScheduledExecutor()
+        def reads = new CopyOnWriteArrayList<String>()
+        def timeoutAddress = new GroupAddress("1/0/3")
+        def timedOut = false
+        def blocked = true
+        def sending = false
+        def scheduler = new KNXReadScheduler(executor, { GroupAddress groupAddress, Priority priority ->
+            // Hold the first read until everything has been queued
+            sending = true
+            while (blocked) {
+                Thread.sleep(10)
+            }
+            if (groupAddress == timeoutAddress && !timedOut) {
+                timedOut = true
+                throw new KNXAckTimeoutException("No ACK")
+            }
+            reads.add(groupAddress.toString())
+        } as KNXReadScheduler.ReadSender)
+
+        when: "reads are queued with different priorities including duplicates"
+        scheduler.schedule(new GroupAddress("1/0/0"), Priority.LOW, KNXReadScheduler.ReadPriority.NORMAL)
+        conditions.eventually {
+            assert sending
+        }
+        scheduler.schedule(new GroupAddress("1/0/1"), Priority.LOW, KNXReadScheduler.ReadPriority.NORMAL)
+        scheduler.schedule(new GroupAddress("1/0/2"), Priority.LOW, KNXReadScheduler.ReadPriority.NORMAL)
+        scheduler.schedule(timeoutAddress, Priority.LOW, KNXReadScheduler.ReadPriority.NORMAL)
+        scheduler.schedule(new GroupAddress("1/0/4"), Priority.LOW, KNXReadScheduler.ReadPriority.HIGH)
+        scheduler.schedule(new GroupAddress("1/0/1"), Priority.LOW, KNXReadScheduler.ReadPriority.HIGH)
+        scheduler.schedule(new GroupAddress("1/0/2"), Priority.LOW, KNXReadScheduler.ReadPriority.NORMAL)
+
+        and: "the value of one group address is received before it is read"
+        scheduler.cancel(new GroupAddress("1/0/2"))
+        blocked = false
+
+        then: "each remaining group address should be read once in priority order and the timed out read retried"
+        conditions.eventually {
+            assert reads == ["1/0/0", "1/0/1", "1/0/4", "1/0/3"]
+            assert scheduler.pendingCount == 0
+            assert scheduler.sentCount == 4
+            assert scheduler.timeoutCount == 1
+        }
+
+        and: "the read interval should have backed off and then recovered"
+        scheduler.readIntervalMillis < KNXReadScheduler.MIN_READ_INTERVAL_MILLIS * 2
+
+        cleanup:
+        executor?.shutdownNow()
+    }
 }
@@ -38,6 +38,7 @@ import org.openremote.model.asset.agent.ConnectionStatus
 import org.openremote.model.asset.impl.ThingAsset
 import org.openremote.model.attribute.Attribute
 import org.openremote.model.attribute.AttributeEvent
+import org.openremote.model.attribute.AttributeRef
 import org.openremote.model.attribute.MetaItem
 import org.openremote.model.auth.OAuthGrant
 import org.openremote.model.auth.OAuthPasswordGrant
@@ -69,6 +70,8 @@ class HttpClientProtocolTest extends Specification implements ManagerContainerTr
         private String refreshToken = null
         private int pollCountFast = 0
         private int pollCountSlow = 0
+        private int pollCountShared = 0
+        private int notModifiedCount = 0
         private boolean putRequestWithHeadersCalled = false
         private int successCount = 0
         private int failureCount = 0
@@ -194,6 +197,20 @@ class HttpClientProtocolTest extends Specification implements ManagerContainerTr
                             .build()
                     )
                     return
+                case "https://mockapi/get_poll_shared":
+                    pollCountShared++
+                    if (requestContext.getHeaderString(HttpHeaders.IF_NONE_MATCH) == '"v1"') {
+                        notModifiedCount++
+                        requestContext.abortWith(Response.notModified().build())
+                        return
+                    }
+                    requestContext.abortWith(
+                        Response
+                            .ok("This response is shared by attributes reading 21 and 42 from it.", MediaType.TEXT_PLAIN)
+                            .header(HttpHeaders.ETAG, '"v1"')
+                            .build()
+                    )
+                    return
                 case "https://mockapi/get_poll_fast":
                     pollCountFast++
                     requestContext.abortWith(
@@ -235,6 +252,8 @@ class HttpClientProtocolTest extends Specification implements ManagerContainerTr
         mockServer.refreshTokenCount = 0
         mockServer.pollCountSlow = 0
         mockServer.pollCountFast = 0
+        mockServer.pollCountShared = 0
+        mockServer.notModifiedCount = 0
         mockServer.successCount = 0
         mockServer.failureCount = 0
         mockServer.putRequestWithHeadersCalled = false
@@ -351,6 +370,31 @@ class HttpClientProtocolTest extends Specification implements ManagerContainerTr
                             )
                         )
                     ),
+                // attributes that poll the same request so should share a single polling request
+                new Attribute<>("getPollShared1", INTEGER)
+                    .addMeta(
+                        new MetaItem<>(AGENT_LINK, new HTTPAgentLink(agent.id)
+                            .setPath("get_poll_shared")
+                            .setPollingMillis(100)
+                            .setValueFilters(
+                                [
+                                    new RegexValueFilter(Pattern.compile("\\d+"))
+                                ] as ValueFilter[]
+                            )
+                        )
+                    ),
+                new Attribute<>("getPollShared2", INTEGER)
+                    .addMeta(
+                        new MetaItem<>(AGENT_LINK, new HTTPAgentLink(agent.id)
+                            .setPath("get_poll_shared")
+                            .setPollingMillis(200)
+                            .setValueFilters(
+                                [
+                                    new RegexValueFilter(Pattern.compile("\\d+")).setMatchIndex(1)
+                                ] as ValueFilter[]
+                            )
+                        )
+                    ),
                 // attribute that expects binary data using GET and uses sub string on response
                 new Attribute<>("getBinary", TEXT)
                     .addMeta(
@@ -394,9 +438,18 @@ class HttpClientProtocolTest extends Specification implements ManagerContainerTr
 
         then: "new request maps should be created in the HTTP client protocol for the linked attributes"
         conditions.eventually {
-            assert ((HTTPProtocol)agentService.getProtocolInstance(agent.id)).requestMap.size() == 6
+            assert ((HTTPProtocol)agentService.getProtocolInstance(agent.id)).requestMap.size() == 8
         }
 
+        and: "attributes making identical polling requests should share a polling group"
+        def protocol = (HTTPProtocol)agentService.getProtocolInstance(agent.id)
+        protocol.pollingGroups.size() == 5
+        protocol.attributePollingGroups.get(new AttributeRef(asset.id, "getPollShared1")).is(protocol.attributePollingGroups.get(new AttributeRef(asset.id, "getPollShared2")))
+        protocol.attributePollingGroups.get(new AttributeRef(asset.id, "getPollShared1")).pollingMillis == 100
+
+        and: "the polling groups should share the polling permits of the host"
+        HTTPProtocol.hostPollingPermits.get("mockapi").pollingGroupCount == 5
+
         and: "the polling attributes should be polling the server"
         conditions.eventually {
             assert mockServer.pollCountSlow > 0
@@ -411,6 +464,47 @@ class HttpClientProtocolTest extends Specification implements ManagerContainerTr
             assert asset.getAttribute("getPollFast").flatMap({it.value}).orElse(null) == 60
             assert asset.getAttribute("getBinary").flatMap({it.value}).orElse(null) == "ON"
             assert asset.getAttribute("getHex").flatMap({it.value}).orElse(null) == "ON"
+            assert asset.getAttribute("getPollShared1").flatMap({it.value}).orElse(null) == 21
+            assert asset.getAttribute("getPollShared2").flatMap({it.value}).orElse(null) == 42
+        }
+
+        and: "the shared polling request should use the ETag to make conditional requests"
+        conditions.eventually {
+            assert mockServer.notModifiedCount > 0
+            assert mockServer.pollCountShared > mockServer.notModifiedCount
+        }
+        def sharedPollingGroup = protocol.attributePollingGroups.get(new AttributeRef(asset.id, "getPollShared1"))
+        sharedPollingGroup.entityTag == '"v1"'
+
+        when: "another attribute making the same polling request is linked"
+        asset = assetStorageService.find(asset.getId(), true)
+        asset.addOrReplaceAttributes(
+            new Attribute<>("getPollShared3", INTEGER)
+                .addMeta(
+                    new MetaItem<>(AGENT_LINK, new HTTPAgentLink(agent.id)
+                        .setPath("get_poll_shared")
+                        .setPollingMillis(200)
+                        .setValueFilters(
+                            [
+                                new RegexValueFilter(Pattern.compile("\\d+")).setMatchIndex(1)
+                            ] as ValueFilter[]
+                        )
+                    )
+                )
+        )
+        asset = assetStorageService.merge(asset)
+
+        then: "it should join the existing polling group"
+        conditions.eventually {
+            assert protocol.attributePollingGroups.get(new AttributeRef(asset.id, "getPollShared3")).is(sharedPollingGroup)
+        }
+        protocol.attributePollingGroups.get(new AttributeRef(asset.id, "getPollShared1")).is(sharedPollingGroup)
+        protocol.pollingGroups.size() == 5
+
+        and: "the next shared polling request should be unconditional so the attribute also gets the current value"
+        conditions.eventually {
+            asset = assetStorageService.find(asset.getId(), true)
+            assert asset.getAttribute("getPollShared3").flatMap({it.value}).orElse(null) == 42
         }
 
         when: "a linked attribute value is updated"
@@ -446,6 +540,15 @@ class HttpClientProtocolTest extends Specification implements ManagerContainerTr
             assert mockServer.dynamicPathParam == "off"
         }
 
+        when: "the asset with the polling attributes is deleted"
+        assetStorageService.delete([asset.id])
+
+        then: "the polling groups and the polling permits of the host should be removed"
+        conditions.eventually {
+            assert protocol.pollingGroups.isEmpty()
+            assert !HTTPProtocol.hostPollingPermits.containsKey("mockapi")
+        }
+
         when: "new agents are created"
         def agent2 = agent
             .setId(null)
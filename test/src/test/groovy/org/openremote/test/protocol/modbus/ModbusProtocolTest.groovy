@@ -0,0 +1,493 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.test.protocol.modbus
+
+import io.netty.buffer.ByteBuf
+import io.netty.buffer.ByteBufUtil
+import io.netty.buffer.Unpooled
+import io.netty.channel.ChannelHandlerContext
+import io.netty.channel.embedded.EmbeddedChannel
+import io.netty.channel.socket.SocketChannel
+import io.netty.handler.codec.ByteToMessageDecoder
+import org.openremote.agent.protocol.io.AbstractNettyIOClient
+import org.openremote.agent.protocol.modbus.ModbusAgentLink
+import org.openremote.agent.protocol.modbus.ModbusCodec
+import org.openremote.agent.protocol.modbus.ModbusMessage
+import org.openremote.agent.protocol.modbus.ModbusReadPlanner
+import org.openremote.agent.protocol.modbus.ModbusSerialAgent
+import org.openremote.agent.protocol.modbus.ModbusSerialProtocol
+import org.openremote.agent.protocol.modbus.ModbusTCPAgent
+import org.openremote.agent.protocol.tcp.AbstractTCPServer
+import org.openremote.agent.protocol.tcp.TCPIOClient
+import org.openremote.container.util.UniqueIdentifierGenerator
+import org.openremote.manager.agent.AgentService
+import org.openremote.manager.asset.AssetProcessingService
+import org.openremote.manager.asset.AssetStorageService
+import org.openremote.manager.event.ClientEventService
+import org.openremote.model.Constants
+import org.openremote.model.asset.agent.Agent
+import org.openremote.model.asset.agent.ConnectionStatus
+import org.openremote.model.asset.impl.ThingAsset
+import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.model.attribute.AttributeRef
+import org.openremote.model.attribute.MetaItem
+import org.openremote.model.protocol.ProtocolAssetService
+import org.openremote.model.util.Pair
+import org.openremote.test.ManagerContainerTrait
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.ByteBuffer
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+import static org.openremote.agent.protocol.modbus.ModbusAgentLink.DataType.*
+import static org.openremote.agent.protocol.modbus.ModbusAgentLink.RegisterType.*
+import static org.openremote.model.value.MetaItemType.AGENT_LINK
+import static org.openremote.model.value.ValueType.*
+
+/**
+ * This tests the Modbus TCP and RTU protocols against simple in-process Modbus slaves
+ */
+class ModbusProtocolTest extends Specification implements ManagerContainerTrait {
+
+    def "Check Modbus TCP polling and writing of linked attributes"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        and: "an in-process Modbus slave"
+        def holdingRegisters = new ConcurrentHashMap<Integer, Integer>()
+        def inputRegisters = new ConcurrentHashMap<Integer, Integer>()
+        def coils = new ConcurrentHashMap<Integer, Boolean>()
+        def requests = new CopyOnWriteArrayList<ModbusMessage>()
+        def floatBits = Float.floatToIntBits(21.5f)
+        holdingRegisters.putAll([
+            0: 0xFFFB,
+            1: 1234,
+            2: floatBits >>> 16,
+            3: floatBits & 0xFFFF,
+            10: 77,
+            20: 5
+        ])
+        inputRegisters.put(100, 999)
+        coils.put(0, true)
+
+        and: "the slave holds back responses and sends them in reverse order so pipelined responses arrive out of order"
+        def responseExecutor = Executors.newSingleThreadScheduledExecutor()
+        def heldResponses = []
+        def lateInputRead = new AtomicBoolean(true)
+        def lateResponseSent = new AtomicBoolean()
+        def maxHeldResponses = new AtomicInteger()
+        def slavePort = findEphemeralPort()
+        def slave = new AbstractTCPServer<ModbusMessage>(new InetSocketAddress("127.0.0.1", slavePort)) {
+            @Override
+            protected void addDecoders(SocketChannel channel) {
+                addDecoder(channel, new ModbusCodec.TCPDecoder())
+            }
+
+            @Override
+            protected void addEncoders(SocketChannel channel) {
+                addEncoder(channel, new ModbusCodec.TCPEncoder())
+            }
+        }
+        slave.addMessageConsumer({ ModbusMessage request, channel, sender ->
+            requests.add(request)
+            def address = request.getAddress()
+            def quantity = request.getQuantity()
+            ModbusMessage response
+
+            if (request.getFunctionCode() == ModbusMessage.FUNCTION_READ_INPUT_REGISTERS && lateInputRead.getAndSet(false)) {
+                // Answer the first input register read with a stale value after the request has timed out
+                responseExecutor.schedule({
+                    slave.sendMessage(request.createResponse([2, 0x02, 0x2B] as byte[]), channel)
+                    lateResponseSent.set(true)
+                } as Runnable, 1500, TimeUnit.MILLISECONDS)
+                return
+            }
+
+            switch (request.getFunctionCode()) {
+                case ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS:
+                case ModbusMessage.FUNCTION_READ_INPUT_REGISTERS:
+                    def registers = request.getFunctionCode() == ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS ? holdingRegisters : inputRegisters
+                    if ((address..<address + quantity).any { !registers.containsKey(it) }) {
+                        response = request.createExceptionResponse(ModbusMessage.EXCEPTION_ILLEGAL_DATA_ADDRESS)
+                        break
+                    }
+                    def buffer = ByteBuffer.allocate(1 + quantity * 2)
+                    buffer.put((byte) (quantity * 2))
+                    (address..<address + quantity).each { buffer.putShort((short) registers.getOrDefault(it, 0)) }
+                    response = request.createResponse(buffer.array())
+                    break
+                case ModbusMessage.FUNCTION_READ_COILS:
+                    def bytes = new byte[1 + (int) Math.ceil(quantity / 8d)]
+                    bytes[0] = (byte) (bytes.length - 1)
+                    (0..<quantity).each { if (coils.getOrDefault(address + it, false)) bytes[1 + (it >> 3)] |= (1 << (it & 7)) }
+                    response = request.createResponse(bytes)
+                    break
+                case ModbusMessage.FUNCTION_WRITE_SINGLE_COIL:
+                    coils.put(address, (request.getData()[2] & 0xFF) == 0xFF)
+                    response = request.createResponse(request.getData())
+                    break
+                case ModbusMessage.FUNCTION_WRITE_SINGLE_REGISTER:
+                    holdingRegisters.put(address, ((request.getData()[2] & 0xFF) << 8) | (request.getData()[3] & 0xFF))
+                    response = request.createResponse(request.getData())
+                    break
+                default:
+                    response = request.createExceptionResponse(1)
+            }
+
+            synchronized (heldResponses) {
+                heldResponses.add(new Pair<>(response, channel))
+            }
+        })
+        responseExecutor.scheduleWithFixedDelay({
+            def responses
+            synchronized (heldResponses) {
+                responses = heldResponses.reverse()
+                heldResponses.clear()
+            }
+            maxHeldResponses.accumulateAndGet(responses.size(), { a, b -> Math.max(a, b) })
+            responses.each { slave.sendMessage(it.key, it.value) }
+        } as Runnable, 50, 50, TimeUnit.MILLISECONDS)
+        slave.start()
+
+        and: "the container starts"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        def agentService = container.getService(AgentService.class)
+        def clientEventService = container.getService(ClientEventService.class)
+
+        and: "the input attribute values are recorded"
+        def inputValues = new CopyOnWriteArrayList()
+        clientEventService.addInternalSubscription(AttributeEvent.class, null, { AttributeEvent event ->
+            if (event.name == "input") {
+                inputValues.add(event.value.orElse(null))
+            }
+        })
+
+        when: "a Modbus TCP agent is created that connects to the slave"
+        def agent = new ModbusTCPAgent("Test agent")
+            .setHost("127.0.0.1")
+            .setPort(slavePort)
+            .setPollingMillis(200)
+            .setMaxPendingRequests(4)
+            .setMaxRegisterGap(8)
+            .setResponseTimeoutMillis(500)
+            .setRealm(Constants.MASTER_REALM)
+        agent = assetStorageService.merge(agent)
+
+        then: "the protocol instance should be created and should become connected"
+        conditions.eventually {
+            assert agentService.getProtocolInstance(agent.id) != null
+            assert agentService.agents.get(agent.id).getAgentStatus().orElse(null) == ConnectionStatus.CONNECTED
+        }
+
+        when: "an asset is created with attributes linked to registers and coils"
+        def asset = new ThingAsset("Test Asset")
+            .setParent(agent)
+            .addOrReplaceAttributes(
+                new Attribute<>("int16", NUMBER)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new ModbusAgentLink(agent.id).setReadType(HOLDING_REGISTER).setReadAddress(0).setDataType(INT16))),
+                new Attribute<>("uint16", NUMBER)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new ModbusAgentLink(agent.id).setReadType(HOLDING_REGISTER).setReadAddress(1))),
+                new Attribute<>("float32", NUMBER)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new ModbusAgentLink(agent.id).setReadType(HOLDING_REGISTER).setReadAddress(2).setDataType(FLOAT32))),
+                new Attribute<>("gap", NUMBER)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new ModbusAgentLink(agent.id).setReadType(HOLDING_REGISTER).setReadAddress(10))),
+                new Attribute<>("setpoint", NUMBER)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new ModbusAgentLink(agent.id).setReadType(HOLDING_REGISTER).setReadAddress(20).setWriteType(HOLDING_REGISTER).setWriteAddress(20))),
+                new Attribute<>("input", NUMBER)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new ModbusAgentLink(agent.id).setReadType(INPUT_REGISTER).setReadAddress(100))),
+                new Attribute<>("coil", BOOLEAN)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new ModbusAgentLink(agent.id).setReadType(COIL).setReadAddress(0).setWriteType(COIL).setWriteAddress(0)))
+            )
+        asset = assetStorageService.merge(asset)
+
+        then: "the linked attributes should be updated with the decoded register values"
+        conditions.eventually {
+            asset = assetStorageService.find(asset.id, true)
+            assert asset.getAttribute("int16").flatMap { it.value }.orElse(null) == -5d
+            assert asset.getAttribute("uint16").flatMap { it.value }.orElse(null) == 1234d
+            assert asset.getAttribute("float32").flatMap { it.value }.orElse(null) == 21.5d
+            assert asset.getAttribute("gap").flatMap { it.value }.orElse(null) == 77d
+            assert asset.getAttribute("setpoint").flatMap { it.value }.orElse(null) == 5d
+            assert asset.getAttribute("input").flatMap { it.value }.orElse(null) == 999d
+            assert asset.getAttribute("coil").flatMap { it.value }.orElse(null) == true
+        }
+
+        and: "responses to pipelined requests should have been sent out of order"
+        maxHeldResponses.get() > 1
+
+        and: "nearby holding registers should have been read with a single request that the slave rejected"
+        requests.any { it.functionCode == ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS && it.address == 0 && it.quantity == 11 }
+
+        and: "the rejected read should have been split at the gap with adjacent holding registers still read together"
+        requests.any { it.functionCode == ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS && it.address == 0 && it.quantity == 4 }
+        requests.any { it.functionCode == ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS && it.address == 10 && it.quantity == 1 }
+        requests.any { it.functionCode == ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS && it.address == 20 && it.quantity == 1 }
+        !requests.any { it.functionCode == ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS && it.address in [1, 2] }
+
+        when: "the slave receives more polls"
+        def requestCount = requests.size()
+
+        then: "the rejected read should not be made again"
+        conditions.eventually {
+            assert requests.size() > requestCount + 4
+        }
+        requests.count { it.functionCode == ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS && it.address == 0 && it.quantity == 11 } == 1
+
+        when: "the late response to the timed out input register read is received"
+        conditions.eventually {
+            assert lateResponseSent.get()
+        }
+        def inputValueCount = inputValues.size()
+
+        then: "it should be dropped whilst the input register continues to be polled"
+        conditions.eventually {
+            assert inputValues.size() > inputValueCount + 2
+        }
+        !inputValues.contains(555d)
+        inputValues.findAll { it != null }.every { it == 999d }
+
+        when: "the setpoint attribute is written"
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(asset.id, "setpoint", 42))
+
+        then: "the holding register should be written and the new value read back"
+        conditions.eventually {
+            assert holdingRegisters.get(20) == 42
+            asset = assetStorageService.find(asset.id, true)
+            assert asset.getAttribute("setpoint").flatMap { it.value }.orElse(null) == 42d
+        }
+
+        when: "the coil attribute is written"
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(asset.id, "coil", false))
+
+        then: "the coil should be written and the new value read back"
+        conditions.eventually {
+            assert !coils.get(0)
+            asset = assetStorageService.find(asset.id, true)
+            assert asset.getAttribute("coil").flatMap { it.value }.orElse(null) == false
+        }
+
+        cleanup: "the slave is stopped"
+        slave?.stop()
+        responseExecutor?.shutdownNow()
+    }
+
+    def "Check Modbus read planning"() {
+
+        given: "a set of read targets"
+        def targets = [
+            new ModbusReadPlanner.ReadTarget(new AttributeRef("a", "1"), 1, HOLDING_REGISTER, 0, UINT16, false),
+            new ModbusReadPlanner.ReadTarget(new AttributeRef("a", "2"), 1, HOLDING_REGISTER, 1, FLOAT32, false),
+            new ModbusReadPlanner.ReadTarget(new AttributeRef("a", "3"), 1, HOLDING_REGISTER, 2, UINT16, false),
+            new ModbusReadPlanner.ReadTarget(new AttributeRef("a", "4"), 1, HOLDING_REGISTER, 200, UINT16, false),
+            new ModbusReadPlanner.ReadTarget(new AttributeRef("a", "5"), 2, HOLDING_REGISTER, 0, UINT16, false),
+            new ModbusReadPlanner.ReadTarget(new AttributeRef("a", "6"), 1, INPUT_REGISTER, 0, UINT16, false)
+        ]
+
+        when: "the reads are planned"
+        def ranges = ModbusReadPlanner.plan(targets, ModbusReadPlanner.MAX_READ_REGISTERS, 8)
+
+        then: "overlapping reads should be merged and distant reads, other units and other types kept separate"
+        ranges.size() == 4
+        ranges[0].unitId == 1 && ranges[0].registerType == HOLDING_REGISTER && ranges[0].address == 0 && ranges[0].quantity == 3
+        ranges[0].targets.size() == 3
+        ranges[1].address == 200 && ranges[1].quantity == 1
+        ranges[2].registerType == INPUT_REGISTER
+        ranges[3].unitId == 2
+
+        when: "the reads are planned with a small max registers per request"
+        ranges = ModbusReadPlanner.plan(targets, 2, 8)
+
+        then: "reads should be split to honour the limit"
+        ranges.every { it.quantity <= 2 }
+        ranges.sum { it.targets.size() } == targets.size()
+    }
+
+    def "Check Modbus RTU framing"() {
+
+        given: "RTU encoder and decoder channels"
+        def encoderChannel = new EmbeddedChannel(new ModbusCodec.RTUEncoder())
+        def decoderChannel = new EmbeddedChannel(new ModbusCodec.RTUDecoder())
+
+        when: "a read request is encoded"
+        encoderChannel.writeOutbound(ModbusMessage.createReadRequest(1, ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS, 0, 2))
+        ByteBuf frame = encoderChannel.readOutbound()
+
+        then: "the frame should contain the unit ID, PDU and CRC (low byte first)"
+        ByteBufUtil.hexDump(frame).toUpperCase() == "010300000002C40B"
+
+        when: "a read response is encoded"
+        encoderChannel.writeOutbound(new ModbusMessage(0, 1, ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS, [4, 0, 10, 0, 11] as byte[]))
+        ByteBuf responseFrame = encoderChannel.readOutbound()
+        def responseBytes = ByteBufUtil.getBytes(responseFrame)
+
+        and: "the response is decoded a fragment at a time"
+        decoderChannel.writeInbound(Unpooled.wrappedBuffer(responseBytes, 0, 4))
+
+        then: "nothing should be decoded until the whole frame is received"
+        decoderChannel.readInbound() == null
+
+        when: "the rest of the frame is received"
+        decoderChannel.writeInbound(Unpooled.wrappedBuffer(responseBytes, 4, responseBytes.length - 4))
+        ModbusMessage response = decoderChannel.readInbound()
+
+        then: "the response should be decoded"
+        response.unitId == 1
+        response.functionCode == ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS
+        response.readValues == [0, 10, 0, 11] as byte[]
+
+        when: "a frame with a bad CRC is received followed by line noise and an exception response"
+        def corruptedBytes = responseBytes.clone()
+        corruptedBytes[-1] = (byte) (corruptedBytes[-1] ^ 0xFF)
+        encoderChannel.writeOutbound(new ModbusMessage(0, 17, ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS | ModbusMessage.EXCEPTION_FLAG, [ModbusMessage.EXCEPTION_ILLEGAL_DATA_ADDRESS] as byte[]))
+        ByteBuf exceptionFrame = encoderChannel.readOutbound()
+        decoderChannel.writeInbound(Unpooled.wrappedBuffer(Unpooled.wrappedBuffer(corruptedBytes), Unpooled.wrappedBuffer([0xFF] as byte[]), exceptionFrame))
+        response = decoderChannel.readInbound()
+
+        then: "the corrupted frame and noise should be discarded and the exception response decoded"
+        response.unitId == 17
+        response.isException()
+        response.exceptionCode == ModbusMessage.EXCEPTION_ILLEGAL_DATA_ADDRESS
+        response.isResponseTo(ModbusMessage.createReadRequest(17, ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS, 0, 1))
+        !response.isResponseTo(ModbusMessage.createReadRequest(1, ModbusMessage.FUNCTION_READ_HOLDING_REGISTERS, 0, 1))
+        decoderChannel.readInbound() == null
+
+        cleanup: "the channels are closed"
+        encoderChannel?.finishAndReleaseAll()
+        decoderChannel?.finishAndReleaseAll()
+    }
+
+    def "Check Modbus serial protocol polling of linked attributes"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        and: "an in-process Modbus RTU slave (unit 1) that only allows single register reads and whose byte stream is carried over TCP"
+        def holdingRegisters = [0: 11, 1: 22, 5: 55]
+        def requests = new CopyOnWriteArrayList<ModbusMessage>()
+        def slavePort = findEphemeralPort()
+        def slave = new AbstractTCPServer<ModbusMessage>(new InetSocketAddress("127.0.0.1", slavePort)) {
+            @Override
+            protected void addDecoders(SocketChannel channel) {
+                // Read and single write requests are all eight byte frames
+                addDecoder(channel, new ByteToMessageDecoder() {
+                    @Override
+                    protected void decode(ChannelHandlerContext ctx, ByteBuf buf, List<Object> out) {
+                        while (buf.readableBytes() >= 8) {
+                            def unitId = buf.readUnsignedByte()
+                            def functionCode = buf.readUnsignedByte()
+                            def data = new byte[4]
+                            buf.readBytes(data)
+                            buf.skipBytes(2)
+                            out.add(new ModbusMessage(0, unitId, functionCode, data))
+                        }
+                    }
+                })
+            }
+
+            @Override
+            protected void addEncoders(SocketChannel channel) {
+                addEncoder(channel, new ModbusCodec.RTUEncoder())
+            }
+        }
+        slave.addMessageConsumer({ ModbusMessage request, channel, sender ->
+            requests.add(request)
+
+            if (request.getQuantity() != 1 || !holdingRegisters.containsKey(request.getAddress())) {
+                slave.sendMessage(request.createExceptionResponse(ModbusMessage.EXCEPTION_ILLEGAL_DATA_ADDRESS), channel)
+                return
+            }
+
+            def value = holdingRegisters.get(request.getAddress())
+
+            if (request.getAddress() == 5) {
+                // Another unit on the bus responds first
+                slave.sendMessage(new ModbusMessage(0, 2, request.getFunctionCode(), [2, 0, 99] as byte[]), channel)
+            }
+
+            slave.sendMessage(request.createResponse([2, value >> 8, value & 0xFF] as byte[]), channel)
+        })
+        slave.start()
+
+        and: "the container starts"
+        def container = startContainer(defaultConfig(), defaultServices())
+
+        and: "a serial protocol instance that uses a TCP client in place of the serial port"
+        def agent = new ModbusSerialAgent("Serial agent")
+            .setSerialPort("test")
+            .setPollingMillis(200)
+        agent.setId(UniqueIdentifierGenerator.generateId())
+        def protocol = new ModbusSerialProtocol(agent) {
+            @Override
+            protected AbstractNettyIOClient<ModbusMessage, ?> doCreateIoClient() throws Exception {
+                return new TCPIOClient<ModbusMessage>("127.0.0.1", slavePort)
+            }
+        }
+        def attributeEvents = new CopyOnWriteArrayList<AttributeEvent>()
+        protocol.setAssetService(Stub(ProtocolAssetService) {
+            sendAttributeEvent(_) >> { AttributeEvent event -> attributeEvents.add(event) }
+        })
+        def assetId = UniqueIdentifierGenerator.generateId()
+
+        when: "the protocol is started"
+        protocol.start(container)
+
+        then: "the protocol should connect to the slave"
+        conditions.eventually {
+            assert attributeEvents.any { it.id == agent.id && it.name == Agent.STATUS.name && it.value.orElse(null) == ConnectionStatus.CONNECTED }
+        }
+
+        when: "attributes are linked to adjacent and separate holding registers"
+        ["register0": 0, "register1": 1, "register5": 5].each { name, address ->
+            protocol.linkAttribute(assetId, new Attribute<>(name, NUMBER)
+                .addMeta(new MetaItem<>(AGENT_LINK, new ModbusAgentLink(agent.id).setReadType(HOLDING_REGISTER).setReadAddress(address))))
+        }
+
+        then: "the linked attributes should be updated with the values of unit 1"
+        conditions.eventually {
+            def values = attributeEvents.findAll { it.id == assetId }.collectEntries { [(it.name): it.value.orElse(null)] }
+            assert values["register0"] == 11
+            assert values["register1"] == 22
+            assert values["register5"] == 55
+        }
+
+        and: "the response from the other unit should have been ignored"
+        !attributeEvents.any { it.id == assetId && it.value.orElse(null) == 99 }
+
+        and: "the adjacent registers should have been read together once and then individually"
+        requests.count { it.address == 0 && it.quantity == 2 } == 1
+        requests.any { it.address == 0 && it.quantity == 1 }
+        requests.any { it.address == 1 && it.quantity == 1 }
+        !requests.any { it.address in [2, 3, 4] || it.quantity > 2 }
+
+        cleanup: "the protocol and slave are stopped"
+        protocol?.stop(container)
+        slave?.stop()
+    }
+}
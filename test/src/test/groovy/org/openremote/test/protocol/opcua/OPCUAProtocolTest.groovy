@@ -0,0 +1,270 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.test.protocol.opcua
+
+import org.eclipse.milo.opcua.sdk.core.AccessLevel
+import org.eclipse.milo.opcua.sdk.server.OpcUaServer
+import org.eclipse.milo.opcua.sdk.server.api.DataItem
+import org.eclipse.milo.opcua.sdk.server.api.ManagedNamespaceWithLifecycle
+import org.eclipse.milo.opcua.sdk.server.api.MonitoredItem
+import org.eclipse.milo.opcua.sdk.server.api.config.OpcUaServerConfig
+import org.eclipse.milo.opcua.sdk.server.identity.AnonymousIdentityValidator
+import org.eclipse.milo.opcua.sdk.server.nodes.UaVariableNode
+import org.eclipse.milo.opcua.sdk.server.util.SubscriptionModel
+import org.eclipse.milo.opcua.stack.core.Identifiers
+import org.eclipse.milo.opcua.stack.core.security.DefaultCertificateManager
+import org.eclipse.milo.opcua.stack.core.security.DefaultTrustListManager
+import org.eclipse.milo.opcua.stack.core.security.SecurityPolicy
+import org.eclipse.milo.opcua.stack.core.types.builtin.DataValue
+import org.eclipse.milo.opcua.stack.core.types.builtin.DateTime
+import org.eclipse.milo.opcua.stack.core.types.builtin.LocalizedText
+import org.eclipse.milo.opcua.stack.core.types.builtin.NodeId
+import org.eclipse.milo.opcua.stack.core.types.builtin.StatusCode
+import org.eclipse.milo.opcua.stack.core.types.builtin.Variant
+import org.eclipse.milo.opcua.stack.core.types.enumerated.MessageSecurityMode
+import org.eclipse.milo.opcua.stack.core.types.structured.BuildInfo
+import org.eclipse.milo.opcua.stack.server.EndpointConfiguration
+import org.eclipse.milo.opcua.stack.server.security.DefaultServerCertificateValidator
+import org.openremote.agent.protocol.opcua.OPCUAAgent
+import org.openremote.agent.protocol.opcua.OPCUAAgentLink
+import org.openremote.agent.protocol.opcua.OPCUAProtocol
+import org.openremote.manager.agent.AgentService
+import org.openremote.manager.asset.AssetProcessingService
+import org.openremote.manager.asset.AssetStorageService
+import org.openremote.model.Constants
+import org.openremote.model.asset.agent.ConnectionStatus
+import org.openremote.model.asset.impl.ThingAsset
+import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.AttributeEvent
+import org.openremote.model.attribute.MetaItem
+import org.openremote.test.ManagerContainerTrait
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.file.Files
+
+import static org.openremote.model.value.MetaItemType.AGENT_LINK
+import static org.openremote.model.value.ValueType.*
+
+/**
+ * This tests the {@link OPCUAProtocol} against an embedded OPC UA server
+ */
+class OPCUAProtocolTest extends Specification implements ManagerContainerTrait {
+
+    def "Check OPC UA subscriptions and writes"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        and: "an embedded OPC UA server with a few variables"
+        def serverPort = findEphemeralPort()
+        def securityDir = Files.createTempDirectory("opcua")
+        def trustListManager = new DefaultTrustListManager(securityDir.toFile())
+        def endpoint = EndpointConfiguration.newBuilder()
+            .setBindAddress("127.0.0.1")
+            .setHostname("127.0.0.1")
+            .setBindPort(serverPort)
+            .setPath("/test")
+            .setSecurityPolicy(SecurityPolicy.None)
+            .setSecurityMode(MessageSecurityMode.None)
+            .addTokenPolicies(OpcUaServerConfig.USER_TOKEN_POLICY_ANONYMOUS)
+            .build()
+        def server = new OpcUaServer(OpcUaServerConfig.builder()
+            .setApplicationUri("urn:openremote:test:server")
+            .setApplicationName(LocalizedText.english("OpenRemote Test Server"))
+            .setProductUri("urn:openremote:test")
+            .setBuildInfo(new BuildInfo("urn:openremote:test", "OpenRemote", "Test Server", "1.0", "0", DateTime.now()))
+            .setEndpoints([endpoint] as Set)
+            .setCertificateManager(new DefaultCertificateManager())
+            .setTrustListManager(trustListManager)
+            .setCertificateValidator(new DefaultServerCertificateValidator(trustListManager))
+            .setIdentityValidator(AnonymousIdentityValidator.INSTANCE)
+            .build())
+        def namespace = new TestNamespace(server)
+        namespace.startup()
+        server.startup().get()
+        def nodeId = { String name -> "ns=" + namespace.getNamespaceIndex() + ";s=" + name }
+
+        and: "the container starts"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def assetProcessingService = container.getService(AssetProcessingService.class)
+        def agentService = container.getService(AgentService.class)
+
+        when: "an OPC UA agent is created that connects to the server"
+        def agent = new OPCUAAgent("Test agent")
+            .setEndpointUrl("opc.tcp://127.0.0.1:" + serverPort + "/test")
+            .setPublishingIntervalMillis(100)
+            .setSamplingIntervalMillis(100)
+            .setRealm(Constants.MASTER_REALM)
+        agent = assetStorageService.merge(agent)
+
+        then: "the protocol instance should be created and should become connected"
+        conditions.eventually {
+            assert agentService.getProtocolInstance(agent.id) != null
+            assert agentService.agents.get(agent.id).getAgentStatus().orElse(null) == ConnectionStatus.CONNECTED
+        }
+
+        when: "an asset is created with attributes linked to the variables"
+        def asset = new ThingAsset("Test Asset")
+            .setParent(agent)
+            .addOrReplaceAttributes(
+                new Attribute<>("temperature", NUMBER)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new OPCUAAgentLink(agent.id, nodeId("temperature")).setDeadband(1d))),
+                new Attribute<>("counter", NUMBER)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new OPCUAAgentLink(agent.id, nodeId("counter")))),
+                new Attribute<>("label", TEXT)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new OPCUAAgentLink(agent.id, nodeId("label")))),
+                new Attribute<>("setpoint", NUMBER)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new OPCUAAgentLink(agent.id, nodeId("setpoint"))))
+            )
+        asset = assetStorageService.merge(asset)
+
+        then: "a monitored item should be created for each linked attribute"
+        conditions.eventually {
+            def protocol = (OPCUAProtocol) agentService.getProtocolInstance(agent.id)
+            assert protocol.monitoredItems.size() == 4
+        }
+
+        when: "the variables change on the server"
+        def sourceTime = DateTime.now()
+        namespace.setValue("temperature", 23.5d, sourceTime)
+        namespace.setValue("counter", 1, sourceTime)
+        namespace.setValue("label", "running", sourceTime)
+
+        then: "the linked attributes should be updated with the server values and source timestamps"
+        conditions.eventually {
+            asset = assetStorageService.find(asset.id, true)
+            assert asset.getAttribute("temperature").flatMap { it.value }.orElse(null) == 23.5d
+            assert asset.getAttribute("temperature").flatMap { it.timestamp }.orElse(null) == sourceTime.javaTime
+            assert asset.getAttribute("counter").flatMap { it.value }.orElse(null) == 1d
+            assert asset.getAttribute("label").flatMap { it.value }.orElse(null) == "running"
+        }
+
+        when: "the temperature changes by less than the deadband and then the counter changes"
+        namespace.setValue("temperature", 24d, DateTime.now())
+        Thread.sleep(500)
+        namespace.setValue("counter", 2, DateTime.now())
+
+        then: "only the counter should be updated"
+        conditions.eventually {
+            asset = assetStorageService.find(asset.id, true)
+            assert asset.getAttribute("counter").flatMap { it.value }.orElse(null) == 2d
+            assert asset.getAttribute("temperature").flatMap { it.value }.orElse(null) == 23.5d
+        }
+
+        when: "the temperature changes by more than the deadband"
+        namespace.setValue("temperature", 25d, DateTime.now())
+
+        then: "the temperature should be updated"
+        conditions.eventually {
+            asset = assetStorageService.find(asset.id, true)
+            assert asset.getAttribute("temperature").flatMap { it.value }.orElse(null) == 25d
+        }
+
+        when: "linked attributes are written"
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(asset.id, "setpoint", 30))
+        assetProcessingService.sendAttributeEvent(new AttributeEvent(asset.id, "counter", 7))
+
+        then: "the server variables should be written using their data types"
+        conditions.eventually {
+            assert namespace.getValue("setpoint") == 30d
+            assert namespace.getValue("counter") == 7
+            assert namespace.getValue("counter") instanceof Integer
+        }
+
+        and: "the written values should be published back to the linked attributes"
+        conditions.eventually {
+            asset = assetStorageService.find(asset.id, true)
+            assert asset.getAttribute("setpoint").flatMap { it.value }.orElse(null) == 30d
+            assert asset.getAttribute("counter").flatMap { it.value }.orElse(null) == 7d
+        }
+
+        cleanup: "the server is stopped"
+        server?.shutdown()?.get()
+        namespace?.shutdown()
+        securityDir?.toFile()?.deleteDir()
+    }
+
+    /**
+     * A namespace with a few read/write variables
+     */
+    static class TestNamespace extends ManagedNamespaceWithLifecycle {
+
+        static final String NAMESPACE_URI = "urn:openremote:test:namespace"
+        final SubscriptionModel subscriptionModel
+        final Map<String, UaVariableNode> nodes = [:]
+
+        TestNamespace(OpcUaServer server) {
+            super(server, NAMESPACE_URI)
+            subscriptionModel = new SubscriptionModel(server, this)
+            getLifecycleManager().addLifecycle(subscriptionModel)
+            getLifecycleManager().addStartupTask({
+                addVariable("temperature", Identifiers.Double, 21.5d)
+                addVariable("counter", Identifiers.Int32, 0)
+                addVariable("label", Identifiers.String, "idle")
+                addVariable("setpoint", Identifiers.Double, 20d)
+            })
+        }
+
+        protected void addVariable(String name, NodeId dataType, Object value) {
+            def node = new UaVariableNode.UaVariableNodeBuilder(getNodeContext())
+                .setNodeId(newNodeId(name))
+                .setAccessLevel(AccessLevel.toValue(AccessLevel.READ_WRITE))
+                .setUserAccessLevel(AccessLevel.toValue(AccessLevel.READ_WRITE))
+                .setBrowseName(newQualifiedName(name))
+                .setDisplayName(LocalizedText.english(name))
+                .setDataType(dataType)
+                .setTypeDefinition(Identifiers.BaseDataVariableType)
+                .build()
+            node.setValue(new DataValue(new Variant(value)))
+            getNodeManager().addNode(node)
+            nodes.put(name, node)
+        }
+
+        void setValue(String name, Object value, DateTime sourceTime) {
+            nodes.get(name).setValue(new DataValue(new Variant(value), StatusCode.GOOD, sourceTime))
+        }
+
+        Object getValue(String name) {
+            return nodes.get(name).getValue().getValue().getValue()
+        }
+
+        @Override
+        void onDataItemsCreated(List<DataItem> dataItems) {
+            subscriptionModel.onDataItemsCreated(dataItems)
+        }
+
+        @Override
+        void onDataItemsModified(List<DataItem> dataItems) {
+            subscriptionModel.onDataItemsModified(dataItems)
+        }
+
+        @Override
+        void onDataItemsDeleted(List<DataItem> dataItems) {
+            subscriptionModel.onDataItemsDeleted(dataItems)
+        }
+
+        @Override
+        void onMonitoringModeChanged(List<MonitoredItem> monitoredItems) {
+            subscriptionModel.onMonitoringModeChanged(monitoredItems)
+        }
+    }
+}
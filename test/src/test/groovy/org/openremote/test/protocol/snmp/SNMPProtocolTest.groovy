@@ -0,0 +1,206 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.test.protocol.snmp
+
+import org.openremote.agent.protocol.snmp.SNMPAgent
+import org.openremote.agent.protocol.snmp.SNMPAgentLink
+import org.openremote.agent.protocol.snmp.SNMPPoller
+import org.openremote.agent.protocol.snmp.SNMPProtocol
+import org.openremote.manager.agent.AgentService
+import org.openremote.manager.asset.AssetStorageService
+import org.openremote.model.Constants
+import org.openremote.model.asset.agent.ConnectionStatus
+import org.openremote.model.asset.impl.ThingAsset
+import org.openremote.model.attribute.Attribute
+import org.openremote.model.attribute.MetaItem
+import org.openremote.test.ManagerContainerTrait
+import org.snmp4j.CommandResponder
+import org.snmp4j.CommandResponderEvent
+import org.snmp4j.CommunityTarget
+import org.snmp4j.PDU
+import org.snmp4j.Snmp
+import org.snmp4j.mp.SnmpConstants
+import org.snmp4j.mp.StatusInformation
+import org.snmp4j.smi.*
+import org.snmp4j.transport.DefaultUdpTransportMapping
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.util.concurrent.ConcurrentSkipListMap
+import java.util.concurrent.CopyOnWriteArrayList
+
+import static org.openremote.model.value.MetaItemType.AGENT_LINK
+import static org.openremote.model.value.ValueType.*
+
+class SNMPProtocolTest extends Specification implements ManagerContainerTrait {
+
+    def "Check SNMP polling of linked attributes"() {
+
+        given: "expected conditions"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.2)
+
+        and: "the SNMP protocol min polling time is adjusted for testing"
+        SNMPProtocol.MIN_POLLING_MILLIS = 100
+
+        and: "an in-process SNMP agent that serves a small MIB"
+        def mib = new ConcurrentSkipListMap<OID, Variable>([
+            (new OID("1.3.6.1.2.1.1.5.0")): new OctetString("switch1"),
+            (new OID("1.3.6.1.2.1.2.2.1.10.1")): new Counter32(1000),
+            (new OID("1.3.6.1.2.1.2.2.1.10.2")): new Counter32(2000),
+            (new OID("1.3.6.1.2.1.2.2.1.16.1")): new Counter32(3000)
+        ])
+        def getRequests = new CopyOnWriteArrayList<Integer>()
+        def bulkRequests = new CopyOnWriteArrayList<Integer>()
+        def transport = new DefaultUdpTransportMapping(new UdpAddress("127.0.0.1/0"))
+        def snmpAgent = new Snmp(transport)
+        snmpAgent.addCommandResponder(new CommandResponder() {
+            @Override
+            void processPdu(CommandResponderEvent event) {
+                def request = event.getPDU()
+                def response = new PDU()
+                response.setType(PDU.RESPONSE)
+                response.setRequestID(request.getRequestID())
+
+                if (request.getType() == PDU.GET) {
+                    getRequests.add(request.size())
+                    request.getVariableBindings().each { vb ->
+                        response.add(new VariableBinding(vb.oid, mib.get(vb.oid) ?: Null.noSuchInstance))
+                    }
+                } else if (request.getType() == PDU.GETBULK) {
+                    bulkRequests.add(request.size())
+                    def next = request.getVariableBindings().collect { it.oid }
+                    request.getMaxRepetitions().times {
+                        next = next.collect { oid ->
+                            def entry = mib.higherEntry(oid)
+                            if (entry != null) {
+                                response.add(new VariableBinding(entry.key, entry.value))
+                                return entry.key
+                            }
+                            response.add(new VariableBinding(oid, Null.endOfMibView))
+                            return oid
+                        }
+                    }
+                } else {
+                    return
+                }
+
+                event.getMessageDispatcher().returnResponsePdu(
+                    event.getMessageProcessingModel(),
+                    event.getSecurityModel(),
+                    event.getSecurityName(),
+                    event.getSecurityLevel(),
+                    response,
+                    event.getMaxSizeResponsePDU(),
+                    event.getStateReference(),
+                    new StatusInformation())
+                event.setProcessed(true)
+            }
+        })
+        snmpAgent.listen()
+        def snmpAgentPort = transport.getListenAddress().getPort()
+
+        and: "the container starts"
+        def container = startContainer(defaultConfig(), defaultServices())
+        def assetStorageService = container.getService(AssetStorageService.class)
+        def agentService = container.getService(AgentService.class)
+
+        when: "an SNMP agent is created that polls the in-process SNMP agent"
+        def agent = new SNMPAgent("Test agent")
+            .setSNMPVersion(SNMPAgent.SNMPVersion.V2c)
+            .setPollingMillis(200)
+            .setTimeoutMillis(500)
+            .setHost("127.0.0.1")
+            .setPort(snmpAgentPort)
+            .setRealm(Constants.MASTER_REALM)
+        agent = assetStorageService.merge(agent)
+
+        then: "the protocol instance should be created and should become connected"
+        conditions.eventually {
+            assert agentService.getProtocolInstance(agent.id) != null
+            assert agentService.agents.get(agent.id).getAgentStatus().orElse(null) == ConnectionStatus.CONNECTED
+        }
+
+        when: "an asset is created with attributes linked to OIDs"
+        def asset = new ThingAsset("Test Asset")
+            .setParent(agent)
+            .addOrReplaceAttributes(
+                new Attribute<>("sysName", TEXT)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new SNMPAgentLink(agent.id, "1.3.6.1.2.1.1.5.0"))),
+                new Attribute<>("ifInOctets1", NUMBER)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new SNMPAgentLink(agent.id, "1.3.6.1.2.1.2.2.1.10.1"))),
+                new Attribute<>("ifInOctets", JSON_OBJECT)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new SNMPAgentLink(agent.id, "1.3.6.1.2.1.2.2.1.10").setWalk(true))),
+                new Attribute<>("missing", TEXT)
+                    .addMeta(new MetaItem<>(AGENT_LINK, new SNMPAgentLink(agent.id, "1.3.6.1.2.1.1.99.0")))
+            )
+        asset = assetStorageService.merge(asset)
+
+        then: "the linked attributes should be updated with the polled values"
+        conditions.eventually {
+            asset = assetStorageService.find(asset.id, true)
+            assert asset.getAttribute("sysName").flatMap { it.value }.orElse(null) == "switch1"
+            assert asset.getAttribute("ifInOctets1").flatMap { it.value }.orElse(null) == 1000d
+            def table = asset.getAttribute("ifInOctets").flatMap { it.value }.orElse(null) as Map
+            assert table != null
+            assert table.size() == 2
+            assert table.get("1.3.6.1.2.1.2.2.1.10.1") == 1000
+            assert table.get("1.3.6.1.2.1.2.2.1.10.2") == 2000
+            assert !asset.getAttribute("missing").flatMap { it.value }.isPresent()
+        }
+
+        and: "all OIDs polled at the same interval should be requested together"
+        getRequests.last() == 3
+        bulkRequests.last() == 1
+
+        when: "a counter on the SNMP agent changes"
+        mib.put(new OID("1.3.6.1.2.1.2.2.1.10.1"), new Counter32(1500))
+
+        then: "the linked attributes should be updated on the next poll"
+        conditions.eventually {
+            asset = assetStorageService.find(asset.id, true)
+            assert asset.getAttribute("ifInOctets1").flatMap { it.value }.orElse(null) == 1500d
+            assert (asset.getAttribute("ifInOctets").flatMap { it.value }.orElse(null) as Map).get("1.3.6.1.2.1.2.2.1.10.1") == 1500
+        }
+
+        when: "a poller with a small maximum PDU size is used"
+        def target = new CommunityTarget<UdpAddress>(new UdpAddress("127.0.0.1/" + snmpAgentPort), new OctetString("public"))
+        target.setVersion(SnmpConstants.version2c)
+        def poller = new SNMPPoller(null, target, 200, 1, 10)
+        def oids = (1..20).collect { new OID("1.3.6.1.2.1.2.2.1.10." + it) }
+        def batches = poller.createBatches(oids, 1)
+
+        then: "the OIDs should be split into multiple requests each within the PDU size"
+        batches.size() > 1
+        batches.flatten() == oids
+        batches.every { batch -> batch.sum { SNMPPoller.getResponseBytes(it) } <= 200 }
+
+        when: "the poller is closed and then used"
+        def completed = false
+        poller.close()
+        poller.get(oids, { oid, value -> }, { completed = true })
+
+        then: "the request should complete without being sent"
+        completed
+
+        cleanup: "the in-process SNMP agent is stopped"
+        snmpAgent?.close()
+        SNMPProtocol.MIN_POLLING_MILLIS = 1000
+    }
+}
@@ -167,7 +167,7 @@ class UdpClientProtocolTest extends Specification implements ManagerContainerTra
         then: "the attributes should be linked"
         conditions.eventually {
             assert agentService.getProtocolInstance(agent.id).linkedAttributes.size() == 7
-            assert ((UDPProtocol)agentService.getProtocolInstance(agent.id)).protocolMessageConsumers.size() == 3
+            assert ((UDPProtocol)agentService.getProtocolInstance(agent.id)).messageDispatcher.size() == 3
         }
 
         when: "a linked attribute value is updated"
@@ -239,7 +239,7 @@ class UdpClientProtocolTest extends Specification implements ManagerContainerTra
         conditions.eventually {
             assert agentService.getProtocolInstance(agent.id) != null
             assert agentService.getProtocolInstance(agent.id).linkedAttributes.size() == 7
-            assert ((UDPProtocol)agentService.getProtocolInstance(agent.id)).protocolMessageConsumers.size() == 3
+            assert ((UDPProtocol)agentService.getProtocolInstance(agent.id)).messageDispatcher.size() == 3
         }
 
         when: "the echo server is changed to a byte based server"
@@ -287,7 +287,7 @@ class UdpClientProtocolTest extends Specification implements ManagerContainerTra
             assert ((UDPAgent)agentService.agents.get(agent.id)).getMessageConvertHex().orElse(false)
             assert agentService.getProtocolInstance(agent.id) != null
             assert agentService.getProtocolInstance(agent.id).linkedAttributes.size() == 7
-            assert ((UDPProtocol)agentService.getProtocolInstance(agent.id)).protocolMessageConsumers.size() == 3
+            assert ((UDPProtocol)agentService.getProtocolInstance(agent.id)).messageDispatcher.size() == 3
         }
 
         and: "the protocol should become CONNECTED"
@@ -308,7 +308,7 @@ class UdpClientProtocolTest extends Specification implements ManagerContainerTra
         conditions.eventually {
             assert agentService.getProtocolInstance(agent.id) != null
             assert agentService.getProtocolInstance(agent.id).linkedAttributes.size() == 7
-            assert ((UDPProtocol)agentService.getProtocolInstance(agent.id)).protocolMessageConsumers.size() == 3
+            assert ((UDPProtocol)agentService.getProtocolInstance(agent.id)).messageDispatcher.size() == 3
             assert agentService.getProtocolInstance(agent.id).linkedAttributes.get(new AttributeRef(asset.getId(), "echoWorld")).getMetaItem(AGENT_LINK).flatMap{it.value}.flatMap{it.writeValue}.orElse(null) == "123456"
         }
 
@@ -19,12 +19,15 @@
  */
 package org.openremote.test.protocol.udp
 
+import io.micrometer.core.instrument.Tags
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry
 import io.netty.channel.ChannelHandler
 import io.netty.handler.codec.string.StringDecoder
 import io.netty.handler.codec.string.StringEncoder
 import io.netty.util.CharsetUtil
 import io.netty.util.internal.SocketUtils
 import org.openremote.agent.protocol.io.AbstractNettyIOClient
+import org.openremote.agent.protocol.io.NettyEventLoopGroups
 import org.openremote.agent.protocol.udp.UDPIOClient
 import org.openremote.agent.protocol.udp.UDPStringServer
 import org.openremote.container.timer.TimerService
@@ -121,6 +124,27 @@ class UdpClientTest extends Specification implements ManagerContainerTrait {
             assert lastMessage == "Test"
         }
 
+        and: "the client and server should share the IO event loop group and track the bytes transferred"
+        assert NettyEventLoopGroups.isShared(client.workerGroup)
+        assert NettyEventLoopGroups.isShared(echoServer.workerGroup)
+        assert client.bytesSent > 0
+        assert client.bytesReceived > 0
+
+        when: "the client's channel metrics are registered for an agent"
+        def meterRegistry = new SimpleMeterRegistry()
+        client.channelMetrics.registerMetrics(meterRegistry, Tags.of("agentId", "agent1"))
+
+        then: "tagged meters should report the client's counts"
+        meterRegistry.get("or.agent.io.bytes").tags("agentId", "agent1", "direction", "sent").functionCounter().count() == client.bytesSent
+        meterRegistry.get("or.agent.io.bytes").tags("agentId", "agent1", "direction", "received").functionCounter().count() == client.bytesReceived
+        meterRegistry.get("or.agent.io.agent.channels").tags("agentId", "agent1").gauge().value() == 1d
+
+        when: "the metrics are removed"
+        client.channelMetrics.removeMetrics(meterRegistry)
+
+        then: "no meters should remain"
+        meterRegistry.meters.isEmpty()
+
         when: "we request the client to disconnect"
         client.disconnect()
 
@@ -130,6 +154,9 @@ class UdpClientTest extends Specification implements ManagerContainerTrait {
             assert connectionStatus == ConnectionStatus.DISCONNECTED
         }
 
+        and: "the shared event loop group should still be running"
+        assert !NettyEventLoopGroups.getEventLoopGroup().isShuttingDown()
+
         when: "we reconnect the same client"
         client.connect()
 
@@ -19,6 +19,7 @@
  */
 package org.openremote.test.protocol.velbus
 
+import org.openremote.agent.protocol.io.BusPacer
 import org.openremote.agent.protocol.velbus.VelbusNetwork
 import org.openremote.agent.protocol.velbus.VelbusPacket
 import org.openremote.agent.protocol.velbus.device.*
@@ -2859,4 +2860,39 @@ class VelbusBasicTest extends Specification {
             assert device.getPropertyValue("TEMP_STATE") == ThermostatProcessor.TemperatureState.NORMAL
         }
     }
+
+    def "Check bus pacer lanes, superseding and pausing"() {
+
+        given: "a bus pacer"
+        def conditions = new PollingConditions(timeout: 10, delay: 0.1)
+        def sent = Collections.synchronizedList([])
+        def pacer = new BusPacer<String>(network.getExecutorService(), { sent.add(it) }, { it.startsWith("level") ? it.substring(0, 7) : null }, 500, 5000)
+
+        when: "the bus reports it is busy and messages are queued in both lanes"
+        pacer.onBusBusy()
+        pacer.send(BusPacer.Lane.STATUS, ["status1", "status2"])
+        pacer.send(BusPacer.Lane.COMMAND, ["level1=10", "relay1=on", "level2=50"])
+        pacer.send(BusPacer.Lane.COMMAND, ["level1=20", "level1=30"])
+
+        then: "nothing should be sent and superseded commands should be dropped"
+        assert sent.isEmpty()
+        assert pacer.size() == 5
+        assert pacer.getSupersededCount() == 2
+        assert pacer.getDelayMillis() == 1000
+
+        when: "the bus reports it is ready"
+        pacer.onBusReady()
+
+        then: "commands should be sent before status messages with only the latest value for each channel in the order it was last set"
+        conditions.eventually {
+            assert sent == ["relay1=on", "level2=50", "level1=30", "status1", "status2"]
+            assert pacer.size() == 0
+        }
+
+        and: "the delay should have decreased"
+        assert pacer.getDelayMillis() < 1000
+
+        cleanup: "clear the pacer"
+        pacer.clear()
+    }
 }
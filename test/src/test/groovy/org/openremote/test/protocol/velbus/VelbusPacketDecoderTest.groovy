@@ -0,0 +1,76 @@
+/*
+ * Copyright 2024, OpenRemote Inc.
+ *
+ * See the CONTRIBUTORS.txt file in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.openremote.test.protocol.velbus
+
+import io.netty.buffer.Unpooled
+import io.netty.channel.embedded.EmbeddedChannel
+import org.openremote.agent.protocol.velbus.VelbusPacket
+import org.openremote.agent.protocol.velbus.VelbusPacketDecoder
+import org.openremote.model.util.ValueUtil
+import spock.lang.Specification
+
+class VelbusPacketDecoderTest extends Specification {
+
+    static byte[] bytes(String hex) {
+        ValueUtil.bytesFromHexString(hex.replace(" ", ""))
+    }
+
+    def "Check packet decoding"() {
+
+        given: "a channel with the velbus packet decoder"
+        def channel = new EmbeddedChannel(new VelbusPacketDecoder())
+        def packet1 = "0F FB 05 08 E8 0A 2C 28 1E 0A 06 01 74 04"
+        def packet2 = "0F FB 05 08 E9 2A 2E 34 48 00 3C 00 F0 04"
+
+        when: "several packets and some garbage are received in a single buffer"
+        channel.writeInbound(Unpooled.wrappedBuffer(bytes("01 02 " + packet1 + " 04 0F " + packet2)))
+
+        then: "both packets should be decoded"
+        VelbusPacket decoded1 = channel.readInbound()
+        VelbusPacket decoded2 = channel.readInbound()
+        decoded1.toString() == packet1
+        decoded2.toString() == packet2
+        channel.readInbound() == null
+
+        when: "a packet is received in fragments"
+        channel.writeInbound(Unpooled.wrappedBuffer(bytes("0F FB 05 08 E8 0A")))
+
+        then: "nothing should be decoded until the packet is complete"
+        channel.readInbound() == null
+
+        when: "the rest of the packet is received"
+        channel.writeInbound(Unpooled.wrappedBuffer(bytes("2C 28 1E 0A 06 01 74 04")))
+
+        then: "the packet should be decoded"
+        VelbusPacket decoded3 = channel.readInbound()
+        decoded3.toString() == packet1
+
+        when: "a packet with an invalid checksum is received followed by a valid packet"
+        channel.writeInbound(Unpooled.wrappedBuffer(bytes("0F FB 05 08 E8 0A 2C 28 1E 0A 06 01 75 04 " + packet2)))
+
+        then: "only the valid packet should be decoded"
+        VelbusPacket decoded4 = channel.readInbound()
+        decoded4.toString() == packet2
+        channel.readInbound() == null
+
+        cleanup: "close the channel"
+        channel.finishAndReleaseAll()
+    }
+}
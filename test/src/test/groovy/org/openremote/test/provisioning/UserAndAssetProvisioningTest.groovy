@@ -82,6 +82,7 @@ class UserAndAssetProvisioningTest extends Specification implements ManagerConta
         def assetStorageService = container.getService(AssetStorageService.class)
         def provisioningService = container.getService(ProvisioningService.class)
         def mqttBrokerService = container.getService(MQTTBrokerService.class)
+        def defaultMQTTHandler = mqttBrokerService.customHandlers.find {it instanceof DefaultMQTTHandler} as DefaultMQTTHandler
         def clientEventService = container.getService(ClientEventService.class)
         def assetProcessingService = container.getService(AssetProcessingService.class)
         def identityService = container.getService(ManagerIdentityService.class)
@@ -208,6 +209,11 @@ class UserAndAssetProvisioningTest extends Specification implements ManagerConta
             assert mqttBrokerService.getConnectionFromClientID(mqttDevice1ClientId) == existingConnection
         }
 
+        and: "the provisioning outcome should have been cached"
+        userAssetProvisioningMQTTHandler.provisioningOutcomeCache.asMap().values().any {
+            it.asset().id == weatherAssetID && it.serviceUser().username == User.SERVICE_ACCOUNT_PREFIX + PROVISIONING_USER_PREFIX + device1UniqueId
+        }
+
         when: "the client gets abruptly disconnected"
         device1Responses.clear()
         existingConnection = mqttBrokerService.getConnectionFromClientID(mqttDevice1ClientId)
@@ -245,6 +251,10 @@ class UserAndAssetProvisioningTest extends Specification implements ManagerConta
             assert weatherAsset.getAttribute("serialNumber").flatMap{it.getValue()}.orElse(null) == device1UniqueId
         }
 
+        and: "the cached provisioning outcome should have been used"
+        weatherAsset.id == weatherAssetID
+        userAssetProvisioningMQTTHandler.provisioningOutcomeCache.asMap().values().count {it.asset().id == weatherAssetID} == 1
+
         and: "the connected attribute of the provisioned asset should show as connected"
         conditions.eventually {
             weatherAsset = assetStorageService.find(weatherAssetID)
@@ -261,6 +271,11 @@ class UserAndAssetProvisioningTest extends Specification implements ManagerConta
             assert !weatherAsset.getAttribute("connected").flatMap{it.value}.orElse(true)
         }
 
+        and: "the cached provisioning outcome for the modified asset should have been removed"
+        conditions.eventually {
+            assert !userAssetProvisioningMQTTHandler.provisioningOutcomeCache.asMap().values().any {it.asset().id == weatherAssetID}
+        }
+
         when: "the connected attribute user name is changed to upper case"
         weatherAsset.getAttribute("connected").ifPresent{it.addOrReplaceMeta(new MetaItem<>(MetaItemType.USER_CONNECTED, PROVISIONING_USER_PREFIX + device1UniqueId.toUpperCase()))}
         weatherAsset = assetStorageService.merge(weatherAsset)
@@ -296,8 +311,8 @@ class UserAndAssetProvisioningTest extends Specification implements ManagerConta
             assert device1Client.topicConsumerMap.get(attributeSubscriptionTopic).size() == 1
             connection = mqttBrokerService.getConnectionFromClientID(mqttDevice1ClientId)
             assert connection != null
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.get(getConnectionIDString(connection)).size() == 2
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.get(getConnectionIDString(connection)).size() == 2
         }
 
         when: "the client updates one of the provisioned asset's attributes"
@@ -352,7 +367,7 @@ class UserAndAssetProvisioningTest extends Specification implements ManagerConta
 
         then: "all subscriptions should be removed and the client should be disconnected"
         conditions.eventually {
-            assert !clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
+            assert !defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
             assert device1Client.getConnectionStatus() == ConnectionStatus.DISCONNECTED
         }
 
@@ -403,6 +418,9 @@ class UserAndAssetProvisioningTest extends Specification implements ManagerConta
             assert asset.getAttribute("serialNumber").flatMap{it.getValue()}.orElse(null) == device1UniqueId
         }
 
+        and: "the returned asset should include the latest modifications rather than a cached copy"
+        asset.getAttribute("connected").flatMap{it.getMetaValue(MetaItemType.USER_CONNECTED)}.orElse(null) == PROVISIONING_USER_PREFIX + device1UniqueId.toUpperCase()
+
         and: "the connection should be recorded against the provisioning config"
         conditions.eventually {
             assert userAssetProvisioningMQTTHandler.provisioningConfigAuthenticatedConnectionMap.get(provisioningConfig.id) != null
@@ -421,8 +439,8 @@ class UserAndAssetProvisioningTest extends Specification implements ManagerConta
             assert device1Client.topicConsumerMap.get(attributeSubscriptionTopic).size() == 1
             connection = mqttBrokerService.getConnectionFromClientID(mqttDevice1ClientId)
             assert connection != null
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(connection))
-            assert clientEventService.eventSubscriptions.sessionSubscriptionIdMap.get(getConnectionIDString(connection)).size() == 2
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(connection))
+            assert defaultMQTTHandler.connectionSubscriberInfoMap.get(getConnectionIDString(connection)).size() == 2
         }
 
         when: "a second device connects"
@@ -598,6 +616,11 @@ class UserAndAssetProvisioningTest extends Specification implements ManagerConta
             assert connection != null
         }
 
+        and: "the cached provisioning outcomes should have been removed"
+        conditions.eventually {
+            assert userAssetProvisioningMQTTHandler.provisioningOutcomeCache.size() == 0
+        }
+
         when: "the re-connected client re-authenticates"
         device1Responses.clear()
         device1Client.sendMessage(
@@ -695,7 +718,13 @@ class UserAndAssetProvisioningTest extends Specification implements ManagerConta
         conditions.eventually {
             assert mqttBrokerService.getConnectionFromClientID(mqttDevice1ClientId) != null
             assert mqttBrokerService.getConnectionFromClientID(mqttDevice1ClientId) != existingConnection
-            assert !clientEventService.eventSubscriptions.sessionSubscriptionIdMap.containsKey(getConnectionIDString(existingConnection))
+            assert !defaultMQTTHandler.connectionSubscriberInfoMap.containsKey(getConnectionIDString(existingConnection))
+        }
+
+        and: "the cached credentials and provisioning outcomes for the disabled users should have been removed"
+        conditions.eventually {
+            assert mqttBrokerService.securityManager.credentialCache.size() == 0
+            assert userAssetProvisioningMQTTHandler.provisioningOutcomeCache.size() == 0
         }
 
         when: "the re-connected client re-authenticates"
@@ -774,6 +803,46 @@ class UserAndAssetProvisioningTest extends Specification implements ManagerConta
             assert asset.getAttribute("serialNumber").flatMap{it.getValue()}.orElse(null) == device1UniqueId
         }
 
+        when: "the client device publishes its' valid client certificate again"
+        device1Responses.clear()
+        device1Client.sendMessage(
+                new MQTTMessage<String>(device1RequestTopic, ValueUtil.asJSON(
+                        new X509ProvisioningMessage(getClass().getResource("/org/openremote/test/provisioning/device1.pem").text)
+                ).orElse(null))
+        )
+
+        then: "the provisioning outcome should be cached"
+        conditions.eventually {
+            assert device1Responses.size() == 1
+            assert device1Responses.get(0) instanceof SuccessResponseMessage
+            assert userAssetProvisioningMQTTHandler.provisioningOutcomeCache.asMap().values().any {it.asset().id == weatherAssetID}
+        }
+
+        when: "the provisioned asset is deleted"
+        assetStorageService.delete([weatherAssetID])
+
+        then: "the cached provisioning outcome for the deleted asset should have been removed"
+        conditions.eventually {
+            assert assetStorageService.find(weatherAssetID) == null
+            assert !userAssetProvisioningMQTTHandler.provisioningOutcomeCache.asMap().values().any {it.asset().id == weatherAssetID}
+        }
+
+        when: "the client device publishes its' valid client certificate once more"
+        device1Responses.clear()
+        device1Client.sendMessage(
+                new MQTTMessage<String>(device1RequestTopic, ValueUtil.asJSON(
+                        new X509ProvisioningMessage(getClass().getResource("/org/openremote/test/provisioning/device1.pem").text)
+                ).orElse(null))
+        )
+
+        then: "the asset should have been re-created rather than the deleted asset being returned"
+        conditions.eventually {
+            assert device1Responses.size() == 1
+            assert device1Responses.get(0) instanceof SuccessResponseMessage
+            assert ((SuccessResponseMessage)device1Responses.get(0)).asset.id == weatherAssetID
+            assert assetStorageService.find(weatherAssetID) != null
+        }
+
         cleanup: "disconnect the clients"
         if (device1Client != null) {
             device1Client.disconnect()